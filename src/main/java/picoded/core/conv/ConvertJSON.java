@@ -1,16 +1,38 @@
 package picoded.core.conv;
 
 // Java libs
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 // Jackson library used
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
 
 // Picoded libraries used
 import picoded.core.exception.ExceptionMessage;
@@ -111,6 +133,63 @@ public class ConvertJSON {
 		return cachedMapper = cm;
 	}
 	
+	/**
+	 * Prebuilt readers of each target class, reused across calls (ObjectReader is thread safe).
+	 * This avoids the root deserializer lookup on every read.
+	 **/
+	private static final Map<Class<?>, ObjectReader> cachedReaders = new ConcurrentHashMap<Class<?>, ObjectReader>();
+	
+	/**
+	 * @param  c target class to read
+	 *
+	 * @returns The reader of the target class, from the cachedMapper
+	 **/
+	protected static ObjectReader cachedReader(Class<?> c) {
+		ObjectReader ret = cachedReaders.get(c);
+		if (ret == null) {
+			ret = cachedMapper().readerFor(c);
+			cachedReaders.put(c, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Memoizer for strictReader()
+	 **/
+	private static volatile ObjectReader strictReader = null;
+	
+	/**
+	 * Reader for strict JSON (without comments, single quotes, leading zeros, or trailing content),
+	 * used to skip the HJSON filtering of toCustomClass, for valid JSON strings.
+	 *
+	 * @returns The strict JSON reader, for untyped values
+	 **/
+	protected static ObjectReader strictReader() {
+		if (strictReader != null) {
+			return strictReader;
+		}
+		return strictReader = cachedMapper().readerFor(Object.class) //
+			.without(JsonParser.Feature.ALLOW_COMMENTS) //
+			.without(JsonParser.Feature.ALLOW_SINGLE_QUOTES) //
+			.without(JsonParser.Feature.ALLOW_NUMERIC_LEADING_ZEROS) //
+			.with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+	}
+	
+	/**
+	 * Memoizer for cachedWriter()
+	 **/
+	private static volatile ObjectWriter cachedWriter = null;
+	
+	/**
+	 * @returns The prebuilt writer, from the cachedMapper
+	 **/
+	protected static ObjectWriter cachedWriter() {
+		if (cachedWriter != null) {
+			return cachedWriter;
+		}
+		return cachedWriter = cachedMapper().writer();
+	}
+	
 	/////////////////////////////////////////////////
 	//
 	// From java objects to JSON string conversion
@@ -153,7 +232,7 @@ public class ConvertJSON {
 	 **/
 	public static String fromObject(Object input) {
 		try {
-			return cachedMapper().writeValueAsString(input);
+			return cachedWriter().writeValueAsString(input);
 		} catch (IOException e) {
 			/**
 			 * Any exception is recasted as InvalidFormatJSON
@@ -165,7 +244,36 @@ public class ConvertJSON {
 	/**
 	 * Pretty print indenter
 	 **/
-	protected static DefaultPrettyPrinter prettyPrinter = null;
+	protected static volatile DefaultPrettyPrinter prettyPrinter = null;
+	
+	/**
+	 * Memoizer for prettyWriter()
+	 **/
+	private static volatile ObjectWriter prettyWriter = null;
+	
+	/**
+	 * @returns The prebuilt writer, with the pretty print indenter
+	 **/
+	protected static ObjectWriter prettyWriter() {
+		if (prettyWriter != null) {
+			return prettyWriter;
+		}
+		
+		/**
+		 * Creates first
+		 * See: http://stackoverflow.com/questions/28256852/what-is-the-simplest-way-to-configure-the-indentation-spacing-on-a-jackson-objec
+		 **/
+		DefaultPrettyPrinter.Indenter indenter = new DefaultIndenter("	", DefaultIndenter.SYS_LF);
+		DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+		printer.indentObjectsWith(indenter);
+		printer.indentArraysWith(indenter);
+		prettyPrinter = printer;
+		
+		/**
+		 * Then replace : the fully built writer is published as a single volatile write
+		 **/
+		return prettyWriter = cachedMapper().writer(printer);
+	}
 	
 	/**
 	 * Converts input object into a json string
@@ -188,30 +296,11 @@ public class ConvertJSON {
 			return fromObject(input);
 		}
 		
-		/**
-		 * Ensure pretty printer indenter is configured
-		 **/
-		if (prettyPrinter == null) {
-			/**
-			 * Creates first
-			 * See: http://stackoverflow.com/questions/28256852/what-is-the-simplest-way-to-configure-the-indentation-spacing-on-a-jackson-objec
-			 **/
-			DefaultPrettyPrinter.Indenter indenter = new DefaultIndenter("	", DefaultIndenter.SYS_LF);
-			DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
-			printer.indentObjectsWith(indenter);
-			printer.indentArraysWith(indenter);
-			
-			/**
-			 * Then replace : prevents multithread race collisions
-			 **/
-			prettyPrinter = printer;
-		}
-		
 		/**
 		 * With pretty print
 		 **/
 		try {
-			return cachedMapper().writer(prettyPrinter).writeValueAsString(input);
+			return prettyWriter().writeValueAsString(input);
 		} catch (IOException e) {
 			// Any exception is recasted as InvalidFormatJSON
 			throw new InvalidFormatJSON(e);
@@ -325,17 +414,17 @@ public class ConvertJSON {
 					"Unexpected blank JSON string - unable to cast to the required class type");
 			}
 			
-			// This uses the `com.fasterxml.jackson.core` library
-			// return cachedMapper().readValue(input, c);
+			// Strict JSON strings, read directly without the HJSON filtering
+			if (c == Map.class || c == List.class || c == Object.class) {
+				Object res = toStrictObject(input);
+				if (res != STRICT_UNSUPPORTED && (res == null || c.isInstance(res))) {
+					return res;
+				}
+			}
 			
 			// This uses the `org.hjson` library to filter the hjson string first
 			String jsonString = org.hjson.JsonValue.readHjson(input).toString();
-			return cachedMapper().readValue(jsonString, c);
-			
-			// @TODO - consider doing the much more optimized route of 
-			//         reading this as a JsonObject, and doing the required 
-			//         type check and casting, before falling back to jsonString
-			// Object res = org.hjson.JsonValue.readHjson(input).asObject();
+			return cachedReader(c).readValue(jsonString);
 		} catch (IOException e) {
 			/**
 			 * Any exception is recasted as InvalidFormatJSON
@@ -344,6 +433,745 @@ public class ConvertJSON {
 		}
 	}
 	
+	/**
+	 * Result of toStrictObject, for strings which are not strict JSON
+	 **/
+	protected static final Object STRICT_UNSUPPORTED = new Object();
+	
+	/**
+	 * Reads a strict JSON string, with the same result as the HJSON filtered toCustomClass.
+	 *
+	 * The HJSON filtering reads every number as a double, and writes it back as an integer
+	 * if its integral (else as a double). As such the numbers read here are normalized the same way.
+	 *
+	 * @param  JSON string
+	 *
+	 * @return  Output object, or STRICT_UNSUPPORTED if its not strict JSON (or has out of range numbers)
+	 **/
+	protected static Object toStrictObject(String input) {
+		if (hasControlCharEscape(input)) {
+			return STRICT_UNSUPPORTED;
+		}
+		Object res;
+		try {
+			res = strictReader().readValue(input);
+		} catch (IOException e) {
+			return STRICT_UNSUPPORTED;
+		}
+		return normalizeStrictValue(res);
+	}
+	
+	/**
+	 * Normalizes the numbers of a value read by the strict reader, as per the HJSON filtering
+	 *
+	 * @param  value read by the strict reader, which is normalized in place
+	 *
+	 * @return  Output object, or STRICT_UNSUPPORTED if it has out of range numbers
+	 **/
+	protected static Object normalizeStrictValue(Object value) {
+		if (value instanceof Number) {
+			Number normalized = normalizeStrictNumber((Number) value);
+			return (normalized != null) ? normalized : STRICT_UNSUPPORTED;
+		}
+		return normalizeStrictNumbers(value) ? value : STRICT_UNSUPPORTED;
+	}
+	
+	/**
+	 * Indicates if any string (or map key) within the value has a control character, other than
+	 * the backspace, tab, newline, form feed and carriage return. This is the read value equivalent
+	 * of hasControlCharEscape, for values whose JSON text cannot be checked before reading.
+	 **/
+	@SuppressWarnings("unchecked")
+	protected static boolean hasControlChar(Object value) {
+		if (value instanceof String) {
+			String str = (String) value;
+			for (int i = 0; i < str.length(); ++i) {
+				char code = str.charAt(i);
+				if (code < 0x20 && code != '\b' && code != '\t' && code != '\n' && code != '\f'
+					&& code != '\r') {
+					return true;
+				}
+			}
+		} else if (value instanceof Map) {
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+				if (hasControlChar(entry.getKey()) || hasControlChar(entry.getValue())) {
+					return true;
+				}
+			}
+		} else if (value instanceof List) {
+			for (Object sub : (List<Object>) value) {
+				if (hasControlChar(sub)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Indicates if the string has any "\\u00XX" control character escape, other than the
+	 * backspace, tab, newline, form feed and carriage return. As the HJSON filtering writes these
+	 * unescaped (which fails when read by Jackson), such strings are left to the HJSON path.
+	 **/
+	protected static boolean hasControlCharEscape(String input) {
+		int pos = input.indexOf("\\u00");
+		while (pos >= 0 && pos + 5 < input.length()) {
+			int code = Character.digit(input.charAt(pos + 4), 16) * 16
+				+ Character.digit(input.charAt(pos + 5), 16);
+			if (code >= 0 && code < 0x20 && code != '\b' && code != '\t' && code != '\n'
+				&& code != '\f' && code != '\r') {
+				return true;
+			}
+			pos = input.indexOf("\\u00", pos + 1);
+		}
+		return false;
+	}
+	
+	/**
+	 * hasControlCharEscape, for UTF-8 json bytes
+	 **/
+	protected static boolean hasControlCharEscape(byte[] input, int offset, int length) {
+		int end = offset + length;
+		for (int pos = offset; pos + 5 < end; ++pos) {
+			if (input[pos] != '\\' || input[pos + 1] != 'u' || input[pos + 2] != '0'
+				|| input[pos + 3] != '0') {
+				continue;
+			}
+			int code = Character.digit(input[pos + 4], 16) * 16 + Character.digit(input[pos + 5], 16);
+			if (code >= 0 && code < 0x20 && code != '\b' && code != '\t' && code != '\n'
+				&& code != '\f' && code != '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Normalizes the numbers within the map / list (in place), as per the HJSON filtering
+	 *
+	 * @return  false if there is any number out of the double range
+	 **/
+	@SuppressWarnings("unchecked")
+	protected static boolean normalizeStrictNumbers(Object value) {
+		if (value instanceof Map) {
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+				Object sub = entry.getValue();
+				if (sub instanceof Number) {
+					Number normalized = normalizeStrictNumber((Number) sub);
+					if (normalized == null) {
+						return false;
+					}
+					entry.setValue(normalized);
+				} else if (!normalizeStrictNumbers(sub)) {
+					return false;
+				}
+			}
+		} else if (value instanceof List) {
+			ListIterator<Object> iter = ((List<Object>) value).listIterator();
+			while (iter.hasNext()) {
+				Object sub = iter.next();
+				if (sub instanceof Number) {
+					Number normalized = normalizeStrictNumber((Number) sub);
+					if (normalized == null) {
+						return false;
+					}
+					iter.set(normalized);
+				} else if (!normalizeStrictNumbers(sub)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Normalizes a single number, as per the HJSON filtering
+	 *
+	 * @return  the normalized number, or null if its out of the double range
+	 **/
+	protected static Number normalizeStrictNumber(Number num) {
+		if (num instanceof Integer) {
+			return num;
+		}
+		double d = num.doubleValue();
+		if (Double.isInfinite(d) || Double.isNaN(d)) {
+			return null;
+		}
+		long l = (long) d;
+		if (l != d) {
+			return (num instanceof Double) ? num : Double.valueOf(d);
+		}
+		if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) l);
+		}
+		return (num instanceof Long && num.longValue() == l) ? num : Long.valueOf(l);
+	}
+	
+	/////////////////////////////////////////////////
+	//
+	// Streaming JSON support
+	//
+	/////////////////////////////////////////////////
+	
+	/**
+	 * Iterator of JSON values read from a stream, one value at a time. Where the stream is either
+	 * a JSON array (iterating its elements), or a sequence of root values (such as NDJSON).
+	 *
+	 * Only the current value is held in memory. The input is closed once fully read,
+	 * or when the iterator is closed (for callers which stop early).
+	 *
+	 * Each map / list / object value is normalized the same way as toCustomClass of its JSON string,
+	 * so the numbers are of the same class (Integer, Long or Double) as with toMap(String).
+	 *
+	 * Note that unlike toCustomClass, the stream is parsed directly by Jackson (without HJSON),
+	 * with comments, single quotes, unquoted keys, and leading zeros allowed. Other HJSON syntax
+	 * (such as quoteless string values, or missing commas) is not supported when streaming.
+	 **/
+	public static class JSONIterator<V> implements Iterator<V>, Closeable {
+		
+		// The stream parser, null once closed
+		protected JsonParser parser;
+		
+		// Value type to read each value as
+		protected final Class<V> valueType;
+		
+		// Indicates if the values are the elements of a root array
+		protected boolean arrayElements = false;
+		
+		/**
+		 * Constructor, with the stream parser to read from
+		 *
+		 * @param  parser to read from
+		 * @param  valueType to read each value as
+		 **/
+		protected JSONIterator(JsonParser parser, Class<V> valueType) {
+			this.parser = parser.enable(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES);
+			this.valueType = valueType;
+			try {
+				if (parser.nextToken() == JsonToken.START_ARRAY) {
+					arrayElements = true;
+					parser.nextToken();
+				}
+			} catch (IOException e) {
+				close();
+				throw new InvalidFormatJSON(e);
+			}
+		}
+		
+		/**
+		 * @return  true if there is another value
+		 **/
+		@Override
+		public boolean hasNext() {
+			if (parser == null) {
+				return false;
+			}
+			JsonToken token = parser.currentToken();
+			if (token == null || (arrayElements && token == JsonToken.END_ARRAY)) {
+				close();
+				return false;
+			}
+			return true;
+		}
+		
+		/**
+		 * @return  the next value
+		 **/
+		@Override
+		public V next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			try {
+				V ret = cachedReader(valueType).readValue(parser);
+				parser.nextToken();
+				return normalize(ret);
+			} catch (IOException e) {
+				close();
+				throw new InvalidFormatJSON(e);
+			} catch (InvalidFormatJSON e) {
+				close();
+				throw e;
+			}
+		}
+		
+		/**
+		 * Normalizes the read map / list / object value, as per toCustomClass of its JSON string
+		 *
+		 * @param  value read from the stream
+		 *
+		 * @return  the normalized value
+		 **/
+		@SuppressWarnings("unchecked")
+		protected V normalize(V value) {
+			if (valueType != Map.class && valueType != List.class && valueType != Object.class) {
+				return value;
+			}
+			Object res = hasControlChar(value) ? STRICT_UNSUPPORTED : normalizeStrictValue(value);
+			if (res != STRICT_UNSUPPORTED) {
+				return (V) res;
+			}
+			
+			// Rare values which need the HJSON filtering, are converted via their JSON string
+			return (V) toCustomClass(fromObject(value), valueType);
+		}
+		
+		/**
+		 * Closes the parser, and its input
+		 **/
+		@Override
+		public void close() {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException e) {
+					// Ignored, as there is nothing else to read
+				}
+				parser = null;
+			}
+		}
+	}
+	
+	/**
+	 * Reads a JSON array of maps (or a sequence of maps, such as NDJSON), one map at a time
+	 *
+	 * @param  input stream to read (as UTF-8 / UTF-16 / UTF-32), closed once fully read
+	 *
+	 * @return  iterator of each map
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static JSONIterator<Map<String, Object>> toMapIterator(InputStream input) {
+		return (JSONIterator) toCustomClassIterator(input, Map.class);
+	}
+	
+	/**
+	 * Reads a JSON array of maps (or a sequence of maps, such as NDJSON), one map at a time
+	 *
+	 * @param  input reader to read, closed once fully read
+	 *
+	 * @return  iterator of each map
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static JSONIterator<Map<String, Object>> toMapIterator(Reader input) {
+		return (JSONIterator) toCustomClassIterator(input, Map.class);
+	}
+	
+	/**
+	 * Reads a JSON array of maps (or a sequence of maps, such as NDJSON), one map at a time
+	 *
+	 * @param  input file to read, closed once fully read
+	 *
+	 * @return  iterator of each map
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static JSONIterator<Map<String, Object>> toMapIterator(Path input) {
+		return (JSONIterator) toCustomClassIterator(input, Map.class);
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), one value at a time
+	 *
+	 * @param  input stream to read (as UTF-8 / UTF-16 / UTF-32), closed once fully read
+	 *
+	 * @return  iterator of each value (map, list, or other value)
+	 **/
+	public static JSONIterator<Object> toObjectIterator(InputStream input) {
+		return toCustomClassIterator(input, Object.class);
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), one value at a time
+	 *
+	 * @param  input reader to read, closed once fully read
+	 *
+	 * @return  iterator of each value (map, list, or other value)
+	 **/
+	public static JSONIterator<Object> toObjectIterator(Reader input) {
+		return toCustomClassIterator(input, Object.class);
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), one value at a time
+	 *
+	 * @param  input file to read, closed once fully read
+	 *
+	 * @return  iterator of each value (map, list, or other value)
+	 **/
+	public static JSONIterator<Object> toObjectIterator(Path input) {
+		return toCustomClassIterator(input, Object.class);
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), as the given class, one value at a time
+	 *
+	 * Note that this is the core "stream to java object" function that all
+	 * other InputStream varient is built on top of.
+	 *
+	 * @param  input stream to read (as UTF-8 / UTF-16 / UTF-32), closed once fully read
+	 * @param  c class of each value
+	 *
+	 * @return  iterator of each value
+	 **/
+	public static <V> JSONIterator<V> toCustomClassIterator(InputStream input, Class<V> c) {
+		try {
+			return new JSONIterator<V>(cachedMapper().getFactory().createParser(input), c);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), as the given class, one value at a time
+	 *
+	 * @param  input reader to read, closed once fully read
+	 * @param  c class of each value
+	 *
+	 * @return  iterator of each value
+	 **/
+	public static <V> JSONIterator<V> toCustomClassIterator(Reader input, Class<V> c) {
+		try {
+			return new JSONIterator<V>(cachedMapper().getFactory().createParser(input), c);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Reads a JSON array of values (or a sequence of values), as the given class, one value at a time
+	 *
+	 * @param  input file to read, closed once fully read
+	 * @param  c class of each value
+	 *
+	 * @return  iterator of each value
+	 **/
+	public static <V> JSONIterator<V> toCustomClassIterator(Path input, Class<V> c) {
+		InputStream stream;
+		try {
+			stream = Files.newInputStream(input);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return toCustomClassIterator(stream, c);
+	}
+	
+	/**
+	 * Writes the input object as JSON to the output stream (as UTF-8), without building the
+	 * full JSON string. The output stream is flushed, but not closed.
+	 *
+	 * @param  input object to convert
+	 * @param  output stream to write to
+	 **/
+	public static void fromObject(Object input, OutputStream output) {
+		try (JsonGenerator gen = streamGenerator(output)) {
+			gen.writeObject(input);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Writes the input object as JSON to the writer, without building the
+	 * full JSON string. The writer is flushed, but not closed.
+	 *
+	 * @param  input object to convert
+	 * @param  output writer to write to
+	 **/
+	public static void fromObject(Object input, Writer output) {
+		try (JsonGenerator gen = streamGenerator(output)) {
+			gen.writeObject(input);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Writes the values as a JSON array (or lines) to the output stream (as UTF-8), one value at a time.
+	 * The output stream is flushed, but not closed.
+	 *
+	 * @param  values to write, which are iterated once
+	 * @param  output stream to write to
+	 * @param  lines true to write each value on its own line (NDJSON), instead of a JSON array
+	 **/
+	public static void fromIterator(Iterator<?> values, OutputStream output, boolean lines) {
+		try (JsonGenerator gen = streamGenerator(output)) {
+			writeValues(gen, values, lines);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Writes the values as a JSON array (or lines) to the writer, one value at a time.
+	 * The writer is flushed, but not closed.
+	 *
+	 * @param  values to write, which are iterated once
+	 * @param  output writer to write to
+	 * @param  lines true to write each value on its own line (NDJSON), instead of a JSON array
+	 **/
+	public static void fromIterator(Iterator<?> values, Writer output, boolean lines) {
+		try (JsonGenerator gen = streamGenerator(output)) {
+			writeValues(gen, values, lines);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Generator for the output stream, which does not close the output stream
+	 **/
+	protected static JsonGenerator streamGenerator(OutputStream output) throws IOException {
+		return cachedMapper().getFactory().createGenerator(output, JsonEncoding.UTF8).disable(
+			JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+	
+	/**
+	 * Generator for the writer, which does not close the writer
+	 **/
+	protected static JsonGenerator streamGenerator(Writer output) throws IOException {
+		return cachedMapper().getFactory().createGenerator(output).disable(
+			JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+	
+	/**
+	 * Writes each value, as a JSON array, or as lines
+	 **/
+	protected static void writeValues(JsonGenerator gen, Iterator<?> values, boolean lines)
+		throws IOException {
+		if (lines) {
+			// Each root value on its own line
+			gen.setRootValueSeparator(null);
+			while (values.hasNext()) {
+				gen.writeObject(values.next());
+				gen.writeRaw('\n');
+			}
+			return;
+		}
+		gen.writeStartArray();
+		while (values.hasNext()) {
+			gen.writeObject(values.next());
+		}
+		gen.writeEndArray();
+	}
+	
+	/////////////////////////////////////////////////
+	//
+	// Byte level JSON support
+	//
+	/////////////////////////////////////////////////
+	
+	/**
+	 * Converts input object into UTF-8 encoded json bytes, without an intermediate String
+	 *
+	 * @param  Input object to convert
+	 *
+	 * @return The json bytes
+	 **/
+	public static byte[] fromObjectToBytes(Object input) {
+		try {
+			return cachedWriter().writeValueAsBytes(input);
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+	}
+	
+	/**
+	 * Writes the input object as UTF-8 encoded json, into the buffer (from its position)
+	 *
+	 * @param  Input object to convert
+	 * @param  Buffer to write into, where its position is moved to the end of the json
+	 *
+	 * @return  number of bytes written
+	 *
+	 * @throws BufferOverflowException if the buffer has insufficient space, with its position unchanged
+	 **/
+	public static int writeTo(Object input, ByteBuffer buffer) {
+		int start = buffer.position();
+		try (JsonGenerator gen = streamGenerator(new ByteBufferBackedOutputStream(buffer))) {
+			gen.writeObject(input);
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			throw e;
+		} catch (IOException e) {
+			buffer.position(start);
+			throw new InvalidFormatJSON(e);
+		}
+		return buffer.position() - start;
+	}
+	
+	/**
+	 * Converts UTF-8 (or UTF-16 / UTF-32) json bytes into a mapping object
+	 *
+	 * @param  JSON bytes
+	 *
+	 * @return  Output Map if successful, else throws an error
+	 **/
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> toMap(byte[] input) {
+		return (Map<String, Object>) toCustomClass(input, 0, (input != null) ? input.length : 0,
+			Map.class);
+	}
+	
+	/**
+	 * Converts UTF-8 (or UTF-16 / UTF-32) json bytes into a list array
+	 *
+	 * @param  JSON bytes
+	 *
+	 * @return  Output List if successful, else throws an error
+	 **/
+	@SuppressWarnings("unchecked")
+	public static List<Object> toList(byte[] input) {
+		return (List<Object>) toCustomClass(input, 0, (input != null) ? input.length : 0,
+			List.class);
+	}
+	
+	/**
+	 * Converts UTF-8 (or UTF-16 / UTF-32) json bytes into any output object (depends on input)
+	 *
+	 * @param  JSON bytes
+	 *
+	 * @return  Output object (either map or list)
+	 **/
+	public static Object toObject(byte[] input) {
+		return toCustomClass(input, 0, (input != null) ? input.length : 0, Object.class);
+	}
+	
+	/**
+	 * Converts the remaining json bytes of the buffer, into any output object (depends on input).
+	 * The buffer position is moved to its limit.
+	 *
+	 * @param  JSON bytes buffer
+	 *
+	 * @return  Output object (either map or list)
+	 **/
+	public static Object toObject(ByteBuffer input) {
+		return toCustomClass(input, Object.class);
+	}
+	
+	/**
+	 * Converts the json bytes into a custom output object, with the same result as toCustomClass
+	 * of the decoded JSON string.
+	 *
+	 * Strict UTF-8 JSON bytes of a map / list / object are parsed directly by Jackson from the bytes
+	 * (without HJSON, or an intermediate String). Anything else is decoded, and read as a string.
+	 *
+	 * @param  JSON bytes
+	 * @param  offset of the json in the bytes
+	 * @param  length of the json
+	 * @param  c class of the output
+	 *
+	 * @return  Output object (either map or list, or other class)
+	 **/
+	public static Object toCustomClass(byte[] input, int offset, int length, Class<?> c) {
+		try {
+			// Throw on blank bytes, as that cannot be casted to any class
+			if (input == null || length <= 0) {
+				throw new IOException(
+					"Unexpected blank JSON bytes - unable to cast to the required class type");
+			}
+		} catch (IOException e) {
+			throw new InvalidFormatJSON(e);
+		}
+		
+		// Strict UTF-8 JSON bytes, read directly without the HJSON filtering
+		Charset charset = detectCharset(input, offset, length);
+		if (charset == StandardCharsets.UTF_8
+			&& (c == Map.class || c == List.class || c == Object.class)) {
+			Object res = toStrictObject(input, offset, length);
+			if (res != STRICT_UNSUPPORTED && (res == null || c.isInstance(res))) {
+				return res;
+			}
+		}
+		
+		// Anything else, is read as a string
+		String jsonString = new String(input, offset, length, charset);
+		if (jsonString.length() > 0 && jsonString.charAt(0) == '\uFEFF') {
+			jsonString = jsonString.substring(1);
+		}
+		return toCustomClass(jsonString, c);
+	}
+	
+	/**
+	 * Reads strict UTF-8 JSON bytes, with the same result as the HJSON filtered toCustomClass.
+	 *
+	 * @param  JSON bytes
+	 * @param  offset of the json in the bytes
+	 * @param  length of the json
+	 *
+	 * @return  Output object, or STRICT_UNSUPPORTED if its not strict JSON (or has out of range numbers)
+	 **/
+	protected static Object toStrictObject(byte[] input, int offset, int length) {
+		if (hasControlCharEscape(input, offset, length)) {
+			return STRICT_UNSUPPORTED;
+		}
+		Object res;
+		try {
+			res = strictReader().readValue(input, offset, length);
+		} catch (IOException e) {
+			return STRICT_UNSUPPORTED;
+		}
+		return normalizeStrictValue(res);
+	}
+	
+	/**
+	 * Detects the encoding of the json bytes, the same way as Jackson. That is by its
+	 * byte order mark, else the zero bytes within the first 4 bytes (RFC 4627).
+	 *
+	 * @param  JSON bytes
+	 * @param  offset of the json in the bytes
+	 * @param  length of the json
+	 *
+	 * @return  the encoding (UTF-8, UTF-16 or UTF-32)
+	 **/
+	protected static Charset detectCharset(byte[] input, int offset, int length) {
+		int b0 = input[offset] & 0xFF;
+		int b1 = (length > 1) ? (input[offset + 1] & 0xFF) : -1;
+		int b2 = (length > 2) ? (input[offset + 2] & 0xFF) : -1;
+		int b3 = (length > 3) ? (input[offset + 3] & 0xFF) : -1;
+		
+		if (b0 == 0 && b1 == 0 && (b2 == 0 || (b2 == 0xFE && b3 == 0xFF))) {
+			return Charset.forName("UTF-32BE");
+		} else if ((b0 == 0xFF && b1 == 0xFE && b2 == 0 && b3 == 0)
+			|| (b1 == 0 && b2 == 0 && b3 == 0)) {
+			return Charset.forName("UTF-32LE");
+		} else if ((b0 == 0xFE && b1 == 0xFF) || b0 == 0) {
+			return StandardCharsets.UTF_16BE;
+		} else if ((b0 == 0xFF && b1 == 0xFE) || b1 == 0) {
+			return StandardCharsets.UTF_16LE;
+		}
+		return StandardCharsets.UTF_8;
+	}
+	
+	/**
+	 * Converts the remaining json bytes of the buffer into a custom output object.
+	 * The buffer position is moved to its limit.
+	 *
+	 * Heap buffers are parsed from their backing array directly, without copying,
+	 * while direct buffers are copied out first.
+	 *
+	 * @param  JSON bytes buffer
+	 * @param  c class of the output
+	 *
+	 * @return  Output object (either map or list, or other class)
+	 **/
+	public static Object toCustomClass(ByteBuffer input, Class<?> c) {
+		if (input != null && input.hasArray()) {
+			int start = input.position();
+			int length = input.remaining();
+			Object ret = toCustomClass(input.array(), input.arrayOffset() + start, length, c);
+			input.position(start + length);
+			return ret;
+		}
+		
+		// Direct buffers are copied out, as they have no backing array
+		byte[] bytes = new byte[(input != null) ? input.remaining() : 0];
+		if (input != null) {
+			input.duplicate().get(bytes);
+		}
+		Object ret = toCustomClass(bytes, 0, bytes.length, c);
+		input.position(input.limit());
+		return ret;
+	}
+	
 	/////////////////////////////////////////////////
 	//
 	// From string to array conversion
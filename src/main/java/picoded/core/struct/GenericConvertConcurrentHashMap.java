@@ -1,10 +1,16 @@
 package picoded.core.struct;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import picoded.core.conv.GenericConvert;
+import picoded.core.struct.query.LiveQuery;
+import picoded.core.struct.query.Query;
 
 /**
  *
@@ -24,6 +30,11 @@ import picoded.core.conv.GenericConvert;
  * assertEquals( "[\"this\",\"is\",\"the\",\"end\"]", map.getString("nor") );
  *
  * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+ *
+ * Live queries can be registered via liveQuery(...), which are kept up to date on every
+ * put / remove / replace / compute / merge / clear call, without searching the whole map.
+ * Note that removals done via the iterators of the keySet / values / entrySet views,
+ * are not tracked (use LiveQuery.reset(map) to resync after such removals).
  **/
 public class GenericConvertConcurrentHashMap<K, V> extends ConcurrentHashMap<K, V> implements
 	GenericConvertMap<K, V> {
@@ -60,4 +71,429 @@ public class GenericConvertConcurrentHashMap<K, V> extends ConcurrentHashMap<K,
 	public GenericConvertConcurrentHashMap(Map<? extends K, ? extends V> m) {
 		super(m);
 	}
+	
+	// ------------------------------------------------------
+	//
+	// Live query support
+	//
+	// ------------------------------------------------------
+	
+	
+	/**
+	 * Registered live queries, null if none was ever registered (so that changes skip the tracking).
+	 *
+	 * Once set, this is never cleared back to null (unregistering only removes from the list),
+	 * so that every subsequent write goes through liveCompute, or resyncs its key via liveResync.
+	 **/
+	protected transient volatile List<LiveQuery<K, V>> liveQueryList;
+	
+	/**
+	 * Number of live query registrations, incremented after each is added to liveQueryList
+	 * (and before its initial scan), used by liveCompute to detect a concurrent registration.
+	 **/
+	protected transient volatile int liveQueryRegistrations = 0;
+	
+	/**
+	 * Registers a live query, with its initial matches from the current map values
+	 *
+	 * @param  query to match the values with
+	 *
+	 * @return  the live query, which is updated on every subsequent change
+	 **/
+	public LiveQuery<K, V> liveQuery(Query query) {
+		return liveQuery(query, null);
+	}
+	
+	/**
+	 * Registers a live query, with its initial matches from the current map values
+	 *
+	 * Note that listeners are called after the lock of the key is released, so the enter / leave
+	 * events of the same key, made concurrently by multiple threads, may arrive out of order.
+	 * The matchingKeys() of the live query is however always consistent with the map.
+	 *
+	 * @param  query to match the values with
+	 * @param  listener to add, before the initial matches (which are notified as enter events), can be null
+	 *
+	 * @return  the live query, which is updated on every subsequent change
+	 **/
+	public LiveQuery<K, V> liveQuery(Query query, LiveQuery.Listener<K, V> listener) {
+		LiveQuery<K, V> ret = new LiveQuery<K, V>(query);
+		if (listener != null) {
+			ret.addListener(listener);
+		}
+		
+		// Registered before the initial scan. Writes which started before this (on the untracked
+		// fast path, or in liveCompute with the previous list) resync their key after the write,
+		// so any write which the scan below does not see, is still applied to the live query.
+		synchronized (this) {
+			if (liveQueryList == null) {
+				liveQueryList = new CopyOnWriteArrayList<LiveQuery<K, V>>();
+			}
+			liveQueryList.add(ret);
+			++liveQueryRegistrations;
+		}
+		
+		// Initial scan, done with the lock of each key, to be consistent with the concurrent changes
+		for (K key : keySet()) {
+			Runnable[] notification = new Runnable[1];
+			super.computeIfPresent(key, (k, value) -> {
+				notification[0] = ret.applyUpdate(k, value);
+				return value;
+			});
+			if (notification[0] != null) {
+				notification[0].run();
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Unregisters and closes the live query
+	 *
+	 * @param  liveQuery to remove
+	 *
+	 * @return  true if it was registered
+	 **/
+	public boolean removeLiveQuery(LiveQuery<K, V> liveQuery) {
+		// Removed before closing, so that it is not unregistered lazily by a concurrent write
+		List<LiveQuery<K, V>> list = liveQueryList;
+		boolean ret = list != null && list.remove(liveQuery);
+		liveQuery.close();
+		return ret;
+	}
+	
+	/**
+	 * Computes the key value (via ConcurrentHashMap.compute), while updating the live queries
+	 * with the resulting value in the same lock. With the listeners notified after the lock is released,
+	 * hence events of the same key from concurrent writers may be notified out of order.
+	 *
+	 * @param  key to compute
+	 * @param  remappingFunction to compute the value, with the previous value (or null)
+	 * @param  previous array to store the previous value in, can be null
+	 *
+	 * @return  the resulting value, null if its removed
+	 **/
+	protected V liveCompute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction,
+		Object[] previous) {
+		List<Runnable> notifications = new ArrayList<Runnable>(1);
+		int[] registrations = new int[1];
+		V ret = super.compute(key, (k, oldValue) -> {
+			if (previous != null) {
+				previous[0] = oldValue;
+			}
+			V newValue = remappingFunction.apply(k, oldValue);
+			
+			// Read within the lock, so queries registered before this are included
+			registrations[0] = liveQueryRegistrations;
+			List<LiveQuery<K, V>> list = liveQueryList;
+			if (list != null) {
+				for (LiveQuery<K, V> liveQuery : list) {
+					Runnable notification = liveQuery.applyUpdate(k, newValue);
+					if (notification != null) {
+						notifications.add(notification);
+					}
+				}
+			}
+			return newValue;
+		});
+		
+		// A query registered concurrently may have missed this change in its initial scan
+		// (such as a newly inserted key), so the key is resynced with it
+		if (liveQueryRegistrations != registrations[0]) {
+			liveResync(key);
+		}
+		
+		// Closed queries are unregistered lazily
+		List<LiveQuery<K, V>> list = liveQueryList;
+		if (list != null) {
+			for (LiveQuery<K, V> liveQuery : list) {
+				if (liveQuery.isClosed()) {
+					list.remove(liveQuery);
+				}
+			}
+		}
+		for (Runnable notification : notifications) {
+			notification.run();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Resyncs the live queries with the current value of the key, after a write done on the
+	 * untracked fast path. Which only does anything if a live query was registered concurrently.
+	 *
+	 * @param  key to resync
+	 **/
+	@SuppressWarnings("unchecked")
+	protected void liveResync(Object key) {
+		if (liveQueryList != null && key != null) {
+			liveCompute((K) key, (k, value) -> value, null);
+		}
+	}
+	
+	/**
+	 * Resyncs the live queries with all the current keys, and their matching keys
+	 * (which may no longer exist), after a bulk write done on the untracked fast path.
+	 **/
+	protected void liveResyncAll() {
+		List<LiveQuery<K, V>> list = liveQueryList;
+		if (list == null) {
+			return;
+		}
+		for (LiveQuery<K, V> liveQuery : list) {
+			for (K key : liveQuery.matchingKeys()) {
+				liveResync(key);
+			}
+		}
+		for (K key : keySet()) {
+			liveResync(key);
+		}
+	}
+	
+	/**
+	 * Put with live query tracking
+	 **/
+	@Override
+	public V put(K key, V value) {
+		if (liveQueryList == null) {
+			V ret = super.put(key, value);
+			liveResync(key);
+			return ret;
+		}
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		Object[] previous = new Object[1];
+		liveCompute(key, (k, oldValue) -> value, previous);
+		return previousValue(previous);
+	}
+	
+	/**
+	 * PutIfAbsent with live query tracking
+	 **/
+	@Override
+	public V putIfAbsent(K key, V value) {
+		if (liveQueryList == null) {
+			V ret = super.putIfAbsent(key, value);
+			liveResync(key);
+			return ret;
+		}
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		Object[] previous = new Object[1];
+		liveCompute(key, (k, oldValue) -> (oldValue != null) ? oldValue : value, previous);
+		return previousValue(previous);
+	}
+	
+	/**
+	 * PutAll with live query tracking
+	 **/
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		if (liveQueryList == null) {
+			super.putAll(m);
+			if (liveQueryList != null) {
+				for (K key : m.keySet()) {
+					liveResync(key);
+				}
+			}
+			return;
+		}
+		for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * Remove with live query tracking
+	 **/
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (liveQueryList == null) {
+			V ret = super.remove(key);
+			liveResync(key);
+			return ret;
+		}
+		if (!containsKey(key)) {
+			return null;
+		}
+		Object[] previous = new Object[1];
+		liveCompute((K) key, (k, oldValue) -> null, previous);
+		return previousValue(previous);
+	}
+	
+	/**
+	 * Remove (if its the given value) with live query tracking
+	 **/
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean remove(Object key, Object value) {
+		if (liveQueryList == null) {
+			boolean ret = super.remove(key, value);
+			liveResync(key);
+			return ret;
+		}
+		if (value == null || !containsKey(key)) {
+			return false;
+		}
+		boolean[] removed = new boolean[1];
+		liveCompute((K) key, (k, oldValue) -> {
+			removed[0] = value.equals(oldValue);
+			return removed[0] ? null : oldValue;
+		}, null);
+		return removed[0];
+	}
+	
+	/**
+	 * Replace with live query tracking
+	 **/
+	@Override
+	public V replace(K key, V value) {
+		if (liveQueryList == null) {
+			V ret = super.replace(key, value);
+			liveResync(key);
+			return ret;
+		}
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		Object[] previous = new Object[1];
+		liveCompute(key, (k, oldValue) -> (oldValue != null) ? value : null, previous);
+		return previousValue(previous);
+	}
+	
+	/**
+	 * Replace (if its the given value) with live query tracking
+	 **/
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		if (liveQueryList == null) {
+			boolean ret = super.replace(key, oldValue, newValue);
+			liveResync(key);
+			return ret;
+		}
+		if (key == null || oldValue == null || newValue == null) {
+			throw new NullPointerException();
+		}
+		boolean[] replaced = new boolean[1];
+		liveCompute(key, (k, currentValue) -> {
+			replaced[0] = oldValue.equals(currentValue);
+			return replaced[0] ? newValue : currentValue;
+		}, null);
+		return replaced[0];
+	}
+	
+	/**
+	 * ReplaceAll with live query tracking
+	 **/
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		if (liveQueryList == null) {
+			super.replaceAll(function);
+			liveResyncAll();
+			return;
+		}
+		for (K key : keySet()) {
+			liveCompute(key, (k, oldValue) -> {
+				if (oldValue == null) {
+					return null;
+				}
+				V newValue = function.apply(k, oldValue);
+				if (newValue == null) {
+					throw new NullPointerException();
+				}
+				return newValue;
+			}, null);
+		}
+	}
+	
+	/**
+	 * Compute with live query tracking
+	 **/
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		if (liveQueryList == null) {
+			V ret = super.compute(key, remappingFunction);
+			liveResync(key);
+			return ret;
+		}
+		return liveCompute(key, remappingFunction, null);
+	}
+	
+	/**
+	 * ComputeIfAbsent with live query tracking
+	 **/
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		if (liveQueryList == null) {
+			V ret = super.computeIfAbsent(key, mappingFunction);
+			liveResync(key);
+			return ret;
+		}
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		return liveCompute(key,
+			(k, oldValue) -> (oldValue != null) ? oldValue : mappingFunction.apply(k), null);
+	}
+	
+	/**
+	 * ComputeIfPresent with live query tracking
+	 **/
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		if (liveQueryList == null) {
+			V ret = super.computeIfPresent(key, remappingFunction);
+			liveResync(key);
+			return ret;
+		}
+		if (!containsKey(key)) {
+			return null;
+		}
+		return liveCompute(key,
+			(k, oldValue) -> (oldValue != null) ? remappingFunction.apply(k, oldValue) : null, null);
+	}
+	
+	/**
+	 * Merge with live query tracking
+	 **/
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		if (liveQueryList == null) {
+			V ret = super.merge(key, value, remappingFunction);
+			liveResync(key);
+			return ret;
+		}
+		if (key == null || value == null || remappingFunction == null) {
+			throw new NullPointerException();
+		}
+		return liveCompute(key,
+			(k, oldValue) -> (oldValue != null) ? remappingFunction.apply(oldValue, value) : value, null);
+	}
+	
+	/**
+	 * Clear with live query tracking, where each key is removed individually
+	 **/
+	@Override
+	public void clear() {
+		if (liveQueryList == null) {
+			super.clear();
+			liveResyncAll();
+			return;
+		}
+		for (K key : keySet()) {
+			remove(key);
+		}
+	}
+	
+	/**
+	 * Previous value, stored by liveCompute
+	 **/
+	@SuppressWarnings("unchecked")
+	private V previousValue(Object[] previous) {
+		return (V) previous[0];
+	}
 }
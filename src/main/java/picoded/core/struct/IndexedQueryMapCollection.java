@@ -0,0 +1,364 @@
+package picoded.core.struct;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryCursor;
+import picoded.core.struct.query.QueryIndex;
+import picoded.core.struct.query.QueryUtils;
+
+/**
+ * In memory collection of maps, with secondary indexes on declared fields.
+ * Used to avoid a full scan, for queries which can be narrowed down by the index.
+ *
+ * ```
+ * IndexedQueryMapCollection<Map<String, Object>> users = new IndexedQueryMapCollection<>();
+ * users.addIndex("tenantID");      // hash index, for equality
+ * users.addRangeIndex("createdAt"); // sorted index, for equality and range
+ *
+ * users.query("tenantID = ? AND createdAt > ?", new Object[] { "t1", 1000 }, null, -1, -1);
+ * ```
+ *
+ * Query results are the same as a full scan (including the order of values).
+ * As the index only narrows down the values, which are then tested against the query.
+ *
+ * Note that values should not be modified in place, while they are in the collection.
+ * Else reindex() needs to be called, for the index to reflect the changes.
+ * This collection is not thread safe.
+ **/
+public class IndexedQueryMapCollection<V extends Map<String, Object>> extends
+	AbstractCollection<V> implements QueryMapCollection<V> {
+	
+	//--------------------------------------------------------------------
+	// Constructor and storage
+	//--------------------------------------------------------------------
+	
+	// Values by their row id, where removed rows are null
+	protected ArrayList<V> rows = new ArrayList<V>();
+	
+	// Number of values (excluding removed rows)
+	protected int size = 0;
+	
+	// Field indexes, by the field name
+	protected Map<String, QueryIndex> indexMap = new LinkedHashMap<String, QueryIndex>();
+	
+	/**
+	 * Blank constructor
+	 **/
+	public IndexedQueryMapCollection() {
+		super();
+	}
+	
+	/**
+	 * Constructor with the initial values
+	 *
+	 * @param  values to add
+	 **/
+	public IndexedQueryMapCollection(Collection<? extends V> values) {
+		super();
+		addAll(values);
+	}
+	
+	//--------------------------------------------------------------------
+	// Index management
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Adds a hash index on the field, used for equality conditions
+	 *
+	 * @param  fieldName to index
+	 **/
+	public void addIndex(String fieldName) {
+		addIndex(new QueryIndex(fieldName, false));
+	}
+	
+	/**
+	 * Adds a sorted index on the field, used for equality and range conditions
+	 *
+	 * @param  fieldName to index
+	 **/
+	public void addRangeIndex(String fieldName) {
+		addIndex(new QueryIndex(fieldName, true));
+	}
+	
+	/**
+	 * Adds the index (replacing any existing index on the same field), and index all existing values
+	 *
+	 * @param  index to add
+	 **/
+	protected void addIndex(QueryIndex index) {
+		for (int i = 0; i < rows.size(); ++i) {
+			V value = rows.get(i);
+			if (value != null) {
+				index.add(i, value);
+			}
+		}
+		indexMap.put(index.fieldName(), index);
+	}
+	
+	/**
+	 * Removes the index on the field
+	 *
+	 * @param  fieldName to remove the index of
+	 **/
+	public void removeIndex(String fieldName) {
+		indexMap.remove(fieldName);
+	}
+	
+	/**
+	 * @return  set of the indexed field names
+	 **/
+	public Set<String> indexedFields() {
+		return Collections.unmodifiableSet(indexMap.keySet());
+	}
+	
+	/**
+	 * Rebuild all the indexes, this is needed if any value was modified in place
+	 **/
+	public void reindex() {
+		// Compact the removed rows
+		ArrayList<V> compacted = new ArrayList<V>(size);
+		for (V value : rows) {
+			if (value != null) {
+				compacted.add(value);
+			}
+		}
+		rows = compacted;
+		
+		// Rebuild each index
+		for (QueryIndex index : indexMap.values()) {
+			index.clear();
+			for (int i = 0; i < rows.size(); ++i) {
+				index.add(i, rows.get(i));
+			}
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Collection implementation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  number of values in the collection
+	 **/
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Adds the value to the collection, and its indexes
+	 *
+	 * @param  value to add, cannot be null
+	 *
+	 * @return  true
+	 **/
+	@Override
+	public boolean add(V value) {
+		if (value == null) {
+			throw new RuntimeException("Null values are not supported");
+		}
+		
+		// Compact the removed rows, if they are the majority
+		if (rows.size() - size > Math.max(1024, size)) {
+			reindex();
+		}
+		
+		int rowId = rows.size();
+		rows.add(value);
+		++size;
+		for (QueryIndex index : indexMap.values()) {
+			index.add(rowId, value);
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes the value at the row id, from the collection and its indexes
+	 *
+	 * @param  rowId to remove
+	 **/
+	protected void removeRow(int rowId) {
+		V value = rows.get(rowId);
+		for (QueryIndex index : indexMap.values()) {
+			index.remove(rowId, value);
+		}
+		rows.set(rowId, null);
+		--size;
+	}
+	
+	/**
+	 * Removes all values, and clears the indexes
+	 **/
+	@Override
+	public void clear() {
+		rows = new ArrayList<V>();
+		size = 0;
+		for (QueryIndex index : indexMap.values()) {
+			index.clear();
+		}
+	}
+	
+	/**
+	 * @return  iterator of the values, in order of insertion
+	 **/
+	@Override
+	public Iterator<V> iterator() {
+		return new Iterator<V>() {
+			// Next row id to return, and the last returned row id
+			int next = nextRow(0);
+			int last = -1;
+			
+			private int nextRow(int from) {
+				while (from < rows.size() && rows.get(from) == null) {
+					++from;
+				}
+				return from;
+			}
+			
+			@Override
+			public boolean hasNext() {
+				return next < rows.size();
+			}
+			
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = nextRow(next + 1);
+				return rows.get(last);
+			}
+			
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				removeRow(last);
+				last = -1;
+			}
+		};
+	}
+	
+	//--------------------------------------------------------------------
+	// Query support
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Performs a search query, and returns the respective value list.
+	 * Using the field indexes where possible, else fallsback to a full scan.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to match all values
+	 * @param   orderByStr string to sort the order by, use null to ignore
+	 * @param   offset of the result to display, use -1 to ignore
+	 * @param   number of objects to return max, use -1 to ignore
+	 *
+	 * @return  filtered and sorted Value list
+	 **/
+	@Override
+	public List<V> query(Query queryClause, String orderByStr, int offset, int limit) {
+		// Null query matches everything, which has no use for the index
+		if (queryClause == null) {
+			return QueryMapCollection.super.query(queryClause, orderByStr, offset, limit);
+		}
+		
+		// Get the rows to test from the index, else scan everything
+		int[] rowIds = QueryIndex.candidates(queryClause.normalize(), indexMap);
+		if (rowIds == null) {
+			return QueryMapCollection.super.query(queryClause, orderByStr, offset, limit);
+		}
+		
+		// Test each of the index rows
+		Predicate<Object> filter = queryClause.compile();
+		List<V> queryList = new ArrayList<V>();
+		for (int rowId : rowIds) {
+			V value = rows.get(rowId);
+			if (value != null && filter.test(value)) {
+				queryList.add(value);
+			}
+		}
+		
+		// Sort, and offset list, after the query
+		return QueryUtils.sortAndOffsetList(queryList, orderByStr, offset, limit);
+	}
+	
+	/**
+	 * Performs a search query, and returns a lazy cursor of the matching values.
+	 * Using the field indexes where possible, else fallsback to a full scan.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to match all values
+	 *
+	 * @return  cursor of the matching values (in order of insertion)
+	 **/
+	@Override
+	public QueryCursor<V> queryCursor(Query queryClause) {
+		QueryCursor<V> ret = indexCursor(queryClause);
+		return (ret != null) ? ret : QueryMapCollection.super.queryCursor(queryClause);
+	}
+	
+	/**
+	 * Performs a search query, and count the matching values.
+	 * Using the field indexes where possible, else fallsback to a full scan.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to count all values
+	 *
+	 * @return  number of matching values
+	 **/
+	@Override
+	public long queryCount(Query queryClause) {
+		QueryCursor<V> ret = indexCursor(queryClause);
+		return (ret != null) ? ret.count() : QueryMapCollection.super.queryCount(queryClause);
+	}
+	
+	/**
+	 * Lazy cursor over the index rows of the query, which are tested as the cursor reaches them
+	 *
+	 * @param   queryClause to get the index rows for
+	 *
+	 * @return  cursor of the matching values, null if the query cannot use the index
+	 **/
+	protected QueryCursor<V> indexCursor(Query queryClause) {
+		if (queryClause == null) {
+			return null;
+		}
+		int[] rowIds = QueryIndex.candidates(queryClause.normalize(), indexMap);
+		if (rowIds == null) {
+			return null;
+		}
+		
+		// Iterates the index rows, skipping removed rows
+		ArrayList<V> rowList = rows;
+		Iterator<V> candidates = new Iterator<V>() {
+			int pos = 0;
+			
+			@Override
+			public boolean hasNext() {
+				while (pos < rowIds.length && rowList.get(rowIds[pos]) == null) {
+					++pos;
+				}
+				return pos < rowIds.length;
+			}
+			
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return rowList.get(rowIds[pos++]);
+			}
+		};
+		return new QueryCursor<V>(candidates, queryClause.compile());
+	}
+}
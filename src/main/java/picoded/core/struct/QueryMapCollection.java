@@ -6,7 +6,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import picoded.core.struct.query.Aggregation;
 import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryCursor;
 import picoded.core.struct.query.QueryUtils;
 
 /**
@@ -76,6 +78,118 @@ public interface QueryMapCollection<V extends Map> extends Collection<V> {
 		return query(queryObj, orderByStr, offset, limit);
 	}
 	
+	//
+	// Lazy query cursor support
+	//
+	
+	/**
+	 * Performs a search query, and returns a lazy cursor of the matching values.
+	 * Where each value is only tested when the cursor reaches it.
+	 * 
+	 * Note : When extending this class, with custom query handlers, you may replace this function for a lazy result.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to match all values
+	 *
+	 * @return  cursor of the matching values (unsorted)
+	 **/
+	default QueryCursor<V> queryCursor(Query queryClause) {
+		if (queryClause == null) {
+			return QueryCursor.of(this);
+		}
+		return queryClause.cursor(this);
+	}
+	
+	/**
+	 * Performs a search query, and returns a cursor of the matching values.
+	 * 
+	 * If a sort order is given, all matching values is needed for sorting, 
+	 * and as such the result is built fully via query(...) first.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to match all values
+	 * @param   orderByStr string to sort the order by, use null to ignore
+	 *
+	 * @return  cursor of the matching values
+	 **/
+	default QueryCursor<V> queryCursor(Query queryClause, String orderByStr) {
+		if (orderByStr == null || orderByStr.trim().isEmpty()) {
+			return queryCursor(queryClause);
+		}
+		return QueryCursor.of(query(queryClause, orderByStr, -1, -1));
+	}
+	
+	/**
+	 * Performs a search query, and returns a cursor of the matching values.
+	 *
+	 * @param   where query statement
+	 * @param   where clause values array
+	 * @param   query string to sort the order by, use null to ignore
+	 *
+	 * @return  cursor of the matching values
+	 **/
+	default QueryCursor<V> queryCursor(String whereClause, Object[] whereValues, String orderByStr) {
+		// Query object to use
+		Query queryObj = null;
+		
+		// Where clause to convert to query object
+		if (whereClause != null) {
+			queryObj = Query.build(whereClause, whereValues);
+		}
+		
+		// Query function to call, and return
+		return queryCursor(queryObj, orderByStr);
+	}
+	
+	/**
+	 * Performs a search query, and returns any one of the matching values.
+	 * Stopping at the first match, without building the result list.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to match all values
+	 *
+	 * @return  any matching value, null if there is none
+	 **/
+	default V queryAny(Query queryClause) {
+		QueryCursor<V> cursor = queryCursor(queryClause);
+		return cursor.hasNext() ? cursor.next() : null;
+	}
+	
+	/**
+	 * Performs a search query, and returns any one of the matching values.
+	 *
+	 * @param   where query statement
+	 * @param   where clause values array
+	 *
+	 * @return  any matching value, null if there is none
+	 **/
+	default V queryAny(String whereClause, Object[] whereValues) {
+		return queryAny((whereClause != null) ? Query.build(whereClause, whereValues) : null);
+	}
+	
+	/**
+	 * Performs a search query, and count the matching values, without building the result list.
+	 *
+	 * @param   queryClause, of where query statement and value, use null to count all values
+	 *
+	 * @return  number of matching values
+	 **/
+	default long queryCount(Query queryClause) {
+		if (queryClause == null) {
+			return size();
+		}
+		return queryClause.searchCount(this);
+	}
+	
+	/**
+	 * Performs a search query, and count the matching values.
+	 *
+	 * @param   where query statement
+	 * @param   where clause values array
+	 *
+	 * @return  number of matching values
+	 **/
+	default long queryCount(String whereClause, Object[] whereValues) {
+		return queryCount((whereClause != null) ? Query.build(whereClause, whereValues) : null);
+	}
+	
 	//
 	// Aggregation command support
 	//
@@ -136,4 +250,55 @@ public interface QueryMapCollection<V extends Map> extends Collection<V> {
 		return aggregate(aggregationTerms, null);
 	}
 	
+	/**
+	 * Performs a query, and aggregate the result of each group accordingly (similar to SQL GROUP BY)
+	 * 
+	 * Note : When extending this class, with custom aggregation handlers (like hazelcast), you should only replace this function.
+	 *
+	 * @param aggregationTerms to aggregate data with
+	 * @param groupByFields to group the aggregation results by
+	 * @param queryClause to filter the collection with, can be null
+	 * 
+	 * @return Map of group key, to the aggregation result of the corresponding terms
+	 */
+	@SuppressWarnings("unchecked")
+	default Map<Object, BigDecimal[]> aggregateGroupBy(String[] aggregationTerms,
+		String[] groupByFields, Query queryClause) {
+		// Initialize the aggregation object (fail fast)
+		Aggregation agg = Aggregation.build(aggregationTerms).groupBy(groupByFields);
+		
+		// Aggregate everything directly, if no query is passed
+		if (queryClause == null) {
+			return agg.computeGroupBy((Collection<Object>) (Object) (this));
+		}
+		
+		// Aggregate with query results
+		List<V> queryList = query(queryClause, null, -1, -1);
+		return agg.computeGroupBy((Collection<Object>) (Object) (queryList));
+	}
+	
+	/**
+	 * Performs a query, and aggregate the result of each group accordingly (similar to SQL GROUP BY)
+	 * 
+	 * @param   aggregationTerms to aggregate data with
+	 * @param   groupByFields to group the aggregation results by
+	 * @param   where query statement
+	 * @param   where clause values array
+	 * 
+	 * @return Map of group key, to the aggregation result of the corresponding terms
+	 */
+	default Map<Object, BigDecimal[]> aggregateGroupBy(String[] aggregationTerms,
+		String[] groupByFields, String whereClause, Object[] whereValues) {
+		// Query object to use
+		Query queryObj = null;
+		
+		// Where clause to convert to query object
+		if (whereClause != null) {
+			queryObj = Query.build(whereClause, whereValues);
+		}
+		
+		// Aggregation with query (where applicable)
+		return aggregateGroupBy(aggregationTerms, groupByFields, queryObj);
+	}
+	
 }
\ No newline at end of file
@@ -1,13 +1,27 @@
 package picoded.core.struct.query;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+import picoded.core.conv.GenericConvert;
 import picoded.core.struct.MutablePair;
 import picoded.core.struct.query.mapreduce.*;
 import picoded.core.struct.query.internal.AggregationUtils;
+import picoded.core.struct.query.internal.FieldAccessor;
 
 /**
  * Aggregation library to be used with the query library.
@@ -22,6 +36,8 @@ import picoded.core.struct.query.internal.AggregationUtils;
  * + min(fieldname)
  * + avg(fieldname)
  * + sum(fieldname)
+ * + countDistinct(fieldname) : approximate, via HyperLogLog
+ * + percentile(fieldname, 0.99) : approximate, via t-digest
  *
  **/
 public class Aggregation {
@@ -39,6 +55,9 @@ public class Aggregation {
 	// Field names to extract values and compute aggregation on
 	protected String[] fieldNames = null;
 	
+	// Additional arguments of each aggregation term, such as percentile(field, 0.99)
+	protected String[][] funcArguments = null;
+	
 	// Aggregation fuction mapping
 	protected Map<String, MapReduceBase> mapReduceBaseImplementation = null;
 	
@@ -64,6 +83,17 @@ public class Aggregation {
 		termsArray = aggregationTerms.clone();
 		funcNames = info.getLeft();
 		fieldNames = info.getRight();
+		funcArguments = AggregationUtils.extractAggregrationArguments(aggregationTerms);
+	}
+	
+	/**
+	 * Initialize the MapReduceBase array implmentations, for a single computation run
+	 * 
+	 * @return  MapReduceBase array of the aggregation terms
+	 */
+	protected MapReduceBase[] prepareMapReduceBaseArray() {
+		return AggregationUtils.prepareMapReduceBaseArray(mapReduceBaseImplementation, funcNames,
+			funcArguments, primitiveMode);
 	}
 	
 	//--------------------------------------------------------------------
@@ -82,6 +112,37 @@ public class Aggregation {
 		return new Aggregation(queryString);
 	}
 	
+	//--------------------------------------------------------------------
+	// Primitive accumulation mode
+	//--------------------------------------------------------------------
+	
+	// Primitive accumulation mode, disabled by default
+	protected boolean primitiveMode = false;
+	
+	/**
+	 * Enable / disable primitive accumulation mode, for the supported aggregation functions.
+	 * 
+	 * In this mode, long values are accumulated exactly (spilling over to BigDecimal on overflow),
+	 * while double values are accumulated using compensated (Kahan) summation, instead of
+	 * converting every value to BigDecimal. As such the sum and avg of double values may differ
+	 * in their last few digits, from the default BigDecimal mode.
+	 * 
+	 * @param  enable primitive accumulation mode
+	 * 
+	 * @return  this aggregation object
+	 **/
+	public Aggregation setPrimitiveMode(boolean enable) {
+		primitiveMode = enable;
+		return this;
+	}
+	
+	/**
+	 * @return  true, if primitive accumulation mode is used
+	 **/
+	public boolean isPrimitiveMode() {
+		return primitiveMode;
+	}
+	
 	//--------------------------------------------------------------------
 	// Aggregation computation
 	//--------------------------------------------------------------------
@@ -94,17 +155,522 @@ public class Aggregation {
 	 * @return  BigDecimal array of the corresponding aggregation result
 	 */
 	public BigDecimal[] compute(Collection<Object> dataSet) {
+		return compute(dataSet, null);
+	}
+	
+	/**
+	 * Compute and get the aggregation result from the collection, for the values which passes
+	 * the filter. Without building the intermediate list of filtered values.
+	 * 
+	 * This is done in parallel for large collections, if enabled via
+	 * QueryUtils.setParallelSearchThreshold (and all aggregation functions supports combine)
+	 * 
+	 * @param  dataSet to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] compute(Collection<?> dataSet, Predicate<Object> filter) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		
+		// 2. Compute in parallel, if configured
+		if (QueryUtils.useParallelSearch(dataSet.size()) && supportsCombine()) {
+			return parallelCompute(dataSet, filter);
+		}
+		
+		// 3. Compute in a single pass
+		return compute(dataSet.iterator(), filter);
+	}
+	
+	/**
+	 * Compute and get the aggregation result from the iterator, in a single pass.
+	 * Without holding on to the iterated values (for datasets larger then memory)
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] compute(Iterator<?> dataSet) {
+		return compute(dataSet, null);
+	}
+	
+	/**
+	 * Compute and get the aggregation result from the stream, in a single pass.
+	 * Without holding on to the streamed values (for datasets larger then memory)
+	 * 
+	 * @param  dataSet stream to compute on
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] compute(Stream<?> dataSet) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		return compute(dataSet.iterator(), null);
+	}
+	
+	/**
+	 * Compute and get the aggregation result from the iterator, for the values which passes
+	 * the filter. Without building the intermediate list of filtered values.
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] compute(Iterator<?> dataSet, Predicate<Object> filter) {
 		// 1. Ensure input safety
 		if (dataSet == null) {
 			throw new RuntimeException("No dataSet given.");
 		}
 		
 		// 2. Initialize MapReduceBase array implmentations
-		MapReduceBase[] mapreduceArray = AggregationUtils.prepareMapReduceBaseArray(
-			mapReduceBaseImplementation, funcNames);
+		MapReduceBase[] mapreduceArray = prepareMapReduceBaseArray();
 		
 		// 3. Compute the mapreduceArray and return the result
-		return AggregationUtils.computeMapReduceBase(mapreduceArray, fieldNames, dataSet);
+		return AggregationUtils.computeMapReduceBase(mapreduceArray, fieldNames, dataSet, filter);
+	}
+	
+	//--------------------------------------------------------------------
+	// Partial aggregation, and parallel computation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Partial aggregation result, which can be combined with other partial results
+	 * (such as those computed from other shards or files), before being reduced
+	 * into the final result via Aggregation.reduce
+	 **/
+	public static class Partial {
+		
+		// MapReduceBase array, with the mapped values
+		protected final MapReduceBase[] mapReduceArray;
+		
+		// Number of values mapped
+		protected long rowCount = 0;
+		
+		/**
+		 * Internal constructor, with the initialized MapReduceBase array
+		 **/
+		protected Partial(MapReduceBase[] mapReduceArray) {
+			this.mapReduceArray = mapReduceArray;
+		}
+		
+		/**
+		 * @return  number of values mapped into this partial result
+		 **/
+		public long rowCount() {
+			return rowCount;
+		}
+		
+		/**
+		 * Combines the other partial result (of the same aggregation terms) into this result
+		 * 
+		 * @param  other partial result to combine from, this is not modified
+		 **/
+		public void combine(Partial other) {
+			AggregationUtils.combineMapReduceBase(mapReduceArray, other.mapReduceArray);
+			rowCount += other.rowCount;
+		}
+	}
+	
+	/**
+	 * @return  true, if all the aggregation functions supports combining of partial results
+	 **/
+	public boolean supportsCombine() {
+		for (String funcName : funcNames) {
+			MapReduceBase base = mapReduceBaseImplementation.get(funcName);
+			if (base == null || !base.supportsCombine()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Compute the partial aggregation result from the iterator, for the values which passes
+	 * the filter. To be combined with other partial results, and reduced.
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  partial aggregation result
+	 */
+	public Partial computePartial(Iterator<?> dataSet, Predicate<Object> filter) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		
+		// 2. Initialize MapReduceBase array implmentations
+		Partial ret = new Partial(prepareMapReduceBaseArray());
+		
+		// 3. Map the values, without reducing it
+		ret.rowCount = AggregationUtils.mapMapReduceBase(ret.mapReduceArray, fieldNames, dataSet,
+			filter);
+		return ret;
+	}
+	
+	/**
+	 * Compute the partial aggregation result from the iterator
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * 
+	 * @return  partial aggregation result
+	 */
+	public Partial computePartial(Iterator<?> dataSet) {
+		return computePartial(dataSet, null);
+	}
+	
+	/**
+	 * Reduce the (combined) partial result, into the aggregation result
+	 * 
+	 * @param  partial result to reduce
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] reduce(Partial partial) {
+		return AggregationUtils.reduceMapReduceBase(partial.mapReduceArray, partial.rowCount);
+	}
+	
+	/**
+	 * Minimum number of values, to compute in a single parallel task
+	 **/
+	protected static final int PARALLEL_MIN_TASK_SIZE = 1024;
+	
+	/**
+	 * Compute and get the aggregation result from the collection in parallel (using the
+	 * common fork/join pool), for the values which passes the filter.
+	 * 
+	 * @param  dataSet to compute on
+	 * @param  filter  to test each value with (must be thread safe), null to include all values
+	 * 
+	 * @return  BigDecimal array of the corresponding aggregation result
+	 */
+	public BigDecimal[] parallelCompute(Collection<?> dataSet, Predicate<Object> filter) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		if (!supportsCombine()) {
+			throw new RuntimeException("Aggregation terms does not support parallel compute : "
+				+ Arrays.toString(termsArray));
+		}
+		
+		// 2. Compute each range of the dataset in parallel, and reduce the result
+		Partial partial = forkJoinCompute(dataSet, (iterator) -> computePartial(iterator, filter), (
+			left, right) -> {
+			left.combine(right);
+			return left;
+		});
+		return reduce(partial);
+	}
+	
+	/**
+	 * Fork/join task, used to compute the partial result of a dataset range,
+	 * where each range is computed via the leaf function, and merged via the combine function
+	 **/
+	@SuppressWarnings("serial")
+	protected static class RangeTask<T> extends RecursiveTask<T> {
+		
+		protected final Object[] dataArray;
+		protected final int start;
+		protected final int end;
+		protected final int taskSize;
+		protected final Function<Iterator<?>, T> leaf;
+		protected final BiFunction<T, T, T> combine;
+		
+		protected RangeTask(Object[] dataArray, int start, int end, int taskSize,
+			Function<Iterator<?>, T> leaf, BiFunction<T, T, T> combine) {
+			this.dataArray = dataArray;
+			this.start = start;
+			this.end = end;
+			this.taskSize = taskSize;
+			this.leaf = leaf;
+			this.combine = combine;
+		}
+		
+		@Override
+		protected T compute() {
+			// Compute directly, if its small enough
+			if (end - start <= taskSize) {
+				return leaf.apply(Arrays.asList(dataArray).subList(start, end).iterator());
+			}
+			
+			// Split into two, and combine the result (in order)
+			int mid = (start + end) >>> 1;
+			RangeTask<T> left = new RangeTask<T>(dataArray, start, mid, taskSize, leaf, combine);
+			RangeTask<T> right = new RangeTask<T>(dataArray, mid, end, taskSize, leaf, combine);
+			right.fork();
+			T ret = left.compute();
+			return combine.apply(ret, right.join());
+		}
+	}
+	
+	/**
+	 * Splits the snapshot of the dataset into fork/join tasks (roughly 4 tasks per thread),
+	 * and invoke them on the common fork/join pool.
+	 * 
+	 * @param  dataSet to compute on
+	 * @param  leaf    function to compute each range
+	 * @param  combine function to merge the results of each range, in order
+	 * 
+	 * @return  merged result
+	 */
+	protected static <T> T forkJoinCompute(Collection<?> dataSet, Function<Iterator<?>, T> leaf,
+		BiFunction<T, T, T> combine) {
+		Object[] dataArray = dataSet.toArray();
+		int taskSize = Math.max(PARALLEL_MIN_TASK_SIZE, dataArray.length
+			/ (ForkJoinPool.getCommonPoolParallelism() * 4));
+		return ForkJoinPool.commonPool().invoke(
+			new RangeTask<T>(dataArray, 0, dataArray.length, taskSize, leaf, combine));
+	}
+	
+	//--------------------------------------------------------------------
+	// Group by aggregation
+	//--------------------------------------------------------------------
+	
+	// Field names to group the aggregation by (and their accessors), null if not grouped
+	protected String[] groupByFields = null;
+	protected FieldAccessor[] groupByAccessors = null;
+	
+	/**
+	 * Configure the field names, to group the aggregation results by (similar to SQL GROUP BY).
+	 * 
+	 * Grouping is done by the field value equality (hash based). With a single field, the
+	 * group key is the field value. With multiple fields, the group key is a List of the values.
+	 * 
+	 * Numeric field values are grouped by their numeric value, regardless of their class
+	 * (so 1, 1L, 1.0 and BigDecimal 1.00 are the same group), see normalizeGroupValue.
+	 * 
+	 * @param  fieldNames to group by
+	 * 
+	 * @return  this aggregation object
+	 **/
+	public Aggregation groupBy(String... fieldNames) {
+		if (fieldNames == null || fieldNames.length <= 0) {
+			throw new RuntimeException("No groupBy fields given.");
+		}
+		groupByFields = fieldNames.clone();
+		groupByAccessors = new FieldAccessor[groupByFields.length];
+		for (int i = 0; i < groupByFields.length; ++i) {
+			groupByAccessors[i] = FieldAccessor.of(groupByFields[i]);
+		}
+		return this;
+	}
+	
+	/**
+	 * @return  field names to group the aggregation by, null if not grouped
+	 **/
+	public String[] groupByFields() {
+		return (groupByFields == null) ? null : groupByFields.clone();
+	}
+	
+	/**
+	 * Gets the group key of the value, for the configured groupBy fields
+	 * 
+	 * @param  mapData to get the group key from
+	 * 
+	 * @return  group key, of either the single field value, or List of field values
+	 **/
+	protected Object groupKey(Map<String, Object> mapData) {
+		if (groupByAccessors.length == 1) {
+			return normalizeGroupValue(groupByAccessors[0].fetch(mapData));
+		}
+		List<Object> ret = new ArrayList<Object>(groupByAccessors.length);
+		for (FieldAccessor accessor : groupByAccessors) {
+			ret.add(normalizeGroupValue(accessor.fetch(mapData)));
+		}
+		return ret;
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Normalizes a numeric group value, such that numbers of the same value have the same
+	 * hash key (as the same column may mix number types, such as after a JSON round trip).
+	 * 
+	 * Integral values are returned as an Integer (or Long if its out of range), else as a Double.
+	 * This is the same number form as ConvertJSON.toMap. Non numeric values are returned as they are.
+	 * 
+	 * @param  value to normalize
+	 * 
+	 * @return  the normalized value
+	 **/
+	protected static Object normalizeGroupValue(Object value) {
+		if (!(value instanceof Number) || value instanceof Integer) {
+			return value;
+		}
+		
+		// Exact integers, as per their long value (if they fit)
+		if (value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return normalizeGroupValue(((Number) value).longValue());
+		}
+		if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+			return normalizeGroupValue(((BigInteger) value).longValue());
+		}
+		if (value instanceof BigDecimal) {
+			try {
+				return normalizeGroupValue(((BigDecimal) value).longValueExact());
+			} catch (ArithmeticException e) {
+				// Not integral, or out of the long range, normalized as a double below
+			}
+		}
+		
+		// Floating point values, which are integral (and in the long range)
+		double d = ((Number) value).doubleValue();
+		if (d == Math.rint(d) && d >= -0x1p63 && d < 0x1p63) {
+			return normalizeGroupValue((long) d);
+		}
+		return Double.valueOf(d);
+	}
+	
+	/**
+	 * Normalizes an integral group value, as an Integer if its within range, else as a Long
+	 **/
+	protected static Object normalizeGroupValue(long value) {
+		if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+			return Integer.valueOf((int) value);
+		}
+		return Long.valueOf(value);
+	}
+	
+	/**
+	 * Compute the partial aggregation result of each group from the iterator,
+	 * for the values which passes the filter, in a single pass.
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  map of group key, to partial aggregation result (in order of first occurrence)
+	 */
+	public Map<Object, Partial> computeGroupByPartial(Iterator<?> dataSet, Predicate<Object> filter) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		if (groupByFields == null) {
+			throw new RuntimeException("No groupBy fields given.");
+		}
+		
+		// 2. Map each value to its group partial result
+		Map<Object, Partial> ret = new LinkedHashMap<Object, Partial>();
+		while (dataSet.hasNext()) {
+			Object mapDataObj = dataSet.next();
+			if (filter != null && !filter.test(mapDataObj)) {
+				continue;
+			}
+			
+			Map<String, Object> mapData = GenericConvert.toStringMap(mapDataObj);
+			Object key = groupKey(mapData);
+			Partial partial = ret.get(key);
+			if (partial == null) {
+				partial = new Partial(prepareMapReduceBaseArray());
+				ret.put(key, partial);
+			}
+			AggregationUtils.mapMapReduceBaseRow(partial.mapReduceArray, fieldNames, mapData);
+			++partial.rowCount;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Combines the other group partial results into the target group partial results
+	 * 
+	 * @param  target group partial results to combine into (and return)
+	 * @param  other  group partial results to combine from
+	 * 
+	 * @return  the target group partial results
+	 */
+	protected static Map<Object, Partial> combineGroupByPartial(Map<Object, Partial> target,
+		Map<Object, Partial> other) {
+		for (Map.Entry<Object, Partial> entry : other.entrySet()) {
+			Partial partial = target.get(entry.getKey());
+			if (partial == null) {
+				target.put(entry.getKey(), entry.getValue());
+			} else {
+				partial.combine(entry.getValue());
+			}
+		}
+		return target;
+	}
+	
+	/**
+	 * Reduce the group partial results, into the aggregation result of each group
+	 * 
+	 * @param  groupPartial results to reduce
+	 * 
+	 * @return  map of group key, to BigDecimal array of the corresponding aggregation result
+	 */
+	public Map<Object, BigDecimal[]> reduceGroupBy(Map<Object, Partial> groupPartial) {
+		Map<Object, BigDecimal[]> ret = new LinkedHashMap<Object, BigDecimal[]>();
+		for (Map.Entry<Object, Partial> entry : groupPartial.entrySet()) {
+			ret.put(entry.getKey(), reduce(entry.getValue()));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Compute and get the aggregation result of each group from the iterator,
+	 * for the values which passes the filter, in a single pass.
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  map of group key, to BigDecimal array of the corresponding aggregation result
+	 */
+	public Map<Object, BigDecimal[]> computeGroupBy(Iterator<?> dataSet, Predicate<Object> filter) {
+		return reduceGroupBy(computeGroupByPartial(dataSet, filter));
+	}
+	
+	/**
+	 * Compute and get the aggregation result of each group from the iterator
+	 * 
+	 * @param  dataSet iterator to compute on
+	 * 
+	 * @return  map of group key, to BigDecimal array of the corresponding aggregation result
+	 */
+	public Map<Object, BigDecimal[]> computeGroupBy(Iterator<?> dataSet) {
+		return computeGroupBy(dataSet, null);
+	}
+	
+	/**
+	 * Compute and get the aggregation result of each group from the collection,
+	 * for the values which passes the filter.
+	 * 
+	 * This is done in parallel for large collections, if enabled via
+	 * QueryUtils.setParallelSearchThreshold (and all aggregation functions supports combine)
+	 * 
+	 * @param  dataSet to compute on
+	 * @param  filter  to test each value with, null to include all values
+	 * 
+	 * @return  map of group key, to BigDecimal array of the corresponding aggregation result
+	 */
+	public Map<Object, BigDecimal[]> computeGroupBy(Collection<?> dataSet, Predicate<Object> filter) {
+		// 1. Ensure input safety
+		if (dataSet == null) {
+			throw new RuntimeException("No dataSet given.");
+		}
+		
+		// 2. Compute in parallel, if configured
+		if (QueryUtils.useParallelSearch(dataSet.size()) && supportsCombine()) {
+			return reduceGroupBy(forkJoinCompute(dataSet, (iterator) -> computeGroupByPartial(
+				iterator, filter), Aggregation::combineGroupByPartial));
+		}
+		
+		// 3. Compute in a single pass
+		return computeGroupBy(dataSet.iterator(), filter);
+	}
+	
+	/**
+	 * Compute and get the aggregation result of each group from the collection
+	 * 
+	 * @param  dataSet to compute on
+	 * 
+	 * @return  map of group key, to BigDecimal array of the corresponding aggregation result
+	 */
+	public Map<Object, BigDecimal[]> computeGroupBy(Collection<Object> dataSet) {
+		return computeGroupBy(dataSet, null);
+	}
+}
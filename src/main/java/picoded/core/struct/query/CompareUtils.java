@@ -1,12 +1,19 @@
 package picoded.core.struct.query;
 
+import java.text.CollationKey;
 import java.text.Collator;
 import java.text.NumberFormat;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.RuleBasedCollator;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import picoded.core.struct.query.internal.AsciiCollator;
+import picoded.core.struct.query.internal.LikePattern;
 
 /**
  * Comparision utility functions
@@ -46,7 +53,7 @@ public class CompareUtils {
 			return 1;
 		}
 		
-		return stringCompareCollator.compare(o1, o2);
+		return collatorCompare(o1, o2);
 	}
 	
 	/**
@@ -72,7 +79,7 @@ public class CompareUtils {
 			return 1;
 		}
 		
-		return stringCompareCollator.compare(o1, o2);
+		return collatorCompare(o1, o2);
 	}
 	
 	/**
@@ -119,6 +126,11 @@ public class CompareUtils {
 			return 0;
 		}
 		
+		// Number to number, without any type conversion
+		if (o1 instanceof Number && o2 instanceof Number) {
+			return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+		}
+		
 		// String type comparision
 		if ( //
 		(o1 instanceof String && o2 instanceof String) || //
@@ -147,21 +159,268 @@ public class CompareUtils {
 		);
 	}
 	
+	/**
+	 * Binds the dynamicCompare function against a fixed right hand side value.
+	 *
+	 * The type checks, and number parsing of o2, is resolved once here. Instead of
+	 * on every call, such that `dynamicCompareTo(o2).applyAsInt(o1)` gives the same
+	 * result as `dynamicCompare(o1, o2)`
+	 *
+	 * @param o2 - the fixed second object to be compared against
+	 *
+	 * @return function, that compares the first object against o2
+	 **/
+	public static ToIntFunction<Object> dynamicCompareTo(Object o2) {
+		
+		// Null handling, anything is larger then null
+		if (o2 == null) {
+			return (o1) -> (o1 == null) ? 0 : 1;
+		}
+		
+		// Numeric comparision, without any parsing for numbers
+		if (o2 instanceof Number) {
+			final double d2 = ((Number) o2).doubleValue();
+			return (o1) -> {
+				if (o1 == o2) {
+					return 0;
+				}
+				if (o1 instanceof Number) {
+					return Double.compare(((Number) o1).doubleValue(), d2);
+				}
+				Number n1 = objectToNumberIfPossible(o1);
+				if (n1 == null) {
+					return -1;
+				}
+				return Double.compare(n1.doubleValue(), d2);
+			};
+		}
+		
+		// Precomputed string and numeric representation
+		final boolean isString2 = (o2 instanceof String);
+		final String s2 = o2.toString();
+		final Number n2 = objectToNumberIfPossible(o2);
+		final boolean ascii2 = isString2 && AsciiCollator.isSupported(s2);
+		
+		return (o1) -> {
+			// Quick direct equality
+			if (o1 == o2) {
+				return 0;
+			}
+			
+			// String type comparision
+			if (isString2) {
+				if (o1 == null) {
+					return -1;
+				}
+				if (o1 instanceof String) {
+					if (s2.equals(o1)) {
+						return 0;
+					}
+					if (ascii2 && AsciiCollator.isSupported((String) o1)) {
+						return AsciiCollator.compareSupported((String) o1, s2);
+					}
+					return threadCollator().compare((String) o1, s2);
+				}
+			}
+			
+			// Tries to numeric compare
+			Number n1 = objectToNumberIfPossible(o1);
+			if (!(n1 == null && n2 == null)) {
+				return numericCompare(n1, n2);
+			}
+			
+			// fallsback to string
+			return stringCompare((o1 != null) ? o1.toString() : null, s2);
+		};
+	}
+	
+	/**
+	 * Binds the dynamicCompare equality, against a fixed set of values.
+	 *
+	 * Such that `dynamicEqualsAny(values).test(o1)` gives the same result as
+	 * `dynamicCompare(o1, v) == 0` for any of the values. While using hashed lookups
+	 * (by the numeric value, or the string collation key), instead of comparing every value.
+	 * Where plain ASCII strings (see AsciiCollator.isPlain) are looked up as it is.
+	 *
+	 * @param values - the fixed values to be compared against
+	 *
+	 * @return predicate, that tests if the object is equal to any of the values
+	 **/
+	public static Predicate<Object> dynamicEqualsAny(Collection<?> values) {
+		// Lookup sets, by how each value type is compared
+		boolean nullValue = false;
+		final Set<String> strings = new HashSet<String>(); // String values (exact match)
+		final Set<CollationKey> stringKeys = new HashSet<CollationKey>(); // String values
+		final Set<CollationKey> nonPlainKeys = new HashSet<CollationKey>(); // Non plain String values
+		final Set<Double> numbers = new HashSet<Double>(); // Numeric non String values
+		final Set<Double> stringNumbers = new HashSet<Double>(); // Numeric String values
+		final Set<CollationKey> otherKeys = new HashSet<CollationKey>(); // Non numeric, non String values
+		final Set<CollationKey> textKeys = new HashSet<CollationKey>(); // Non numeric values
+		
+		Collator collator = threadCollator();
+		for (Object value : values) {
+			if (value == null) {
+				nullValue = true;
+				continue;
+			}
+			
+			// String values, are compared against String objects by their collation order
+			boolean isString = (value instanceof String);
+			if (isString) {
+				CollationKey key = collator.getCollationKey((String) value);
+				strings.add((String) value);
+				stringKeys.add(key);
+				if (!AsciiCollator.isPlain((String) value)) {
+					nonPlainKeys.add(key);
+				}
+			}
+			
+			// Numeric comparision, against any other object (or numeric string)
+			Number num = objectToNumberIfPossible(value);
+			if (num != null) {
+				(isString ? stringNumbers : numbers).add(num.doubleValue());
+				continue;
+			}
+			
+			// Fallback to string comparision, of non numeric values
+			CollationKey key = collator.getCollationKey(value.toString());
+			textKeys.add(key);
+			if (!isString) {
+				otherKeys.add(key);
+			}
+		}
+		
+		final boolean hasNull = nullValue;
+		return (o1) -> {
+			if (o1 == null) {
+				return hasNull;
+			}
+			
+			// String objects, compares by collation order against String values,
+			// or as a number / string against the other values
+			if (o1 instanceof String) {
+				String s1 = (String) o1;
+				if (strings.contains(s1)) {
+					return true;
+				}
+				// Plain strings, can only be equal to non plain String values (other than itself)
+				Set<CollationKey> keys = AsciiCollator.isPlain(s1) ? nonPlainKeys : stringKeys;
+				CollationKey key = null;
+				if (!keys.isEmpty()) {
+					key = threadCollator().getCollationKey(s1);
+					if (keys.contains(key)) {
+						return true;
+					}
+				}
+				if (numbers.isEmpty() && otherKeys.isEmpty()) {
+					return false;
+				}
+				Number n1 = objectToNumberIfPossible(s1);
+				if (n1 != null) {
+					return numbers.contains(n1.doubleValue());
+				}
+				if (otherKeys.isEmpty()) {
+					return false;
+				}
+				if (key == null) {
+					key = threadCollator().getCollationKey(s1);
+				}
+				return otherKeys.contains(key);
+			}
+			
+			// Any other object, compares as a number if possible, else as a string
+			Number n1 = objectToNumberIfPossible(o1);
+			if (n1 != null) {
+				Double d1 = n1.doubleValue();
+				return numbers.contains(d1) || stringNumbers.contains(d1);
+			}
+			return !textKeys.isEmpty()
+				&& textKeys.contains(threadCollator().getCollationKey(o1.toString()));
+		};
+	}
+	
+	/**
+	 * Binds the dynamicCompare function against a fixed (inclusive) range of values.
+	 *
+	 * Such that `dynamicCompareBetween(low, high).test(o1)` gives the same result as
+	 * `dynamicCompare(o1, low) >= 0 && dynamicCompare(o1, high) <= 0`. Where for numeric
+	 * ranges, the object is converted to a number only once for both bounds.
+	 *
+	 * @param low - the lower bound to be compared against
+	 * @param high - the upper bound to be compared against
+	 *
+	 * @return predicate, that tests if the object is within the range
+	 **/
+	public static Predicate<Object> dynamicCompareBetween(Object low, Object high) {
+		
+		// Numeric range, with a single numeric conversion
+		if (low instanceof Number && high instanceof Number) {
+			final double d1 = ((Number) low).doubleValue();
+			final double d2 = ((Number) high).doubleValue();
+			return (o1) -> {
+				Number n1 = (o1 instanceof Number) ? (Number) o1 : objectToNumberIfPossible(o1);
+				if (n1 == null) {
+					return false; // non numeric values are smaller than any number
+				}
+				double d = n1.doubleValue();
+				return Double.compare(d, d1) >= 0 && Double.compare(d, d2) <= 0;
+			};
+		}
+		
+		// Any other range, compared against each bound
+		final ToIntFunction<Object> lowCompare = dynamicCompareTo(low);
+		final ToIntFunction<Object> highCompare = dynamicCompareTo(high);
+		return (o1) -> lowCompare.applyAsInt(o1) >= 0 && highCompare.applyAsInt(o1) <= 0;
+	}
+	
 	//--------------------------------------------------------------------
 	// Utility functions / objects
 	//-----------------------------------------------------------------
 	
 	/**
-	 * Shared Collator for string compare
+	 * Collator for string compare
 	 **/
 	protected static Collator stringCompareCollator = RuleBasedCollator.getInstance(Locale.ENGLISH);
 	
+	/**
+	 * Per thread copy of stringCompareCollator, used for the actual comparision
+	 * (to avoid contention on the shared collator)
+	 **/
+	private static final ThreadLocal<Collator> threadCollator = ThreadLocal
+		.withInitial(() -> (Collator) stringCompareCollator.clone());
+	
+	/**
+	 * @return the collator for string compare, of the current thread
+	 **/
+	static Collator threadCollator() {
+		return threadCollator.get();
+	}
+	
+	/**
+	 * Compares two non null strings via the collator order,
+	 * with ASCII only strings compared via the AsciiCollator table instead
+	 **/
+	protected static int collatorCompare(String o1, String o2) {
+		int ret = AsciiCollator.compare(o1, o2);
+		if (ret != AsciiCollator.UNSUPPORTED) {
+			return ret;
+		}
+		return threadCollator().compare(o1, o2);
+	}
+	
 	/**
 	 * Number instance for string to numeric
 	 **/
 	protected static NumberFormat stringToNumberParser = NumberFormat
 		.getNumberInstance(Locale.ENGLISH);
 	
+	/**
+	 * Per thread copy of stringToNumberParser, used for the actual parsing
+	 * (as NumberFormat is not thread safe)
+	 **/
+	private static final ThreadLocal<NumberFormat> threadNumberParser = ThreadLocal
+		.withInitial(() -> (NumberFormat) stringToNumberParser.clone());
+	
 	/**
 	 *
 	 * Conversion to numeric format, if possible. Else its null
@@ -179,11 +438,10 @@ public class CompareUtils {
 			return (Number) o;
 		}
 		
-		try {
-			return stringToNumberParser.parse(o.toString());
-		} catch (ParseException e) {
-			return null; //silence ParseException
-		}
+		// Equivalent to NumberFormat.parse(String), without the ParseException overhead
+		ParsePosition pos = new ParsePosition(0);
+		Number ret = threadNumberParser.get().parse(o.toString(), pos);
+		return (pos.getIndex() == 0) ? null : ret;
 	}
 	
 	public static int stringLikeCompare(Object o1, Object o2) {
@@ -199,10 +457,7 @@ public class CompareUtils {
 			return 1;
 		}
 		
-		Pattern p = Pattern.compile(o2.toString().replaceAll("%", ".*"));
-		Matcher m = p.matcher(o1.toString());
-		
-		if (m.matches()) {
+		if (LikePattern.compile(o2.toString()).matches(o1.toString())) {
 			return 0;
 		}
 		
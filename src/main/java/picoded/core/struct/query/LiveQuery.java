@@ -0,0 +1,295 @@
+package picoded.core.struct.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * Continuous query over a mutable keyed collection, which keeps the set of matching keys
+ * up to date incrementally. Where each change only tests the changed value against the
+ * (compiled) query, instead of searching the whole collection again.
+ *
+ * Listeners are notified when a key enters the result (its value starts matching),
+ * or leaves the result (its value stops matching, or it was removed).
+ *
+ * ```
+ * GenericConvertConcurrentHashMap<String, Map<String, Object>> users = ...;
+ * LiveQuery<String, Map<String, Object>> admins = users.liveQuery(Query.build("role = ?", new Object[] { "admin" }));
+ *
+ * admins.addListener(new LiveQuery.Listener<String, Map<String, Object>>() {
+ * 	public void onEnter(String key, Map<String, Object> value) { ... }
+ * 	public void onLeave(String key, Map<String, Object> value) { ... }
+ * });
+ *
+ * admins.matchingKeys(); // always reflects the current matches
+ * admins.close();        // stops tracking the map
+ * ```
+ *
+ * Changes are given to the live query via update(key, value), which is done automatically
+ * by GenericConvertConcurrentHashMap. Other collections can drive the live query with their
+ * own keys via update(...) and remove(...), or resync it with a full scan via reset(...).
+ *
+ * Note that the values should not be modified in place, while they are in the collection.
+ * Else the value needs to be put again, for the change to be reflected.
+ **/
+public class LiveQuery<K, V> {
+	
+	//--------------------------------------------------------------------
+	// Listener interface
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Listener of the enter / leave events of a live query
+	 *
+	 * Listeners are called after the change is applied, on the thread which made the change.
+	 * Events of the same key made concurrently by multiple threads, may be called out of order.
+	 * However the matchingKeys() set is always consistent with the changes.
+	 **/
+	public interface Listener<K, V> {
+		
+		/**
+		 * Called when the key starts matching the query (including newly added keys)
+		 *
+		 * @param  key which entered the result
+		 * @param  value which matched the query
+		 **/
+		default void onEnter(K key, V value) {
+			// Does nothing by default
+		}
+		
+		/**
+		 * Called when the key stops matching the query (including removed keys)
+		 *
+		 * @param  key which left the result
+		 * @param  value which was last matched by the query
+		 **/
+		default void onLeave(K key, V value) {
+			// Does nothing by default
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor and storage
+	//--------------------------------------------------------------------
+	
+	// The query, and its compiled predicate
+	protected final Query query;
+	protected final Predicate<Object> filter;
+	
+	// Matching keys, to their last matched value
+	protected final Map<K, V> matches = new ConcurrentHashMap<K, V>();
+	
+	// Registered listeners
+	protected final List<Listener<K, V>> listeners = new CopyOnWriteArrayList<Listener<K, V>>();
+	
+	// Indicates if the live query is closed
+	protected volatile boolean closed = false;
+	
+	/**
+	 * Constructor, with no initial matches
+	 *
+	 * @param  query to match the values with
+	 **/
+	public LiveQuery(Query query) {
+		if (query == null) {
+			throw new IllegalArgumentException("Missing live query");
+		}
+		this.query = query;
+		this.filter = query.compile();
+	}
+	
+	/**
+	 * @return  the query used to match the values
+	 **/
+	public Query query() {
+		return query;
+	}
+	
+	//--------------------------------------------------------------------
+	// Listener management
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Adds a listener, for any subsequent enter / leave events
+	 *
+	 * @param  listener to add
+	 **/
+	public void addListener(Listener<K, V> listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener
+	 *
+	 * @param  listener to remove
+	 *
+	 * @return  true if it was registered
+	 **/
+	public boolean removeListener(Listener<K, V> listener) {
+		return listeners.remove(listener);
+	}
+	
+	//--------------------------------------------------------------------
+	// Matching results
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  unmodifiable (live) view of the matching keys
+	 **/
+	public Set<K> matchingKeys() {
+		return Collections.unmodifiableSet(matches.keySet());
+	}
+	
+	/**
+	 * @return  unmodifiable (live) view of the matching keys, to their last matched value
+	 **/
+	public Map<K, V> matches() {
+		return Collections.unmodifiableMap(matches);
+	}
+	
+	/**
+	 * @return  number of matching keys
+	 **/
+	public int size() {
+		return matches.size();
+	}
+	
+	/**
+	 * @param   key to check
+	 *
+	 * @return  true if the key currently matches the query
+	 **/
+	public boolean contains(K key) {
+		return matches.containsKey(key);
+	}
+	
+	//--------------------------------------------------------------------
+	// Change handling
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Updates the key with its new value (or null if it was removed), and notify
+	 * the listeners if it entered or left the result.
+	 *
+	 * @param  key which was changed
+	 * @param  value of the key, null if it was removed
+	 **/
+	public void update(K key, V value) {
+		Runnable notification = applyUpdate(key, value);
+		if (notification != null) {
+			notification.run();
+		}
+	}
+	
+	/**
+	 * Updates the key as removed, and notify the listeners if it left the result
+	 *
+	 * @param  key which was removed
+	 **/
+	public void remove(K key) {
+		update(key, null);
+	}
+	
+	/**
+	 * Updates the key with its new value, without notifying the listeners.
+	 *
+	 * This is meant to be called while the collection holds the lock of the key
+	 * (so that the matches are updated in the same order as the collection),
+	 * with the returned notification called after the lock is released.
+	 *
+	 * @param  key which was changed
+	 * @param  value of the key, null if it was removed
+	 *
+	 * @return  notification of the enter / leave event to run, null if there is none
+	 **/
+	public Runnable applyUpdate(K key, V value) {
+		if (closed) {
+			return null;
+		}
+		
+		// Value which passes is added (or its matched value updated)
+		if (value != null && filter.test(value)) {
+			if (matches.put(key, value) == null) {
+				return () -> notifyEnter(key, value);
+			}
+			return null;
+		}
+		
+		// Else its removed, if it was matching
+		V previous = matches.remove(key);
+		if (previous != null) {
+			return () -> notifyLeave(key, previous);
+		}
+		return null;
+	}
+	
+	/**
+	 * Resync the matches with a full scan of the given map, notifying the listeners of
+	 * the differences. This is for collections which cannot track their changes.
+	 *
+	 * Note that this is not atomic, if the map is concurrently modified.
+	 *
+	 * @param  source map of all keys and values
+	 **/
+	public void reset(Map<K, V> source) {
+		// Keys no longer in the source
+		List<K> removed = new ArrayList<K>();
+		for (K key : matches.keySet()) {
+			if (!source.containsKey(key)) {
+				removed.add(key);
+			}
+		}
+		for (K key : removed) {
+			remove(key);
+		}
+		
+		// Test all the values
+		for (Map.Entry<K, V> entry : source.entrySet()) {
+			update(entry.getKey(), entry.getValue());
+		}
+	}
+	
+	/**
+	 * Notify the listeners of the enter event
+	 **/
+	protected void notifyEnter(K key, V value) {
+		for (Listener<K, V> listener : listeners) {
+			listener.onEnter(key, value);
+		}
+	}
+	
+	/**
+	 * Notify the listeners of the leave event
+	 **/
+	protected void notifyLeave(K key, V value) {
+		for (Listener<K, V> listener : listeners) {
+			listener.onLeave(key, value);
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Closing
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Stops the live query, where subsequent changes are ignored,
+	 * and the matches and listeners are cleared (without any events).
+	 **/
+	public void close() {
+		closed = true;
+		listeners.clear();
+		matches.clear();
+	}
+	
+	/**
+	 * @return  true if the live query is closed
+	 **/
+	public boolean isClosed() {
+		return closed;
+	}
+}
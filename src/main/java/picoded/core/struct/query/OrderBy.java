@@ -9,6 +9,7 @@ import java.util.Set;
 import java.util.Locale;
 
 import picoded.core.struct.MutablePair;
+import picoded.core.struct.query.internal.FieldAccessor;
 import picoded.core.struct.query.internal.QueryUtils;
 
 /**
@@ -35,6 +36,11 @@ public class OrderBy<T> implements Comparator<T>, Serializable {
 	 **/
 	protected List<MutablePair<String, OrderType>> _comparisionConfig = new ArrayList<MutablePair<String, OrderType>>();
 	
+	/**
+	 * Field accessors of each comparision configuration, built when first needed
+	 **/
+	protected transient FieldAccessor[] _fieldAccessors = null;
+	
 	/**
 	 * Constructor built with given order by string
 	 **/
@@ -136,6 +142,7 @@ public class OrderBy<T> implements Comparator<T>, Serializable {
 				set.setLeft(replacement);
 			}
 		}
+		_fieldAccessors = null;
 		return res;
 	}
 	
@@ -158,6 +165,21 @@ public class OrderBy<T> implements Comparator<T>, Serializable {
 	// Comparator implmentation
 	//--------------------------------------------------------------------
 	
+	/**
+	 * Gets the field accessors, of each comparision configuration
+	 **/
+	protected FieldAccessor[] fieldAccessors() {
+		FieldAccessor[] ret = _fieldAccessors;
+		if (ret == null) {
+			ret = new FieldAccessor[_comparisionConfig.size()];
+			for (int i = 0; i < ret.length; ++i) {
+				ret[i] = FieldAccessor.of(_comparisionConfig.get(i).getLeft());
+			}
+			_fieldAccessors = ret;
+		}
+		return ret;
+	}
+	
 	/**
 	 * Dynamic comparator setup
 	 *
@@ -172,9 +194,10 @@ public class OrderBy<T> implements Comparator<T>, Serializable {
 		/**
 		 * Scan and compare, and return the differences
 		 **/
-		for (MutablePair<String, OrderType> comparePair : _comparisionConfig) {
-			Object left = QueryUtils.getFieldValue(o1, comparePair.getLeft());
-			Object right = QueryUtils.getFieldValue(o2, comparePair.getLeft());
+		FieldAccessor[] accessors = fieldAccessors();
+		for (int i = 0; i < accessors.length; ++i) {
+			Object left = accessors[i].getFieldValue(o1);
+			Object right = accessors[i].getFieldValue(o2);
 			
 			int diff = CompareUtils.dynamicCompare(left, right);
 			
@@ -184,7 +207,7 @@ public class OrderBy<T> implements Comparator<T>, Serializable {
 			}
 			
 			// Return its value / flipped value
-			if (comparePair.getRight() == OrderType.ASC) {
+			if (_comparisionConfig.get(i).getRight() == OrderType.ASC) {
 				return diff;
 			} //else {
 			return -diff;
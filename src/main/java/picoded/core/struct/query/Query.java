@@ -7,13 +7,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+import picoded.core.exception.ExceptionMessage;
 import picoded.core.struct.ArrayListMap;
-import picoded.core.struct.query.internal.QueryFilter;
+import picoded.core.struct.query.internal.QueryNormalizer;
 
 /**
  * Representas a query condition, that can be used as a java Predicate against a collection
@@ -24,25 +27,30 @@ public interface Query extends Predicate<Object> {
 	// Static builder
 	//--------------------------------------------------------------------
 	
+	//
+	// Note that the parsed query string is cached via QueryCache.defaultCache(),
+	// with only the arguments being rebound for each build.
+	//
+	
 	/**
 	 * Build the query using no predefiend arguments
 	 **/
 	static Query build(String queryString) {
-		return QueryFilter.buildQuery(queryString, null, null);
+		return QueryCache.defaultCache().build(queryString, null, null);
 	}
 	
 	/**
 	 * Build the query using argumented array
 	 **/
 	static Query build(String queryString, Object[] argumentArr) {
-		return QueryFilter.buildQuery(queryString, null, argumentArr);
+		return QueryCache.defaultCache().build(queryString, null, argumentArr);
 	}
 	
 	/**
 	 * Build the query using the parameter map
 	 **/
 	static Query build(String queryString, Map<String, Object> paramMap) {
-		return QueryFilter.buildQuery(queryString, paramMap, null);
+		return QueryCache.defaultCache().build(queryString, paramMap, null);
 	}
 	
 	//--------------------------------------------------------------------
@@ -73,6 +81,74 @@ public interface Query extends Predicate<Object> {
 	 **/
 	boolean test(Object t, Map<String, Object> argMap);
 	
+	//--------------------------------------------------------------------
+	// Argument rebinding
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Returns a copy of the query tree, with the default argument map replaced.
+	 * The original query is left unmodified.
+	 *
+	 * This is used to reuse a parsed query, with a different set of arguments.
+	 *
+	 * @param   the argument map to use as default
+	 *
+	 * @return  copy of the query, bound to the given argument map
+	 **/
+	default Query bindArgumentMap(Map<String, Object> argMap) {
+		throw new UnsupportedOperationException(ExceptionMessage.functionNotImplemented);
+	}
+	
+	//--------------------------------------------------------------------
+	// Query compilation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Compiles the query into a flat predicate, against its default argument map.
+	 *
+	 * Field accessors, argument values and their comparators are resolved once
+	 * during compilation, instead of on every test call. As such the compiled
+	 * predicate does not reflect any subsequent changes to the default argument map.
+	 *
+	 * This is intended for repeated testing against large collections.
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	default Predicate<Object> compile() {
+		return this;
+	}
+	
+	/**
+	 * Returns a simplified query tree, which is equivalent to this query. Where nested
+	 * combinations are flattened, double negations and identical conditions are removed,
+	 * numeric ranges on the same field are merged, and always true / false branches are folded.
+	 *
+	 * This is done automatically on compile, unless disabled via QueryUtils.setNormalizeOnCompile.
+	 * Note that the normalized query string (and its arguments) may differ from this query,
+	 * and may be a TRUE / FALSE constant, which cannot be parsed as a query string.
+	 *
+	 * @return  normalized query, which is this query if there is nothing to simplify
+	 **/
+	default Query normalize() {
+		return QueryNormalizer.normalize(this);
+	}
+	
+	//--------------------------------------------------------------------
+	// Query cost explain
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Explains the query tree, as it is compiled (after normalization), with the
+	 * evaluation order, estimated selectivity, cost and short circuit position of each node.
+	 *
+	 * For the actual runtime stats, see QueryProfile.attach(query)
+	 *
+	 * @return  explain output, of the query tree
+	 **/
+	default QueryExplain explain() {
+		return new QueryExplain(QueryUtils.normalizeOnCompile() ? normalize() : this);
+	}
+	
 	//--------------------------------------------------------------------
 	// Public accessors
 	//--------------------------------------------------------------------
@@ -316,12 +392,19 @@ public interface Query extends Predicate<Object> {
 	//--------------------------------------------------------------------
 	
 	/**
-	 * Searches using the query, and returns the resulting set
+	 * Searches using the query (compiled once), and returns the resulting set
+	 * 
+	 * This is done in parallel for large collections, if enabled via QueryUtils.setParallelSearchThreshold
 	 **/
 	default <V> List<V> search(Collection<V> list) {
+		Predicate<Object> filter = compile();
+		if (QueryUtils.useParallelSearch(list.size())) {
+			return QueryUtils.parallelSearch(list, filter);
+		}
+		
 		List<V> ret = new ArrayList<V>();
 		for (V val : list) {
-			if (test(val)) {
+			if (filter.test(val)) {
 				ret.add(val);
 			}
 		}
@@ -345,14 +428,21 @@ public interface Query extends Predicate<Object> {
 	}
 	
 	/**
-	 * Searches using the query, and returns the resulting set
+	 * Searches using the query (compiled once), and returns the resulting set
+	 * 
+	 * This is done in parallel for large maps, if enabled via QueryUtils.setParallelSearchThreshold
 	 **/
 	default <K, V> List<V> search(Map<K, V> set) {
+		Predicate<Object> filter = compile();
+		if (QueryUtils.useParallelSearch(set.size())) {
+			return QueryUtils.parallelSearch(set.values(), filter);
+		}
+		
 		List<V> ret = new ArrayList<V>();
 		//for (K key : set.keySet()) {
 		for (Entry<K, V> entry : set.entrySet()) {
 			V val = entry.getValue();
-			if (test(val)) {
+			if (filter.test(val)) {
 				ret.add(val);
 			}
 		}
@@ -375,32 +465,95 @@ public interface Query extends Predicate<Object> {
 		return search(set, new OrderBy<V>(orderBy));
 	}
 	
+	//--------------------------------------------------------------------
+	// Lazy search cursor, and short circuit searching
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Returns a lazy cursor of the matching values, where each value is only tested
+	 * when the cursor reaches it (allowing early termination, and paged fetches)
+	 **/
+	default <V> QueryCursor<V> cursor(Iterable<V> list) {
+		return new QueryCursor<V>(list.iterator(), compile());
+	}
+	
+	/**
+	 * Returns a lazy cursor of the matching map values
+	 **/
+	default <K, V> QueryCursor<V> cursor(Map<K, V> set) {
+		return cursor(set.values());
+	}
+	
+	/**
+	 * Searches for any matching value, stopping at the first match
+	 *
+	 * @return  the first matching value found, null if there is none
+	 **/
+	default <V> V searchAny(Iterable<V> list) {
+		Predicate<Object> filter = compile();
+		for (V val : list) {
+			if (filter.test(val)) {
+				return val;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Counts the matching values, without building the search result
+	 * 
+	 * This is done in parallel for large collections, if enabled via QueryUtils.setParallelSearchThreshold
+	 **/
+	default long searchCount(Collection<?> list) {
+		Predicate<Object> filter = compile();
+		if (QueryUtils.useParallelSearch(list.size())) {
+			return list.parallelStream().filter(filter).count();
+		}
+		
+		long ret = 0;
+		for (Object val : list) {
+			if (filter.test(val)) {
+				++ret;
+			}
+		}
+		return ret;
+	}
+	
 	//--------------------------------------------------------------------
 	// Aggregation on search
 	//--------------------------------------------------------------------
 	
 	/**
-	 * Searches using the query, and perform the stated aggregation
+	 * Searches using the query, and perform the stated aggregation.
+	 * 
+	 * This is done in a single pass, without building the intermediate search result.
 	 * 
-	 * @param  collectionObj,  either using a map, list or collection class
+	 * @param  collectionObj,  either using a map, list, collection, array, iterator or stream
 	 * @param  aggregationObj, used to compute the result
 	 * 
 	 * @return  BigDecimal[] array of the aggregation result
 	 **/
 	default BigDecimal[] aggregation(Object collectionObj, Aggregation aggregationObj) {
 		
-		// 1. Perform the relevent search query, based on its collection type
-		Collection<Object> aggregationData = null;
+		// 1. Collections, which may be computed in parallel
 		if (collectionObj instanceof Map) {
-			aggregationData = search((Map<String, Object>) collectionObj);
+			return aggregationObj.compute(((Map<?, ?>) collectionObj).values(), compile());
 		} else if (collectionObj instanceof Collection) {
-			aggregationData = search((Collection<Object>) collectionObj);
-		} else if (collectionObj instanceof Object[]) {
-			aggregationData = search(Arrays.asList((Object[]) collectionObj));
+			return aggregationObj.compute((Collection<?>) collectionObj, compile());
+		}
+		
+		// 2. Get the relevent iterator, based on its collection type
+		Iterator<?> aggregationData = null;
+		if (collectionObj instanceof Object[]) {
+			aggregationData = Arrays.asList((Object[]) collectionObj).iterator();
+		} else if (collectionObj instanceof Iterator) {
+			aggregationData = (Iterator<?>) collectionObj;
+		} else if (collectionObj instanceof Stream) {
+			aggregationData = ((Stream<?>) collectionObj).iterator();
 		}
 		
-		// 2. Perform the aggregation computation
-		return aggregationObj.compute(aggregationData);
+		// 3. Perform the search filtering, and aggregation computation
+		return aggregationObj.compute(aggregationData, compile());
 	}
 	
 	/**
@@ -0,0 +1,255 @@
+package picoded.core.struct.query;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import picoded.core.struct.query.internal.QueryFilter;
+import picoded.core.struct.query.internal.QueryParser;
+
+/**
+ * Bounded, least recently used cache of parsed query templates, keyed by the query string.
+ *
+ * Parsing of the query string is done only once per distinct query string, with the
+ * template query tree being copied, and bound to the argument values on each build.
+ * As such, queries built via the cache are not shared between build calls.
+ *
+ * Entries are held in an access ordered LinkedHashMap (under a lock), so that both the
+ * lookup and the eviction of the least recently used entry is O(1) per build.
+ * While the query string is parsed outside of the lock.
+ *
+ * This is used internally by Query.build(...), via the shared default cache.
+ *
+ * ```
+ * QueryCache cache = QueryCache.defaultCache();
+ * Query q = cache.build("name = ? AND age > ?", null, new Object[] { "john", 21 });
+ *
+ * // Cache statistics, for sizing the cache
+ * cache.hitCount();
+ * cache.missCount();
+ * ```
+ **/
+public class QueryCache {
+	
+	//--------------------------------------------------------------------
+	// Shared default cache
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Default maximum number of query templates, for the shared cache
+	 **/
+	public static final int DEFAULT_MAX_SIZE = 1024;
+	
+	/**
+	 * Shared default cache instance
+	 **/
+	private static final QueryCache defaultCache = new QueryCache(DEFAULT_MAX_SIZE);
+	
+	/**
+	 * @return the shared query cache used by Query.build(...)
+	 **/
+	public static QueryCache defaultCache() {
+		return defaultCache;
+	}
+	
+	//--------------------------------------------------------------------
+	// Cache entry, and its storage
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Parsed query template, and its argument count
+	 **/
+	protected static class CacheEntry {
+		
+		// The parsed query template, this is never returned directly
+		protected final Query template;
+		
+		// Number of "?" arguments in the query string
+		protected final int argumentCount;
+		
+		protected CacheEntry(Query template, int argumentCount) {
+			this.template = template;
+			this.argumentCount = argumentCount;
+		}
+	}
+	
+	/**
+	 * Query string to parsed template mapping, in least to most recently used order.
+	 * All access is to be synchronized on the map itself.
+	 **/
+	@SuppressWarnings("serial")
+	protected final LinkedHashMap<String, CacheEntry> cacheMap = new LinkedHashMap<String, CacheEntry>(
+		16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			if (size() > maxSize) {
+				evictionCounter.increment();
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	/**
+	 * Maximum number of query templates to hold, 0 disables the cache
+	 **/
+	protected volatile int maxSize;
+	
+	/**
+	 * Cache statistics counters
+	 **/
+	protected final LongAdder hitCounter = new LongAdder();
+	protected final LongAdder missCounter = new LongAdder();
+	protected final LongAdder evictionCounter = new LongAdder();
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Setup the query cache, with the given maximum size
+	 *
+	 * @param  maxSize  maximum number of query templates to cache, 0 disables caching
+	 **/
+	public QueryCache(int maxSize) {
+		setMaxSize(maxSize);
+	}
+	
+	//--------------------------------------------------------------------
+	// Query building
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Build the query, reusing the parsed query template if its cached.
+	 * This follows the same argument handling as QueryFilter.buildQuery
+	 *
+	 * @param  queryString  the query string to build
+	 * @param  baseMap      named argument map to build on, creates a HashMap if null
+	 * @param  argArr       arguments array, for "?" arguments
+	 *
+	 * @return  the built query
+	 **/
+	public Query build(String queryString, Map<String, Object> baseMap, Object[] argArr) {
+		// Cache is disabled, build directly
+		if (maxSize <= 0) {
+			return QueryFilter.buildQuery(queryString, baseMap, argArr);
+		}
+		
+		// Get the cached template, or parse it (outside of the lock)
+		CacheEntry entry;
+		synchronized (cacheMap) {
+			entry = cacheMap.get(queryString);
+		}
+		if (entry != null) {
+			hitCounter.increment();
+		} else {
+			missCounter.increment();
+			entry = new CacheEntry(QueryParser.buildQuery(queryString, null, null),
+				QueryParser.countQueryArguments(queryString));
+			synchronized (cacheMap) {
+				// The least recently used entry is evicted by the put, if needed
+				cacheMap.put(queryString, entry);
+			}
+		}
+		
+		// Ensures argument map
+		if (baseMap == null) {
+			baseMap = new HashMap<String, Object>();
+		}
+		
+		// Argument array validation, and conversion to the argument map
+		int argArrCount = (argArr != null) ? argArr.length : entry.argumentCount;
+		if (argArrCount != entry.argumentCount) {
+			throw new RuntimeException("Query string argument count (" + entry.argumentCount
+				+ "), and argument array length mismatched (" + argArrCount + ")");
+		}
+		if (entry.argumentCount > 0) {
+			baseMap = QueryFilter.argumentsArrayToMap(baseMap, argArr);
+		}
+		
+		// Return a copy of the template, with the arguments
+		return entry.template.bindArgumentMap(baseMap);
+	}
+	
+	/**
+	 * Removes the least recently used entries, till the cache is within its size limit
+	 **/
+	protected void evictExcessEntries() {
+		synchronized (cacheMap) {
+			Iterator<String> keys = cacheMap.keySet().iterator();
+			while (cacheMap.size() > maxSize && keys.hasNext()) {
+				keys.next();
+				keys.remove();
+				evictionCounter.increment();
+			}
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Cache sizing, and statistics
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return maximum number of query templates to cache
+	 **/
+	public int maxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Changes the maximum number of query templates to cache, evicting entries if needed
+	 *
+	 * @param  maxSize  maximum number of query templates to cache, 0 disables caching
+	 **/
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Invalid QueryCache maxSize : " + maxSize);
+		}
+		this.maxSize = maxSize;
+		evictExcessEntries();
+	}
+	
+	/**
+	 * @return number of query templates currently cached
+	 **/
+	public int size() {
+		synchronized (cacheMap) {
+			return cacheMap.size();
+		}
+	}
+	
+	/**
+	 * @return number of builds, which reused a cached query template
+	 **/
+	public long hitCount() {
+		return hitCounter.sum();
+	}
+	
+	/**
+	 * @return number of builds, which required parsing of the query string
+	 **/
+	public long missCount() {
+		return missCounter.sum();
+	}
+	
+	/**
+	 * @return number of query templates removed, due to the size limit
+	 **/
+	public long evictionCount() {
+		return evictionCounter.sum();
+	}
+	
+	/**
+	 * Clears all cached query templates, and reset the statistics counters
+	 **/
+	public void clear() {
+		synchronized (cacheMap) {
+			cacheMap.clear();
+		}
+		hitCounter.reset();
+		missCounter.reset();
+		evictionCounter.reset();
+	}
+}
@@ -0,0 +1,245 @@
+package picoded.core.struct.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Lazy cursor over the query result, where each value is only tested against the
+ * (compiled) query when the cursor reaches it. As such, callers which stop after the
+ * first few matches, only pay for the values scanned up to that point.
+ *
+ * ```
+ * QueryCursor<Map<String, Object>> cursor = Query.build("age > ?", new Object[] { 21 }).cursor(list);
+ *
+ * // Fetch the result in pages, stopping whenever
+ * List<Map<String, Object>> page = cursor.nextPage(50);
+ *
+ * // Count the remaining matches only when needed (without building a list)
+ * long remaining = cursor.count();
+ * ```
+ *
+ * A cursor can also be built over a paginated source via QueryCursor.paged(...),
+ * where each page is fetched (with its offset and limit) only when needed.
+ *
+ * Note that the cursor reflects the source as it is iterated, and is not thread safe.
+ **/
+public class QueryCursor<V> implements Iterator<V> {
+	
+	//--------------------------------------------------------------------
+	// Page source interface
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Paginated source of values, such as CollectionQueryInterface.query(...)
+	 **/
+	@FunctionalInterface
+	public interface PageSource<V> {
+		
+		/**
+		 * Fetch a single page of values
+		 *
+		 * @param  offset of the page
+		 * @param  limit of the page size
+		 *
+		 * @return  the page of values, where a page smaller than the limit is the last page
+		 **/
+		List<V> fetch(int offset, int limit);
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	// Source iterator, and the filter to test each value with (null to accept all)
+	protected final Iterator<V> source;
+	protected final Predicate<Object> filter;
+	
+	// The next matching value, if it was already found by hasNext()
+	protected V nextValue = null;
+	protected boolean hasNextValue = false;
+	
+	// Number of values returned (or skipped) so far
+	protected long position = 0;
+	
+	/**
+	 * Constructor, with the source values and filter
+	 *
+	 * @param  source iterator of values to test
+	 * @param  filter to test each value with, null to accept all values
+	 **/
+	public QueryCursor(Iterator<V> source, Predicate<Object> filter) {
+		this.source = source;
+		this.filter = filter;
+	}
+	
+	/**
+	 * Cursor of all the values, without filtering
+	 *
+	 * @param  values to iterate
+	 *
+	 * @return  the cursor
+	 **/
+	public static <V> QueryCursor<V> of(Iterable<V> values) {
+		return new QueryCursor<V>(values.iterator(), null);
+	}
+	
+	/**
+	 * Cursor over a paginated source, where each page is only fetched when needed
+	 *
+	 * @param  pageSource to fetch each page from
+	 * @param  pageSize of each fetch
+	 *
+	 * @return  the cursor
+	 **/
+	public static <V> QueryCursor<V> paged(PageSource<V> pageSource, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Invalid page size : " + pageSize);
+		}
+		return new QueryCursor<V>(new Iterator<V>() {
+			// Current page, its position, and offset of the next page
+			List<V> page = Collections.emptyList();
+			int pagePos = 0;
+			int nextOffset = 0;
+			boolean lastPage = false;
+			
+			@Override
+			public boolean hasNext() {
+				while (pagePos >= page.size()) {
+					if (lastPage) {
+						return false;
+					}
+					List<V> fetched = pageSource.fetch(nextOffset, pageSize);
+					page = (fetched != null) ? fetched : Collections.emptyList();
+					pagePos = 0;
+					nextOffset += page.size();
+					lastPage = page.size() < pageSize;
+				}
+				return true;
+			}
+			
+			@Override
+			public V next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return page.get(pagePos++);
+			}
+		}, null);
+	}
+	
+	//--------------------------------------------------------------------
+	// Iterator implementation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  true if there is another matching value, testing the source values until one is found
+	 **/
+	@Override
+	public boolean hasNext() {
+		while (!hasNextValue && source.hasNext()) {
+			V value = source.next();
+			if (filter == null || filter.test(value)) {
+				nextValue = value;
+				hasNextValue = true;
+			}
+		}
+		return hasNextValue;
+	}
+	
+	/**
+	 * @return  the next matching value
+	 **/
+	@Override
+	public V next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		V ret = nextValue;
+		nextValue = null;
+		hasNextValue = false;
+		++position;
+		return ret;
+	}
+	
+	//--------------------------------------------------------------------
+	// Cursor operations
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  number of values returned (or skipped) so far
+	 **/
+	public long position() {
+		return position;
+	}
+	
+	/**
+	 * Fetch the next page of matching values
+	 *
+	 * @param  size of the page
+	 *
+	 * @return  up to the size number of values, a blank list if there is none left
+	 **/
+	public List<V> nextPage(int size) {
+		List<V> ret = new ArrayList<V>(Math.min(Math.max(size, 0), 1024));
+		while (ret.size() < size && hasNext()) {
+			ret.add(next());
+		}
+		return ret;
+	}
+	
+	/**
+	 * Skips the next matching values
+	 *
+	 * @param  count of values to skip
+	 *
+	 * @return  number of values skipped, which is less than count if the cursor ended
+	 **/
+	public long skip(long count) {
+		long skipped = 0;
+		while (skipped < count && hasNext()) {
+			next();
+			++skipped;
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Counts the remaining matching values, without storing them.
+	 * This consumes the cursor, where hasNext() returns false after.
+	 *
+	 * @return  number of remaining matching values
+	 **/
+	public long count() {
+		long ret = 0;
+		if (hasNextValue) {
+			nextValue = null;
+			hasNextValue = false;
+			++ret;
+		}
+		while (source.hasNext()) {
+			V value = source.next();
+			if (filter == null || filter.test(value)) {
+				++ret;
+			}
+		}
+		position += ret;
+		return ret;
+	}
+	
+	/**
+	 * Collects the remaining matching values into a list
+	 *
+	 * @return  list of the remaining matching values
+	 **/
+	public List<V> toList() {
+		List<V> ret = new ArrayList<V>();
+		while (hasNext()) {
+			ret.add(next());
+		}
+		return ret;
+	}
+}
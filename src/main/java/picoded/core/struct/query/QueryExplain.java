@@ -0,0 +1,263 @@
+package picoded.core.struct.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import picoded.core.struct.query.internal.QueryCostModel;
+
+/**
+ * Explain output of a query tree, giving the compiled evaluation order, estimated selectivity,
+ * cost and short circuit position of each node, via the QueryCostModel heuristics.
+ *
+ * ```
+ * Query query = Query.build("name LIKE ? AND (age > ? OR vip = ?)", new Object[] { "%john%", 21, true });
+ * System.out.println(query.explain());
+ *
+ * // AND selectivity=0.100 cost=3.27 reach=1.000 evaluations=1.40/2
+ * //   #1 (query #2) OR selectivity=0.400 cost=1.67 reach=1.000 evaluations=1.67/2
+ * //     #1 "age" > :1 selectivity=0.333 cost=1.00 reach=1.000
+ * //     #2 "vip" = :2 selectivity=0.100 cost=1.00 reach=0.667
+ * //   #2 (query #1) "name" LIKE :0 selectivity=0.250 cost=4.00 reach=0.400
+ * ```
+ *
+ * Where #N is the evaluation order, with the query order shown if its reordered,
+ * selectivity is the estimated fraction of values which passes the node,
+ * cost is the estimated cost of testing a value against the node (including its children),
+ * reach is the estimated fraction of all values, which is tested against the node, and
+ * evaluations is the expected number of children evaluated before short circuiting.
+ **/
+public class QueryExplain {
+	
+	//--------------------------------------------------------------------
+	// Explain node
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Explain information of a single query node
+	 **/
+	public static class Node {
+		
+		protected final Query query;
+		protected final int depth;
+		protected final int order;
+		protected final int sourceOrder;
+		protected final double selectivity;
+		protected final double cost;
+		protected final double reach;
+		protected final double evaluations;
+		
+		protected Node(Query query, int depth, int order, int sourceOrder, double reach,
+			QueryCostModel.Estimates estimates) {
+			this.query = query;
+			this.depth = depth;
+			this.order = order;
+			this.sourceOrder = sourceOrder;
+			this.selectivity = QueryCostModel.selectivity(query, estimates);
+			this.cost = QueryCostModel.cost(query, estimates);
+			this.reach = reach;
+			this.evaluations = query.isCombinationOperator() ? QueryCostModel.expectedEvaluations(
+				query, estimates) : 0.0;
+		}
+		
+		/**
+		 * @return  the query node
+		 **/
+		public Query query() {
+			return query;
+		}
+		
+		/**
+		 * @return  depth of the node, where the root is 0
+		 **/
+		public int depth() {
+			return depth;
+		}
+		
+		/**
+		 * @return  evaluation order of the node among its siblings (starting from 1), 0 for the root
+		 **/
+		public int order() {
+			return order;
+		}
+		
+		/**
+		 * @return  order of the node among its siblings in the query (starting from 1), 0 for the root
+		 **/
+		public int sourceOrder() {
+			return sourceOrder;
+		}
+		
+		/**
+		 * @return  estimated fraction of values which passes the node
+		 **/
+		public double selectivity() {
+			return selectivity;
+		}
+		
+		/**
+		 * @return  estimated cost of testing a single value against the node
+		 **/
+		public double cost() {
+			return cost;
+		}
+		
+		/**
+		 * @return  estimated fraction of all values, which is tested against the node
+		 **/
+		public double reach() {
+			return reach;
+		}
+		
+		/**
+		 * @return  expected number of children evaluated before short circuiting, 0 for basic operators
+		 **/
+		public double evaluations() {
+			return evaluations;
+		}
+		
+		/**
+		 * Single line summary of the node, without indentation
+		 **/
+		@Override
+		public String toString() {
+			StringBuilder ret = new StringBuilder();
+			if (order > 0) {
+				ret.append("#").append(order).append(" ");
+				if (order != sourceOrder) {
+					ret.append("(query #").append(sourceOrder).append(") ");
+				}
+			}
+			ret.append(query.isCombinationOperator() ? query.operatorSymbol() : query.toString());
+			ret.append(String.format(Locale.ENGLISH, " selectivity=%.3f cost=%.2f reach=%.3f",
+				selectivity, cost, reach));
+			if (query.isCombinationOperator()) {
+				ret.append(String.format(Locale.ENGLISH, " evaluations=%.2f/%d", evaluations, query
+					.childrenQuery().size()));
+			}
+			return ret.toString();
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Explain nodes, in depth first order
+	 **/
+	protected final List<Node> nodes = new ArrayList<Node>();
+	
+	/**
+	 * Estimates of the query tree, computed once per node
+	 **/
+	protected final QueryCostModel.Estimates estimates = new QueryCostModel.Estimates();
+	
+	/**
+	 * Explains the query tree, in its compiled evaluation order
+	 *
+	 * @param  query to explain
+	 **/
+	public QueryExplain(Query query) {
+		addNode(query, 0, 0, 0, 1.0);
+	}
+	
+	/**
+	 * Add the node, and its children in evaluation order, recursively
+	 **/
+	protected void addNode(Query query, int depth, int order, int sourceOrder, double reach) {
+		nodes.add(new Node(query, depth, order, sourceOrder, reach, estimates));
+		if (query.isCombinationOperator() && query.childrenQuery() != null) {
+			List<Query> source = query.childrenQuery();
+			List<Query> children = QueryCostModel.evaluationOrder(query, estimates);
+			double[] childReach = QueryCostModel.reachProbability(query, estimates);
+			for (int i = 0; i < childReach.length; ++i) {
+				Query child = children.get(i);
+				addNode(child, depth + 1, i + 1, indexOf(source, child) + 1, reach * childReach[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Index of the node in the list, by identity
+	 **/
+	protected static int indexOf(List<Query> list, Query node) {
+		for (int i = 0; i < list.size(); ++i) {
+			if (list.get(i) == node) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	//--------------------------------------------------------------------
+	// Accessors
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  the root node
+	 **/
+	public Node root() {
+		return nodes.get(0);
+	}
+	
+	/**
+	 * @return  all the nodes, in depth first order
+	 **/
+	public List<Node> nodes() {
+		return Collections.unmodifiableList(nodes);
+	}
+	
+	/**
+	 * Gets the explain node, of the query node
+	 *
+	 * @param  query node to get
+	 *
+	 * @return  the explain node, null if its not part of the query tree
+	 **/
+	public Node node(Query query) {
+		for (Node node : nodes) {
+			if (node.query == query) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	//--------------------------------------------------------------------
+	// String output
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The explain output, as an indented tree
+	 **/
+	@Override
+	public String toString() {
+		return toString(null);
+	}
+	
+	/**
+	 * The explain output, as an indented tree, with the runtime stats of the profile (if any)
+	 *
+	 * @param  profile to include, use null to ignore
+	 *
+	 * @return  explain output
+	 **/
+	public String toString(QueryProfile profile) {
+		StringBuilder ret = new StringBuilder();
+		for (Node node : nodes) {
+			for (int i = 0; i < node.depth; ++i) {
+				ret.append("  ");
+			}
+			ret.append(node.toString());
+			
+			QueryProfile.NodeStats stats = (profile != null) ? profile.stats(node.query) : null;
+			if (stats != null) {
+				ret.append(" | ").append(stats.toString());
+			}
+			ret.append("\n");
+		}
+		return ret.toString();
+	}
+}
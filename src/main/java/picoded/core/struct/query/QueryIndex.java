@@ -0,0 +1,769 @@
+package picoded.core.struct.query;
+
+import java.text.CollationKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import picoded.core.conv.NestedObjectFetch;
+import picoded.core.struct.query.condition.And;
+import picoded.core.struct.query.condition.Between;
+import picoded.core.struct.query.condition.Equals;
+import picoded.core.struct.query.condition.In;
+import picoded.core.struct.query.condition.LessThan;
+import picoded.core.struct.query.condition.LessThanOrEquals;
+import picoded.core.struct.query.condition.MoreThan;
+import picoded.core.struct.query.condition.MoreThanOrEquals;
+import picoded.core.struct.query.condition.Or;
+import picoded.core.struct.query.internal.FieldAccessor;
+
+/**
+ * In memory index of a single field value, to row ids (of the indexed collection).
+ * Used to narrow down the rows to test for a query, instead of a full scan.
+ *
+ * As the query comparision is done via CompareUtils.dynamicCompare (which mixes numeric,
+ * and string comparision), the index lookup returns a superset of the matching rows.
+ * Which the caller is expected to test against the query, to get the exact result.
+ *
+ * + Hash index : for EQUALS, IN conditions
+ * + Sorted index : for EQUALS, IN, LESS_THAN(_OR_EQUALS), MORE_THAN(_OR_EQUALS), BETWEEN conditions
+ *
+ * Note that this class is not thread safe, and is expected to be used within
+ * the collection that owns it.
+ **/
+public class QueryIndex {
+	
+	//--------------------------------------------------------------------
+	// Index configuration
+	//--------------------------------------------------------------------
+	
+	// Field name which is indexed, and its accessor
+	protected final String fieldName;
+	protected final FieldAccessor fieldAccessor;
+	
+	// Sorted index, used for range conditions
+	protected final boolean sorted;
+	
+	/**
+	 * Constructor with the field name, and index type
+	 *
+	 * @param  fieldName to index
+	 * @param  sorted    index for range conditions, else hash index for equality only
+	 **/
+	public QueryIndex(String fieldName, boolean sorted) {
+		if (!isIndexableField(fieldName)) {
+			throw new RuntimeException("Unable to index field name : " + fieldName);
+		}
+		this.fieldName = fieldName;
+		this.fieldAccessor = FieldAccessor.of(fieldName);
+		this.sorted = sorted;
+		clear();
+	}
+	
+	/**
+	 * Indicates if the field name can be indexed. As "this", "_key", and "_val"
+	 * has special meaning for the query conditions
+	 *
+	 * @param  fieldName to check
+	 *
+	 * @return  true if it can be indexed
+	 **/
+	public static boolean isIndexableField(String fieldName) {
+		return fieldName != null && !"this".equalsIgnoreCase(fieldName)
+			&& !"_key".equalsIgnoreCase(fieldName) && !"_val".equalsIgnoreCase(fieldName);
+	}
+	
+	/**
+	 * @return  the indexed field name
+	 **/
+	public String fieldName() {
+		return fieldName;
+	}
+	
+	/**
+	 * @return  true if its a sorted index
+	 **/
+	public boolean isSorted() {
+		return sorted;
+	}
+	
+	//--------------------------------------------------------------------
+	// Index storage
+	//--------------------------------------------------------------------
+	
+	// Rows with numeric values, by the double value
+	protected Map<Double, RowIdList> numericMap = null;
+	
+	// Rows with non numeric class values (including numeric strings), by the string collation key
+	protected Map<CollationKey, RowIdList> stringMap = null;
+	
+	// Rows with null values
+	protected RowIdList nullRows = null;
+	
+	// Rows with non null values, which is not a number (sorted index only)
+	protected RowIdList nonNumericRows = null;
+	
+	// Rows with non null values, which is not a string (sorted index only)
+	protected RowIdList nonStringRows = null;
+	
+	// Cache of the numeric value, and collation key of recently indexed strings
+	protected Map<String, StringKey> stringKeyCache = null;
+	
+	// Max number of strings to cache, before the cache is cleared
+	protected static final int STRING_KEY_CACHE_SIZE = 65536;
+	
+	/**
+	 * Clears the index
+	 **/
+	public void clear() {
+		if (sorted) {
+			numericMap = new TreeMap<Double, RowIdList>();
+			stringMap = new TreeMap<CollationKey, RowIdList>();
+			nonNumericRows = new RowIdList();
+			nonStringRows = new RowIdList();
+		} else {
+			numericMap = new HashMap<Double, RowIdList>();
+			stringMap = new HashMap<CollationKey, RowIdList>();
+		}
+		nullRows = new RowIdList();
+		stringKeyCache = new HashMap<String, StringKey>();
+	}
+	
+	/**
+	 * Adds the row value into the index. Row ids are expected to be added in ascending order.
+	 *
+	 * @param  rowId  of the value
+	 * @param  value  to index (the map containing the field value)
+	 **/
+	public void add(int rowId, Object value) {
+		Object fieldValue = fieldValue(value);
+		if (fieldValue == null) {
+			nullRows.add(rowId);
+			return;
+		}
+		
+		StringKey key = stringKey(fieldValue);
+		if (key.num != null) {
+			numericMap.computeIfAbsent(key.num.doubleValue(), (k) -> new RowIdList()).add(rowId);
+		}
+		if (key.collationKey != null) {
+			stringMap.computeIfAbsent(key.collationKey, (k) -> new RowIdList()).add(rowId);
+		}
+		
+		if (sorted) {
+			if (key.num == null) {
+				nonNumericRows.add(rowId);
+			}
+			if (!(fieldValue instanceof String)) {
+				nonStringRows.add(rowId);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the row value from the index, the value is expected to be unmodified since it was added
+	 *
+	 * @param  rowId  of the value
+	 * @param  value  which was indexed
+	 **/
+	public void remove(int rowId, Object value) {
+		Object fieldValue = fieldValue(value);
+		if (fieldValue == null) {
+			nullRows.remove(rowId);
+			return;
+		}
+		
+		StringKey key = stringKey(fieldValue);
+		if (key.num != null) {
+			removeFromMap(numericMap, key.num.doubleValue(), rowId);
+		}
+		if (key.collationKey != null) {
+			removeFromMap(stringMap, key.collationKey, rowId);
+		}
+		
+		if (sorted) {
+			if (key.num == null) {
+				nonNumericRows.remove(rowId);
+			}
+			if (!(fieldValue instanceof String)) {
+				nonStringRows.remove(rowId);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the indexed field value, in the same way as the query conditions
+	 **/
+	protected Object fieldValue(Object value) {
+		return fieldAccessor.getFieldValue(value);
+	}
+	
+	/**
+	 * Removes the row id from the map bucket, and the bucket itself if its empty
+	 **/
+	protected static <K> void removeFromMap(Map<K, RowIdList> map, K key, int rowId) {
+		RowIdList list = map.get(key);
+		if (list != null) {
+			list.remove(rowId);
+			if (list.size == 0) {
+				map.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * Numeric value, and string collation key of a (non null) field value
+	 **/
+	protected static class StringKey {
+		// Numeric value, null if its not a number
+		protected final Number num;
+		
+		// String collation key, null for numbers
+		protected final CollationKey collationKey;
+		
+		protected StringKey(Object fieldValue) {
+			num = CompareUtils.objectToNumberIfPossible(fieldValue);
+			collationKey = (fieldValue instanceof Number) ? null : collationKey(fieldValue);
+		}
+	}
+	
+	/**
+	 * Gets the numeric value, and string collation key of a (non null) field value.
+	 * With the result for strings cached, as both the parsing and collation key is expensive.
+	 **/
+	protected StringKey stringKey(Object fieldValue) {
+		if (!(fieldValue instanceof String)) {
+			return new StringKey(fieldValue);
+		}
+		StringKey ret = stringKeyCache.get(fieldValue);
+		if (ret == null) {
+			if (stringKeyCache.size() >= STRING_KEY_CACHE_SIZE) {
+				stringKeyCache.clear();
+			}
+			ret = new StringKey(fieldValue);
+			stringKeyCache.put((String) fieldValue, ret);
+		}
+		return ret;
+	}
+	
+	/**
+	 * String collation key of the value, equivalent to the CompareUtils string comparision
+	 **/
+	protected static CollationKey collationKey(Object value) {
+		return CompareUtils.threadCollator().getCollationKey(value.toString());
+	}
+	
+	//--------------------------------------------------------------------
+	// Index lookup
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Lookup the rows, which may match the basic query condition
+	 *
+	 * @param  query    basic condition on the indexed field
+	 * @param  argValue argument value of the condition
+	 * @param  limit    max number of rows, before giving up on the lookup
+	 *
+	 * @return  sorted row ids, which is a superset of the matching rows.
+	 *          Null if the index cannot be used, or the limit is exceeded.
+	 **/
+	public int[] lookup(Query query, Object argValue, int limit) {
+		Class<?> type = query.getClass();
+		if (type == Equals.class) {
+			return lookupEquals(argValue, limit);
+		}
+		if (type == In.class) {
+			return lookupIn((List<?>) argValue, limit);
+		}
+		if (sorted && type == Between.class) {
+			List<?> bounds = (List<?>) argValue;
+			return lookupRange(bounds.get(0), true, bounds.get(1), true, limit);
+		}
+		if (!sorted || !isRangeCondition(query)) {
+			return null;
+		}
+		if (isLowerBound(query)) {
+			return lookupRange(argValue, type == MoreThanOrEquals.class, NO_BOUND, false, limit);
+		}
+		return lookupRange(NO_BOUND, false, argValue, type == LessThanOrEquals.class, limit);
+	}
+	
+	/**
+	 * Lookup the rows, which may be within both the lower and upper bound conditions
+	 *
+	 * @param  lowerQuery MORE_THAN(_OR_EQUALS) condition on the indexed field
+	 * @param  lowerValue argument value of the lower bound
+	 * @param  upperQuery LESS_THAN(_OR_EQUALS) condition on the indexed field
+	 * @param  upperValue argument value of the upper bound
+	 * @param  limit      max number of rows, before giving up on the lookup
+	 *
+	 * @return  sorted row ids, which is a superset of the matching rows.
+	 *          Null if the index cannot be used, or the limit is exceeded.
+	 **/
+	public int[] lookupBetween(Query lowerQuery, Object lowerValue, Query upperQuery,
+		Object upperValue, int limit) {
+		if (!sorted) {
+			return null;
+		}
+		return lookupRange(lowerValue, lowerQuery.getClass() == MoreThanOrEquals.class, upperValue,
+			upperQuery.getClass() == LessThanOrEquals.class, limit);
+	}
+	
+	/**
+	 * Lookup the rows, which may be equal to the argument value
+	 **/
+	protected int[] lookupEquals(Object argValue, int limit) {
+		if (argValue == null) {
+			return collect(Collections.emptyList(), nullRows, limit);
+		}
+		
+		List<RowIdList> ret = new ArrayList<RowIdList>(2);
+		Number num = CompareUtils.objectToNumberIfPossible(argValue);
+		if (num != null) {
+			addIfNotNull(ret, numericMap.get(num.doubleValue()));
+		}
+		if (!(argValue instanceof Number)) {
+			addIfNotNull(ret, stringMap.get(collationKey(argValue)));
+		}
+		return collect(ret, null, limit);
+	}
+	
+	/**
+	 * Lookup the rows, which may be equal to any of the argument values
+	 **/
+	protected int[] lookupIn(List<?> argValues, int limit) {
+		List<int[]> rowsList = new ArrayList<int[]>(argValues.size());
+		long total = 0;
+		for (Object argValue : argValues) {
+			int[] rows = lookupEquals(argValue, limit);
+			if (rows == null) {
+				return null;
+			}
+			total += rows.length;
+			if (total > limit) {
+				return null;
+			}
+			rowsList.add(rows);
+		}
+		return unionArrays(rowsList);
+	}
+	
+	/**
+	 * Lookup the rows, which may be within the range of the argument values.
+	 * Where either the lower or upper bound may be absent (but not both)
+	 **/
+	protected int[] lookupRange(Object lower, boolean lowerInclusive, Object upper,
+		boolean upperInclusive, int limit) {
+		boolean hasLower = (lower != NO_BOUND);
+		boolean hasUpper = (upper != NO_BOUND);
+		
+		// Null values never match a range condition
+		if ((hasLower && lower == null) || (hasUpper && upper == null)) {
+			return new int[0];
+		}
+		
+		// Numeric range, where non numeric values are always less then a number
+		if ((!hasLower || lower instanceof Number) && (!hasUpper || upper instanceof Number)) {
+			NavigableMap<Double, RowIdList> tree = (NavigableMap<Double, RowIdList>) numericMap;
+			RowIdList extra = hasLower ? null : nonNumericRows;
+			if (hasLower && hasUpper) {
+				double lowerKey = ((Number) lower).doubleValue();
+				double upperKey = ((Number) upper).doubleValue();
+				if (Double.compare(lowerKey, upperKey) > 0) {
+					return new int[0];
+				}
+				return collect(tree.subMap(lowerKey, lowerInclusive, upperKey, upperInclusive).values(),
+					extra, limit);
+			}
+			if (hasLower) {
+				return collect(tree.tailMap(((Number) lower).doubleValue(), lowerInclusive).values(),
+					extra, limit);
+			}
+			return collect(tree.headMap(((Number) upper).doubleValue(), upperInclusive).values(),
+				extra, limit);
+		}
+		
+		// String range, only strings are compared by their collation order (the rest needs to be tested)
+		if ((!hasLower || lower instanceof String) && (!hasUpper || upper instanceof String)) {
+			NavigableMap<CollationKey, RowIdList> tree = (NavigableMap<CollationKey, RowIdList>) stringMap;
+			if (hasLower && hasUpper) {
+				CollationKey lowerKey = collationKey(lower);
+				CollationKey upperKey = collationKey(upper);
+				if (lowerKey.compareTo(upperKey) > 0) {
+					return collect(Collections.emptyList(), nonStringRows, limit);
+				}
+				return collect(tree.subMap(lowerKey, lowerInclusive, upperKey, upperInclusive).values(),
+					nonStringRows, limit);
+			}
+			if (hasLower) {
+				return collect(tree.tailMap(collationKey(lower), lowerInclusive).values(), nonStringRows,
+					limit);
+			}
+			return collect(tree.headMap(collationKey(upper), upperInclusive).values(), nonStringRows,
+				limit);
+		}
+		
+		// Mixed, or other argument types
+		return null;
+	}
+	
+	/**
+	 * Indicates the lack of a lower / upper bound, for lookupRange
+	 **/
+	protected static final Object NO_BOUND = new Object();
+	
+	/**
+	 * @return  true, if its a LESS_THAN(_OR_EQUALS) or MORE_THAN(_OR_EQUALS) condition
+	 **/
+	protected static boolean isRangeCondition(Query query) {
+		Class<?> type = query.getClass();
+		return type == LessThan.class || type == LessThanOrEquals.class || type == MoreThan.class
+			|| type == MoreThanOrEquals.class;
+	}
+	
+	/**
+	 * @return  true, if its a MORE_THAN(_OR_EQUALS) condition
+	 **/
+	protected static boolean isLowerBound(Query query) {
+		Class<?> type = query.getClass();
+		return type == MoreThan.class || type == MoreThanOrEquals.class;
+	}
+	
+	//--------------------------------------------------------------------
+	// Query planning
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Number of times larger a lookup can be, then the current candidate rows,
+	 * before its cheaper to test the current candidate rows directly
+	 **/
+	protected static final int LOOKUP_LIMIT_RATIO = 8;
+	
+	/**
+	 * Gets the rows which may match the query, using the given field indexes.
+	 *
+	 * + Basic conditions uses the index of the field (if any)
+	 * + AND combinations intersects the rows of the children, that can be indexed.
+	 *   Where equality conditions are used first, lower and upper bounds on the same field
+	 *   are looked up together, and lookups much larger then the current candidates are skipped.
+	 * + OR combinations unions the rows of the children, if all the children can be indexed
+	 * + Everything else falls back to a full scan
+	 *
+	 * @param  query    to plan
+	 * @param  indexMap of field name, to the field index
+	 *
+	 * @return  sorted row ids, which is a superset of the matching rows. Null for a full scan
+	 **/
+	public static int[] candidates(Query query, Map<String, QueryIndex> indexMap) {
+		// Skip planning, if none of the queried fields are indexed
+		if (query == null || indexMap == null || indexMap.isEmpty()) {
+			return null;
+		}
+		boolean hasIndexedField = false;
+		for (String field : query.fieldQueryMap().keySet()) {
+			if (field != null && indexMap.containsKey(field)) {
+				hasIndexedField = true;
+				break;
+			}
+		}
+		if (!hasIndexedField) {
+			return null;
+		}
+		
+		// Combination queries pass down their argument map to their children
+		return candidates(query, indexMap, query.defaultArgumentMap(), Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Recursive query planning, with the argument map used by the query
+	 **/
+	protected static int[] candidates(Query query, Map<String, QueryIndex> indexMap,
+		Map<String, Object> argMap, int limit) {
+		// Basic condition, on the indexed field
+		if (query.isBasicOperator()) {
+			QueryIndex index = indexMap.get(query.fieldName());
+			if (index == null) {
+				return null;
+			}
+			return index.lookup(query, argumentValue(query, argMap), limit);
+		}
+		
+		// AND combination, intersects the indexed children
+		if (query.getClass() == And.class) {
+			return andCandidates(query.childrenQuery(), indexMap, argMap, limit);
+		}
+		
+		// OR combination, unions the children (if all can be indexed)
+		if (query.getClass() == Or.class) {
+			List<int[]> childRows = new ArrayList<int[]>();
+			long total = 0;
+			for (Query child : query.childrenQuery()) {
+				int[] rows = candidates(child, indexMap, argMap, limit);
+				if (rows == null) {
+					return null;
+				}
+				total += rows.length;
+				if (total > limit) {
+					return null;
+				}
+				childRows.add(rows);
+			}
+			return unionArrays(childRows);
+		}
+		
+		// Unsupported, scan everything
+		return null;
+	}
+	
+	/**
+	 * AND combination query planning, of the children conditions
+	 **/
+	protected static int[] andCandidates(List<Query> children, Map<String, QueryIndex> indexMap,
+		Map<String, Object> argMap, int limit) {
+		int[] ret = null;
+		List<Query> remaining = new ArrayList<Query>(children);
+		
+		// 1. Equality conditions first, as they are the cheapest to lookup
+		for (Query child : children) {
+			if (child.getClass() == Equals.class && indexMap.containsKey(child.fieldName())) {
+				remaining.remove(child);
+				ret = intersectCandidates(ret, candidates(child, indexMap, argMap, lookupLimit(ret,
+					limit)));
+				if (ret != null && ret.length == 0) {
+					return ret;
+				}
+			}
+		}
+		
+		// 2. Lower and upper bound conditions on the same sorted field
+		for (Query lower : children) {
+			QueryIndex index = lower.isBasicOperator() ? indexMap.get(lower.fieldName()) : null;
+			if (index == null || !index.sorted || !isLowerBound(lower) || !remaining.contains(lower)) {
+				continue;
+			}
+			for (Query upper : children) {
+				if (upper.isBasicOperator() && lower.fieldName().equals(upper.fieldName())
+					&& isRangeCondition(upper) && !isLowerBound(upper) && remaining.contains(upper)) {
+					remaining.remove(lower);
+					remaining.remove(upper);
+					ret = intersectCandidates(ret, index.lookupBetween(lower, argumentValue(lower, argMap),
+						upper, argumentValue(upper, argMap), lookupLimit(ret, limit)));
+					if (ret != null && ret.length == 0) {
+						return ret;
+					}
+					break;
+				}
+			}
+		}
+		
+		// 3. Everything else
+		for (Query child : remaining) {
+			ret = intersectCandidates(ret, candidates(child, indexMap, argMap, lookupLimit(ret, limit)));
+			if (ret != null && ret.length == 0) {
+				return ret;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Lookup limit, in relation to the current candidate rows
+	 **/
+	protected static int lookupLimit(int[] current, int limit) {
+		if (current == null) {
+			return limit;
+		}
+		return (int) Math.min(limit, (long) current.length * LOOKUP_LIMIT_RATIO);
+	}
+	
+	/**
+	 * Intersects the candidate rows, where null represents all rows
+	 **/
+	protected static int[] intersectCandidates(int[] current, int[] rows) {
+		if (rows == null) {
+			return current;
+		}
+		if (current == null) {
+			return rows;
+		}
+		return intersect(current, rows);
+	}
+	
+	/**
+	 * Gets the argument value of the basic condition, in the same way as ConditionBase
+	 **/
+	protected static Object argumentValue(Query query, Map<String, Object> argMap) {
+		if (query instanceof In) {
+			return ((In) query).argumentValues(argMap);
+		}
+		if (query instanceof Between) {
+			return ((Between) query).argumentValues(argMap);
+		}
+		if (argMap == null || query.argumentName() == null) {
+			return null;
+		}
+		return NestedObjectFetch.fetchObject(argMap, query.argumentName(), null);
+	}
+	
+	//--------------------------------------------------------------------
+	// Row id set operations
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Intersection of two sorted row id arrays
+	 **/
+	protected static int[] intersect(int[] a, int[] b) {
+		int[] ret = new int[Math.min(a.length, b.length)];
+		int len = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				++i;
+			} else if (a[i] > b[j]) {
+				++j;
+			} else {
+				ret[len++] = a[i];
+				++i;
+				++j;
+			}
+		}
+		return Arrays.copyOf(ret, len);
+	}
+	
+	/**
+	 * Union of multiple sorted row id lists (and an optional extra list),
+	 * as a sorted array without duplicates. Null if the total rows exceeds the limit
+	 **/
+	protected static int[] collect(Collection<RowIdList> lists, RowIdList extra, int limit) {
+		// Check the total rows against the limit, before collecting them
+		List<RowIdList> all = new ArrayList<RowIdList>();
+		long total = 0;
+		for (RowIdList list : lists) {
+			total += list.size;
+			if (total > limit) {
+				return null;
+			}
+			all.add(list);
+		}
+		if (extra != null && extra.size > 0) {
+			total += extra.size;
+			if (total > limit) {
+				return null;
+			}
+			all.add(extra);
+		}
+		
+		// Collect the row ids
+		if (all.isEmpty()) {
+			return new int[0];
+		}
+		if (all.size() == 1) {
+			return all.get(0).toArray();
+		}
+		int[] ret = new int[(int) total];
+		int len = 0;
+		for (RowIdList list : all) {
+			System.arraycopy(list.ids, 0, ret, len, list.size);
+			len += list.size;
+		}
+		Arrays.sort(ret);
+		return distinct(ret);
+	}
+	
+	/**
+	 * Removes the duplicates of a sorted row id array
+	 **/
+	protected static int[] distinct(int[] sorted) {
+		int len = 0;
+		for (int i = 0; i < sorted.length; ++i) {
+			if (len == 0 || sorted[len - 1] != sorted[i]) {
+				sorted[len++] = sorted[i];
+			}
+		}
+		return (len == sorted.length) ? sorted : Arrays.copyOf(sorted, len);
+	}
+	
+	/**
+	 * Union of multiple sorted row id arrays, as a sorted array without duplicates
+	 **/
+	protected static int[] unionArrays(List<int[]> arrays) {
+		if (arrays.size() == 1) {
+			return arrays.get(0);
+		}
+		int total = 0;
+		for (int[] array : arrays) {
+			total += array.length;
+		}
+		int[] ret = new int[total];
+		int len = 0;
+		for (int[] array : arrays) {
+			System.arraycopy(array, 0, ret, len, array.length);
+			len += array.length;
+		}
+		Arrays.sort(ret);
+		return distinct(ret);
+	}
+	
+	/**
+	 * Adds the list, if its not null
+	 **/
+	protected static void addIfNotNull(List<RowIdList> ret, RowIdList list) {
+		if (list != null) {
+			ret.add(list);
+		}
+	}
+	
+	/**
+	 * Sorted list of row ids, as a growable int array
+	 **/
+	protected static class RowIdList {
+		
+		// Row ids, and the number of ids used
+		protected int[] ids = new int[2];
+		protected int size = 0;
+		
+		/**
+		 * Adds the row id, in sorted order
+		 **/
+		protected void add(int rowId) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			
+			// Row ids are normally added in ascending order
+			int pos = size;
+			if (size > 0 && ids[size - 1] > rowId) {
+				pos = Arrays.binarySearch(ids, 0, size, rowId);
+				pos = (pos < 0) ? -(pos + 1) : pos;
+				System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+			}
+			ids[pos] = rowId;
+			++size;
+		}
+		
+		/**
+		 * Removes the row id, if present
+		 **/
+		protected void remove(int rowId) {
+			int pos = Arrays.binarySearch(ids, 0, size, rowId);
+			if (pos >= 0) {
+				System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+				--size;
+			}
+		}
+		
+		/**
+		 * @return  copy of the row ids
+		 **/
+		protected int[] toArray() {
+			return Arrays.copyOf(ids, size);
+		}
+	}
+}
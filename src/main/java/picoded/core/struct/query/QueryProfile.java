@@ -0,0 +1,213 @@
+package picoded.core.struct.query;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import picoded.core.struct.query.condition.ConditionBase;
+
+/**
+ * Runtime profile of a query tree, which counts the evaluations, passes and
+ * time taken (in nanoseconds) of each condition node, used to find expensive
+ * conditions on real data.
+ *
+ * ```
+ * Query query = Query.build("name = ? AND age > ?", new Object[] { "john", 21 });
+ * QueryProfile profile = QueryProfile.attach(query);
+ *
+ * query.search(list);
+ * System.out.println(profile); // explain output, with the runtime stats
+ *
+ * profile.detach();
+ * ```
+ *
+ * Profiling applies to test(...), and any predicate compiled after attaching.
+ * Note that the timing overhead (of System.nanoTime) is included in the measured time,
+ * and copies made via bindArgumentMap(...) shares the same stats as the original node.
+ **/
+public class QueryProfile {
+	
+	//--------------------------------------------------------------------
+	// Node stats
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Thread safe runtime stats of a single query node
+	 **/
+	public static class NodeStats {
+		
+		protected final LongAdder evaluations = new LongAdder();
+		protected final LongAdder passes = new LongAdder();
+		protected final LongAdder nanos = new LongAdder();
+		
+		/**
+		 * Records a single evaluation
+		 *
+		 * @param  passed if the evaluation was successful
+		 * @param  nanoTime taken for the evaluation
+		 **/
+		public void record(boolean passed, long nanoTime) {
+			evaluations.increment();
+			if (passed) {
+				passes.increment();
+			}
+			nanos.add(nanoTime);
+		}
+		
+		/**
+		 * @return  number of times the node was evaluated
+		 **/
+		public long evaluations() {
+			return evaluations.sum();
+		}
+		
+		/**
+		 * @return  number of times the node passed
+		 **/
+		public long passes() {
+			return passes.sum();
+		}
+		
+		/**
+		 * @return  total time taken by the node, in nanoseconds
+		 **/
+		public long nanos() {
+			return nanos.sum();
+		}
+		
+		/**
+		 * Resets all the stats to 0
+		 **/
+		public void reset() {
+			evaluations.reset();
+			passes.reset();
+			nanos.reset();
+		}
+		
+		/**
+		 * Stats summary
+		 **/
+		@Override
+		public String toString() {
+			long evalCount = evaluations();
+			long passCount = passes();
+			long nanoCount = nanos();
+			return "evaluated=" + evalCount + " passed=" + passCount + " time=" + nanoCount + "ns avg="
+				+ ((evalCount > 0) ? (nanoCount / evalCount) : 0) + "ns";
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor and attachment
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The profiled query
+	 **/
+	protected final Query query;
+	
+	/**
+	 * Stats of each condition node, by the node identity
+	 **/
+	protected final Map<Query, NodeStats> statsMap = new IdentityHashMap<Query, NodeStats>();
+	
+	/**
+	 * Constructor, use attach(...) instead
+	 *
+	 * @param  query to profile
+	 **/
+	protected QueryProfile(Query query) {
+		this.query = query;
+	}
+	
+	/**
+	 * Attach a new profile to the query tree, replacing any existing profile on its nodes
+	 *
+	 * @param  query to profile
+	 *
+	 * @return  the attached profile
+	 **/
+	public static QueryProfile attach(Query query) {
+		if (query == null) {
+			throw new IllegalArgumentException("Query to profile cannot be null");
+		}
+		QueryProfile ret = new QueryProfile(query);
+		ret.attachNode(query);
+		return ret;
+	}
+	
+	/**
+	 * Attach the stats to the node, and its children, recursively
+	 **/
+	protected void attachNode(Query node) {
+		if (node instanceof ConditionBase) {
+			NodeStats stats = statsMap.get(node);
+			if (stats == null) {
+				stats = new NodeStats();
+				statsMap.put(node, stats);
+			}
+			((ConditionBase) node).setProfileStats(stats);
+		}
+		List<Query> children = node.isCombinationOperator() ? node.childrenQuery() : null;
+		if (children != null) {
+			for (Query child : children) {
+				attachNode(child);
+			}
+		}
+	}
+	
+	/**
+	 * Detach the profile from the query tree, stopping any further profiling
+	 * (of test calls, and predicates compiled after this call).
+	 *
+	 * Stats collected so far remains readable
+	 **/
+	public void detach() {
+		for (Query node : statsMap.keySet()) {
+			ConditionBase condition = (ConditionBase) node;
+			if (condition.getProfileStats() == statsMap.get(node)) {
+				condition.setProfileStats(null);
+			}
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Stats access
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  the profiled query
+	 **/
+	public Query query() {
+		return query;
+	}
+	
+	/**
+	 * Gets the stats of a query node
+	 *
+	 * @param  node of the profiled query tree
+	 *
+	 * @return  the node stats, null if the node is not profiled (such as combination nodes)
+	 **/
+	public NodeStats stats(Query node) {
+		return statsMap.get(node);
+	}
+	
+	/**
+	 * Resets all the node stats to 0
+	 **/
+	public void reset() {
+		for (NodeStats stats : statsMap.values()) {
+			stats.reset();
+		}
+	}
+	
+	/**
+	 * The explain output of the query, with the runtime stats of each node
+	 **/
+	@Override
+	public String toString() {
+		return query.explain().toString(this);
+	}
+}
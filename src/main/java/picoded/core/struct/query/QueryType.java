@@ -29,7 +29,15 @@ public enum QueryType {
 	
 	MORE_THAN(30), MORE_THAN_OR_EQUALS(31),
 	
-	LIKE(40);
+	LIKE(40),
+	
+	IN(50), BETWEEN(60),
+	
+	//--------------------------------------------------------------------
+	// Constant types (from query normalization)
+	//--------------------------------------------------------------------
+	
+	TRUE(90), FALSE(91);
 	
 	//////////////////////////////////////////////////////////////////////
 	//
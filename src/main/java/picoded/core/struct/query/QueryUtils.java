@@ -1,7 +1,16 @@
 package picoded.core.struct.query;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import picoded.core.file.FileUtil;
+import picoded.core.struct.query.internal.MergeSortIterator;
+import picoded.core.struct.query.internal.SortKeys;
 
 /**
  * Collection of query utility functions, used to query a collection and sort its results
@@ -11,6 +20,152 @@ import java.util.*;
  */
 public class QueryUtils {
 	
+	//--------------------------------------------------------------------
+	// Parallel search support
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Minimum collection size, for search to be done in parallel. Where -1 disables parallel search.
+	 * 
+	 * This is disabled by default, and is meant to be enabled for large in-memory collections.
+	 */
+	protected static volatile int parallelSearchThreshold = -1;
+	
+	/**
+	 * @return  minimum collection size, for search to be done in parallel (-1 if disabled)
+	 */
+	public static int parallelSearchThreshold() {
+		return parallelSearchThreshold;
+	}
+	
+	/**
+	 * Configure the minimum collection size, for search to be done in parallel.
+	 * 
+	 * @param threshold  minimum collection size, use -1 to disable parallel search
+	 */
+	public static void setParallelSearchThreshold(int threshold) {
+		parallelSearchThreshold = (threshold < 0) ? -1 : threshold;
+	}
+	
+	/**
+	 * Indicates if a collection of the given size, should be searched in parallel
+	 * 
+	 * @param size  of the collection to search
+	 * 
+	 * @return  true, if parallel search is enabled, and the size meets the threshold
+	 */
+	public static boolean useParallelSearch(int size) {
+		int threshold = parallelSearchThreshold;
+		return threshold >= 0 && size >= threshold;
+	}
+	
+	/**
+	 * Filters the collection values in parallel (using the common fork/join pool).
+	 * 
+	 * The collection is snapshot into an array first, with the results being returned
+	 * in the same order as the collection iteration. Such that the result is identical
+	 * to a sequential search. As such the filter used must be thread safe.
+	 * 
+	 * @param values  collection to filter
+	 * @param filter  to test each value with
+	 * 
+	 * @return  list of values which passes the filter, in iteration order
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> List<V> parallelSearch(Collection<V> values, Predicate<Object> filter) {
+		return (List<V>) Arrays.stream(values.toArray()).parallel().filter(filter)
+			.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	/**
+	 * Minimum list size, for sortList to sort in parallel. Where -1 disables parallel sort.
+	 * 
+	 * This is disabled by default, and is meant to be enabled for large in-memory lists.
+	 */
+	protected static volatile int parallelSortThreshold = -1;
+	
+	/**
+	 * @return  minimum list size, for sortList to sort in parallel (-1 if disabled)
+	 */
+	public static int parallelSortThreshold() {
+		return parallelSortThreshold;
+	}
+	
+	/**
+	 * Configure the minimum list size, for sortList to sort in parallel.
+	 * 
+	 * @param threshold  minimum list size, use -1 to disable parallel sort
+	 */
+	public static void setParallelSortThreshold(int threshold) {
+		parallelSortThreshold = (threshold < 0) ? -1 : threshold;
+	}
+	
+	/**
+	 * Indicates if a list of the given size, should be sorted in parallel
+	 * 
+	 * @param size  of the list to sort
+	 * 
+	 * @return  true, if parallel sort is enabled, and the size meets the threshold
+	 */
+	public static boolean useParallelSort(int size) {
+		int threshold = parallelSortThreshold;
+		return threshold >= 0 && size >= threshold;
+	}
+	
+	//--------------------------------------------------------------------
+	// Query compilation support
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Indicates if the query tree is normalized (see Query.normalize) when compiled.
+	 * 
+	 * This is enabled by default, and can be disabled to compile the query tree as it is.
+	 */
+	protected static volatile boolean normalizeOnCompile = true;
+	
+	/**
+	 * @return  true, if the query tree is normalized when compiled
+	 */
+	public static boolean normalizeOnCompile() {
+		return normalizeOnCompile;
+	}
+	
+	/**
+	 * Configure if the query tree is normalized (see Query.normalize) when compiled.
+	 * 
+	 * @param enabled  use false, to compile the query tree as it is
+	 */
+	public static void setNormalizeOnCompile(boolean enabled) {
+		normalizeOnCompile = enabled;
+	}
+	
+	/**
+	 * Indicates if combination children are reordered by their estimated cost when compiled.
+	 * 
+	 * This is enabled by default, and can be disabled to evaluate the children in their query order.
+	 */
+	protected static volatile boolean reorderOnCompile = true;
+	
+	/**
+	 * @return  true, if combination children are reordered by their estimated cost when compiled
+	 */
+	public static boolean reorderOnCompile() {
+		return reorderOnCompile;
+	}
+	
+	/**
+	 * Configure if combination children are reordered by their estimated cost when compiled.
+	 * 
+	 * @param enabled  use false, to evaluate the children in their query order
+	 */
+	public static void setReorderOnCompile(boolean enabled) {
+		reorderOnCompile = enabled;
+	}
+	
+	//--------------------------------------------------------------------
+	// Offset and sorting support
+	//--------------------------------------------------------------------
+	
 	/**
 	 * Takes a list of values, and extract its offset of values.
 	 * 
@@ -97,12 +252,12 @@ public class QueryUtils {
 			
 			// Lets try to sort the list
 			try {
-				Collections.sort(inList, sorter);
+				sortList(inList, sorter);
 			} catch (UnsupportedOperationException e) {
 				// Ok sorting failed, lets try again as array list
 				// As it might have been read only
 				inList = new ArrayList<V>(inList);
-				Collections.sort(inList, sorter);
+				sortList(inList, sorter);
 			}
 		}
 		
@@ -111,6 +266,61 @@ public class QueryUtils {
 		return inList;
 	}
 	
+	/**
+	 * Minimum list size, for sortList to extract the sort keys of each value once
+	 * (decorate-sort-undecorate), instead of on every comparision.
+	 */
+	protected static final int DECORATED_SORT_MIN_SIZE = 64;
+	
+	/**
+	 * Sorts the list in place, with the same result as Collections.sort(inList, sorter)
+	 * 
+	 * For larger lists, the sort keys of each value are extracted once into SortKeys,
+	 * and the value positions are sorted against it. As the same (stable) sort algorithm
+	 * is used, with the same comparision results, the resulting order is identical.
+	 * 
+	 * Lists meeting the parallelSortThreshold, are sorted via Arrays.parallelSort instead.
+	 * Which is also stable, giving the same order (for consistent comparisions).
+	 * 
+	 * @param  inList  list to sort in place
+	 * @param  sorter  order by to sort with
+	 * 
+	 * @throws UnsupportedOperationException  if the list is not modifiable
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <V> void sortList(List<V> inList, OrderBy<V> sorter) {
+		if (inList.size() < DECORATED_SORT_MIN_SIZE) {
+			Collections.sort(inList, sorter);
+			return;
+		}
+		
+		// Decorate, with the sort keys of each value
+		Object[] values = inList.toArray();
+		boolean[] descending = new boolean[sorter._comparisionConfig.size()];
+		for (int i = 0; i < descending.length; ++i) {
+			descending[i] = (sorter._comparisionConfig.get(i).getRight() == OrderBy.OrderType.DESC);
+		}
+		SortKeys keys = new SortKeys(values, sorter.fieldAccessors(), descending);
+		
+		// Sort the value positions (both sorts are stable)
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+		if (useParallelSort(values.length)) {
+			Arrays.parallelSort(order, keys::compare);
+		} else {
+			Arrays.sort(order, keys::compare);
+		}
+		
+		// Undecorate, back into the list (as per Collections.sort)
+		ListIterator<V> iter = inList.listIterator();
+		for (Integer pos : order) {
+			iter.next();
+			iter.set((V) values[pos]);
+		}
+	}
+	
 	/**
 	 * Sort and limit the result of a list
 	 *
@@ -123,10 +333,208 @@ public class QueryUtils {
 	 **/
 	public static <V> List<V> sortAndOffsetList(List<V> list, String orderByStr, int offset,
 		int limit) {
+		// Top-K selection, when only a small page of a large list is needed
+		if (list != null && offset >= 0 && limit >= 1 && orderByStr != null
+			&& (orderByStr = orderByStr.trim()).length() > 0) {
+			long topK = (long) offset + (long) limit;
+			if (topK * TOP_K_SIZE_RATIO <= list.size()) {
+				return topKList(list, new OrderBy<V>(orderByStr), offset, (int) topK);
+			}
+		}
+		
 		List<V> sortedList = sortList(list, orderByStr);
 		return offsetList(sortedList, offset, limit);
 	}
 	
+	/**
+	 * Minimum ratio of the list size, against (offset + limit), for sortAndOffsetList
+	 * to use top-K selection instead of a full sort.
+	 */
+	protected static final int TOP_K_SIZE_RATIO = 4;
+	
+	/**
+	 * Selects the top K values of the list with a bounded heap, without sorting the full list.
+	 * 
+	 * Ties are broken by the original list position, such that the result is identical
+	 * to a (stable) full sort of the list, followed by the offset and limit.
+	 * 
+	 * @param  inList      list to select from, this is not modified
+	 * @param  comparator  to sort the values by
+	 * @param  offset      of the result to return from
+	 * @param  topK        number of values to select (offset + limit)
+	 * 
+	 * @return  list of the sorted values, from offset (inclusive) to topK (exclusive)
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <V> List<V> topKList(List<V> inList, Comparator<V> comparator, int offset,
+		int topK) {
+		Object[] values = inList.toArray();
+		
+		// Compares by value, then by the original position
+		Comparator<Integer> indexComparator = (a, b) -> {
+			int diff = comparator.compare((V) values[a], (V) values[b]);
+			return (diff != 0) ? diff : Integer.compare(a, b);
+		};
+		
+		// Bounded max heap of the list positions, where the "largest" value is at the root
+		int[] heap = new int[topK];
+		int heapSize = 0;
+		for (int i = 0; i < values.length; ++i) {
+			if (heapSize < topK) {
+				// Sift up the new value
+				int pos = heapSize++;
+				while (pos > 0) {
+					int parent = (pos - 1) >>> 1;
+					if (indexComparator.compare(heap[parent], i) >= 0) {
+						break;
+					}
+					heap[pos] = heap[parent];
+					pos = parent;
+				}
+				heap[pos] = i;
+			} else if (indexComparator.compare(i, heap[0]) < 0) {
+				// Replaces the root, and sift it down
+				int pos = 0;
+				while (true) {
+					int child = (pos << 1) + 1;
+					if (child >= heapSize) {
+						break;
+					}
+					if (child + 1 < heapSize && indexComparator.compare(heap[child + 1], heap[child]) > 0) {
+						++child;
+					}
+					if (indexComparator.compare(heap[child], i) <= 0) {
+						break;
+					}
+					heap[pos] = heap[child];
+					pos = child;
+				}
+				heap[pos] = i;
+			}
+		}
+		
+		// Sort the selected positions, and return the requested range
+		Integer[] selected = new Integer[heapSize];
+		for (int i = 0; i < heapSize; ++i) {
+			selected[i] = heap[i];
+		}
+		Arrays.sort(selected, indexComparator);
+		
+		List<V> ret = new ArrayList<V>(Math.max(heapSize - offset, 0));
+		for (int i = offset; i < heapSize; ++i) {
+			ret.add((V) values[selected[i]]);
+		}
+		return ret;
+	}
+	
+	//--------------------------------------------------------------------
+	// External sort support
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Default number of values sorted in memory (as a single run), for externalSort
+	 */
+	public static final int EXTERNAL_SORT_RUN_SIZE = 100000;
+	
+	/**
+	 * External merge sort, for values which may not fit in memory, using the default
+	 * run size, and the system temporary directory.
+	 * 
+	 * @see #externalSort(Iterator, String, int, File)
+	 */
+	public static <V> MergeSortIterator<V> externalSort(Iterator<V> values, String orderByStr) {
+		return externalSort(values, orderByStr, EXTERNAL_SORT_RUN_SIZE, FileUtil.getTempDirectory());
+	}
+	
+	/**
+	 * External merge sort, for values which may not fit in memory, using the
+	 * system temporary directory.
+	 * 
+	 * @see #externalSort(Iterator, String, int, File)
+	 */
+	public static <V> MergeSortIterator<V> externalSort(Iterator<V> values, String orderByStr,
+		int runSize) {
+		return externalSort(values, orderByStr, runSize, FileUtil.getTempDirectory());
+	}
+	
+	/**
+	 * External merge sort, for values which may not fit in memory.
+	 * 
+	 * The values are read in runs of runSize, with each run sorted via sortList, and spilled
+	 * to a temporary file (except the last run). The runs are then merged (k-way) as they are
+	 * iterated, such that only a single value of each run is in memory at a time.
+	 * 
+	 * The resulting order is the same as sortList of all the values, including its null handling.
+	 * Spilled values must be Serializable (such as HashMap of strings and numbers), and are
+	 * returned as deserialized copies.
+	 * 
+	 * Run files are deleted once fully iterated, callers which stop early should close the iterator.
+	 * 
+	 * @param  values      to sort, which are read once
+	 * @param  orderByStr  order by string to apply, null or blank returns the values as it is
+	 * @param  runSize     number of values sorted in memory, for each run
+	 * @param  directory   to spill the run files to
+	 * 
+	 * @return  iterator of the sorted values
+	 */
+	public static <V> MergeSortIterator<V> externalSort(Iterator<V> values, String orderByStr,
+		int runSize, File directory) {
+		if (runSize < 1) {
+			throw new IllegalArgumentException("Invalid external sort run size : " + runSize);
+		}
+		
+		// No sorting needed, return the values as it is
+		List<Iterator<V>> runs = new ArrayList<Iterator<V>>();
+		if (orderByStr == null || (orderByStr = orderByStr.trim()).length() <= 0) {
+			runs.add(values);
+			return new MergeSortIterator<V>(runs, (a, b) -> 0);
+		}
+		OrderBy<V> sorter = new OrderBy<V>(orderByStr);
+		
+		// Sort each run, spilling them if there are more values
+		List<File> runFiles = new ArrayList<File>();
+		List<Iterator<V>> ordered = new ArrayList<Iterator<V>>();
+		MergeSortIterator<V> ret = null;
+		try {
+			while (values.hasNext()) {
+				List<V> run = new ArrayList<V>(Math.min(runSize, 1024));
+				while (run.size() < runSize && values.hasNext()) {
+					run.add(values.next());
+				}
+				sortList(run, sorter);
+				if (values.hasNext()) {
+					runFiles.add(MergeSortIterator.spillRun(run, directory));
+				} else {
+					runs.add(run.iterator());
+				}
+			}
+			
+			// Spilled runs, before the last in-memory run
+			for (File runFile : runFiles) {
+				ordered.add(MergeSortIterator.readRun(runFile));
+			}
+			ordered.addAll(runs);
+			ret = new MergeSortIterator<V>(ordered, sorter);
+			return ret;
+		} finally {
+			// On any failure, close the opened runs, and delete every run file
+			if (ret == null) {
+				for (Iterator<V> run : ordered) {
+					if (run instanceof Closeable) {
+						try {
+							((Closeable) run).close();
+						} catch (IOException e) {
+							// Ignored, as the run file is deleted below
+						}
+					}
+				}
+				for (File runFile : runFiles) {
+					runFile.delete();
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Utility funciton, used to sort and limit the result of a list
 	 *
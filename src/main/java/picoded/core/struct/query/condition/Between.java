@@ -0,0 +1,205 @@
+package picoded.core.struct.query.condition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import picoded.core.struct.query.CompareUtils;
+import picoded.core.struct.query.QueryType;
+
+/**
+ * BETWEEN condition, which passes if the field value is within the (inclusive) lower and upper bound.
+ * This is equivalent to `field >= lower AND field <= upper`, done as a single range check.
+ **/
+public class Between extends ConditionBase {
+	
+	//
+	// Constructor vars
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The constructed upper bound argument name, where the lower bound is the argument name
+	 **/
+	protected String _upperArgName = null;
+	
+	//
+	// Constructor Setup
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The constructor with the field name, and default arguments
+	 *
+	 * @param   default field to test
+	 * @param   default lower bound argument name to test against
+	 * @param   default upper bound argument name to test against
+	 * @param   default argument map to get test value
+	 **/
+	public Between(String field, String lowerArgName, String upperArgName,
+		Map<String, Object> defaultArgMap) {
+		super(field, lowerArgName, defaultArgMap);
+		_upperArgName = upperArgName;
+	}
+	
+	//
+	// Argument values
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Gets the lower and upper bound argument values
+	 *
+	 * @param   map to extract out the argument values
+	 *
+	 * @return  list of the lower, and upper bound value
+	 **/
+	public List<Object> argumentValues(Map<String, Object> argMap) {
+		List<Object> ret = new ArrayList<Object>(2);
+		ret.add(super.getArgumentValue(argMap, _argName));
+		ret.add(super.getArgumentValue(argMap, _upperArgName));
+		return ret;
+	}
+	
+	/**
+	 * Gets the arg value to test, which is the list of the lower and upper bound value
+	 *
+	 * @param   map to extract out the argument values
+	 * @param   argument name (ignored, as both bounds are used)
+	 *
+	 * @return  list of the lower, and upper bound value
+	 **/
+	@Override
+	protected Object getArgumentValue(Map<String, Object> argMap, String argName) {
+		return argumentValues(argMap);
+	}
+	
+	//
+	// Required overwrites
+	//--------------------------------------------------------------------
+	
+	/**
+	 * To test against the specific value, this is the actual
+	 * argument which is being used. After fetching both
+	 * the field and argument value
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the object to test against
+	 * @param   the argument actual value (list of the lower, and upper bound)
+	 *
+	 * @return  boolean indicating success or failure
+	 **/
+	@Override
+	protected boolean testValues(Object fieldValue, Object argValue) {
+		List<?> bounds = (List<?>) argValue;
+		Object lower = bounds.get(0);
+		Object upper = bounds.get(1);
+		if (fieldValue == null || lower == null || upper == null) {
+			return false;
+		}
+		return CompareUtils.dynamicCompare(fieldValue, lower) >= 0
+			&& CompareUtils.dynamicCompare(fieldValue, upper) <= 0;
+	}
+	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * With the range check resolved once, via CompareUtils.dynamicCompareBetween
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value (list of the lower, and upper bound)
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		List<?> bounds = (List<?>) argValue;
+		Object lower = bounds.get(0);
+		Object upper = bounds.get(1);
+		if (lower == null || upper == null) {
+			return (fieldValue) -> false;
+		}
+		final Predicate<Object> between = CompareUtils.dynamicCompareBetween(lower, upper);
+		return (fieldValue) -> fieldValue != null && between.test(fieldValue);
+	}
+	
+	/**
+	 * The operator symbol support
+	 *
+	 * [to override on extension]
+	 **/
+	@Override
+	public String operatorSymbol() {
+		return "BETWEEN";
+	}
+	
+	/**
+	 * Gets the query type
+	 *
+	 * [to override on extension]
+	 **/
+	@Override
+	public QueryType type() {
+		return QueryType.BETWEEN;
+	}
+	
+	/**
+	 * Gets the upper bound argument name
+	 **/
+	public String upperArgumentName() {
+		return _upperArgName;
+	}
+	
+	/**
+	 * Gets the default argument value, as the list of the lower and upper bound value
+	 **/
+	@Override
+	public Object defaultArgumentValue() {
+		return argumentValues(_argMap);
+	}
+	
+	//
+	// String handling, and argument extraction
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The query string
+	 **/
+	@Override
+	public String toString() {
+		return "\"" + fieldName() + "\" " + operatorSymbol() + " :" + argumentName() + " AND :"
+			+ upperArgumentName();
+	}
+	
+	/**
+	 * Returns the argument values used, of the lower and upper bound
+	 **/
+	@Override
+	public List<Object> queryArgumentsList(List<Object> ret) {
+		ret.addAll(argumentValues(_argMap));
+		return ret;
+	}
+	
+	/**
+	 * Returns all query arguments used, as a map
+	 **/
+	@Override
+	public Map<String, Object> queryArgumentsMap(Map<String, Object> ret) {
+		ret.put(_argName, super.getArgumentValue(_argMap, _argName));
+		ret.put(_upperArgName, super.getArgumentValue(_argMap, _upperArgName));
+		return ret;
+	}
+	
+	/**
+	 * Extract out the respective query keys, and values of both bounds
+	 **/
+	@Override
+	public Map<String, List<Object>> keyValuesMap(Map<String, List<Object>> mapToReturn) {
+		String key = _fieldName;
+		if (mapToReturn.get(key) == null) {
+			mapToReturn.put(key, new ArrayList<Object>());
+		}
+		mapToReturn.get(key).addAll(argumentValues(_argMap));
+		return mapToReturn;
+	}
+	
+}
@@ -3,9 +3,12 @@ package picoded.core.struct.query.condition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import picoded.core.struct.query.Query;
 import picoded.core.struct.query.QueryType;
+import picoded.core.struct.query.QueryUtils;
+import picoded.core.struct.query.internal.QueryCostModel;
 
 /**
  * Acts as the base for all conditional types,
@@ -16,7 +19,7 @@ import picoded.core.struct.query.QueryType;
  *
  * Base implmentation is equivalent as Equals
  **/
-public class CombinationBase implements Query {
+public class CombinationBase implements Query, Cloneable {
 	
 	//
 	// Constructor vars
@@ -110,6 +113,119 @@ public class CombinationBase implements Query {
 		return result;
 	}
 	
+	//
+	// Argument rebinding
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Returns a copy of the combination, and its children,
+	 * with the default argument map replaced.
+	 *
+	 * @param   the argument map to use as default
+	 *
+	 * @return  copy of the combination, bound to the given argument map
+	 **/
+	@Override
+	public Query bindArgumentMap(Map<String, Object> argMap) {
+		try {
+			CombinationBase ret = (CombinationBase) clone();
+			ret._argMap = argMap;
+			ret._children = new ArrayList<Query>(_children.size());
+			for (Query child : _children) {
+				ret._children.add(child.bindArgumentMap(argMap));
+			}
+			return ret;
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	//
+	// Query compilation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Compiles each of the children query into an array of predicates,
+	 * in their evaluation order (see QueryCostModel.evaluationOrder)
+	 *
+	 * @param   estimates of the query tree, shared across the whole compile
+	 *
+	 * @return  array of the compiled children
+	 **/
+	protected Predicate<Object>[] compileChildren(QueryCostModel.Estimates estimates) {
+		List<Query> order = QueryCostModel.evaluationOrder(this, estimates);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Predicate<Object>[] ret = new Predicate[order.size()];
+		for (int i = 0; i < ret.length; ++i) {
+			ret[i] = compileChild(order.get(i), estimates);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Compiles a single child query, against the argument map of this combination.
+	 * As the children are tested against the combination argument map.
+	 *
+	 * @param   child query to compile
+	 * @param   estimates of the query tree, shared across the whole compile
+	 *
+	 * @return  compiled child
+	 **/
+	protected Predicate<Object> compileChild(Query child, QueryCostModel.Estimates estimates) {
+		if (child.defaultArgumentMap() != _argMap
+			&& (child instanceof ConditionBase || child instanceof CombinationBase)) {
+			child = child.bindArgumentMap(_argMap);
+		}
+		
+		// Nested combinations are already normalized, as part of this combination
+		if (child instanceof CombinationBase) {
+			return ((CombinationBase) child).compileCombination(estimates);
+		}
+		return child.compile();
+	}
+	
+	/**
+	 * Compiles the query into a predicate, after normalizing the query tree
+	 * (see Query.normalize), if enabled via QueryUtils.setNormalizeOnCompile
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	@Override
+	public Predicate<Object> compile() {
+		Query query = QueryUtils.normalizeOnCompile() ? normalize() : this;
+		if (query instanceof CombinationBase) {
+			return ((CombinationBase) query).compileCombination(new QueryCostModel.Estimates());
+		}
+		return query.compile();
+	}
+	
+	/**
+	 * Compiles the combination into a predicate, of its compiled children
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   estimates of the query tree, shared across the whole compile
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	protected Predicate<Object> compileCombination(QueryCostModel.Estimates estimates) {
+		final Predicate<Object>[] childArr = compileChildren(estimates);
+		
+		// Blank combination is a failure
+		if (childArr.length == 0) {
+			return (t) -> false;
+		}
+		
+		return (t) -> {
+			for (Predicate<Object> child : childArr) {
+				if (!child.test(t)) {
+					return false; //breaks and return false on first failure
+				}
+			}
+			return true;
+		};
+	}
+	
 	//
 	// Public accessors
 	//--------------------------------------------------------------------
@@ -140,6 +256,14 @@ public class CombinationBase implements Query {
 		return _children;
 	}
 	
+	/**
+	 * Gets the default argument map, used to test all the children conditions
+	 **/
+	@Override
+	public Map<String, Object> defaultArgumentMap() {
+		return _argMap;
+	}
+	
 	//
 	// String handling
 	//--------------------------------------------------------------------
@@ -3,12 +3,14 @@ package picoded.core.struct.query.condition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
 
-import picoded.core.conv.NestedObjectFetch;
 import picoded.core.conv.GenericConvert;
 import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryProfile;
 import picoded.core.struct.query.QueryType;
-import picoded.core.struct.query.internal.QueryUtils;
+import picoded.core.struct.query.internal.FieldAccessor;
 
 /**
  * Acts as the base for all conditional types,
@@ -19,7 +21,7 @@ import picoded.core.struct.query.internal.QueryUtils;
  *
  * Base implmentation is equivalent as Equals
  **/
-public class ConditionBase implements Query {
+public class ConditionBase implements Query, Cloneable {
 	
 	//
 	// Constructor vars
@@ -37,6 +39,15 @@ public class ConditionBase implements Query {
 	 * The constructed argument map
 	 **/
 	protected Map<String, Object> _argMap = null;
+	/**
+	 * The field and argument accessors, resolved from their names
+	 **/
+	protected FieldAccessor _fieldAccessor = null;
+	protected FieldAccessor _argAccessor = null;
+	/**
+	 * The runtime profile stats, if profiling is enabled via QueryProfile
+	 **/
+	protected volatile QueryProfile.NodeStats _profileStats = null;
 	
 	//
 	// Constructor Setup
@@ -53,6 +64,8 @@ public class ConditionBase implements Query {
 		_fieldName = field;
 		_argName = argName;
 		_argMap = defaultArgMap;
+		_fieldAccessor = FieldAccessor.of(field);
+		_argAccessor = FieldAccessor.of(argName);
 	}
 	
 	//
@@ -71,7 +84,25 @@ public class ConditionBase implements Query {
 		if (argMap == null || argName == null) {
 			return null;
 		}
-		return NestedObjectFetch.fetchObject(argMap, argName, null);
+		FieldAccessor accessor = _argAccessor;
+		if (accessor == null || !argName.equals(accessor.path())) {
+			accessor = FieldAccessor.of(argName);
+		}
+		return accessor.fetch(argMap);
+	}
+	
+	/**
+	 * Gets the field accessor, of the current field name
+	 *
+	 * @return  The field accessor
+	 **/
+	protected FieldAccessor fieldAccessor() {
+		FieldAccessor ret = _fieldAccessor;
+		if (ret == null || !Objects.equals(ret.path(), _fieldName)) {
+			ret = FieldAccessor.of(_fieldName);
+			_fieldAccessor = ret;
+		}
+		return ret;
 	}
 	
 	/**
@@ -139,9 +170,8 @@ public class ConditionBase implements Query {
 			}
 		}
 		
-		//System.out.println("> "+ QueryUtils.getFieldValue(t, _fieldName) +" = "+argValue);
 		// Get the target value to test, and test it
-		return testValues(QueryUtils.getFieldValue(t, _fieldName), argValue);
+		return testValues(fieldAccessor().getFieldValue(t), argValue);
 	}
 	
 	//
@@ -157,7 +187,7 @@ public class ConditionBase implements Query {
 	 **/
 	@Override
 	public boolean test(Object t) {
-		return getAndTestFieldValue(t, _argMap);
+		return test(t, _argMap);
 	}
 	
 	/**
@@ -173,7 +203,131 @@ public class ConditionBase implements Query {
 	 **/
 	@Override
 	public boolean test(Object t, Map<String, Object> argMap) {
-		return getAndTestFieldValue(t, argMap);
+		QueryProfile.NodeStats stats = _profileStats;
+		if (stats == null) {
+			return getAndTestFieldValue(t, argMap);
+		}
+		
+		long start = System.nanoTime();
+		boolean result = getAndTestFieldValue(t, argMap);
+		stats.record(result, System.nanoTime() - start);
+		return result;
+	}
+	
+	//
+	// Argument rebinding
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Returns a copy of the condition, with the default argument map replaced.
+	 *
+	 * @param   the argument map to use as default
+	 *
+	 * @return  copy of the condition, bound to the given argument map
+	 **/
+	@Override
+	public Query bindArgumentMap(Map<String, Object> argMap) {
+		try {
+			ConditionBase ret = (ConditionBase) clone();
+			ret._argMap = argMap;
+			return ret;
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	//
+	// Query compilation
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * Such that any argument specific setup is done only once.
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		return (fieldValue) -> testValues(fieldValue, argValue);
+	}
+	
+	/**
+	 * Compiles the query into a predicate, with the field accessor resolved,
+	 * and the argument value bound from the default argument map.
+	 *
+	 * If profiling is enabled, the predicate records its runtime stats.
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	@Override
+	public Predicate<Object> compile() {
+		final Predicate<Object> fieldTest = compileFieldTest();
+		final QueryProfile.NodeStats stats = _profileStats;
+		if (stats == null) {
+			return fieldTest;
+		}
+		
+		return (t) -> {
+			long start = System.nanoTime();
+			boolean result = fieldTest.test(t);
+			stats.record(result, System.nanoTime() - start);
+			return result;
+		};
+	}
+	
+	/**
+	 * Compiles the field value fetching, and its value test, into a predicate
+	 *
+	 * @return  compiled predicate, equivalent to test(Object) without profiling
+	 **/
+	@SuppressWarnings("unchecked")
+	protected Predicate<Object> compileFieldTest() {
+		
+		// Argument value, and its compiled test
+		Predicate<Object> valueTest = compileValueTest(getArgumentValue(_argMap, _argName));
+		
+		// Self refrencing field
+		if (_fieldName == null || "this".equalsIgnoreCase(_fieldName)) {
+			return valueTest;
+		}
+		
+		// Wildcard search, across all keys
+		if ("_key".equalsIgnoreCase(_fieldName)) {
+			return (t) -> {
+				if (t instanceof Map) {
+					for (Object key : ((Map<Object, Object>) t).keySet()) {
+						if (valueTest.test(key)) {
+							return true;
+						}
+					}
+					return false;
+				}
+				return valueTest.test(null);
+			};
+		}
+		
+		// Wildcard search, across all values
+		if ("_val".equalsIgnoreCase(_fieldName)) {
+			return (t) -> {
+				if (t instanceof Map) {
+					for (Object val : ((Map<Object, Object>) t).values()) {
+						if (valueTest.test(val)) {
+							return true;
+						}
+					}
+					return false;
+				}
+				return valueTest.test(null);
+			};
+		}
+		
+		// Standard field value fetching
+		final String field = _fieldName;
+		return (t) -> valueTest.test((t instanceof Map) ? ((Map<Object, Object>) t).get(field)
+			: null);
 	}
 	
 	//
@@ -222,6 +376,21 @@ public class ConditionBase implements Query {
 		return _argMap;
 	}
 	
+	/**
+	 * Gets the runtime profile stats, null if profiling is not enabled
+	 **/
+	public QueryProfile.NodeStats getProfileStats() {
+		return _profileStats;
+	}
+	
+	/**
+	 * Sets the runtime profile stats, use null to disable profiling.
+	 * This is used internally by QueryProfile.attach(...)
+	 **/
+	public void setProfileStats(QueryProfile.NodeStats stats) {
+		_profileStats = stats;
+	}
+	
 	//
 	// String handling
 	//--------------------------------------------------------------------
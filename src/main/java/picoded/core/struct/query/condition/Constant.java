@@ -0,0 +1,135 @@
+package picoded.core.struct.query.condition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryType;
+
+/**
+ * Constant TRUE / FALSE query, which ignores the value tested.
+ *
+ * This is produced by the query normalization (see Query.normalize), when a query
+ * is known to always pass or fail, regardless of the value. Such as a range condition
+ * against a null argument, or contradicting range conditions.
+ **/
+public class Constant implements Query {
+	
+	//
+	// Constant instances
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Query which always passes
+	 **/
+	public static final Constant TRUE = new Constant(true);
+	
+	/**
+	 * Query which always fails
+	 **/
+	public static final Constant FALSE = new Constant(false);
+	
+	/**
+	 * Gets the respective constant
+	 *
+	 * @param   value of the constant
+	 *
+	 * @return  TRUE or FALSE constant
+	 **/
+	public static Constant of(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+	
+	/**
+	 * The constant value
+	 **/
+	protected final boolean _value;
+	
+	/**
+	 * Constructor, use the TRUE / FALSE instances instead
+	 **/
+	protected Constant(boolean value) {
+		_value = value;
+	}
+	
+	//
+	// Public test functions
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  the constant value, regardless of the object
+	 **/
+	@Override
+	public boolean test(Object t) {
+		return _value;
+	}
+	
+	/**
+	 * @return  the constant value, regardless of the object
+	 **/
+	@Override
+	public boolean test(Object t, Map<String, Object> argMap) {
+		return _value;
+	}
+	
+	/**
+	 * Constants have no arguments, and are returned as it is
+	 **/
+	@Override
+	public Query bindArgumentMap(Map<String, Object> argMap) {
+		return this;
+	}
+	
+	/**
+	 * @return  compiled predicate, of the constant value
+	 **/
+	@Override
+	public Predicate<Object> compile() {
+		return _value ? (t) -> true : (t) -> false;
+	}
+	
+	//
+	// Public accessors
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  the constant value
+	 **/
+	public boolean value() {
+		return _value;
+	}
+	
+	/**
+	 * Gets the query type
+	 **/
+	@Override
+	public QueryType type() {
+		return _value ? QueryType.TRUE : QueryType.FALSE;
+	}
+	
+	/**
+	 * The operator symbol support
+	 **/
+	@Override
+	public String operatorSymbol() {
+		return _value ? "TRUE" : "FALSE";
+	}
+	
+	/**
+	 * The query string
+	 **/
+	@Override
+	public String toString() {
+		return operatorSymbol();
+	}
+	
+	/**
+	 * Constants have no query keys, and values
+	 **/
+	@Override
+	public Map<String, List<Object>> keyValuesMap(Map<String, List<Object>> mapToReturn) {
+		return mapToReturn;
+	}
+	
+}
@@ -1,6 +1,9 @@
 package picoded.core.struct.query.condition;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 import picoded.core.struct.query.CompareUtils;
 import picoded.core.struct.query.QueryType;
@@ -43,6 +46,26 @@ public class Equals extends ConditionBase {
 		return CompareUtils.dynamicCompare(fieldValue, argValue) == 0;
 	}
 	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * With the argument type handling resolved once, via CompareUtils.dynamicCompareTo
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		// String arguments, via the hashed lookup (avoiding the collator for plain strings)
+		if (argValue instanceof String) {
+			return CompareUtils.dynamicEqualsAny(Collections.singletonList(argValue));
+		}
+		final ToIntFunction<Object> compareTo = CompareUtils.dynamicCompareTo(argValue);
+		return (fieldValue) -> compareTo.applyAsInt(fieldValue) == 0;
+	}
+	
 	/**
 	 * The operator symbol support
 	 *
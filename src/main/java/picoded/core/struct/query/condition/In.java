@@ -0,0 +1,274 @@
+package picoded.core.struct.query.condition;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import picoded.core.struct.query.CompareUtils;
+import picoded.core.struct.query.QueryType;
+
+/**
+ * IN condition, which passes if the field value is equal to any of the argument values.
+ * This is equivalent to an OR of Equals conditions, with a hashed lookup of the values when compiled.
+ *
+ * Each argument can either be a single value, or a collection (or array) of values,
+ * such as `id IN (?, ?, ?)` or `id IN ?` with a list argument.
+ **/
+public class In extends ConditionBase {
+	
+	//
+	// Constructor vars
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The constructed argument names, in order
+	 **/
+	protected List<String> _argNames = null;
+	
+	//
+	// Constructor Setup
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The constructor with the field name, and default arguments
+	 *
+	 * @param   default field to test
+	 * @param   default argument names to test against
+	 * @param   default argument map to get test value
+	 **/
+	public In(String field, List<String> argNames, Map<String, Object> defaultArgMap) {
+		super(field, (argNames != null && argNames.size() > 0) ? argNames.get(0) : null,
+			defaultArgMap);
+		if (argNames == null || argNames.isEmpty()) {
+			throw new RuntimeException("Missing IN argument names, for field: " + field);
+		}
+		_argNames = Collections.unmodifiableList(new ArrayList<String>(argNames));
+	}
+	
+	/**
+	 * The constructor with the field name, and a single (collection) argument
+	 *
+	 * @param   default field to test
+	 * @param   default argument name to test against
+	 * @param   default argument map to get test value
+	 **/
+	public In(String field, String argName, Map<String, Object> defaultArgMap) {
+		this(field, Collections.singletonList(argName), defaultArgMap);
+	}
+	
+	//
+	// Argument values
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Gets all the argument values to test, with any collection (or array) values flattened
+	 *
+	 * @param   map to extract out the argument values
+	 *
+	 * @return  list of argument values
+	 **/
+	public List<Object> argumentValues(Map<String, Object> argMap) {
+		List<Object> ret = new ArrayList<Object>();
+		for (String name : _argNames) {
+			Object value = super.getArgumentValue(argMap, name);
+			if (isValueList(value)) {
+				ret.addAll(valueList(value));
+			} else {
+				ret.add(value);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Gets the arg value to test, which is the list of all argument values
+	 *
+	 * @param   map to extract out the argument values
+	 * @param   argument name (ignored, as all the arguments are used)
+	 *
+	 * @return  list of argument values
+	 **/
+	@Override
+	protected Object getArgumentValue(Map<String, Object> argMap, String argName) {
+		return argumentValues(argMap);
+	}
+	
+	/**
+	 * Indicates if the argument value, is a collection (or array) of values
+	 **/
+	protected static boolean isValueList(Object value) {
+		return value instanceof Collection || (value != null && value.getClass().isArray());
+	}
+	
+	/**
+	 * Collection (or array) argument value, as a list
+	 **/
+	protected static List<Object> valueList(Object value) {
+		if (value instanceof Collection) {
+			return new ArrayList<Object>((Collection<?>) value);
+		}
+		int length = Array.getLength(value);
+		List<Object> ret = new ArrayList<Object>(length);
+		for (int i = 0; i < length; ++i) {
+			ret.add(Array.get(value, i));
+		}
+		return ret;
+	}
+	
+	//
+	// Required overwrites
+	//--------------------------------------------------------------------
+	
+	/**
+	 * To test against the specific value, this is the actual
+	 * argument which is being used. After fetching both
+	 * the field and argument value
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the object to test against
+	 * @param   the argument actual value (list of values)
+	 *
+	 * @return  boolean indicating success or failure
+	 **/
+	@Override
+	protected boolean testValues(Object fieldValue, Object argValue) {
+		for (Object value : (List<?>) argValue) {
+			if (CompareUtils.dynamicCompare(fieldValue, value) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * With the argument values hashed once, via CompareUtils.dynamicEqualsAny
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value (list of values)
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		List<?> values = (List<?>) argValue;
+		if (values.isEmpty()) {
+			return (fieldValue) -> false;
+		}
+		return CompareUtils.dynamicEqualsAny(values);
+	}
+	
+	/**
+	 * The operator symbol support
+	 *
+	 * [to override on extension]
+	 **/
+	@Override
+	public String operatorSymbol() {
+		return "IN";
+	}
+	
+	/**
+	 * Gets the query type
+	 *
+	 * [to override on extension]
+	 **/
+	@Override
+	public QueryType type() {
+		return QueryType.IN;
+	}
+	
+	/**
+	 * Gets all the argument names
+	 **/
+	public List<String> argumentNames() {
+		return _argNames;
+	}
+	
+	/**
+	 * Gets the default argument value, as the list of argument values
+	 **/
+	@Override
+	public Object defaultArgumentValue() {
+		return argumentValues(_argMap);
+	}
+	
+	//
+	// String handling, and argument extraction
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The query string, where a collection argument is repeated for each of its values.
+	 * Such that toSqlString gives a placeholder for each value of queryArgumentsList
+	 **/
+	@Override
+	public String toString() {
+		StringBuilder ret = new StringBuilder();
+		ret.append("\"").append(fieldName()).append("\" ").append(operatorSymbol()).append(" (");
+		boolean first = true;
+		for (String name : _argNames) {
+			Object value = super.getArgumentValue(_argMap, name);
+			int count = isValueList(value) ? Math.max(1, valueList(value).size()) : 1;
+			for (int i = 0; i < count; ++i) {
+				if (!first) {
+					ret.append(", ");
+				}
+				ret.append(":").append(name);
+				first = false;
+			}
+		}
+		return ret.append(")").toString();
+	}
+	
+	/**
+	 * Returns the argument values used, with the collection arguments flattened.
+	 * Where a blank collection argument is a single null value.
+	 **/
+	@Override
+	public List<Object> queryArgumentsList(List<Object> ret) {
+		for (String name : _argNames) {
+			Object value = super.getArgumentValue(_argMap, name);
+			if (!isValueList(value)) {
+				ret.add(value);
+				continue;
+			}
+			List<Object> values = valueList(value);
+			if (values.isEmpty()) {
+				ret.add(null);
+			}
+			ret.addAll(values);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns all query arguments used, as a map
+	 **/
+	@Override
+	public Map<String, Object> queryArgumentsMap(Map<String, Object> ret) {
+		for (String name : _argNames) {
+			ret.put(name, super.getArgumentValue(_argMap, name));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Extract out the respective query keys, and (flattened) values
+	 **/
+	@Override
+	public Map<String, List<Object>> keyValuesMap(Map<String, List<Object>> mapToReturn) {
+		String key = _fieldName;
+		if (mapToReturn.get(key) == null) {
+			mapToReturn.put(key, new ArrayList<Object>());
+		}
+		mapToReturn.get(key).addAll(argumentValues(_argMap));
+		return mapToReturn;
+	}
+	
+}
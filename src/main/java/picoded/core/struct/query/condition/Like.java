@@ -1,9 +1,10 @@
 package picoded.core.struct.query.condition;
 
 import java.util.Map;
+import java.util.function.Predicate;
 
-import picoded.core.struct.query.CompareUtils;
 import picoded.core.struct.query.QueryType;
+import picoded.core.struct.query.internal.LikePattern;
 
 public class Like extends ConditionBase {
 	
@@ -22,6 +23,32 @@ public class Like extends ConditionBase {
 		super(field, argName, defaultArgMap);
 	}
 	
+	//
+	// Compiled pattern handling
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Last compiled pattern, reused as long as the argument string is unchanged
+	 **/
+	protected volatile LikePattern _likePattern = null;
+	
+	/**
+	 * Gets the compiled pattern for the argument value, reusing the last compiled pattern if possible
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  the compiled pattern
+	 **/
+	protected LikePattern likePattern(Object argValue) {
+		String patternStr = argValue.toString();
+		LikePattern ret = _likePattern;
+		if (ret == null || !ret.pattern().equals(patternStr)) {
+			ret = LikePattern.compile(patternStr);
+			_likePattern = ret;
+		}
+		return ret;
+	}
+	
 	//
 	// Required overwrites
 	//--------------------------------------------------------------------
@@ -43,10 +70,28 @@ public class Like extends ConditionBase {
 		if (argValue == null || fieldValue == null) {
 			return false;
 		} //else {
-		return CompareUtils.stringLikeCompare(fieldValue, argValue) == 0;
+		return likePattern(argValue).matches(fieldValue.toString());
 		//}
 	}
 	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		if (argValue == null) {
+			return (fieldValue) -> false;
+		}
+		LikePattern pattern = likePattern(argValue);
+		return (fieldValue) -> fieldValue != null && pattern.matches(fieldValue.toString());
+	}
+	
 	/**
 	 * The operator symbol support
 	 *
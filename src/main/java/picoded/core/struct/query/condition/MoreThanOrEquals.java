@@ -1,6 +1,8 @@
 package picoded.core.struct.query.condition;
 
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 import picoded.core.struct.query.CompareUtils;
 import picoded.core.struct.query.QueryType;
@@ -46,6 +48,25 @@ public class MoreThanOrEquals extends ConditionBase {
 		//}
 	}
 	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * With the argument type handling resolved once, via CompareUtils.dynamicCompareTo
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		if (argValue == null) {
+			return (fieldValue) -> false;
+		}
+		final ToIntFunction<Object> compareTo = CompareUtils.dynamicCompareTo(argValue);
+		return (fieldValue) -> fieldValue != null && compareTo.applyAsInt(fieldValue) >= 0;
+	}
+	
 	/**
 	 * The operator symbol support
 	 *
@@ -1,7 +1,9 @@
 package picoded.core.struct.query.condition;
 
 import java.util.*;
+import java.util.function.Predicate;
 import picoded.core.struct.query.*;
+import picoded.core.struct.query.internal.QueryCostModel;
 
 public class Not extends CombinationBase {
 	
@@ -51,6 +53,34 @@ public class Not extends CombinationBase {
 		return result;
 	}
 	
+	/**
+	 * Compiles the combination into a predicate, of its compiled children
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   estimates of the query tree, shared across the whole compile
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	@Override
+	protected Predicate<Object> compileCombination(QueryCostModel.Estimates estimates) {
+		final Predicate<Object>[] childArr = compileChildren(estimates);
+		
+		// Blank combination is a failure
+		if (childArr.length == 0) {
+			return (t) -> false;
+		}
+		
+		return (t) -> {
+			for (Predicate<Object> child : childArr) {
+				if (child.test(t)) {
+					return false; //breaks and return false on first failure
+				}
+			}
+			return true;
+		};
+	}
+	
 	/**
 	 * Gets the query type
 	 *
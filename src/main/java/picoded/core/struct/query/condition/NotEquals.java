@@ -1,6 +1,8 @@
 package picoded.core.struct.query.condition;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import picoded.core.struct.query.*;
 
 public class NotEquals extends ConditionBase {
@@ -40,6 +42,28 @@ public class NotEquals extends ConditionBase {
 		return CompareUtils.dynamicCompare(fieldValue, argValue) != 0;
 	}
 	
+	/**
+	 * Compiles the testValues function, against a fixed argument value.
+	 * With the argument type handling resolved once, via CompareUtils.dynamicCompareTo
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   the argument actual value
+	 *
+	 * @return  predicate, which tests the field value
+	 **/
+	@Override
+	protected Predicate<Object> compileValueTest(Object argValue) {
+		// String arguments, via the hashed lookup (avoiding the collator for plain strings)
+		if (argValue instanceof String) {
+			final Predicate<Object> equalsTo = CompareUtils.dynamicEqualsAny(Collections
+				.singletonList(argValue));
+			return (fieldValue) -> !equalsTo.test(fieldValue);
+		}
+		final ToIntFunction<Object> compareTo = CompareUtils.dynamicCompareTo(argValue);
+		return (fieldValue) -> compareTo.applyAsInt(fieldValue) != 0;
+	}
+	
 	/**
 	 * The operator symbol support
 	 *
@@ -1,7 +1,9 @@
 package picoded.core.struct.query.condition;
 
 import java.util.*;
+import java.util.function.Predicate;
 import picoded.core.struct.query.*;
+import picoded.core.struct.query.internal.QueryCostModel;
 
 public class Or extends CombinationBase {
 	
@@ -61,6 +63,28 @@ public class Or extends CombinationBase {
 		return false;
 	}
 	
+	/**
+	 * Compiles the combination into a predicate, of its compiled children
+	 *
+	 * [to override on extension]
+	 *
+	 * @param   estimates of the query tree, shared across the whole compile
+	 *
+	 * @return  compiled predicate, equivalent to test(Object)
+	 **/
+	@Override
+	protected Predicate<Object> compileCombination(QueryCostModel.Estimates estimates) {
+		final Predicate<Object>[] childArr = compileChildren(estimates);
+		return (t) -> {
+			for (Predicate<Object> child : childArr) {
+				if (child.test(t)) {
+					return true; //succeds on first success
+				}
+			}
+			return false;
+		};
+	}
+	
 	/**
 	 * Gets the query type
 	 *
@@ -2,8 +2,10 @@ package picoded.core.struct.query.internal;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import picoded.core.conv.GenericConvert;
 import picoded.core.struct.MutablePair;
@@ -40,6 +42,8 @@ public class AggregationUtils {
 		map.put("min", new Min());
 		map.put("sum", new Sum());
 		map.put("avg", new Avg());
+		map.put("countDistinct", new CountDistinct());
+		map.put("percentile", new Percentile());
 		
 		// Save the implementation map for reuse
 		_mapReduceBaseImplementation = map;
@@ -79,15 +83,48 @@ public class AggregationUtils {
 					+ funcNameAndField);
 			}
 			
-			// 4. Store the aggregation info
+			// 4. Store the aggregation info (without any additional arguments)
 			funcNames[i] = funcNameAndField.substring(0, leftBracket);
 			fieldNames[i] = funcNameAndField.substring(leftBracket + 1, rightBracket);
+			int comma = fieldNames[i].indexOf(',');
+			if (comma >= 0) {
+				fieldNames[i] = fieldNames[i].substring(0, comma).trim();
+			}
 		}
 		
 		// 5. Return the full func name / field names split
 		return new MutablePair<String[], String[]>(funcNames, fieldNames);
 	}
 	
+	/**
+	 * Process in an array of aggregation func and field string, and extract the additional
+	 * arguments after the field name, such as the "0.99" in "percentile(field, 0.99)"
+	 * 
+	 * @param aggregationArray  of function and field terms to compute on
+	 * 
+	 * @return  array of the additional arguments for each term, null for terms without arguments
+	 */
+	public static String[][] extractAggregrationArguments(String[] aggregationArray) {
+		String[][] ret = new String[aggregationArray.length][];
+		for (int i = 0; i < aggregationArray.length; ++i) {
+			// Get the bracket contents (format is validated by extractAggregrationInfo)
+			String funcNameAndField = aggregationArray[i].trim();
+			String param = funcNameAndField.substring(funcNameAndField.indexOf('(') + 1,
+				funcNameAndField.lastIndexOf(')'));
+			
+			// Split out the arguments after the field name
+			int comma = param.indexOf(',');
+			if (comma >= 0) {
+				String[] args = param.substring(comma + 1).split(",");
+				for (int a = 0; a < args.length; ++a) {
+					args[a] = args[a].trim();
+				}
+				ret[i] = args;
+			}
+		}
+		return ret;
+	}
+	
 	/**
 	 * Given a function name array, return an array of the respective MapReduceBase implementation
 	 * 
@@ -98,6 +135,36 @@ public class AggregationUtils {
 	 */
 	public static MapReduceBase[] prepareMapReduceBaseArray(
 		Map<String, MapReduceBase> implmentationMap, String[] funcNames) {
+		return prepareMapReduceBaseArray(implmentationMap, funcNames, false);
+	}
+	
+	/**
+	 * Given a function name array, return an array of the respective MapReduceBase implementation
+	 * 
+	 * @param  implmentationMap   mapReduceBase implmentations to use
+	 * @param  funcNames          array of function names to use
+	 * @param  primitiveMode      to use primitive accumulation (where supported)
+	 * 
+	 * @return  MapReduceBase[] implmentation of function names
+	 */
+	public static MapReduceBase[] prepareMapReduceBaseArray(
+		Map<String, MapReduceBase> implmentationMap, String[] funcNames, boolean primitiveMode) {
+		return prepareMapReduceBaseArray(implmentationMap, funcNames, null, primitiveMode);
+	}
+	
+	/**
+	 * Given a function name array, return an array of the respective MapReduceBase implementation
+	 * 
+	 * @param  implmentationMap   mapReduceBase implmentations to use
+	 * @param  funcNames          array of function names to use
+	 * @param  funcArguments      additional arguments of each function, can be null
+	 * @param  primitiveMode      to use primitive accumulation (where supported)
+	 * 
+	 * @return  MapReduceBase[] implmentation of function names
+	 */
+	public static MapReduceBase[] prepareMapReduceBaseArray(
+		Map<String, MapReduceBase> implmentationMap, String[] funcNames, String[][] funcArguments,
+		boolean primitiveMode) {
 		// 1. get expected result length, and initialize the result array
 		int len = funcNames.length;
 		MapReduceBase[] res = new MapReduceBase[len];
@@ -114,6 +181,8 @@ public class AggregationUtils {
 			
 			// 4. Initialize new instance of the MapReduceBase implmentation
 			res[i] = base.newInstance();
+			res[i].setPrimitiveMode(primitiveMode);
+			res[i].setArguments((funcArguments == null) ? null : funcArguments[i]);
 		}
 		
 		// 4. Return the initialized array
@@ -132,12 +201,103 @@ public class AggregationUtils {
 	 */
 	public static BigDecimal[] computeMapReduceBase(MapReduceBase[] mapreduceArray,
 		String[] fieldNames, Collection<Object> dataSet) {
+		return computeMapReduceBase(mapreduceArray, fieldNames, dataSet.iterator(), null);
+	}
+	
+	/**
+	 * Given a dataset iterator, and the MapReduceBase array,
+	 * Compute and return the BigDecimal result in a single pass.
+	 * 
+	 * This does not hold on to any of the iterated values, and can be used on
+	 * datasets (such as files or cursors) which does not fit in memory.
+	 * 
+	 * @param  mapreduceArray to use and perform computaton with
+	 * @param  fieldNames     fieldNames to the respective mapreduceArray, to extract values from
+	 * @param  dataSet        dataset iterator to extract values from to compute
+	 * @param  filter         to skip values which does not pass, null to include all values
+	 * 
+	 * @return  BigDecimal array of results
+	 */
+	public static BigDecimal[] computeMapReduceBase(MapReduceBase[] mapreduceArray,
+		String[] fieldNames, Iterator<?> dataSet, Predicate<Object> filter) {
+		long rowCount = mapMapReduceBase(mapreduceArray, fieldNames, dataSet, filter);
+		return reduceMapReduceBase(mapreduceArray, rowCount);
+	}
+	
+	/**
+	 * Given a dataset iterator, and the MapReduceBase array,
+	 * map all the values (which passes the filter) without reducing the result.
+	 * 
+	 * @param  mapreduceArray to use and perform computaton with
+	 * @param  fieldNames     fieldNames to the respective mapreduceArray, to extract values from
+	 * @param  dataSet        dataset iterator to extract values from to compute
+	 * @param  filter         to skip values which does not pass, null to include all values
+	 * 
+	 * @return  number of values mapped
+	 */
+	public static long mapMapReduceBase(MapReduceBase[] mapreduceArray, String[] fieldNames,
+		Iterator<?> dataSet, Predicate<Object> filter) {
+		long rowCount = 0;
+		
+		// Iterate the dataset, and the MapReduceBase
+		while (dataSet.hasNext()) {
+			Object mapDataObj = dataSet.next();
+			if (filter != null && !filter.test(mapDataObj)) {
+				continue;
+			}
+			++rowCount;
+			mapMapReduceBaseRow(mapreduceArray, fieldNames, GenericConvert.toStringMap(mapDataObj));
+		}
+		return rowCount;
+	}
+	
+	/**
+	 * Given a single row of data, and the MapReduceBase array,
+	 * map the row values without reducing the result.
+	 * 
+	 * @param  mapreduceArray to use and perform computaton with
+	 * @param  fieldNames     fieldNames to the respective mapreduceArray, to extract values from
+	 * @param  mapData        row of data to extract values from to compute
+	 */
+	public static void mapMapReduceBaseRow(MapReduceBase[] mapreduceArray, String[] fieldNames,
+		Map<String, Object> mapData) {
+		int len = mapreduceArray.length;
+		for (int i = 0; i < len; ++i) {
+			mapreduceArray[i].map(mapData, fieldNames[i]);
+		}
+	}
+	
+	/**
+	 * Combines the other MapReduceBase array partial results, into the target array
+	 * 
+	 * @param  target  MapReduceBase array to combine into
+	 * @param  other   MapReduceBase array to combine from
+	 */
+	public static void combineMapReduceBase(MapReduceBase[] target, MapReduceBase[] other) {
+		if (target.length != other.length) {
+			throw new RuntimeException("Unable to combine MapReduceBase array of different length : "
+				+ target.length + " / " + other.length);
+		}
+		for (int i = 0; i < target.length; ++i) {
+			target[i].combine(other[i]);
+		}
+	}
+	
+	/**
+	 * Reduce the MapReduceBase array, and return the BigDecimal result
+	 * 
+	 * @param  mapreduceArray to reduce the result from
+	 * @param  rowCount       number of values mapped, 0 returns all zeros
+	 * 
+	 * @return  BigDecimal array of results
+	 */
+	public static BigDecimal[] reduceMapReduceBase(MapReduceBase[] mapreduceArray, long rowCount) {
 		// 1. Get the expected result length, and initialize the result array
 		int len = mapreduceArray.length;
 		BigDecimal[] ret = new BigDecimal[len];
 		
 		// There is no data at all
-		if (dataSet.size() == 0) {
+		if (rowCount <= 0) {
 			// set all of ret to be 0
 			for (int index = 0; index < ret.length; index++) {
 				ret[index] = new BigDecimal(0);
@@ -145,21 +305,13 @@ public class AggregationUtils {
 			return ret;
 		}
 		
-		// 2. Iterate the dataset, and the MapReduceBase
-		for (Object mapDataObj : dataSet) {
-			Map<String, Object> mapData = GenericConvert.toStringMap(mapDataObj);
-			for (int i = 0; i < len; ++i) {
-				mapreduceArray[i].map(mapData, fieldNames[i]);
-			}
-		}
-		
-		// 3. reduce out the result for each mapreduce implmentation
+		// 2. reduce out the result for each mapreduce implmentation
 		//    into the resulting array
 		for (int i = 0; i < len; ++i) {
 			ret[i] = mapreduceArray[i].reduce();
 		}
 		
-		// 4. return the array of BigDecimal's
+		// 3. return the array of BigDecimal's
 		return ret;
 	}
 }
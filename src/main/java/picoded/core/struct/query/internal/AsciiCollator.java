@@ -0,0 +1,288 @@
+package picoded.core.struct.query.internal;
+
+import java.text.CollationElementIterator;
+import java.text.Collator;
+import java.text.RuleBasedCollator;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Table based string comparision, which gives the same result as the english RuleBasedCollator
+ * (used by CompareUtils for string comparision), for strings consisting of only ASCII characters.
+ *
+ * RuleBasedCollator steps through the collation elements of both strings, via
+ * CollationElementIterator (for each comparision), and is synchronized on the collator.
+ * As every ASCII character maps to a single collation element (without contractions),
+ * the elements are looked up from a table, with the same comparision steps done inline.
+ *
+ * Strings with any other character (or if the table validation fails), returns UNSUPPORTED,
+ * where the caller is expected to fallback to the collator.
+ *
+ * In addition, "plain" strings (without any ignorable control characters) are only equal
+ * to another plain string, if both strings are identical. Which allows hashed equality lookups.
+ **/
+public class AsciiCollator {
+	
+	protected AsciiCollator() {
+		throw new IllegalAccessError("Utility class");
+	}
+	
+	//--------------------------------------------------------------------
+	// Collation element table
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Result for strings which is not supported by the table, to be compared via the collator
+	 **/
+	public static final int UNSUPPORTED = Integer.MIN_VALUE;
+	
+	/**
+	 * Number of characters covered by the table
+	 **/
+	protected static final int TABLE_SIZE = 128;
+	
+	/**
+	 * Collation element of each ASCII character, or -1 if its not supported
+	 **/
+	protected static final int[] elementTable = buildElementTable();
+	
+	/**
+	 * Indicates if the ASCII character is plain, where it has a unique collation element
+	 * that is not ignorable (with either a primary or secondary order)
+	 **/
+	protected static final boolean[] plainTable = buildPlainTable(elementTable);
+	
+	/**
+	 * Builds the collation element table, from the english RuleBasedCollator
+	 *
+	 * Each character needs to have exactly 1 collation element, and every pair of characters
+	 * needs to give the same pair of elements (no contractions). Else the table is not used.
+	 **/
+	protected static int[] buildElementTable() {
+		int[] ret = new int[TABLE_SIZE];
+		Collator base = Collator.getInstance(Locale.ENGLISH);
+		if (!(base instanceof RuleBasedCollator) || base.getStrength() != Collator.TERTIARY) {
+			Arrays.fill(ret, -1);
+			return ret;
+		}
+		RuleBasedCollator collator = (RuleBasedCollator) base;
+		
+		// Single character elements
+		for (int c = 0; c < TABLE_SIZE; ++c) {
+			int[] elements = collationElements(collator, String.valueOf((char) c));
+			ret[c] = (elements.length == 1 && elements[0] >= 0) ? elements[0] : -1;
+		}
+		
+		// Validate that there are no contractions, between the characters
+		for (int a = 0; a < TABLE_SIZE; ++a) {
+			for (int b = 0; b < TABLE_SIZE; ++b) {
+				if (ret[a] < 0 || ret[b] < 0) {
+					continue;
+				}
+				int[] elements = collationElements(collator, new String(new char[] { (char) a,
+					(char) b }));
+				if (elements.length != 2 || elements[0] != ret[a] || elements[1] != ret[b]) {
+					Arrays.fill(ret, -1);
+					return ret;
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Builds the plain character table, from the collation element table
+	 **/
+	protected static boolean[] buildPlainTable(int[] elements) {
+		boolean[] ret = new boolean[TABLE_SIZE];
+		for (int c = 0; c < TABLE_SIZE; ++c) {
+			int element = elements[c];
+			ret[c] = element >= 0 && (CollationElementIterator.primaryOrder(element) != 0
+				|| CollationElementIterator.secondaryOrder(element) != 0);
+			for (int o = 0; o < TABLE_SIZE && ret[c]; ++o) {
+				ret[c] = (o == c || elements[o] != element);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * All the collation elements of the string
+	 **/
+	protected static int[] collationElements(RuleBasedCollator collator, String str) {
+		CollationElementIterator iterator = collator.getCollationElementIterator(str);
+		int[] ret = new int[str.length() * 2 + 2];
+		int len = 0;
+		int element;
+		while ((element = iterator.next()) != CollationElementIterator.NULLORDER) {
+			if (len >= ret.length) {
+				return new int[0];
+			}
+			ret[len++] = element;
+		}
+		return Arrays.copyOf(ret, len);
+	}
+	
+	/**
+	 * Indicates if all characters of the string is supported by the table
+	 **/
+	public static boolean isSupported(String str) {
+		for (int i = 0; i < str.length(); ++i) {
+			char c = str.charAt(i);
+			if (c >= TABLE_SIZE || elementTable[c] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Indicates if the string only consist of plain characters. Where two plain strings
+	 * are only equal via the collator (compare == 0), if both strings are identical.
+	 **/
+	public static boolean isPlain(String str) {
+		for (int i = 0; i < str.length(); ++i) {
+			char c = str.charAt(i);
+			if (c >= TABLE_SIZE || !plainTable[c]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//--------------------------------------------------------------------
+	// Comparision
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Compares two non null strings, with the same result as the english RuleBasedCollator
+	 *
+	 * @param source - the first string to be compared.
+	 * @param target - the second string to be compared.
+	 *
+	 * @return -1, 0, or 1 as the first string is less than, equal to, or greater than the second.
+	 *         UNSUPPORTED if either string has any character not covered by the table
+	 **/
+	public static int compare(String source, String target) {
+		if (!isSupported(source) || !isSupported(target)) {
+			return UNSUPPORTED;
+		}
+		return compareSupported(source, target);
+	}
+	
+	/**
+	 * Compares two strings, which is already checked via isSupported, with the same result
+	 * as the english RuleBasedCollator
+	 *
+	 * @param source - the first string to be compared.
+	 * @param target - the second string to be compared.
+	 *
+	 * @return -1, 0, or 1 as the first string is less than, equal to, or greater than the second.
+	 **/
+	public static int compareSupported(String source, String target) {
+		// Follows the RuleBasedCollator.compare steps, at tertiary strength (without french secondary)
+		// where the secondary / tertiary differences are only used if there is no primary difference
+		int sLen = source.length();
+		int tLen = target.length();
+		int sPos = 0;
+		int tPos = 0;
+		int sOrder = 0;
+		int tOrder = 0;
+		int result = 0;
+		boolean checkSecTer = true;
+		boolean checkTertiary = true;
+		boolean gets = true;
+		boolean gett = true;
+		
+		while (true) {
+			// Next element of each string, unless its skipped
+			if (gets) {
+				sOrder = (sPos < sLen) ? elementTable[source.charAt(sPos++)] : -1;
+			} else {
+				gets = true;
+			}
+			if (gett) {
+				tOrder = (tPos < tLen) ? elementTable[target.charAt(tPos++)] : -1;
+			} else {
+				gett = true;
+			}
+			if (sOrder < 0 || tOrder < 0) {
+				break;
+			}
+			if (sOrder == tOrder) {
+				continue;
+			}
+			
+			int pSOrder = CollationElementIterator.primaryOrder(sOrder);
+			int pTOrder = CollationElementIterator.primaryOrder(tOrder);
+			if (pSOrder != pTOrder) {
+				// Fully ignorable elements are skipped
+				if (sOrder == 0) {
+					gett = false;
+					continue;
+				}
+				if (tOrder == 0) {
+					gets = false;
+					continue;
+				}
+				
+				// Primary ignorable elements, are a secondary difference
+				if (pSOrder == 0) {
+					if (checkSecTer) {
+						result = 1;
+						checkSecTer = false;
+					}
+					gett = false;
+				} else if (pTOrder == 0) {
+					if (checkSecTer) {
+						result = -1;
+						checkSecTer = false;
+					}
+					gets = false;
+				} else {
+					// Primary difference
+					return (pSOrder < pTOrder) ? -1 : 1;
+				}
+			} else if (checkSecTer) {
+				// Secondary, then tertiary difference
+				short secSOrder = CollationElementIterator.secondaryOrder(sOrder);
+				short secTOrder = CollationElementIterator.secondaryOrder(tOrder);
+				if (secSOrder != secTOrder) {
+					result = (secSOrder < secTOrder) ? -1 : 1;
+					checkSecTer = false;
+				} else if (checkTertiary) {
+					short terSOrder = CollationElementIterator.tertiaryOrder(sOrder);
+					short terTOrder = CollationElementIterator.tertiaryOrder(tOrder);
+					if (terSOrder != terTOrder) {
+						result = (terSOrder < terTOrder) ? -1 : 1;
+						checkTertiary = false;
+					}
+				}
+			}
+		}
+		
+		// Remaining elements of the longer string
+		if (sOrder >= 0) {
+			do {
+				if (CollationElementIterator.primaryOrder(sOrder) != 0) {
+					return 1;
+				} else if (CollationElementIterator.secondaryOrder(sOrder) != 0 && checkSecTer) {
+					result = 1;
+					checkSecTer = false;
+				}
+				sOrder = (sPos < sLen) ? elementTable[source.charAt(sPos++)] : -1;
+			} while (sOrder >= 0);
+		} else if (tOrder >= 0) {
+			do {
+				if (CollationElementIterator.primaryOrder(tOrder) != 0) {
+					return -1;
+				} else if (CollationElementIterator.secondaryOrder(tOrder) != 0 && checkSecTer) {
+					result = -1;
+					checkSecTer = false;
+				}
+				tOrder = (tPos < tLen) ? elementTable[target.charAt(tPos++)] : -1;
+			} while (tOrder >= 0);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,287 @@
+package picoded.core.struct.query.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import picoded.core.conv.GenericConvert;
+import picoded.core.conv.NestedObjectFetch;
+
+/**
+ * Pre-resolved accessor of a field path, such as `name`, `address.city` or `items[0].price`.
+ *
+ * Used by the query conditions, OrderBy and the query indexes, to get the field value of each row
+ * via getFieldValue (the full field name only). And by the query arguments and aggregation groupBy,
+ * to fetch the nested field value via fetch (as per NestedObjectFetch).
+ *
+ * NestedObjectFetch splits the path, and joins every possible prefix / suffix
+ * interpretation of it, on every fetch. Here the split path (and each interpretation)
+ * is built once, where fetching only does the map / list lookups.
+ *
+ * ```
+ * FieldAccessor accessor = FieldAccessor.of("address.city");
+ * accessor.getFieldValue(row); // same as the query conditions, on every row
+ * accessor.fetch(row);         // same as NestedObjectFetch.fetchObject(row, "address.city")
+ * ```
+ *
+ * Accessors are immutable, and shared via FieldAccessor.of(...)
+ **/
+public class FieldAccessor {
+	
+	//--------------------------------------------------------------------
+	// Shared accessor cache
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Max number of accessors cached, beyond which new accessors are not cached
+	 **/
+	protected static final int CACHE_SIZE = 4096;
+	
+	/**
+	 * Accessors by their field path
+	 **/
+	protected static final Map<String, FieldAccessor> cache = new ConcurrentHashMap<String, FieldAccessor>();
+	
+	/**
+	 * Accessor of the null field path, which refers to the row itself
+	 **/
+	protected static final FieldAccessor NULL_PATH = new FieldAccessor(null);
+	
+	/**
+	 * Gets the accessor of the field path
+	 *
+	 * @param  path of the field, null refers to the row itself
+	 *
+	 * @return  the field accessor
+	 **/
+	public static FieldAccessor of(String path) {
+		if (path == null) {
+			return NULL_PATH;
+		}
+		FieldAccessor ret = cache.get(path);
+		if (ret == null) {
+			ret = new FieldAccessor(path);
+			if (cache.size() < CACHE_SIZE) {
+				cache.put(path, ret);
+			}
+		}
+		return ret;
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	// The field path
+	protected final String path;
+	
+	// Indicates if the path refers to the row itself (null, or "this")
+	protected final boolean self;
+	
+	// Indicates if the path has any nested "." or "[" seperator
+	protected final boolean nested;
+	
+	// The resolved path interpretations, null if the path is invalid for NestedObjectFetch
+	protected final PathNode root;
+	
+	/**
+	 * Constructor, use FieldAccessor.of(...) instead
+	 *
+	 * @param  path of the field
+	 **/
+	protected FieldAccessor(String path) {
+		this.path = path;
+		this.self = (path == null || "this".equalsIgnoreCase(path));
+		this.nested = (path != null && (path.indexOf('.') >= 0 || path.indexOf('[') >= 0));
+		
+		PathNode node = null;
+		if (path != null) {
+			try {
+				node = PathNode.build(path, new HashMap<String, PathNode>());
+			} catch (RuntimeException e) {
+				// Invalid path (such as a missing "]"), fallsback to NestedObjectFetch
+				node = null;
+			}
+		}
+		this.root = node;
+	}
+	
+	/**
+	 * @return  the field path
+	 **/
+	public String path() {
+		return path;
+	}
+	
+	/**
+	 * @return  true if the path has any nested "." or "[" seperator
+	 **/
+	public boolean isNested() {
+		return nested;
+	}
+	
+	//--------------------------------------------------------------------
+	// Value fetching
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Gets the field value to test, as used by the query conditions.
+	 *
+	 * Where "this" (or null) refers to the row itself, else the row map value of the full
+	 * field name is used. Nested paths are not resolved here (use fetch for that).
+	 *
+	 * @param  row to get the field value from
+	 *
+	 * @return  the field value, null if the row is not a map or the value is missing
+	 **/
+	@SuppressWarnings("rawtypes")
+	public Object getFieldValue(Object row) {
+		if (self) {
+			return row;
+		}
+		if (!(row instanceof Map)) {
+			return null;
+		}
+		return ((Map) row).get(path);
+	}
+	
+	/**
+	 * Fetch the value from the nested map / list, with the same result
+	 * as NestedObjectFetch.fetchObject(base, path)
+	 *
+	 * @param  base map / list to fetch from
+	 *
+	 * @return  the fetched value, null if its not found
+	 **/
+	public Object fetch(Object base) {
+		if (path == null) {
+			return null;
+		}
+		if (root == null) {
+			return NestedObjectFetch.fetchObject(base, path, null);
+		}
+		return root.fetch(base, null);
+	}
+	
+	//--------------------------------------------------------------------
+	// Resolved path interpretations
+	//--------------------------------------------------------------------
+	
+	/**
+	 * A single (sub) path, with the prefix / suffix interpretations of its split path,
+	 * in the same order as NestedObjectFetch.fetchObject tries them.
+	 **/
+	protected static class PathNode {
+		
+		// Full path of the node, and its list index (-1 if its not an index)
+		protected final String path;
+		protected final int listIndex;
+		
+		// Prefix path to get the nested base from, and its list index
+		protected String[] prefixes = null;
+		protected int[] prefixIndexes = null;
+		
+		// Suffix path node, to fetch from the nested base
+		protected PathNode[] suffixes = null;
+		
+		// Path to retry with, for the trimmed / leading "." / wrapping "[]" workarounds
+		protected PathNode retry = null;
+		
+		protected PathNode(String path) {
+			this.path = path;
+			this.listIndex = GenericConvert.toInt(path, -1);
+		}
+		
+		/**
+		 * Builds the node of the path, and its sub paths (reusing the nodes of the same path)
+		 **/
+		protected static PathNode build(String path, Map<String, PathNode> built) {
+			PathNode ret = built.get(path);
+			if (ret != null) {
+				return ret;
+			}
+			ret = new PathNode(path);
+			built.put(path, ret);
+			if (path.length() <= 0) {
+				return ret;
+			}
+			
+			// Every prefix / suffix split, using the longest prefix first
+			String[] splitPath = NestedObjectFetch.splitObjectPath(path);
+			int len = splitPath.length;
+			ret.prefixes = new String[len + 1];
+			ret.prefixIndexes = new int[len + 1];
+			ret.suffixes = new PathNode[len + 1];
+			for (int idx = len; idx >= 0; --idx) {
+				int pos = len - idx;
+				ret.prefixes[pos] = String.join(".", Arrays.copyOfRange(splitPath, 0, idx));
+				ret.prefixIndexes[pos] = GenericConvert.toInt(ret.prefixes[pos], -1);
+				ret.suffixes[pos] = build(String.join(".", Arrays.copyOfRange(splitPath, idx, len)),
+					built);
+			}
+			
+			// Common mistakes workarounds
+			String trimmed = path.trim();
+			if (!path.equals(trimmed)) {
+				ret.retry = build(trimmed, built);
+			} else if (path.startsWith(".")) {
+				ret.retry = build(path.substring(1), built);
+			} else if (path.startsWith("[")) {
+				int closingBracket = path.indexOf("]", 1);
+				ret.retry = build(path.substring(1, closingBracket) + path.substring(closingBracket + 1),
+					built);
+			}
+			return ret;
+		}
+		
+		/**
+		 * Fetch the path value from the base, following NestedObjectFetch.fetchObject
+		 **/
+		protected Object fetch(Object base, Object fallback) {
+			if (!(base instanceof Map || base instanceof List)) {
+				return fallback;
+			}
+			
+			// Full path match
+			Object ret = getValue(base, path, listIndex);
+			if (ret != null) {
+				return ret;
+			}
+			if (prefixes == null) {
+				return fallback;
+			}
+			
+			// Split path matches
+			for (int i = 0; i < prefixes.length; ++i) {
+				Object nestedBase = getValue(base, prefixes[i], prefixIndexes[i]);
+				if (nestedBase == null) {
+					continue;
+				}
+				ret = suffixes[i].fetch(nestedBase, null);
+				if (ret != null) {
+					return ret;
+				}
+			}
+			
+			// Retry with the corrected path, if any
+			if (retry != null) {
+				return retry.fetch(base, fallback);
+			}
+			return fallback;
+		}
+		
+		/**
+		 * Gets the map / list value, following MapOrListUtil.getValue
+		 **/
+		@SuppressWarnings("rawtypes")
+		protected static Object getValue(Object base, String key, int index) {
+			if (base instanceof Map) {
+				return ((Map) base).get(key);
+			}
+			List list = (List) base;
+			return (index >= 0 && index < list.size()) ? list.get(index) : null;
+		}
+	}
+}
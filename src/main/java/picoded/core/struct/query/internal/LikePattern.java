@@ -0,0 +1,149 @@
+package picoded.core.struct.query.internal;
+
+import java.util.regex.Pattern;
+
+/**
+ * Internal precompiled LIKE pattern, where "%" is the wildcard.
+ *
+ * This matches exactly as the regex equivalent `Pattern.compile(pattern.replaceAll("%", ".*"))`,
+ * while avoiding the regex engine entirely for the common exact, prefix (`abc%`),
+ * suffix (`%abc`), and contains (`%abc%`) patterns.
+ *
+ * Note that as with the regex equivalent, the "%" wildcard does not match line terminators,
+ * and any other regex characters in the pattern remains as regex.
+ **/
+public class LikePattern {
+	
+	//---------------------------------
+	//
+	// Pattern compilation
+	//
+	//---------------------------------
+	
+	/**
+	 * Characters which has special meaning in a regex, outside of character classes
+	 **/
+	protected static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+	
+	/**
+	 * Compiles the LIKE pattern
+	 *
+	 * @param  the LIKE pattern string, where "%" is the wildcard
+	 *
+	 * @return  the compiled pattern
+	 **/
+	public static LikePattern compile(String pattern) {
+		return new LikePattern(pattern);
+	}
+	
+	/**
+	 * The original LIKE pattern string
+	 **/
+	protected final String pattern;
+	
+	/**
+	 * The regex equivalent of the pattern, used for anything the fast path cannot handle
+	 **/
+	protected final Pattern regex;
+	
+	/**
+	 * Literal segments between the "%" wildcards, null if the pattern requires the regex
+	 **/
+	protected final String[] segments;
+	
+	/**
+	 * Compiles the LIKE pattern
+	 *
+	 * @param  the LIKE pattern string, where "%" is the wildcard
+	 **/
+	protected LikePattern(String pattern) {
+		this.pattern = pattern;
+		this.regex = Pattern.compile(pattern.replaceAll("%", ".*"));
+		
+		// Literal segments only, if there is no regex characters
+		String[] split = pattern.split("%", -1);
+		for (String segment : split) {
+			for (int i = 0; i < segment.length(); ++i) {
+				if (REGEX_CHARACTERS.indexOf(segment.charAt(i)) >= 0) {
+					split = null;
+					break;
+				}
+			}
+			if (split == null) {
+				break;
+			}
+		}
+		this.segments = split;
+	}
+	
+	/**
+	 * @return the original LIKE pattern string
+	 **/
+	public String pattern() {
+		return pattern;
+	}
+	
+	//---------------------------------
+	//
+	// Matching
+	//
+	//---------------------------------
+	
+	/**
+	 * Indicates if the string contains any line terminators, which the "%" wildcard does not match
+	 **/
+	protected static boolean hasLineTerminator(String value) {
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Test the string value against the pattern
+	 *
+	 * @param  the string value to test
+	 *
+	 * @return  true, if the full string matches the pattern
+	 **/
+	public boolean matches(String value) {
+		// Regex required
+		if (segments == null) {
+			return regex.matcher(value).matches();
+		}
+		
+		// Exact match
+		int segmentCount = segments.length;
+		if (segmentCount == 1) {
+			return value.equals(segments[0]);
+		}
+		
+		// Wildcards would not match line terminators, let the regex handle it
+		if (hasLineTerminator(value)) {
+			return regex.matcher(value).matches();
+		}
+		
+		// Prefix, and suffix match
+		String first = segments[0];
+		String last = segments[segmentCount - 1];
+		int limit = value.length() - last.length();
+		if (limit < first.length() || !value.startsWith(first) || !value.endsWith(last)) {
+			return false;
+		}
+		
+		// Contains match, for the segments in between, in order
+		int pos = first.length();
+		for (int i = 1; i < segmentCount - 1; ++i) {
+			String segment = segments[i];
+			int idx = value.indexOf(segment, pos);
+			if (idx < 0 || idx + segment.length() > limit) {
+				return false;
+			}
+			pos = idx + segment.length();
+		}
+		return true;
+	}
+}
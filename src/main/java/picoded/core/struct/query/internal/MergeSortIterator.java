@@ -0,0 +1,237 @@
+package picoded.core.struct.query.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * K-way merge of sorted runs, used by QueryUtils.externalSort, where each run
+ * is either an in-memory iterator, or a run file spilled to disk via spillRun(...)
+ *
+ * Values with the same order, are returned in the order of their runs. Such that
+ * merging the (stable) sorted runs, of consecutive parts of a list, gives the same
+ * order as a (stable) sort of the whole list.
+ *
+ * Run files are deleted once they are fully read, or when the iterator is closed.
+ * As such, callers which stop iterating early should close the iterator.
+ **/
+public class MergeSortIterator<V> implements Iterator<V>, Closeable {
+	
+	//--------------------------------------------------------------------
+	// Run files
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Number of values written, before the object stream is reset (releasing its references)
+	 **/
+	protected static final int RESET_INTERVAL = 1024;
+	
+	/**
+	 * Writes the sorted run of values to a new temporary file
+	 *
+	 * @param  sortedRun values to write, which must be Serializable
+	 * @param  directory to create the run file in
+	 *
+	 * @return  the run file
+	 **/
+	public static File spillRun(Collection<?> sortedRun, File directory) {
+		File runFile = null;
+		try {
+			runFile = File.createTempFile("query-sort-", ".run", directory);
+			try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+				new FileOutputStream(runFile)))) {
+				out.writeInt(sortedRun.size());
+				int count = 0;
+				for (Object value : sortedRun) {
+					out.writeObject(value);
+					if (++count % RESET_INTERVAL == 0) {
+						out.reset();
+					}
+				}
+			}
+			return runFile;
+		} catch (NotSerializableException e) {
+			deleteQuietly(runFile);
+			throw new RuntimeException("Unable to spill sort run, value is not Serializable : "
+				+ e.getMessage(), e);
+		} catch (IOException e) {
+			deleteQuietly(runFile);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Reads a run file, written by spillRun, deleting it once its fully read (or closed)
+	 *
+	 * @param  runFile to read
+	 *
+	 * @return  iterator of the run values
+	 **/
+	public static <V> Iterator<V> readRun(File runFile) {
+		return new RunFileIterator<V>(runFile);
+	}
+	
+	/**
+	 * Deletes the file if it exists, ignoring any failure
+	 **/
+	protected static void deleteQuietly(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+	
+	/**
+	 * Iterator of a run file, which deletes it once its fully read (or closed)
+	 **/
+	protected static class RunFileIterator<V> implements Iterator<V>, Closeable {
+		
+		protected final File runFile;
+		protected ObjectInputStream in = null;
+		protected int remaining = 0;
+		
+		protected RunFileIterator(File runFile) {
+			this.runFile = runFile;
+			try {
+				in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+				remaining = in.readInt();
+			} catch (IOException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (remaining <= 0) {
+				throw new NoSuchElementException();
+			}
+			try {
+				V ret = (V) in.readObject();
+				if (--remaining <= 0) {
+					close();
+				}
+				return ret;
+			} catch (IOException | ClassNotFoundException e) {
+				close();
+				throw new RuntimeException(e);
+			}
+		}
+		
+		@Override
+		public void close() {
+			remaining = 0;
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// Ignored, as the file is deleted anyway
+				}
+				in = null;
+			}
+			deleteQuietly(runFile);
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Head value of a run, and its run index (for tie breaking)
+	 **/
+	protected static class RunHead<V> {
+		protected V value;
+		protected final int runIndex;
+		protected final Iterator<V> run;
+		
+		protected RunHead(int runIndex, Iterator<V> run) {
+			this.runIndex = runIndex;
+			this.run = run;
+		}
+	}
+	
+	// All the runs, for closing
+	protected final List<Iterator<V>> runs;
+	
+	// Head value of each run, which is not yet exhausted
+	protected final PriorityQueue<RunHead<V>> heads;
+	
+	/**
+	 * Constructor, with the sorted runs to merge
+	 *
+	 * @param  runs of sorted values, in their original order
+	 * @param  comparator used to sort each run
+	 **/
+	public MergeSortIterator(List<Iterator<V>> runs, Comparator<? super V> comparator) {
+		this.runs = new ArrayList<Iterator<V>>(runs);
+		this.heads = new PriorityQueue<RunHead<V>>(Math.max(runs.size(), 1), (a, b) -> {
+			int diff = comparator.compare(a.value, b.value);
+			return (diff != 0) ? diff : Integer.compare(a.runIndex, b.runIndex);
+		});
+		for (int i = 0; i < runs.size(); ++i) {
+			RunHead<V> head = new RunHead<V>(i, runs.get(i));
+			if (head.run.hasNext()) {
+				head.value = head.run.next();
+				heads.add(head);
+			}
+		}
+	}
+	
+	//--------------------------------------------------------------------
+	// Iterator implementation
+	//--------------------------------------------------------------------
+	
+	@Override
+	public boolean hasNext() {
+		return !heads.isEmpty();
+	}
+	
+	@Override
+	public V next() {
+		RunHead<V> head = heads.poll();
+		if (head == null) {
+			throw new NoSuchElementException();
+		}
+		V ret = head.value;
+		if (head.run.hasNext()) {
+			head.value = head.run.next();
+			heads.add(head);
+		} else {
+			head.value = null;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Closes every run, deleting any remaining run files
+	 **/
+	@Override
+	public void close() {
+		heads.clear();
+		for (Iterator<V> run : runs) {
+			if (run instanceof RunFileIterator) {
+				((RunFileIterator<V>) run).close();
+			}
+		}
+	}
+}
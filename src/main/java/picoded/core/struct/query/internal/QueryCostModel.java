@@ -0,0 +1,493 @@
+package picoded.core.struct.query.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryProfile;
+import picoded.core.struct.query.QueryType;
+import picoded.core.struct.query.QueryUtils;
+import picoded.core.struct.query.condition.ConditionBase;
+
+/**
+ * Heuristic cost model of the query tree, used to estimate the selectivity
+ * and the evaluation cost of each query node, without any statistics on the data.
+ *
+ * Selectivity is the estimated fraction of values which passes the node (0 to 1),
+ * while cost is the estimated relative cost of testing a single value, where a basic
+ * comparison of a single field costs 1.
+ *
+ * Combination nodes are short circuited in the order of their children, such that
+ * the cost of a child is only incurred, if the evaluation reaches the child.
+ * When compiled, the children are reordered by evaluationOrder(...) to minimize this cost.
+ *
+ * If a QueryProfile is attached, with sufficient evaluations, the observed selectivity
+ * of a condition is used instead of its heuristic estimate.
+ **/
+public class QueryCostModel {
+	
+	protected QueryCostModel() {
+		throw new IllegalAccessError("Utility class");
+	}
+	
+	//--------------------------------------------------------------------
+	// Basic operator estimates
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Selectivity of an equality condition
+	 **/
+	public static final double EQUALS_SELECTIVITY = 0.1;
+	
+	/**
+	 * Selectivity of a range condition (less / more than)
+	 **/
+	public static final double RANGE_SELECTIVITY = 1.0 / 3.0;
+	
+	/**
+	 * Selectivity of a like condition, with and without wildcards
+	 **/
+	public static final double LIKE_SELECTIVITY = 0.1;
+	public static final double LIKE_WILDCARD_SELECTIVITY = 0.25;
+	
+	/**
+	 * Selectivity of a between condition (lower and upper bound)
+	 **/
+	public static final double BETWEEN_SELECTIVITY = 0.2;
+	
+	/**
+	 * Selectivity of any unknown condition
+	 **/
+	public static final double UNKNOWN_SELECTIVITY = 0.5;
+	
+	/**
+	 * Cost of a basic comparison, and a like pattern match
+	 **/
+	public static final double BASIC_COST = 1.0;
+	public static final double LIKE_COST = 4.0;
+	
+	/**
+	 * Cost of an IN condition, which is a hashed lookup of the values
+	 **/
+	public static final double IN_COST = 2.0;
+	
+	/**
+	 * Cost of a null argument condition, which is either a null check, or always false
+	 **/
+	public static final double NULL_CHECK_COST = 0.5;
+	
+	/**
+	 * Minimum number of profiled evaluations, for the observed selectivity to be used
+	 **/
+	public static final long MIN_OBSERVED_EVALUATIONS = 1000;
+	
+	/**
+	 * Cost multiplier for the _key / _val wildcard fields, which tests every map entry
+	 **/
+	public static final double WILDCARD_FIELD_COST_MULTIPLIER = 8.0;
+	
+	//--------------------------------------------------------------------
+	// Per node estimates
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Estimates of the nodes of a query tree, where each node is estimated once (bottom up),
+	 * such that estimating, ordering or explaining the whole tree is linear in its size.
+	 *
+	 * Nodes are cached by identity, and the observed profile selectivity may change over time.
+	 * As such an instance should only be used for a single pass over the query tree,
+	 * such as a single compile or explain.
+	 **/
+	public static class Estimates {
+		
+		// Estimate of each node, by identity
+		protected final Map<Query, Estimate> cache = new IdentityHashMap<Query, Estimate>();
+		
+		/**
+		 * Gets the estimate of the node, computing it (and its children) if needed
+		 **/
+		protected Estimate get(Query query) {
+			Estimate ret = cache.get(query);
+			if (ret == null) {
+				ret = query.isCombinationOperator() ? combinationEstimate(query, this) : new Estimate(
+					basicSelectivity(query), basicCost(query), null, null);
+				cache.put(query, ret);
+			}
+			return ret;
+		}
+	}
+	
+	/**
+	 * Estimated selectivity and cost of a single node,
+	 * with the evaluation order and reach probability of its children (if its a combination)
+	 **/
+	protected static class Estimate {
+		protected final double selectivity;
+		protected final double cost;
+		protected final List<Query> order;
+		protected final double[] reach;
+		
+		protected Estimate(double selectivity, double cost, List<Query> order, double[] reach) {
+			this.selectivity = selectivity;
+			this.cost = cost;
+			this.order = order;
+			this.reach = reach;
+		}
+	}
+	
+	/**
+	 * Estimates the combination node, from the estimates of its children
+	 **/
+	protected static Estimate combinationEstimate(Query query, Estimates estimates) {
+		List<Query> children = query.childrenQuery();
+		if (children == null || children.isEmpty()) {
+			// blank combination is a failure
+			return new Estimate(0.0, 0.0, new ArrayList<Query>(), new double[0]);
+		}
+		
+		// Selectivity of the children
+		QueryType type = query.type();
+		double selectivity = 1.0;
+		if (type == QueryType.OR || type == QueryType.NOT) {
+			for (Query child : children) {
+				selectivity *= (1.0 - estimates.get(child).selectivity);
+			}
+			if (type == QueryType.OR) {
+				selectivity = 1.0 - selectivity;
+			}
+		} else {
+			for (Query child : children) {
+				selectivity *= estimates.get(child).selectivity;
+			}
+		}
+		
+		// Evaluation order, and the cost of the children in that order
+		List<Query> order = orderChildren(type, children, estimates);
+		double[] reach = reachProbability(type, order, estimates);
+		double cost = 0.0;
+		for (int i = 0; i < reach.length; ++i) {
+			cost += reach[i] * estimates.get(order.get(i)).cost;
+		}
+		return new Estimate(selectivity, cost, order, reach);
+	}
+	
+	//--------------------------------------------------------------------
+	// Selectivity
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Estimated selectivity of the query node, being the fraction of values which passes it
+	 *
+	 * @param   query node to estimate
+	 *
+	 * @return  selectivity between 0 and 1
+	 **/
+	public static double selectivity(Query query) {
+		return selectivity(query, new Estimates());
+	}
+	
+	/**
+	 * Estimated selectivity of the query node, reusing the estimates of a single pass
+	 *
+	 * @param   query node to estimate
+	 * @param   estimates of the current pass
+	 *
+	 * @return  selectivity between 0 and 1
+	 **/
+	public static double selectivity(Query query, Estimates estimates) {
+		return estimates.get(query).selectivity;
+	}
+	
+	/**
+	 * Estimated selectivity of a basic operator node
+	 **/
+	protected static double basicSelectivity(Query query) {
+		QueryType type = query.type();
+		
+		// Observed selectivity, from the attached profile
+		if (query instanceof ConditionBase) {
+			QueryProfile.NodeStats stats = ((ConditionBase) query).getProfileStats();
+			if (stats != null) {
+				long evaluations = stats.evaluations();
+				if (evaluations >= MIN_OBSERVED_EVALUATIONS) {
+					return ((double) stats.passes()) / evaluations;
+				}
+			}
+		}
+		
+		// Basic operators
+		if (type == null) {
+			return UNKNOWN_SELECTIVITY;
+		}
+		switch (type) {
+			case EQUALS:
+				return EQUALS_SELECTIVITY;
+			case NOT_EQUALS:
+				return 1.0 - EQUALS_SELECTIVITY;
+			case LESS_THAN:
+			case LESS_THAN_OR_EQUALS:
+			case MORE_THAN:
+			case MORE_THAN_OR_EQUALS:
+				// Range against a null argument always fails
+				return (query.defaultArgumentValue() == null) ? 0.0 : RANGE_SELECTIVITY;
+			case LIKE:
+				return hasLikeWildcard(query) ? LIKE_WILDCARD_SELECTIVITY : LIKE_SELECTIVITY;
+			case IN:
+				// Equality against each of the values
+				return Math.min(1.0, EQUALS_SELECTIVITY * argumentCount(query));
+			case BETWEEN:
+				// Range against a null bound always fails
+				return hasNullArgument(query) ? 0.0 : BETWEEN_SELECTIVITY;
+			case TRUE:
+				return 1.0;
+			case FALSE:
+				return 0.0;
+			default:
+				return UNKNOWN_SELECTIVITY;
+		}
+	}
+	
+	/**
+	 * Number of argument values, of a multiple argument condition (IN)
+	 **/
+	protected static int argumentCount(Query query) {
+		Object arg = query.defaultArgumentValue();
+		return (arg instanceof Collection) ? ((Collection<?>) arg).size() : 1;
+	}
+	
+	/**
+	 * Indicates if any of the argument values are null, for a multiple argument condition (BETWEEN)
+	 **/
+	protected static boolean hasNullArgument(Query query) {
+		Object arg = query.defaultArgumentValue();
+		return (arg instanceof Collection) ? ((Collection<?>) arg).contains(null) : (arg == null);
+	}
+	
+	/**
+	 * Indicates if the like condition argument has any wildcard
+	 **/
+	protected static boolean hasLikeWildcard(Query query) {
+		Object arg = query.defaultArgumentValue();
+		if (arg == null) {
+			return false;
+		}
+		String pattern = arg.toString();
+		return pattern.indexOf('%') >= 0 || pattern.indexOf('_') >= 0;
+	}
+	
+	//--------------------------------------------------------------------
+	// Cost
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Estimated cost of testing a single value against the query node,
+	 * taking into account the short circuiting of its children in their evaluation order
+	 *
+	 * @param   query node to estimate
+	 *
+	 * @return  relative cost, where a basic comparison is 1
+	 **/
+	public static double cost(Query query) {
+		return cost(query, new Estimates());
+	}
+	
+	/**
+	 * Estimated cost of testing a single value against the query node,
+	 * reusing the estimates of a single pass
+	 *
+	 * @param   query node to estimate
+	 * @param   estimates of the current pass
+	 *
+	 * @return  relative cost, where a basic comparison is 1
+	 **/
+	public static double cost(Query query, Estimates estimates) {
+		return estimates.get(query).cost;
+	}
+	
+	/**
+	 * Estimated cost of a basic operator node
+	 **/
+	protected static double basicCost(Query query) {
+		// Constants, which does not test the value
+		if (query.type() == QueryType.TRUE || query.type() == QueryType.FALSE) {
+			return 0.0;
+		}
+		
+		// Basic operators, where null arguments are a simple null check
+		if (query.defaultArgumentValue() == null) {
+			return NULL_CHECK_COST;
+		}
+		double ret = BASIC_COST;
+		if (query.type() == QueryType.LIKE) {
+			ret = LIKE_COST;
+		} else if (query.type() == QueryType.IN) {
+			ret = IN_COST;
+		}
+		String field = query.fieldName();
+		if ("_key".equalsIgnoreCase(field) || "_val".equalsIgnoreCase(field)) {
+			ret *= WILDCARD_FIELD_COST_MULTIPLIER;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Probability of the evaluation reaching each of the combination children, in their evaluation order.
+	 *
+	 * For AND, the evaluation continues only while the children passes, while for
+	 * OR and NOT, the evaluation continues only while the children fails.
+	 *
+	 * @param   query combination node
+	 *
+	 * @return  reach probability of each child, in the evaluationOrder(query)
+	 **/
+	public static double[] reachProbability(Query query) {
+		return reachProbability(query, new Estimates());
+	}
+	
+	/**
+	 * Probability of the evaluation reaching each of the combination children, in their evaluation order,
+	 * reusing the estimates of a single pass
+	 *
+	 * @param   query combination node
+	 * @param   estimates of the current pass
+	 *
+	 * @return  reach probability of each child, in the evaluationOrder(query)
+	 **/
+	public static double[] reachProbability(Query query, Estimates estimates) {
+		double[] reach = estimates.get(query).reach;
+		return (reach != null) ? reach.clone() : new double[0];
+	}
+	
+	/**
+	 * Probability of the evaluation reaching each of the children, in the given order
+	 *
+	 * @param   type of the combination
+	 * @param   children in their evaluation order
+	 * @param   estimates of the current pass
+	 *
+	 * @return  reach probability of each child
+	 **/
+	protected static double[] reachProbability(QueryType type, List<Query> children,
+		Estimates estimates) {
+		boolean continueOnPass = continueOnPass(type);
+		double[] ret = new double[children.size()];
+		double reach = 1.0;
+		for (int i = 0; i < ret.length; ++i) {
+			ret[i] = reach;
+			double sel = estimates.get(children.get(i)).selectivity;
+			reach *= continueOnPass ? sel : (1.0 - sel);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Indicates if the combination continues evaluating on a passing child (AND),
+	 * or on a failing child (OR, NOT)
+	 **/
+	protected static boolean continueOnPass(QueryType type) {
+		return (type != QueryType.OR && type != QueryType.NOT);
+	}
+	
+	/**
+	 * Expected number of children evaluated, before the combination short circuits
+	 *
+	 * @param   query combination node
+	 *
+	 * @return  expected number of children evaluated
+	 **/
+	public static double expectedEvaluations(Query query) {
+		return expectedEvaluations(query, new Estimates());
+	}
+	
+	/**
+	 * Expected number of children evaluated, before the combination short circuits,
+	 * reusing the estimates of a single pass
+	 *
+	 * @param   query combination node
+	 * @param   estimates of the current pass
+	 *
+	 * @return  expected number of children evaluated
+	 **/
+	public static double expectedEvaluations(Query query, Estimates estimates) {
+		double ret = 0.0;
+		double[] reach = estimates.get(query).reach;
+		if (reach != null) {
+			for (double r : reach) {
+				ret += r;
+			}
+		}
+		return ret;
+	}
+	
+	//--------------------------------------------------------------------
+	// Evaluation order
+	//--------------------------------------------------------------------
+	
+	/**
+	 * The combination children, in the order which they are evaluated when compiled.
+	 *
+	 * This is ordered by the expected cost per short circuit, where for AND this is
+	 * cost / (1 - selectivity), and for OR / NOT this is cost / selectivity. Which minimizes
+	 * the expected cost of the combination, with ties kept in their original order.
+	 *
+	 * If reordering is disabled (via QueryUtils.setReorderOnCompile), this is the original order
+	 *
+	 * @param   query combination node
+	 *
+	 * @return  the children in evaluation order, as a new list
+	 **/
+	public static List<Query> evaluationOrder(Query query) {
+		return evaluationOrder(query, new Estimates());
+	}
+	
+	/**
+	 * The combination children, in the order which they are evaluated when compiled,
+	 * reusing the estimates of a single pass
+	 *
+	 * @param   query combination node
+	 * @param   estimates of the current pass
+	 *
+	 * @return  the children in evaluation order, as a new list
+	 **/
+	public static List<Query> evaluationOrder(Query query, Estimates estimates) {
+		if (!query.isCombinationOperator()) {
+			List<Query> children = query.childrenQuery();
+			return (children != null) ? new ArrayList<Query>(children) : new ArrayList<Query>();
+		}
+		return new ArrayList<Query>(estimates.get(query).order);
+	}
+	
+	/**
+	 * Orders the children, by their expected cost per short circuit (see evaluationOrder)
+	 **/
+	protected static List<Query> orderChildren(QueryType type, List<Query> children,
+		Estimates estimates) {
+		List<Query> ret = new ArrayList<Query>(children);
+		if (ret.size() < 2 || !QueryUtils.reorderOnCompile()) {
+			return ret;
+		}
+		
+		// Rank of each child, which is sorted with a stable insertion sort
+		boolean continueOnPass = continueOnPass(type);
+		double[] rank = new double[ret.size()];
+		for (int i = 0; i < rank.length; ++i) {
+			Query child = ret.get(i);
+			Estimate est = estimates.get(child);
+			double shortCircuit = continueOnPass ? (1.0 - est.selectivity) : est.selectivity;
+			double r = (shortCircuit > 0.0) ? est.cost / shortCircuit : Double.POSITIVE_INFINITY;
+			
+			int j = i;
+			while (j > 0 && rank[j - 1] > r) {
+				rank[j] = rank[j - 1];
+				ret.set(j, ret.get(j - 1));
+				--j;
+			}
+			rank[j] = r;
+			ret.set(j, child);
+		}
+		return ret;
+	}
+}
@@ -46,8 +46,8 @@ import picoded.core.struct.query.condition.Or;
  *    Forming a single large token, per isolated enclosed bracket token set.
  * 4) Step 2 & 3 is looped till there is only 1 token left, which is returned
  *
- * @TODO: Optimize this class, generally this whole set of
- *        filters are NOT string modification optimized.
+ * Note that buildQuery is now done by the single pass QueryParser, which follows the same grammar.
+ * The above string, and token processing steps are retained for compatibility.
  **/
 public class QueryFilter {
 	
@@ -535,7 +535,7 @@ public class QueryFilter {
 	//
 	
 	/**
-	 * Refactor the query to one that is easily parsed by a tokenizer
+	 * Builds the query from the query string, using the single pass QueryParser
 	 *
 	 * @param  the query string to filter out
 	 * @param  named map to build on and return, creates a HashMap if null
@@ -547,6 +547,24 @@ public class QueryFilter {
 		String query, //
 		Map<String, Object> baseMap, //
 		Object[] argArr //
+	) { //
+		return QueryParser.buildQuery(query, baseMap, argArr);
+	}
+	
+	/**
+	 * Builds the query from the query string, using the string, and token processing steps.
+	 * This produces the same query as buildQuery, and is retained for compatibility.
+	 *
+	 * @param  the query string to filter out
+	 * @param  named map to build on and return, creates a HashMap if null
+	 * @param  arguments array to convert from
+	 *
+	 * @return  the query to be built
+	 **/
+	public static Query buildQueryFromTokens( //
+		String query, //
+		Map<String, Object> baseMap, //
+		Object[] argArr //
 	) { //
 		MutablePair<String, Map<String, Object>> refac = refactorQuery(query, baseMap, argArr);
 		String[] querySplit = splitRefactoredQuery(refac.getLeft());
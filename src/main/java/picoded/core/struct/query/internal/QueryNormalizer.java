@@ -0,0 +1,352 @@
+package picoded.core.struct.query.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import picoded.core.conv.NestedObjectFetch;
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryType;
+import picoded.core.struct.query.condition.And;
+import picoded.core.struct.query.condition.Between;
+import picoded.core.struct.query.condition.ConditionBase;
+import picoded.core.struct.query.condition.Constant;
+import picoded.core.struct.query.condition.In;
+import picoded.core.struct.query.condition.LessThan;
+import picoded.core.struct.query.condition.LessThanOrEquals;
+import picoded.core.struct.query.condition.Like;
+import picoded.core.struct.query.condition.MoreThan;
+import picoded.core.struct.query.condition.MoreThanOrEquals;
+import picoded.core.struct.query.condition.Not;
+import picoded.core.struct.query.condition.Or;
+
+/**
+ * Rewrites a query tree into a simpler equivalent tree, before any values are tested.
+ *
+ * + Nested AND / OR combinations are flattened
+ * + Single child AND / OR combinations are replaced by the child
+ * + Double negation NOT(NOT(a, b)) is replaced by (a OR b)
+ * + Identical conditions (same type, field and argument value) are removed
+ * + Numeric range conditions on the same field are merged, where contradicting
+ *   ranges in an AND are folded into FALSE
+ * + Conditions which always fails (ranges, LIKE and BETWEEN against a null argument,
+ *   or IN against a blank list) are folded into FALSE, and the TRUE / FALSE constants are folded into their parent combination
+ *
+ * Only the And, Or, Not and basic conditions classes are rewritten, while any other
+ * (extended) query class is left as it is. The given query is never modified, with
+ * unchanged nodes being reused in the normalized tree (including its conditions).
+ **/
+public class QueryNormalizer {
+	
+	protected QueryNormalizer() {
+		throw new IllegalAccessError("Utility class");
+	}
+	
+	//--------------------------------------------------------------------
+	// Normalization
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Normalize the query tree, against its default argument map
+	 *
+	 * @param   query to normalize
+	 *
+	 * @return  the normalized query, which is the same query if nothing was changed
+	 **/
+	public static Query normalize(Query query) {
+		Map<String, Object> argMap = query.defaultArgumentMap();
+		Query ret = normalizeNode(query, argMap);
+		
+		// Conditions within the combination was tested against the combination argument map
+		if (ret != query && ret instanceof ConditionBase && ret.defaultArgumentMap() != argMap) {
+			ret = ret.bindArgumentMap(argMap);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Normalize a single node, and its children recursively
+	 *
+	 * @param   query node to normalize
+	 * @param   argMap the node is tested against
+	 *
+	 * @return  the normalized node, which is the same node if nothing was changed
+	 **/
+	protected static Query normalizeNode(Query query, Map<String, Object> argMap) {
+		if (isNormalizableCombination(query)) {
+			return normalizeCombination(query, argMap);
+		}
+		if (isNullFailingCondition(query) && argumentValue(query, argMap) == null) {
+			return Constant.FALSE;
+		}
+		if (query.getClass() == Between.class
+			&& ((List<?>) argumentValue(query, argMap)).contains(null)) {
+			return Constant.FALSE;
+		}
+		if (query.getClass() == In.class && ((List<?>) argumentValue(query, argMap)).isEmpty()) {
+			return Constant.FALSE;
+		}
+		return query;
+	}
+	
+	/**
+	 * Normalize an And, Or or Not combination
+	 **/
+	protected static Query normalizeCombination(Query query, Map<String, Object> argMap) {
+		QueryType type = query.type();
+		List<Query> source = query.childrenQuery();
+		
+		// Blank combination is a failure
+		if (source == null || source.isEmpty()) {
+			return Constant.FALSE;
+		}
+		
+		// 1. Normalize and flatten the children, of the same AND / OR type
+		boolean changed = false;
+		List<Query> children = new ArrayList<Query>();
+		for (Query child : source) {
+			Query node = normalizeNode(child, argMap);
+			if (type != QueryType.NOT && isNormalizableCombination(node) && node.type() == type) {
+				children.addAll(node.childrenQuery());
+				changed = true;
+			} else {
+				children.add(node);
+				changed = changed || (node != child);
+			}
+		}
+		
+		// 2. Fold the constants, where the absorbing constant decides the result,
+		// while the identity constant has no effect (and is removed)
+		QueryType absorbing = (type == QueryType.AND) ? QueryType.FALSE : QueryType.TRUE;
+		QueryType identity = (type == QueryType.AND) ? QueryType.TRUE : QueryType.FALSE;
+		for (int i = children.size() - 1; i >= 0; --i) {
+			QueryType childType = children.get(i).type();
+			if (childType == absorbing) {
+				return (type == QueryType.NOT) ? Constant.FALSE : Constant.of(type == QueryType.OR);
+			}
+			if (childType == identity) {
+				children.remove(i);
+				changed = true;
+			}
+		}
+		if (children.isEmpty()) {
+			// All the children were the identity constant
+			return Constant.of(type != QueryType.OR);
+		}
+		
+		// 3. Remove identical conditions
+		for (int i = children.size() - 1; i > 0; --i) {
+			for (int j = 0; j < i; ++j) {
+				if (isSameCondition(children.get(i), children.get(j), argMap)) {
+					children.remove(i);
+					changed = true;
+					break;
+				}
+			}
+		}
+		
+		// 4. Merge the numeric ranges
+		int beforeMerge = children.size();
+		children = mergeRanges(children, argMap, type == QueryType.AND);
+		if (children == null) {
+			return Constant.FALSE;
+		}
+		changed = changed || (children.size() != beforeMerge);
+		
+		// 5. Double negation, and single child combinations
+		if (children.size() == 1) {
+			Query child = children.get(0);
+			if (type != QueryType.NOT) {
+				return child;
+			}
+			if (isNormalizableCombination(child) && child.type() == QueryType.NOT) {
+				return normalizeCombination(new Or(child.childrenQuery(), argMap), argMap);
+			}
+		}
+		
+		// 6. The rewritten combination, only if there was any change
+		if (!changed) {
+			return query;
+		}
+		if (type == QueryType.OR) {
+			return new Or(children, argMap);
+		} else if (type == QueryType.NOT) {
+			return new Not(children, argMap);
+		}
+		return new And(children, argMap);
+	}
+	
+	//--------------------------------------------------------------------
+	// Numeric range merging
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Merge the numeric range conditions on the same field, keeping the strictest range
+	 * on each side for an AND (intersection), or the loosest range for an OR / NOT (union).
+	 *
+	 * This is only done for numeric arguments, as all field values are then compared in
+	 * a consistent order (where non numeric values are smaller than any number).
+	 *
+	 * @param   children conditions to merge
+	 * @param   argMap to get the argument values
+	 * @param   intersect if its an AND, else its merged as a union
+	 *
+	 * @return  the merged children list, null if the AND ranges contradicts
+	 **/
+	protected static List<Query> mergeRanges(List<Query> children, Map<String, Object> argMap,
+		boolean intersect) {
+		// Chosen lower and upper bound, by the field name
+		Map<String, Query> lowerMap = new HashMap<String, Query>();
+		Map<String, Query> upperMap = new HashMap<String, Query>();
+		boolean merged = false;
+		
+		for (Query child : children) {
+			Boolean lower = rangeSide(child, argMap);
+			if (lower == null) {
+				continue;
+			}
+			Map<String, Query> sideMap = lower ? lowerMap : upperMap;
+			Query existing = sideMap.get(child.fieldName());
+			if (existing == null) {
+				sideMap.put(child.fieldName(), child);
+				continue;
+			}
+			
+			// Stricter lower bound has the larger value, and vice versa
+			merged = true;
+			int cmp = compareBound(child, existing, argMap);
+			boolean stricter = lower ? (cmp > 0) : (cmp < 0);
+			if (stricter == intersect) {
+				sideMap.put(child.fieldName(), child);
+			}
+		}
+		
+		// Contradicting ranges, with no possible value in between
+		if (intersect) {
+			for (Map.Entry<String, Query> entry : lowerMap.entrySet()) {
+				Query upper = upperMap.get(entry.getKey());
+				if (upper != null) {
+					Query lowerQuery = entry.getValue();
+					int cmp = Double.compare(numberValue(lowerQuery, argMap), numberValue(upper, argMap));
+					if (cmp > 0 || (cmp == 0 && (isStrict(lowerQuery) || isStrict(upper)))) {
+						return null;
+					}
+				}
+			}
+		}
+		if (!merged) {
+			return children;
+		}
+		
+		// Keep only the chosen ranges
+		List<Query> ret = new ArrayList<Query>();
+		for (Query child : children) {
+			Boolean lower = rangeSide(child, argMap);
+			if (lower == null || (lower ? lowerMap : upperMap).get(child.fieldName()) == child) {
+				ret.add(child);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Compares two range bounds of the same side, by the value, then by strictness.
+	 * Where a strict bound is considered more "inward" than the non strict bound of the same value.
+	 *
+	 * @return  positive if a is larger than b, for a lower bound, this means a is stricter
+	 **/
+	protected static int compareBound(Query a, Query b, Map<String, Object> argMap) {
+		int cmp = Double.compare(numberValue(a, argMap), numberValue(b, argMap));
+		if (cmp != 0 || isStrict(a) == isStrict(b)) {
+			return cmp;
+		}
+		boolean lower = (a instanceof MoreThan || a instanceof MoreThanOrEquals);
+		return (isStrict(a) == lower) ? 1 : -1;
+	}
+	
+	/**
+	 * Indicates the range side of the condition, if it can be merged
+	 *
+	 * @return  true for a lower bound (more than), false for an upper bound (less than),
+	 *          null if its not a mergeable numeric range
+	 **/
+	protected static Boolean rangeSide(Query query, Map<String, Object> argMap) {
+		Class<?> type = query.getClass();
+		boolean lower = (type == MoreThan.class || type == MoreThanOrEquals.class);
+		boolean upper = (type == LessThan.class || type == LessThanOrEquals.class);
+		if (!(lower || upper) || !(argumentValue(query, argMap) instanceof Number)) {
+			return null;
+		}
+		
+		// Wildcard fields may match different entries for each range, so they are not merged
+		String field = query.fieldName();
+		if ("_key".equalsIgnoreCase(field) || "_val".equalsIgnoreCase(field)) {
+			return null;
+		}
+		return lower;
+	}
+	
+	/**
+	 * Indicates if its a strict range (excluding the value)
+	 **/
+	protected static boolean isStrict(Query query) {
+		return query.getClass() == MoreThan.class || query.getClass() == LessThan.class;
+	}
+	
+	/**
+	 * Numeric argument value of the range, as used in the comparison
+	 **/
+	protected static double numberValue(Query query, Map<String, Object> argMap) {
+		return ((Number) argumentValue(query, argMap)).doubleValue();
+	}
+	
+	//--------------------------------------------------------------------
+	// Utility functions
+	//--------------------------------------------------------------------
+	
+	/**
+	 * Indicates if its an And, Or, or Not combination (and not an extended class)
+	 **/
+	protected static boolean isNormalizableCombination(Query query) {
+		Class<?> type = query.getClass();
+		return (type == And.class || type == Or.class || type == Not.class)
+			&& query.childrenQuery() != null;
+	}
+	
+	/**
+	 * Indicates if its a condition, which always fails against a null argument
+	 **/
+	protected static boolean isNullFailingCondition(Query query) {
+		Class<?> type = query.getClass();
+		return type == MoreThan.class || type == MoreThanOrEquals.class || type == LessThan.class
+			|| type == LessThanOrEquals.class || type == Like.class;
+	}
+	
+	/**
+	 * Indicates if both queries are the same condition, of the same type, field and argument value
+	 **/
+	protected static boolean isSameCondition(Query a, Query b, Map<String, Object> argMap) {
+		return a.getClass() == b.getClass() && a instanceof ConditionBase
+			&& Objects.equals(a.fieldName(), b.fieldName())
+			&& Objects.equals(argumentValue(a, argMap), argumentValue(b, argMap));
+	}
+	
+	/**
+	 * Argument value of the condition, from the argument map it is tested against.
+	 * Which is the list of argument values, for the IN and BETWEEN conditions
+	 **/
+	protected static Object argumentValue(Query query, Map<String, Object> argMap) {
+		if (query instanceof In) {
+			return ((In) query).argumentValues(argMap);
+		}
+		if (query instanceof Between) {
+			return ((Between) query).argumentValues(argMap);
+		}
+		if (argMap == null || query.argumentName() == null) {
+			return null;
+		}
+		return NestedObjectFetch.fetchObject(argMap, query.argumentName(), null);
+	}
+}
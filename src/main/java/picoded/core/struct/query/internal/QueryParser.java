@@ -0,0 +1,543 @@
+package picoded.core.struct.query.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.condition.Between;
+import picoded.core.struct.query.condition.In;
+
+/**
+ * Internal single pass, character level lexer, and recursive descent parser for the query string.
+ *
+ * This replaces the regex based string processing steps in QueryFilter, for building the query,
+ * while producing the same query tree for the same query grammar.
+ *
+ * # Lexer tokens
+ *
+ * + Brackets : `(` and `)`, and the `,` argument list separator
+ * + Comparision operators : `=`, `!=`, `<`, `<=`, `>`, `>=` (and the `LIKE`, `IN`, `BETWEEN` words)
+ * + Arguments : `?` (numbered in order of appearance), and `:named` arguments
+ * + Words : field names, and the `AND`, `OR`, `NOT` combination operators (case insensitive)
+ *
+ * # Parser grammar
+ *
+ * ```
+ * query     = items
+ * items     = { "(" items ")" | condition | combinationOperator }
+ * condition = field comparisionOperator argument
+ *           | field "IN" ( "(" argument { "," argument } ")" | argument )
+ *           | field "BETWEEN" argument "AND" argument
+ * ```
+ *
+ * Each bracket enclosed set of items is collapsed from left to right, into a single query.
+ * Where a change in combination operator, combines all prior items into a single child query.
+ * For example `A AND B OR C` is equivalent to `(A AND B) OR C`.
+ **/
+public class QueryParser {
+	
+	//---------------------------------
+	//
+	// Static parsing functions
+	//
+	//---------------------------------
+	
+	/**
+	 * Parse the query string, and build the query
+	 *
+	 * @param  the query string to parse
+	 * @param  named map to build on and return, creates a HashMap if null
+	 * @param  arguments array to convert from
+	 *
+	 * @return  the query built
+	 **/
+	public static Query buildQuery( //
+		String query, //
+		Map<String, Object> baseMap, //
+		Object[] argArr //
+	) { //
+		
+		// Ensures argument map
+		if (baseMap == null) {
+			baseMap = new HashMap<String, Object>();
+		}
+		
+		// Parse the query
+		QueryParser parser = new QueryParser(query, baseMap);
+		Query ret = parser.parseQuery();
+		
+		// Validate, and convert the argument array to the argument map
+		int argCount = parser.argumentCount;
+		int argArrCount = (argArr != null) ? argArr.length : argCount;
+		if (argArrCount != argCount) {
+			throw new RuntimeException("Query string argument count (" + argCount
+				+ "), and argument array length mismatched (" + argArrCount + ")");
+		}
+		if (argCount > 0) {
+			QueryFilter.argumentsArrayToMap(baseMap, argArr);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Counts the number of "?" arguments, in the query string
+	 *
+	 * @param  the query string to count
+	 *
+	 * @return  number of "?" arguments
+	 **/
+	public static int countQueryArguments(String query) {
+		int ret = 0;
+		for (int i = 0; i < query.length(); ++i) {
+			if (query.charAt(i) == '?') {
+				++ret;
+			}
+		}
+		return ret;
+	}
+	
+	//---------------------------------
+	//
+	// Parser state
+	//
+	//---------------------------------
+	
+	/**
+	 * Token types, of the lexer
+	 **/
+	protected static final int TOKEN_END = 0;
+	protected static final int TOKEN_WORD = 1;
+	protected static final int TOKEN_ARGUMENT = 2;
+	protected static final int TOKEN_OPERATOR = 3;
+	protected static final int TOKEN_OPEN_BRACKET = 4;
+	protected static final int TOKEN_CLOSE_BRACKET = 5;
+	protected static final int TOKEN_COMMA = 6;
+	
+	/**
+	 * Query string, and its length
+	 **/
+	protected final String query;
+	protected final int queryLength;
+	
+	/**
+	 * Parameter map to use as default, for the built query
+	 **/
+	protected final Map<String, Object> paramMap;
+	
+	/**
+	 * Lexer position in the query string
+	 **/
+	protected int pos = 0;
+	
+	/**
+	 * Number of "?" arguments processed
+	 **/
+	protected int argumentCount = 0;
+	
+	/**
+	 * Current token being processed
+	 **/
+	protected int tokenType = TOKEN_END;
+	protected String tokenText = null;
+	
+	/**
+	 * Lookahead token, after the current token
+	 **/
+	protected int peekType = TOKEN_END;
+	protected String peekText = null;
+	
+	/**
+	 * Setup the parser, for a single query string
+	 *
+	 * @param  the query string to parse
+	 * @param  parameter map to use as default
+	 **/
+	protected QueryParser(String query, Map<String, Object> paramMap) {
+		this.query = query;
+		this.queryLength = query.length();
+		this.paramMap = paramMap;
+	}
+	
+	//---------------------------------
+	//
+	// Lexer
+	//
+	//---------------------------------
+	
+	/**
+	 * Whitespace characters, this follows the regex `\s` character set
+	 **/
+	protected static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+	
+	/**
+	 * Indicates if the character at the given position, terminates a word or named argument
+	 **/
+	protected boolean isWordEnd(int i) {
+		char c = query.charAt(i);
+		return isWhitespace(c) || c == '(' || c == ')' || c == ',' || c == ':' || c == '?' || c == '<'
+			|| c == '>' || c == '=' || (c == '!' && i + 1 < queryLength && query.charAt(i + 1) == '=');
+	}
+	
+	/**
+	 * Scans for the end of the word (or named argument), starting from the given position
+	 **/
+	protected int wordEnd(int start) {
+		int i = start;
+		while (i < queryLength && !isWordEnd(i)) {
+			++i;
+		}
+		return i;
+	}
+	
+	/**
+	 * Reads the next token, into the lookahead token
+	 **/
+	protected void lexToken() {
+		// Skip whitespace
+		while (pos < queryLength && isWhitespace(query.charAt(pos))) {
+			++pos;
+		}
+		
+		// End of query string
+		if (pos >= queryLength) {
+			peekType = TOKEN_END;
+			peekText = null;
+			return;
+		}
+		
+		int end;
+		char c = query.charAt(pos);
+		char next = (pos + 1 < queryLength) ? query.charAt(pos + 1) : '\0';
+		switch (c) {
+		case '(':
+			peekType = TOKEN_OPEN_BRACKET;
+			peekText = "(";
+			++pos;
+			return;
+		case ')':
+			peekType = TOKEN_CLOSE_BRACKET;
+			peekText = ")";
+			++pos;
+			return;
+		case ',':
+			peekType = TOKEN_COMMA;
+			peekText = ",";
+			++pos;
+			return;
+		case ':':
+			// Named argument
+			end = wordEnd(pos + 1);
+			peekType = TOKEN_ARGUMENT;
+			peekText = query.substring(pos + 1, end);
+			pos = end;
+			return;
+		case '?':
+			// Numbered argument
+			end = wordEnd(pos + 1);
+			peekType = TOKEN_ARGUMENT;
+			peekText = Integer.toString(argumentCount) + query.substring(pos + 1, end);
+			++argumentCount;
+			pos = end;
+			return;
+		case '<':
+		case '>':
+			peekType = TOKEN_OPERATOR;
+			if (next == '=') {
+				peekText = (c == '<') ? "<=" : ">=";
+				pos += 2;
+			} else {
+				peekText = (c == '<') ? "<" : ">";
+				++pos;
+			}
+			return;
+		case '=':
+			peekType = TOKEN_OPERATOR;
+			peekText = "=";
+			++pos;
+			return;
+		case '!':
+			if (next == '=') {
+				peekType = TOKEN_OPERATOR;
+				peekText = "!=";
+				pos += 2;
+				return;
+			}
+			break;
+		default:
+			break;
+		}
+		
+		// Field name, or operator words
+		end = wordEnd(pos);
+		peekType = TOKEN_WORD;
+		peekText = query.substring(pos, end);
+		pos = end;
+	}
+	
+	/**
+	 * Moves on to the next token
+	 **/
+	protected void advance() {
+		tokenType = peekType;
+		tokenText = peekText;
+		lexToken();
+	}
+	
+	//---------------------------------
+	//
+	// Parser
+	//
+	//---------------------------------
+	
+	/**
+	 * Indicates if the token is a comparision operator
+	 **/
+	protected static boolean isComparisionOperator(int type, String text) {
+		return type == TOKEN_OPERATOR
+			|| (type == TOKEN_WORD && ("LIKE".equals(text) || "IN".equals(text) || "BETWEEN"
+				.equals(text)));
+	}
+	
+	/**
+	 * Indicates if the current token starts a comparision condition, as a field token followed
+	 * by a comparision operator.
+	 * 
+	 * Note that the `IN` and `BETWEEN` words are only operators after a field token. So that
+	 * fields named as such still parse after a combination operator (such as `a = ? AND IN = ?`)
+	 **/
+	protected boolean isConditionStart() {
+		if ((tokenType != TOKEN_WORD && tokenType != TOKEN_ARGUMENT)
+			|| !isComparisionOperator(peekType, peekText)) {
+			return false;
+		}
+		if (tokenType == TOKEN_WORD && ("IN".equals(peekText) || "BETWEEN".equals(peekText))) {
+			return !QueryFilter.combinationOperators.contains(tokenText.toUpperCase(Locale.ENGLISH));
+		}
+		return true;
+	}
+	
+	/**
+	 * Parse the full query string
+	 *
+	 * @return  the query built
+	 **/
+	protected Query parseQuery() {
+		// Load the current, and lookahead token
+		lexToken();
+		advance();
+		
+		// Parse all the items, till the end of the query
+		List<Object> items = parseItems();
+		if (tokenType == TOKEN_CLOSE_BRACKET) {
+			throw new RuntimeException("Found closing bracket ')' without opening bracket");
+		}
+		
+		// A lone combination operator, is not a valid query
+		if (items.size() == 1 && items.get(0) instanceof String) {
+			throw new RuntimeException("Unexpected end of query -> " + items.get(0));
+		}
+		return collapseItems(items);
+	}
+	
+	/**
+	 * Parse the items, till the end of query, or a closing bracket
+	 *
+	 * @return  list of objects of which consist either of built Query, and combination operators
+	 **/
+	protected List<Object> parseItems() {
+		List<Object> items = new ArrayList<Object>();
+		
+		while (tokenType != TOKEN_END && tokenType != TOKEN_CLOSE_BRACKET) {
+			
+			// Bracket enclosed items, collapsed into a single query
+			if (tokenType == TOKEN_OPEN_BRACKET) {
+				advance();
+				List<Object> enclosed = parseItems();
+				if (tokenType != TOKEN_CLOSE_BRACKET) {
+					throw new RuntimeException("Found starting bracket '(' without closing bracket");
+				}
+				advance();
+				items.add(collapseItems(enclosed));
+				continue;
+			}
+			
+			// Field name, followed by a comparision operator
+			if (isConditionStart()) {
+				items.add(parseCondition());
+				continue;
+			}
+			
+			// Combination operator
+			if (tokenType == TOKEN_WORD) {
+				String op = tokenText.toUpperCase(Locale.ENGLISH);
+				if (!(QueryFilter.combinationOperators.contains(op))) {
+					throw new RuntimeException("Unable to process combination token: " + op);
+				}
+				items.add(op);
+				advance();
+				continue;
+			}
+			
+			throw new RuntimeException("Unexpected query token: " + tokenText);
+		}
+		
+		return items;
+	}
+	
+	/**
+	 * Parse a single basic comparision condition
+	 *
+	 * @return  the condition query
+	 **/
+	protected Query parseCondition() {
+		// Field name (arguments are treated as field names here, for consistency)
+		String field = (tokenType == TOKEN_ARGUMENT) ? ":" + tokenText : tokenText;
+		advance();
+		
+		// Comparision operator
+		String operator = tokenText;
+		advance();
+		
+		// Multiple argument operators
+		if ("IN".equals(operator)) {
+			return parseIn(field);
+		}
+		if ("BETWEEN".equals(operator)) {
+			return parseBetween(field);
+		}
+		
+		// Named argument
+		String argument = parseArgument(field, operator);
+		return QueryFilter.basicQueryFromTokens(paramMap, field, operator, ":" + argument);
+	}
+	
+	/**
+	 * Parse the IN condition arguments, after the operator.
+	 * Either as a bracket enclosed argument list, or a single (collection) argument
+	 *
+	 * @param  field name token before the operator
+	 *
+	 * @return  the condition query
+	 **/
+	protected Query parseIn(String field) {
+		List<String> arguments = new ArrayList<String>();
+		if (tokenType != TOKEN_OPEN_BRACKET) {
+			arguments.add(parseArgument(field, "IN"));
+		} else {
+			advance();
+			while (true) {
+				arguments.add(parseArgument(field, "IN"));
+				if (tokenType == TOKEN_CLOSE_BRACKET) {
+					advance();
+					break;
+				}
+				if (tokenType != TOKEN_COMMA) {
+					throw new RuntimeException("Expected ',' or ')' in IN argument list: " + field
+						+ " IN ... " + tokenText);
+				}
+				advance();
+			}
+		}
+		return new In(QueryUtils.unwrapFieldName(field), arguments, paramMap);
+	}
+	
+	/**
+	 * Parse the BETWEEN condition arguments, after the operator
+	 *
+	 * @param  field name token before the operator
+	 *
+	 * @return  the condition query
+	 **/
+	protected Query parseBetween(String field) {
+		String lower = parseArgument(field, "BETWEEN");
+		if (tokenType != TOKEN_WORD || !"AND".equalsIgnoreCase(tokenText)) {
+			throw new RuntimeException("Expected AND after the BETWEEN lower bound: " + field
+				+ " BETWEEN :" + lower + " " + tokenText);
+		}
+		advance();
+		String upper = parseArgument(field, "BETWEEN");
+		return new Between(QueryUtils.unwrapFieldName(field), lower, upper, paramMap);
+	}
+	
+	/**
+	 * Parse a single named argument, after the operator
+	 *
+	 * @param  field name token before the operator
+	 * @param  operator token used
+	 *
+	 * @return  the argument name
+	 **/
+	protected String parseArgument(String field, String operator) {
+		if (tokenType == TOKEN_END) {
+			throw new RuntimeException("Unexpected end of operator token : " + operator);
+		}
+		if (tokenType != TOKEN_ARGUMENT) {
+			throw new RuntimeException("Unexpected named parameter set: " + field + " " + operator
+				+ " " + tokenText);
+		}
+		String argument = tokenText;
+		advance();
+		return argument;
+	}
+	
+	/**
+	 * Collapse the items (without brackets) into a single query, from left to right
+	 *
+	 * @param  list of built Query, and combination operators
+	 *
+	 * @return  the combined query
+	 **/
+	protected Query collapseItems(List<Object> items) {
+		// Single query, no combination needed
+		if (items.size() == 1 && items.get(0) instanceof Query) {
+			return (Query) items.get(0);
+		}
+		
+		List<Query> childList = new ArrayList<Query>();
+		String combinationType = null;
+		
+		for (Object item : items) {
+			if (item instanceof Query) {
+				childList.add((Query) item);
+				continue;
+			}
+			
+			// Setup combination type
+			String op = (String) item;
+			if (combinationType == null) {
+				combinationType = op;
+				continue;
+			}
+			
+			// Continue the combination processing
+			if (combinationType.equals(op)) {
+				continue;
+			}
+			
+			// Change of combination type, combines everything till the current point
+			if (childList.isEmpty()) {
+				throw new RuntimeException("Unexpected blank child list: " + childList);
+			}
+			Query combined = QueryFilter.combinationQuery(combinationType, childList, paramMap);
+			childList = new ArrayList<Query>();
+			childList.add(combined);
+			combinationType = op;
+		}
+		
+		// Missing combination operator
+		if (combinationType == null) {
+			if (childList.isEmpty()) {
+				throw new RuntimeException("Missing combination token: Empty tokens and child list");
+			}
+			throw new RuntimeException("Missing combination token: " + items);
+		}
+		
+		return QueryFilter.combinationQuery(combinationType, childList, paramMap);
+	}
+}
@@ -0,0 +1,211 @@
+package picoded.core.struct.query.internal;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.RuleBasedCollator;
+import java.util.Locale;
+
+import picoded.core.struct.query.CompareUtils;
+
+/**
+ * Sort keys of a list of rows, extracted once (decorate-sort-undecorate), for OrderBy sorting.
+ *
+ * OrderBy.compare fetches and type checks every sort field, on both rows, for every comparision.
+ * Here each sort field is fetched once per row, and stored in a column typed by its values.
+ *
+ * + Numeric columns (numbers or null), as a double array
+ * + String columns (strings or null), as the strings if they are all ASCII,
+ *   else as collation keys
+ * + Any other column, as the raw values (compared via CompareUtils.dynamicCompare)
+ *
+ * Where compare(a, b) of the row positions, gives the same result as OrderBy.compare of the rows.
+ **/
+public class SortKeys {
+	
+	//--------------------------------------------------------------------
+	// Column types
+	//--------------------------------------------------------------------
+	
+	// Column of numbers or null values
+	protected static final int NUMBER = 1;
+	
+	// Column of strings or null values
+	protected static final int STRING = 2;
+	
+	// Column of any other values
+	protected static final int OBJECT = 3;
+	
+	//--------------------------------------------------------------------
+	// Constructor
+	//--------------------------------------------------------------------
+	
+	// The rows, for the fallback comparision
+	protected final Object[] rows;
+	
+	// Column type, and sort order of each sort field
+	protected final int[] types;
+	protected final boolean[] descending;
+	
+	// Null flags of each row, per column (null if the column has no null values)
+	protected final boolean[][] nulls;
+	
+	// Numeric values of each row, per NUMBER column
+	protected final double[][] numbers;
+	
+	// ASCII string values, or collation keys (if any string is not ASCII), per STRING column
+	protected final String[][] strings;
+	protected final CollationKey[][] collationKeys;
+	
+	// Raw values of each row, per OBJECT column
+	protected final Object[][] objects;
+	
+	/**
+	 * Extracts the sort keys of every row
+	 *
+	 * @param  rows to sort
+	 * @param  accessors of each sort field
+	 * @param  descending order flag of each sort field
+	 **/
+	public SortKeys(Object[] rows, FieldAccessor[] accessors, boolean[] descending) {
+		int columns = accessors.length;
+		this.rows = rows;
+		this.descending = descending;
+		this.types = new int[columns];
+		this.nulls = new boolean[columns][];
+		this.numbers = new double[columns][];
+		this.strings = new String[columns][];
+		this.collationKeys = new CollationKey[columns][];
+		this.objects = new Object[columns][];
+		
+		for (int c = 0; c < columns; ++c) {
+			// Field values of the column, and its type
+			Object[] values = new Object[rows.length];
+			boolean allNumbers = true;
+			boolean allStrings = true;
+			boolean hasNull = false;
+			for (int i = 0; i < rows.length; ++i) {
+				Object value = accessors[c].getFieldValue(rows[i]);
+				values[i] = value;
+				if (value == null) {
+					hasNull = true;
+				} else {
+					allNumbers = allNumbers && (value instanceof Number);
+					allStrings = allStrings && (value instanceof String);
+				}
+			}
+			
+			if (allNumbers) {
+				types[c] = NUMBER;
+				numbers[c] = new double[rows.length];
+				for (int i = 0; i < rows.length; ++i) {
+					if (values[i] != null) {
+						numbers[c][i] = ((Number) values[i]).doubleValue();
+					}
+				}
+			} else if (allStrings) {
+				types[c] = STRING;
+				buildStringColumn(c, values);
+			} else {
+				types[c] = OBJECT;
+				objects[c] = values;
+				continue;
+			}
+			
+			if (hasNull) {
+				nulls[c] = new boolean[rows.length];
+				for (int i = 0; i < rows.length; ++i) {
+					nulls[c][i] = (values[i] == null);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Builds the STRING column, as ASCII strings, or collation keys if any string is not ASCII
+	 **/
+	protected void buildStringColumn(int c, Object[] values) {
+		boolean allAscii = true;
+		for (int i = 0; i < values.length && allAscii; ++i) {
+			allAscii = (values[i] == null) || AsciiCollator.isSupported((String) values[i]);
+		}
+		
+		if (allAscii) {
+			String[] column = new String[values.length];
+			for (int i = 0; i < values.length; ++i) {
+				column[i] = (String) values[i];
+			}
+			strings[c] = column;
+			return;
+		}
+		
+		// Collation keys, which compares the same as the (english) collator
+		Collator collator = RuleBasedCollator.getInstance(Locale.ENGLISH);
+		CollationKey[] keys = new CollationKey[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != null) {
+				keys[i] = collator.getCollationKey((String) values[i]);
+			}
+		}
+		collationKeys[c] = keys;
+	}
+	
+	//--------------------------------------------------------------------
+	// Comparision
+	//--------------------------------------------------------------------
+	
+	/**
+	 * @return  number of rows
+	 **/
+	public int size() {
+		return rows.length;
+	}
+	
+	/**
+	 * Compares the rows at the given positions, as per OrderBy.compare
+	 *
+	 * @param  a position of the first row
+	 * @param  b position of the second row
+	 *
+	 * @return -1, 0, or 1 as the first row is less than, equal to, or greater than the second
+	 **/
+	public int compare(int a, int b) {
+		for (int c = 0; c < types.length; ++c) {
+			int diff = compareColumn(c, a, b);
+			if (diff != 0) {
+				return descending[c] ? -diff : diff;
+			}
+		}
+		return CompareUtils.dynamicCompare(rows[a], rows[b]); //fallback
+	}
+	
+	/**
+	 * Compares a single column, as per CompareUtils.dynamicCompare of the field values
+	 **/
+	protected int compareColumn(int c, int a, int b) {
+		if (types[c] == OBJECT) {
+			return CompareUtils.dynamicCompare(objects[c][a], objects[c][b]);
+		}
+		
+		// Null values are smaller than any number or string
+		boolean[] nullFlags = nulls[c];
+		if (nullFlags != null && (nullFlags[a] || nullFlags[b])) {
+			if (nullFlags[a] == nullFlags[b]) {
+				return 0;
+			}
+			return nullFlags[a] ? -1 : 1;
+		}
+		
+		if (types[c] == NUMBER) {
+			return Double.compare(numbers[c][a], numbers[c][b]);
+		}
+		if (collationKeys[c] != null) {
+			return Integer.signum(collationKeys[c][a].compareTo(collationKeys[c][b]));
+		}
+		String sa = strings[c][a];
+		String sb = strings[c][b];
+		if (sa.equals(sb)) {
+			return 0;
+		}
+		return AsciiCollator.compareSupported(sa, sb);
+	}
+}
@@ -40,6 +40,41 @@ public class Avg extends MapReduceBase {
 		}
 	}
 	
+	//------------------------------------------------------
+	//
+	//  Primitive accumulation mode
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Primitive running sum, and count, used in primitive mode
+	 */
+	protected PrimitiveSum primitiveSum = new PrimitiveSum();
+	protected long primitiveCount = 0;
+	
+	/**
+	 * Primitive accumulation mode is supported
+	 */
+	public boolean supportsPrimitiveMode() {
+		return true;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		primitiveSum.add(val);
+		++primitiveCount;
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		primitiveSum.add(val);
+		++primitiveCount;
+	}
+	
 	/**
 	 * Returns the current calculation reduce-ed as a BigDecimal.
 	 * By default this simply returns a clone of the "res" object
@@ -47,6 +82,12 @@ public class Avg extends MapReduceBase {
 	 * @return  BigDecimal representing the current result
 	 */
 	public BigDecimal reduce() {
+		// Primitive values, to include with the BigDecimal values
+		if (primitiveCount > 0) {
+			BigDecimal total = addNullable(res, primitiveSum.toBigDecimal());
+			BigDecimal totalCount = addNullable(count, BigDecimal.valueOf(primitiveCount));
+			return total.divide(totalCount, AVG_RESULT_MAX_SCALE, BigDecimal.ROUND_HALF_UP);
+		}
 		return res.divide(count, AVG_RESULT_MAX_SCALE, BigDecimal.ROUND_HALF_UP);
 	}
 	
@@ -56,6 +97,34 @@ public class Avg extends MapReduceBase {
 	public void reset() {
 		res = null;
 		count = null;
+		primitiveSum.reset();
+		primitiveCount = 0;
 	}
 	
-}
\ No newline at end of file
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another Avg instance into this instance
+	 * 
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		Avg o = (Avg) other;
+		res = addNullable(res, o.res);
+		count = addNullable(count, o.count);
+		primitiveSum.combine(o.primitiveSum);
+		primitiveCount += o.primitiveCount;
+	}
+}
@@ -2,6 +2,8 @@ package picoded.core.struct.query.mapreduce;
 
 import java.math.BigDecimal;
 
+import picoded.core.conv.NestedObjectFetch;
+
 /**
  * Count function for MapReduceBase
  **/
@@ -31,6 +33,14 @@ public class Count extends MapReduceBase {
 	 * @param  key   to extract value from
 	 */
 	public void map(Object inmap, String key) {
+		// Primitive counting, without any BigDecimal conversion
+		if (primitiveMode) {
+			if (key.equalsIgnoreCase("*") || NestedObjectFetch.fetchObject(inmap, key) != null) {
+				++primitiveCount;
+			}
+			return;
+		}
+		
 		// Wildcard matching
 		if (key.equalsIgnoreCase("*")) {
 			map(BigDecimal.ONE, BigDecimal.ONE);
@@ -39,4 +49,81 @@ public class Count extends MapReduceBase {
 		}
 	}
 	
-}
\ No newline at end of file
+	//------------------------------------------------------
+	//
+	//  Primitive accumulation mode
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Primitive count, used in primitive mode
+	 */
+	protected long primitiveCount = 0;
+	
+	/**
+	 * Primitive accumulation mode is supported
+	 */
+	public boolean supportsPrimitiveMode() {
+		return true;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		++primitiveCount;
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		++primitiveCount;
+	}
+	
+	/**
+	 * Returns the current calculation reduce-ed as a BigDecimal.
+	 * Including any primitive count
+	 * 
+	 * @return  BigDecimal representing the current result
+	 */
+	public BigDecimal reduce() {
+		if (primitiveCount > 0) {
+			return addNullable(res, BigDecimal.valueOf(primitiveCount));
+		}
+		return res;
+	}
+	
+	/**
+	 * Reset any running calculation, used to reset existing map operations 
+	 */
+	public void reset() {
+		res = null;
+		primitiveCount = 0;
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another Count instance into this instance
+	 * 
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		Count o = (Count) other;
+		res = addNullable(res, o.res);
+		primitiveCount += o.primitiveCount;
+	}
+}
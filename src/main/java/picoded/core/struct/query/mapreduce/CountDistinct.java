@@ -0,0 +1,271 @@
+package picoded.core.struct.query.mapreduce;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import picoded.core.conv.NestedObjectFetch;
+
+/**
+ * Approximate count distinct function for MapReduceBase, using a HyperLogLog sketch.
+ *
+ * This uses a fixed amount of memory (16KB), regardless of the number of values,
+ * with a standard error of roughly 0.8%. The estimate is computed using the
+ * improved raw estimator by Otmar Ertl, which does not require any bias correction tables.
+ *
+ * Values are compared by their value, where integer numbers of any type are considered
+ * equal (so 1, 1L and 1.0 are the same). Other values are compared by their string value.
+ **/
+public class CountDistinct extends MapReduceBase {
+	
+	//------------------------------------------------------
+	//
+	//  Sketch configuration
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Number of index bits used, for 2^14 registers
+	 */
+	protected static final int PRECISION = 14;
+	
+	/**
+	 * Number of registers used
+	 */
+	protected static final int REGISTER_COUNT = 1 << PRECISION;
+	
+	/**
+	 * Number of hash bits remaining, after the register index
+	 */
+	protected static final int REMAINING_BITS = 64 - PRECISION;
+	
+	/**
+	 * HyperLogLog registers, of the max leading zero count (+1) for each register
+	 */
+	protected byte[] registers = new byte[REGISTER_COUNT];
+	
+	/**
+	 * Indicates if any value was mapped
+	 */
+	protected boolean hasValue = false;
+	
+	//------------------------------------------------------
+	//
+	//  Mapping of values
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * mapping function used to process a single value as it comes in
+	 *
+	 * @param   value used in mapping, this value is possible null if the parameter does not exist
+	 */
+	public void map(BigDecimal val, Object rawVal) {
+		if (rawVal != null) {
+			addHash(hashValue(rawVal));
+		}
+	}
+	
+	/**
+	 * mapping function used to process a parameter in a map,
+	 * without any BigDecimal conversion of the value
+	 *
+	 * @param  inmap map object, to extract the value from
+	 * @param  key   to extract value from
+	 */
+	public void map(Object inmap, String key) {
+		map((BigDecimal) null, NestedObjectFetch.fetchObject(inmap, key));
+	}
+	
+	/**
+	 * Adds the hash of a value into the sketch
+	 *
+	 * @param  hash 64 bit hash of the value
+	 */
+	protected void addHash(long hash) {
+		int index = (int) (hash >>> REMAINING_BITS);
+		int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), REMAINING_BITS) + 1;
+		if (rank > registers[index]) {
+			registers[index] = (byte) rank;
+		}
+		hasValue = true;
+	}
+	
+	/**
+	 * 64 bit hash of a value, such that integer numbers of any type hash the same
+	 *
+	 * @param  rawVal to hash
+	 *
+	 * @return  64 bit hash
+	 */
+	protected static long hashValue(Object rawVal) {
+		// Integer numbers
+		if (rawVal instanceof Long || rawVal instanceof Integer || rawVal instanceof Short
+			|| rawVal instanceof Byte) {
+			return mix64(((Number) rawVal).longValue());
+		}
+		
+		// Other numbers, hashed as a long if its an integer value
+		if (rawVal instanceof Number) {
+			BigDecimal num = null;
+			try {
+				num = (rawVal instanceof BigDecimal) ? (BigDecimal) rawVal : new BigDecimal(
+					rawVal.toString());
+			} catch (NumberFormatException e) {
+				// NaN, or infinity values, hashed as a string
+				return hashString(rawVal.toString());
+			}
+			try {
+				return mix64(num.longValueExact());
+			} catch (ArithmeticException e) {
+				return hashString(num.stripTrailingZeros().toPlainString());
+			}
+		}
+		
+		// Everything else
+		return hashString(rawVal.toString());
+	}
+	
+	/**
+	 * 64 bit FNV-1a hash of the string UTF-8 bytes, with the result mixed for better avalanche
+	 *
+	 * @param  str to hash
+	 *
+	 * @return  64 bit hash
+	 */
+	protected static long hashString(String str) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : str.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		return mix64(hash);
+	}
+	
+	/**
+	 * Final bit mixing function of MurmurHash3 (fmix64)
+	 */
+	protected static long mix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Estimation
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Returns the approximate count of distinct values, as a BigDecimal
+	 *
+	 * @return  BigDecimal representing the current result, null if no values was mapped
+	 */
+	public BigDecimal reduce() {
+		if (!hasValue) {
+			return null;
+		}
+		return BigDecimal.valueOf(Math.round(estimate()));
+	}
+	
+	/**
+	 * Improved raw estimator, from "New cardinality estimation algorithms
+	 * for HyperLogLog sketches" (Otmar Ertl, 2017)
+	 *
+	 * @return  approximate distinct count
+	 */
+	protected double estimate() {
+		// Histogram of the register values
+		int[] histogram = new int[REMAINING_BITS + 2];
+		for (byte r : registers) {
+			++histogram[r];
+		}
+		
+		double m = REGISTER_COUNT;
+		double z = m * tau(1.0 - histogram[REMAINING_BITS + 1] / m);
+		for (int k = REMAINING_BITS; k >= 1; --k) {
+			z = 0.5 * (z + histogram[k]);
+		}
+		z += m * sigma(histogram[0] / m);
+		return (m * m) / (2.0 * Math.log(2.0) * z);
+	}
+	
+	/**
+	 * Sigma function, of the improved raw estimator
+	 */
+	protected static double sigma(double x) {
+		if (x == 1.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double y = 1.0;
+		double z = x;
+		double zPrev;
+		do {
+			x *= x;
+			zPrev = z;
+			z += x * y;
+			y += y;
+		} while (z != zPrev);
+		return z;
+	}
+	
+	/**
+	 * Tau function, of the improved raw estimator
+	 */
+	protected static double tau(double x) {
+		if (x == 0.0 || x == 1.0) {
+			return 0.0;
+		}
+		double y = 1.0;
+		double z = 1.0 - x;
+		double zPrev;
+		do {
+			x = Math.sqrt(x);
+			zPrev = z;
+			y *= 0.5;
+			z -= Math.pow(1.0 - x, 2) * y;
+		} while (z != zPrev);
+		return z / 3.0;
+	}
+	
+	/**
+	 * Reset any running calculation, used to reset existing map operations
+	 */
+	public void reset() {
+		registers = new byte[REGISTER_COUNT];
+		hasValue = false;
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another CountDistinct instance into this instance,
+	 * this gives the same result as mapping all the values into a single instance
+	 *
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		CountDistinct o = (CountDistinct) other;
+		for (int i = 0; i < REGISTER_COUNT; ++i) {
+			if (o.registers[i] > registers[i]) {
+				registers[i] = o.registers[i];
+			}
+		}
+		hasValue = hasValue || o.hasValue;
+	}
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import picoded.core.conv.GenericConvert;
 import picoded.core.conv.NestedObjectFetch;
+import picoded.core.exception.ExceptionMessage;
 
 /**
  * Internal representation of a simple MapReduceBase class,
@@ -50,10 +51,137 @@ public abstract class MapReduceBase {
 			return;
 		}
 		
+		// Primitive mapping, for long and double values
+		if (primitiveMode) {
+			if (valObj instanceof Long || valObj instanceof Integer || valObj instanceof Short
+				|| valObj instanceof Byte) {
+				mapLong(((Number) valObj).longValue(), valObj);
+				return;
+			}
+			if (valObj instanceof Double) {
+				double d = ((Double) valObj).doubleValue();
+				if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+					mapDouble(d, valObj);
+					return;
+				}
+			}
+		}
+		
 		// Non null mapping - assumes a value
 		map((BigDecimal) GenericConvert.toBigDecimal(valObj, null), (Object) valObj);
 	}
 	
+	//------------------------------------------------------
+	//
+	//  Primitive accumulation mode
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Primitive accumulation mode, where long, and double values are accumulated
+	 * without being converted into BigDecimal. Other values still uses the BigDecimal map.
+	 */
+	protected boolean primitiveMode = false;
+	
+	/**
+	 * Indicates if the primitive accumulation mode is supported
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @return  true, if mapLong and mapDouble is implemented
+	 */
+	public boolean supportsPrimitiveMode() {
+		return false;
+	}
+	
+	/**
+	 * Enable / disable the primitive accumulation mode, this is ignored if its not supported.
+	 * This should be set before any mapping is done.
+	 * 
+	 * @param  enable primitive accumulation mode
+	 */
+	public void setPrimitiveMode(boolean enable) {
+		primitiveMode = enable && supportsPrimitiveMode();
+	}
+	
+	/**
+	 * @return  true, if primitive accumulation mode is in use
+	 */
+	public boolean isPrimitiveMode() {
+		return primitiveMode;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @param   val    long value to process
+	 * @param   rawVal extracted from the data map
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		map(BigDecimal.valueOf(val), rawVal);
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @param   val    double value to process
+	 * @param   rawVal extracted from the data map
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		map(doubleToBigDecimal(val), rawVal);
+	}
+	
+	/**
+	 * Converts a double value to BigDecimal, in the same way as GenericConvert.toBigDecimal
+	 * 
+	 * @param   val  double value to convert
+	 * 
+	 * @return  BigDecimal of the value
+	 */
+	protected static BigDecimal doubleToBigDecimal(double val) {
+		return new BigDecimal(Double.toString(val));
+	}
+	
+	/**
+	 * Adds two BigDecimal, where either could be null
+	 * 
+	 * @return  sum of both values, or null if both values are null
+	 */
+	protected static BigDecimal addNullable(BigDecimal a, BigDecimal b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		return a.add(b);
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Additional term arguments
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Configure the additional arguments of the aggregation term,
+	 * such as the "0.99" in "percentile(field, 0.99)". This is called before any mapping is done.
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @param  args additional arguments, after the field name
+	 */
+	public void setArguments(String[] args) {
+		if (args != null && args.length > 0) {
+			throw new RuntimeException("Aggregation function " + this.getClass().getSimpleName()
+				+ " does not support additional arguments : " + String.join(", ", args));
+		}
+	}
+	
 	//------------------------------------------------------
 	//
 	//  Default blank constructor
@@ -102,6 +230,41 @@ public abstract class MapReduceBase {
 		res = null;
 	}
 	
+	/**
+	 * Indicates if partial results can be combined, via the combine function
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @return  true, if combine is implemented
+	 */
+	public boolean supportsCombine() {
+		return false;
+	}
+	
+	/**
+	 * Combines the partial result of another instance (of the same class) into this instance.
+	 * Such that the dataset can be mapped in parts (or in parallel), and reduced once.
+	 * 
+	 * [to override on extension]
+	 * 
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		throw new UnsupportedOperationException(ExceptionMessage.functionNotImplemented);
+	}
+	
+	/**
+	 * Validates that the other instance can be combined with the current instance
+	 * 
+	 * @param  other instance to combine from
+	 */
+	protected void validateCombine(MapReduceBase other) {
+		if (other == null || other.getClass() != this.getClass()) {
+			throw new RuntimeException("Unable to combine " + this.getClass().getSimpleName()
+				+ " with " + ((other == null) ? "null" : other.getClass().getSimpleName()));
+		}
+	}
+	
 	/**
 	 * Duplicate a "blank" instance of the current class object
 	 * Used to initialize calculators for each "run"
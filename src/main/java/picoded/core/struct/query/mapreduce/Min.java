@@ -23,4 +23,103 @@ public class Min extends MapReduceBase {
 			}
 		}
 	}
-}
\ No newline at end of file
+	
+	//------------------------------------------------------
+	//
+	//  Primitive accumulation mode
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Primitive min value, used in primitive mode
+	 */
+	protected long longRes = 0;
+	protected boolean hasLong = false;
+	protected double doubleRes = 0.0;
+	protected boolean hasDouble = false;
+	
+	/**
+	 * Primitive accumulation mode is supported
+	 */
+	public boolean supportsPrimitiveMode() {
+		return true;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		longRes = hasLong ? Math.min(longRes, val) : val;
+		hasLong = true;
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		if (!hasDouble || val < doubleRes) {
+			doubleRes = val;
+		}
+		hasDouble = true;
+	}
+	
+	/**
+	 * Returns the current calculation reduce-ed as a BigDecimal.
+	 * Including any primitive values
+	 * 
+	 * @return  BigDecimal representing the current result
+	 */
+	public BigDecimal reduce() {
+		BigDecimal ret = res;
+		if (hasLong) {
+			BigDecimal val = BigDecimal.valueOf(longRes);
+			ret = (ret == null) ? val : ret.min(val);
+		}
+		if (hasDouble) {
+			BigDecimal val = doubleToBigDecimal(doubleRes);
+			ret = (ret == null) ? val : ret.min(val);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Reset any running calculation, used to reset existing map operations 
+	 */
+	public void reset() {
+		res = null;
+		hasLong = false;
+		hasDouble = false;
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another Min instance into this instance
+	 * 
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		Min o = (Min) other;
+		if (o.res != null) {
+			res = (res == null) ? o.res : res.min(o.res);
+		}
+		if (o.hasLong) {
+			mapLong(o.longRes, null);
+		}
+		if (o.hasDouble) {
+			mapDouble(o.doubleRes, null);
+		}
+	}
+}
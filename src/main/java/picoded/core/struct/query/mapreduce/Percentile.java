@@ -0,0 +1,329 @@
+package picoded.core.struct.query.mapreduce;
+
+import java.math.BigDecimal;
+
+/**
+ * Approximate percentile function for MapReduceBase, using a merging t-digest sketch.
+ * Used in the format of "percentile(fieldname, 0.99)", where the percentile is between 0 and 1.
+ *
+ * This uses a fixed amount of memory (bounded by the compression), regardless of the number
+ * of values. Accuracy is highest near the extreme percentiles (such as 0.01, or 0.99),
+ * while the min (0) and max (1) percentile are always exact.
+ **/
+public class Percentile extends MapReduceBase {
+	
+	//------------------------------------------------------
+	//
+	//  Sketch configuration
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Compression factor, which bounds the number of centroids kept
+	 */
+	protected static final double COMPRESSION = 100.0;
+	
+	/**
+	 * Number of values to buffer, before merging them into the centroids
+	 */
+	protected static final int BUFFER_SIZE = 500;
+	
+	/**
+	 * Max number of centroids, after merging
+	 */
+	protected static final int CENTROID_SIZE = (int) (2 * Math.ceil(COMPRESSION)) + 10;
+	
+	/**
+	 * The percentile to compute, between 0 and 1
+	 */
+	protected double percentile = 0.5;
+	
+	/**
+	 * Merged centroids, sorted by the mean
+	 */
+	protected double[] centroidMean = new double[CENTROID_SIZE];
+	protected double[] centroidWeight = new double[CENTROID_SIZE];
+	protected int centroidCount = 0;
+	
+	/**
+	 * Unmerged buffered values, and their weight
+	 */
+	protected double[] bufferMean = new double[BUFFER_SIZE];
+	protected double[] bufferWeight = new double[BUFFER_SIZE];
+	protected int bufferCount = 0;
+	
+	/**
+	 * Total weight of all values, and the min / max value
+	 */
+	protected double totalWeight = 0.0;
+	protected double min = Double.POSITIVE_INFINITY;
+	protected double max = Double.NEGATIVE_INFINITY;
+	
+	/**
+	 * Configure the percentile to compute, defaults to 0.5 (median) if not given
+	 *
+	 * @param  args of the percentile, between 0 and 1
+	 */
+	public void setArguments(String[] args) {
+		if (args == null || args.length == 0) {
+			return;
+		}
+		if (args.length > 1) {
+			throw new RuntimeException("Percentile expects a single percentile argument : "
+				+ String.join(", ", args));
+		}
+		try {
+			percentile = Double.parseDouble(args[0]);
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid percentile argument : " + args[0], e);
+		}
+		if (!(percentile >= 0.0 && percentile <= 1.0)) {
+			throw new RuntimeException("Percentile argument must be between 0 and 1 : " + args[0]);
+		}
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Mapping of values
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * mapping function used to process a single value as it comes in
+	 *
+	 * @param   value used in mapping, this value is possible null if the parameter does not exist
+	 */
+	public void map(BigDecimal val, Object rawVal) {
+		if (val != null) {
+			add(val.doubleValue(), 1.0);
+		}
+	}
+	
+	/**
+	 * Primitive accumulation mode is supported
+	 */
+	public boolean supportsPrimitiveMode() {
+		return true;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		add((double) val, 1.0);
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		add(val, 1.0);
+	}
+	
+	/**
+	 * Adds a weighted value into the buffer, merging the buffer if its full
+	 *
+	 * @param  val     to add
+	 * @param  weight  of the value
+	 */
+	protected void add(double val, double weight) {
+		if (Double.isNaN(val)) {
+			return;
+		}
+		if (bufferCount >= BUFFER_SIZE) {
+			merge();
+		}
+		bufferMean[bufferCount] = val;
+		bufferWeight[bufferCount] = weight;
+		++bufferCount;
+		totalWeight += weight;
+		min = Math.min(min, val);
+		max = Math.max(max, val);
+	}
+	
+	/**
+	 * Merge the buffered values, and the existing centroids, into the new set of centroids
+	 */
+	protected void merge() {
+		if (bufferCount == 0) {
+			return;
+		}
+		
+		// 1. Collect the centroids and buffered values, sorted by the mean
+		int len = centroidCount + bufferCount;
+		double[] mean = new double[len];
+		double[] weight = new double[len];
+		System.arraycopy(centroidMean, 0, mean, 0, centroidCount);
+		System.arraycopy(centroidWeight, 0, weight, 0, centroidCount);
+		System.arraycopy(bufferMean, 0, mean, centroidCount, bufferCount);
+		System.arraycopy(bufferWeight, 0, weight, centroidCount, bufferCount);
+		sortByMean(mean, weight);
+		
+		// 2. Greedily merge adjacent centroids, within the size limit of the scale function
+		double weightSoFar = 0.0;
+		double qLimit = qLimit(0.0);
+		int count = 0;
+		centroidMean[0] = mean[0];
+		centroidWeight[0] = weight[0];
+		for (int i = 1; i < len; ++i) {
+			double proposed = centroidWeight[count] + weight[i];
+			if ((weightSoFar + proposed) / totalWeight <= qLimit) {
+				// Merge into the current centroid
+				centroidMean[count] += (mean[i] - centroidMean[count]) * weight[i] / proposed;
+				centroidWeight[count] = proposed;
+			} else {
+				// Start a new centroid
+				weightSoFar += centroidWeight[count];
+				qLimit = qLimit(weightSoFar / totalWeight);
+				++count;
+				centroidMean[count] = mean[i];
+				centroidWeight[count] = weight[i];
+			}
+		}
+		centroidCount = count + 1;
+		bufferCount = 0;
+	}
+	
+	/**
+	 * Upper quantile limit of a centroid starting at q0, using the k1 scale function
+	 * of k(q) = compression / (2 * PI) * asin(2q - 1)
+	 *
+	 * @param  q0 quantile of the centroid start
+	 *
+	 * @return  max quantile of the centroid end
+	 */
+	protected static double qLimit(double q0) {
+		double k = COMPRESSION / (2 * Math.PI) * Math.asin(2 * q0 - 1) + 1;
+		if (k >= COMPRESSION / 4) {
+			return 1.0;
+		}
+		return (Math.sin(k * (2 * Math.PI) / COMPRESSION) + 1) / 2;
+	}
+	
+	/**
+	 * Shell sort of the mean array, with the weight array sorted together with it
+	 */
+	protected static void sortByMean(double[] mean, double[] weight) {
+		int len = mean.length;
+		for (int gap = len / 2; gap > 0; gap = (gap == 2) ? 1 : (int) (gap / 2.2)) {
+			for (int i = gap; i < len; ++i) {
+				double m = mean[i];
+				double w = weight[i];
+				int j = i;
+				while (j >= gap && mean[j - gap] > m) {
+					mean[j] = mean[j - gap];
+					weight[j] = weight[j - gap];
+					j -= gap;
+				}
+				mean[j] = m;
+				weight[j] = w;
+			}
+		}
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Estimation
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Returns the approximate percentile value, as a BigDecimal
+	 *
+	 * @return  BigDecimal representing the current result, null if no values was mapped
+	 */
+	public BigDecimal reduce() {
+		if (totalWeight <= 0.0) {
+			return null;
+		}
+		return doubleToBigDecimal(quantile(percentile));
+	}
+	
+	/**
+	 * Estimate the value at the given quantile, by interpolating between the centroids
+	 *
+	 * @param  q quantile between 0 and 1
+	 *
+	 * @return  the estimated value
+	 */
+	protected double quantile(double q) {
+		merge();
+		
+		// Exact bounds, and single centroid
+		if (q <= 0.0 || (centroidCount == 1 && centroidWeight[0] <= 1.0)) {
+			return (q >= 1.0) ? max : min;
+		}
+		if (q >= 1.0) {
+			return max;
+		}
+		
+		// Between the min value, and the first centroid
+		double index = q * totalWeight;
+		double half = centroidWeight[0] / 2;
+		if (index < half) {
+			return min + (centroidMean[0] - min) * (index / half);
+		}
+		
+		// Between two centroids
+		double weightSoFar = half;
+		for (int i = 0; i < centroidCount - 1; ++i) {
+			double dw = (centroidWeight[i] + centroidWeight[i + 1]) / 2;
+			if (weightSoFar + dw > index) {
+				double z1 = index - weightSoFar;
+				double z2 = weightSoFar + dw - index;
+				return (centroidMean[i] * z2 + centroidMean[i + 1] * z1) / dw;
+			}
+			weightSoFar += dw;
+		}
+		
+		// Between the last centroid, and the max value
+		int last = centroidCount - 1;
+		half = centroidWeight[last] / 2;
+		return centroidMean[last] + (max - centroidMean[last])
+			* Math.min(1.0, (index - weightSoFar) / half);
+	}
+	
+	/**
+	 * Reset any running calculation, used to reset existing map operations
+	 */
+	public void reset() {
+		centroidCount = 0;
+		bufferCount = 0;
+		totalWeight = 0.0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another Percentile instance into this instance
+	 *
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		Percentile o = (Percentile) other;
+		for (int i = 0; i < o.centroidCount; ++i) {
+			add(o.centroidMean[i], o.centroidWeight[i]);
+		}
+		for (int i = 0; i < o.bufferCount; ++i) {
+			add(o.bufferMean[i], o.bufferWeight[i]);
+		}
+		if (o.totalWeight > 0.0) {
+			min = Math.min(min, o.min);
+			max = Math.max(max, o.max);
+		}
+	}
+}
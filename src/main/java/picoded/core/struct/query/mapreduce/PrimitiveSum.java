@@ -0,0 +1,110 @@
+package picoded.core.struct.query.mapreduce;
+
+import java.math.BigDecimal;
+
+/**
+ * Running sum of primitive long and double values, used in the MapReduceBase primitive mode.
+ *
+ * + long values are summed exactly, with the running sum spilled into a BigDecimal on overflow
+ * + double values are summed using Kahan (compensated) summation
+ **/
+class PrimitiveSum {
+	
+	// Exact long running sum
+	protected long longSum = 0;
+	protected boolean hasLong = false;
+	
+	// Compensated double running sum
+	protected double doubleSum = 0.0;
+	protected double doubleCompensation = 0.0;
+	protected boolean hasDouble = false;
+	
+	// Partial sums, which was spilled over due to overflow
+	protected BigDecimal spillSum = null;
+	
+	/**
+	 * Adds a long value to the sum
+	 **/
+	protected void add(long val) {
+		long sum = longSum + val;
+		
+		// Overflow, spill the current running sum
+		if (((longSum ^ sum) & (val ^ sum)) < 0) {
+			spill(BigDecimal.valueOf(longSum));
+			sum = val;
+		}
+		
+		longSum = sum;
+		hasLong = true;
+	}
+	
+	/**
+	 * Adds a (finite) double value to the sum
+	 **/
+	protected void add(double val) {
+		double y = val - doubleCompensation;
+		double sum = doubleSum + y;
+		
+		// Overflow, spill the current running sum
+		if (Double.isInfinite(sum)) {
+			spill(MapReduceBase.doubleToBigDecimal(doubleSum));
+			doubleSum = val;
+			doubleCompensation = 0.0;
+			hasDouble = true;
+			return;
+		}
+		
+		doubleCompensation = (sum - doubleSum) - y;
+		doubleSum = sum;
+		hasDouble = true;
+	}
+	
+	/**
+	 * Adds to the spill over sum
+	 **/
+	protected void spill(BigDecimal val) {
+		spillSum = (spillSum == null) ? val : spillSum.add(val);
+	}
+	
+	/**
+	 * Adds the other running sum, to this sum
+	 **/
+	protected void combine(PrimitiveSum other) {
+		if (other.hasLong) {
+			add(other.longSum);
+		}
+		if (other.hasDouble) {
+			add(other.doubleSum);
+			add(-other.doubleCompensation);
+		}
+		if (other.spillSum != null) {
+			spill(other.spillSum);
+		}
+	}
+	
+	/**
+	 * @return the sum of all values as a BigDecimal, null if no values was added
+	 **/
+	protected BigDecimal toBigDecimal() {
+		BigDecimal ret = spillSum;
+		if (hasLong) {
+			ret = MapReduceBase.addNullable(ret, BigDecimal.valueOf(longSum));
+		}
+		if (hasDouble) {
+			ret = MapReduceBase.addNullable(ret, MapReduceBase.doubleToBigDecimal(doubleSum));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Reset the sum
+	 **/
+	protected void reset() {
+		longSum = 0;
+		hasLong = false;
+		doubleSum = 0.0;
+		doubleCompensation = 0.0;
+		hasDouble = false;
+		spillSum = null;
+	}
+}
@@ -6,6 +6,7 @@ import java.math.BigDecimal;
  * Sum function for MapReduceBase
  **/
 public class Sum extends MapReduceBase {
+	
 	/**
 	 * mapping function used to process a single value as it comes in
 	 * 
@@ -22,4 +23,79 @@ public class Sum extends MapReduceBase {
 			}
 		}
 	}
-}
\ No newline at end of file
+	
+	//------------------------------------------------------
+	//
+	//  Primitive accumulation mode
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Primitive running sum, used in primitive mode
+	 */
+	protected PrimitiveSum primitiveSum = new PrimitiveSum();
+	
+	/**
+	 * Primitive accumulation mode is supported
+	 */
+	public boolean supportsPrimitiveMode() {
+		return true;
+	}
+	
+	/**
+	 * mapping function used to process a single long value, in primitive mode
+	 */
+	protected void mapLong(long val, Object rawVal) {
+		primitiveSum.add(val);
+	}
+	
+	/**
+	 * mapping function used to process a single finite double value, in primitive mode
+	 */
+	protected void mapDouble(double val, Object rawVal) {
+		primitiveSum.add(val);
+	}
+	
+	/**
+	 * Returns the current calculation reduce-ed as a BigDecimal.
+	 * Including any primitive values summed
+	 * 
+	 * @return  BigDecimal representing the current result
+	 */
+	public BigDecimal reduce() {
+		return addNullable(res, primitiveSum.toBigDecimal());
+	}
+	
+	/**
+	 * Reset any running calculation, used to reset existing map operations 
+	 */
+	public void reset() {
+		res = null;
+		primitiveSum.reset();
+	}
+	
+	//------------------------------------------------------
+	//
+	//  Partial result combining
+	//
+	//------------------------------------------------------
+	
+	/**
+	 * Partial results can be combined
+	 */
+	public boolean supportsCombine() {
+		return true;
+	}
+	
+	/**
+	 * Combines the partial result of another Sum instance into this instance
+	 * 
+	 * @param  other instance to combine from, this is not modified
+	 */
+	public void combine(MapReduceBase other) {
+		validateCombine(other);
+		Sum o = (Sum) other;
+		res = addNullable(res, o.res);
+		primitiveSum.combine(o.primitiveSum);
+	}
+}
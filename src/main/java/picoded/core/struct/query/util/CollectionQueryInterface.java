@@ -2,6 +2,7 @@ package picoded.core.struct.query.utils;
 
 import picoded.core.struct.ProxyGenericConvertMap;
 import picoded.core.struct.query.Aggregation;
+import picoded.core.struct.query.QueryCursor;
 
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
@@ -182,6 +183,83 @@ public interface CollectionQueryInterface<V extends Map<String, Object>> {
 		return Arrays.asList(query(whereClause, whereValues, orderByStr, offset, limit));
 	}
 	
+	// Query cursor varients
+	//--------------------------------------------------------------------------
+	
+	/**
+	 * Default number of DataObjects fetched per page, by queryCursor
+	 **/
+	int DEFAULT_CURSOR_PAGE_SIZE = 100;
+	
+	/**
+	 * Key order used by queryCursor, so that each page is fetched in the same stable order
+	 **/
+	String DEFAULT_CURSOR_ORDER_BY = "_oid";
+	
+	/**
+	 * Performs a search query, and returns a cursor of the respective DataObjects.
+	 * Where each page of the result is only fetched (via query with an offset and limit) when needed.
+	 * 
+	 * The pages are fetched in the DEFAULT_CURSOR_ORDER_BY key order, see queryCursor with
+	 * the order by string for its paging behaviour.
+	 *
+	 * @param   where query statement
+	 * @param   where clause values array
+	 *
+	 * @return  The DataObject cursor
+	 **/
+	default QueryCursor<V> queryCursor(String whereClause, Object[] whereValues) {
+		return queryCursor(whereClause, whereValues, null, DEFAULT_CURSOR_PAGE_SIZE);
+	}
+	
+	/**
+	 * Performs a search query, and returns a cursor of the respective DataObjects.
+	 * Where each page of the result is only fetched (via query with an offset and limit) when needed.
+	 * 
+	 * As each page is a separate query call, the DEFAULT_CURSOR_ORDER_BY key is appended to the
+	 * sort order (or used on its own, if no order is given), so that rows are not skipped or
+	 * repeated across pages. Implementations are expected to return the same stable order for
+	 * the same order by string, in between the calls.
+	 * 
+	 * Note that each page reruns the query filter (and sort), so iterating the full result costs
+	 * O(N^2 / pageSize). Implementations with a native cursor should replace this function.
+	 *
+	 * @param   where query statement
+	 * @param   where clause values array
+	 * @param   query string to sort the order by, use null for the key order only
+	 * @param   number of objects to fetch per page
+	 *
+	 * @return  The DataObject cursor
+	 **/
+	default QueryCursor<V> queryCursor(String whereClause, Object[] whereValues, String orderByStr,
+		int pageSize) {
+		String pageOrderBy = cursorOrderBy(orderByStr);
+		return QueryCursor.paged(
+			(offset, limit) -> Arrays.asList(query(whereClause, whereValues, pageOrderBy, offset, limit)),
+			pageSize);
+	}
+	
+	/**
+	 * Gets the stable order by string used by queryCursor, with the DEFAULT_CURSOR_ORDER_BY key
+	 * as the last sort key (if it is not already sorted on)
+	 *
+	 * @param   query string to sort the order by, use null for the key order only
+	 *
+	 * @return  The order by string
+	 **/
+	static String cursorOrderBy(String orderByStr) {
+		if (orderByStr == null || orderByStr.trim().isEmpty()) {
+			return DEFAULT_CURSOR_ORDER_BY;
+		}
+		for (String term : orderByStr.split(",")) {
+			String[] termSplit = term.trim().split("\\s+");
+			if (termSplit[0].equals(DEFAULT_CURSOR_ORDER_BY)) {
+				return orderByStr;
+			}
+		}
+		return orderByStr + ", " + DEFAULT_CURSOR_ORDER_BY;
+	}
+	
 	// Query count (to optimize on specific implementation)
 	//--------------------------------------------------------------------------
 	
@@ -236,4 +314,28 @@ public interface CollectionQueryInterface<V extends Map<String, Object>> {
 		return aggregation(new String[] { singleAggregationTerm }, whereClause, whereValues)[0];
 	}
 	
+	/**
+	 * Performs a search query, and returns the respective aggregation result of each group
+	 * (similar to SQL GROUP BY)
+	 *
+	 * @param   aggregationTerms used to compute the result
+	 * @param   groupByFields used to group the result
+	 * @param   where query statement
+	 * @param   where clause values array
+	 *
+	 * @return  Map of group key, to the BigDecimal[] array of the aggregation result
+	 **/
+	default Map<Object, BigDecimal[]> aggregationGroupBy(String[] aggregationTerms,
+		String[] groupByFields, String whereClause, Object[] whereValues) {
+		// 1. Initialize the aggregation object (fail fast)
+		Aggregation agg = Aggregation.build(aggregationTerms).groupBy(groupByFields);
+		
+		// 2. Get the query result, as a collection
+		V[] resArray = query(whereClause, whereValues);
+		List<Object> resCollection = (List<Object>) (List<?>) Arrays.asList(resArray);
+		
+		// 3. compute the grouped aggregation (in a single pass)
+		return agg.computeGroupBy(resCollection);
+	}
+	
 }
@@ -0,0 +1,106 @@
+package picoded.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal microbenchmark runner, used by the *_benchmark classes in the test source set.
+ * Which are run via their main function, such as
+ *
+ * ```
+ * gradle benchmark -Pbenchmark=picoded.core.struct.query.QueryOperator_benchmark
+ * ```
+ *
+ * Each case is warmed up (for the JIT), before being timed over several rounds,
+ * where the best round is reported as the average time per operation.
+ * This is not a replacement for JMH, but is sufficient for relative comparisons.
+ **/
+public class MicroBenchmark {
+	
+	protected MicroBenchmark() {
+		throw new IllegalAccessError("Utility class");
+	}
+	
+	/**
+	 * Number of warmup, and timed rounds
+	 **/
+	public static int warmupRounds = 5;
+	public static int timedRounds = 10;
+	
+	/**
+	 * Sum of all the case results, to avoid the JIT from eliminating the benchmarked code
+	 **/
+	protected static volatile long blackhole = 0;
+	
+	/**
+	 * Measure the benchmark case, and print its result
+	 *
+	 * @param  name of the case
+	 * @param  operations done for each run of the case
+	 * @param  runCase which does the operations, returning any result value (such as a count)
+	 *
+	 * @return  best average time per operation, in nanoseconds
+	 **/
+	public static double measure(String name, long operations, LongSupplier runCase) {
+		long sum = 0;
+		for (int i = 0; i < warmupRounds; ++i) {
+			sum += runCase.getAsLong();
+		}
+		
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < timedRounds; ++i) {
+			long start = System.nanoTime();
+			sum += runCase.getAsLong();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		blackhole += sum;
+		
+		double ret = ((double) best) / operations;
+		System.out.println(String.format(Locale.ENGLISH, "%-48s %12.2f ns/op", name, ret));
+		return ret;
+	}
+	
+	/**
+	 * Measure the bytes allocated by the benchmark case (on the current thread), and print its result.
+	 * This requires a JVM supporting com.sun.management.ThreadMXBean allocation tracking.
+	 *
+	 * @param  name of the case
+	 * @param  operations done for each run of the case
+	 * @param  runCase which does the operations, returning any result value (such as a count)
+	 *
+	 * @return  bytes allocated per operation, or -1 if allocation tracking is not supported
+	 **/
+	public static double allocation(String name, long operations, LongSupplier runCase) {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println(String.format(Locale.ENGLISH, "%-48s %12s B/op", name, "n/a"));
+			return -1;
+		}
+		com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean) bean;
+		long threadId = Thread.currentThread().getId();
+		
+		// Warmup, so that the JIT allocation elimination is applied
+		long sum = 0;
+		for (int i = 0; i < warmupRounds; ++i) {
+			sum += runCase.getAsLong();
+		}
+		long start = allocBean.getThreadAllocatedBytes(threadId);
+		sum += runCase.getAsLong();
+		long allocated = allocBean.getThreadAllocatedBytes(threadId) - start;
+		blackhole += sum;
+		
+		double ret = ((double) allocated) / operations;
+		System.out.println(String.format(Locale.ENGLISH, "%-48s %12.2f B/op", name, ret));
+		return ret;
+	}
+	
+	/**
+	 * Prints a section header, for the following cases
+	 **/
+	public static void section(String title) {
+		System.out.println();
+		System.out.println("// " + title);
+		System.out.println("//----------------------------------------------------------------");
+	}
+}
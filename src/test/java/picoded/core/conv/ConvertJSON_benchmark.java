@@ -0,0 +1,200 @@
+package picoded.core.conv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import picoded.core.MicroBenchmark;
+
+///
+/// Microbenchmark of the ConvertJSON byte level encode / decode, against the String round trip,
+/// run via `gradle benchmark -Pbenchmark=picoded.core.conv.ConvertJSON_benchmark`
+///
+public class ConvertJSON_benchmark {
+	
+	/// Number of conversions in each run
+	private static final int OPS = 20000;
+	
+	/// Small request sized document
+	private static Map<String, Object> smallDocument() {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("id", 12345);
+		ret.put("name", "J\u00f6hn Doe");
+		ret.put("email", "john@example.com");
+		ret.put("active", true);
+		ret.put("score", 98.5);
+		return ret;
+	}
+	
+	/// Larger document, with a nested list of small documents
+	private static Map<String, Object> largeDocument() {
+		List<Object> items = new ArrayList<Object>();
+		for (int i = 0; i < 200; ++i) {
+			items.add(smallDocument());
+		}
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("items", items);
+		ret.put("total", items.size());
+		return ret;
+	}
+	
+	public static void main(String[] args) {
+		stringCase(smallDocument(), OPS);
+		documentCase("Small document", smallDocument(), OPS);
+		documentCase("Large document", largeDocument(), OPS / 100);
+	}
+	
+	/// Small document String conversions, as used in request handling
+	private static void stringCase(Map<String, Object> doc, int ops) {
+		String json = ConvertJSON.fromMap(doc);
+		String listJson = "[1, \"two\", 3.5, null]";
+		String intJson = "[1, 2, 3, 4, 5, 6, 7, 8]";
+		String doubleJson = "[1.5, 2.5, 3.5, 4.5]";
+		
+		MicroBenchmark.section("Small document String conversions");
+		MicroBenchmark.measure("fromMap", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromMap(doc).length();
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("toMap", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(json).size();
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("toList", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toList(listJson).size();
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("toIntArray", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toIntArray(intJson).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("toDoubleArray", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toDoubleArray(doubleJson).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("fromMap", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromMap(doc).length();
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("toMap", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(json).size();
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("toIntArray", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toIntArray(intJson).length;
+			}
+			return ret;
+		});
+	}
+	
+	/// Encode and decode, via String and via bytes
+	private static void documentCase(String title, Map<String, Object> doc, int ops) {
+		byte[] json = ConvertJSON.fromObjectToBytes(doc);
+		ByteBuffer buffer = ByteBuffer.allocate(json.length * 2);
+		
+		MicroBenchmark.section(title + " encode (" + json.length + " bytes)");
+		MicroBenchmark.measure("fromObject(...).getBytes", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromObject(doc).getBytes(StandardCharsets.UTF_8).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("fromObjectToBytes", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromObjectToBytes(doc).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("writeTo(ByteBuffer)", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				buffer.clear();
+				ret += ConvertJSON.writeTo(doc, buffer);
+			}
+			return ret;
+		});
+		
+		MicroBenchmark.section(title + " decode");
+		MicroBenchmark.measure("toMap(new String(...))", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(new String(json, StandardCharsets.UTF_8)).size();
+			}
+			return ret;
+		});
+		MicroBenchmark.measure("toMap(byte[])", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(json).size();
+			}
+			return ret;
+		});
+		ByteBuffer input = ByteBuffer.wrap(json);
+		MicroBenchmark.measure("toObject(ByteBuffer)", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				input.rewind();
+				ret += ((Map<?, ?>) ConvertJSON.toObject(input)).size();
+			}
+			return ret;
+		});
+		
+		MicroBenchmark.section(title + " allocation");
+		MicroBenchmark.allocation("fromObject(...).getBytes", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromObject(doc).getBytes(StandardCharsets.UTF_8).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("fromObjectToBytes", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.fromObjectToBytes(doc).length;
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("toMap(new String(...))", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(new String(json, StandardCharsets.UTF_8)).size();
+			}
+			return ret;
+		});
+		MicroBenchmark.allocation("toMap(byte[])", ops, () -> {
+			long ret = 0;
+			for (int i = 0; i < ops; ++i) {
+				ret += ConvertJSON.toMap(json).size();
+			}
+			return ret;
+		});
+	}
+}
@@ -5,6 +5,11 @@ import static org.junit.Assert.*;
 import org.junit.*;
 
 // Java libs used
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 // Apache lib used
@@ -397,4 +402,347 @@ public class ConvertJSON_test {
 		assertArrayEquals(new Object[] { "one", null, "two" },
 			ConvertJSON.toObjectArray("[\"one\",null,\"two\"]"));
 	}
+	
+	//
+	// Streaming JSON
+	//
+	
+	@Test
+	public void streamArrayOfMaps() {
+		Iterator<Map<String, Object>> iter = ConvertJSON.toMapIterator(new StringReader(
+			"[ {\"a\":1}, /* comment */ {'b':[2,3]}, {} ]"));
+		assertEquals(ConvertJSON.toMap("{\"a\":1}"), iter.next());
+		assertEquals(Arrays.asList(2, 3), iter.next().get("b"));
+		assertTrue(iter.hasNext());
+		assertEquals(0, iter.next().size());
+		assertFalse(iter.hasNext());
+	}
+	
+	@Test
+	public void streamLinesOfMaps() throws Exception {
+		byte[] ndjson = "{\"id\":1}\n{\"id\":2}\n\n{\"id\":3}\n".getBytes("UTF-8");
+		List<Object> ids = new ArrayList<Object>();
+		Iterator<Map<String, Object>> iter = ConvertJSON.toMapIterator(new ByteArrayInputStream(ndjson));
+		while (iter.hasNext()) {
+			ids.add(iter.next().get("id"));
+		}
+		assertEquals(Arrays.asList(1, 2, 3), ids);
+		
+		// Mixed values
+		Iterator<Object> objIter = ConvertJSON.toObjectIterator(new StringReader("[1, \"two\", [3], null]"));
+		assertEquals(1, objIter.next());
+		assertEquals("two", objIter.next());
+		assertEquals(Arrays.asList(3), objIter.next());
+		assertNull(objIter.next());
+		assertFalse(objIter.hasNext());
+	}
+	
+	@Test
+	public void streamWriteAndRead() throws Exception {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 100; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("name", "row-" + i);
+			rows.add(row);
+		}
+		
+		// Writer, as a JSON array, and as lines
+		StringWriter writer = new StringWriter();
+		ConvertJSON.fromIterator(rows.iterator(), writer, false);
+		assertEquals(ConvertJSON.fromList(rows), writer.toString());
+		writer = new StringWriter();
+		ConvertJSON.fromIterator(rows.subList(0, 2).iterator(), writer, true);
+		assertEquals("{\"name\":\"row-0\",\"id\":0}\n{\"name\":\"row-1\",\"id\":1}\n", writer
+			.toString());
+		writer = new StringWriter();
+		ConvertJSON.fromObject(rows.get(5), writer);
+		assertEquals(ConvertJSON.fromMap(rows.get(5)), writer.toString());
+		
+		// Output stream, to a file, and read back
+		File dir = new File("./test/tmp/ConvertJSON/");
+		dir.mkdirs();
+		Path file = new File(dir, "stream.ndjson").toPath();
+		try (OutputStream out = Files.newOutputStream(file)) {
+			ConvertJSON.fromIterator(rows.iterator(), out, true);
+		}
+		List<Map<String, Object>> read = new ArrayList<Map<String, Object>>();
+		ConvertJSON.toMapIterator(file).forEachRemaining(read::add);
+		assertEquals(rows, read);
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ConvertJSON.fromObject(rows, bytes);
+		assertEquals(ConvertJSON.fromList(rows), bytes.toString("UTF-8"));
+	}
+	
+	@Test
+	public void streamCloseEarly() {
+		boolean[] closed = new boolean[] { false };
+		Reader reader = new StringReader("[{\"a\":1},{\"a\":2}]") {
+			@Override
+			public void close() {
+				closed[0] = true;
+				super.close();
+			}
+		};
+		ConvertJSON.JSONIterator<Map<String, Object>> iter = ConvertJSON.toMapIterator(reader);
+		iter.next();
+		assertFalse(closed[0]);
+		iter.close();
+		assertTrue(closed[0]);
+		assertFalse(iter.hasNext());
+	}
+	
+	@Test
+	public void streamMatchesString() throws Exception {
+		// Numbers, and unquoted keys, as per the string path
+		String[] rows = new String[] {
+			"{\"a\":1.0,\"b\":1.5,\"c\":1e2,\"d\":123456789012345678901234}",
+			"{a:1, \"e\":[2.0, 12345678901, 0.1]}", "{\"f\":{\"g\":-0.0}}" };
+		Iterator<Map<String, Object>> iter = ConvertJSON.toMapIterator(new StringReader("["
+			+ String.join(",", rows) + "]"));
+		for (String row : rows) {
+			assertEquals(row, ConvertJSON.toMap(row), iter.next());
+		}
+		assertFalse(iter.hasNext());
+		assertEquals(Integer.valueOf(100), ConvertJSON.toMap(rows[0]).get("c"));
+		
+		// Random values, as lines
+		Random rand = new Random(17);
+		List<String> values = new ArrayList<String>();
+		StringBuilder lines = new StringBuilder();
+		while (values.size() < 1000) {
+			StringBuilder json = new StringBuilder();
+			randomJSON(rand, json, 0);
+			String value = json.toString().replace('\n', ' ');
+			try {
+				ConvertJSON.toObject(value);
+			} catch (ConvertJSON.InvalidFormatJSON e) {
+				continue;
+			}
+			values.add(value);
+			lines.append(value).append('\n');
+		}
+		Iterator<Object> objIter = ConvertJSON.toObjectIterator(new StringReader(lines.toString()));
+		for (String value : values) {
+			assertEquals(value, ConvertJSON.toObject(value), objIter.next());
+		}
+		assertFalse(objIter.hasNext());
+	}
+	
+	@Test(expected = ConvertJSON.InvalidFormatJSON.class)
+	public void streamInvalidMap() {
+		Iterator<Map<String, Object>> iter = ConvertJSON.toMapIterator(new StringReader("[{}, 1]"));
+		iter.next();
+		iter.next();
+	}
+	
+	//
+	// Byte level JSON
+	//
+	
+	@Test
+	public void bytesRoundTrip() throws Exception {
+		tMap.put("Hello", "W\u00f6rld");
+		byte[] bytes = ConvertJSON.fromObjectToBytes(tMap);
+		assertArrayEquals(ConvertJSON.fromMap(tMap).getBytes("UTF-8"), bytes);
+		assertEquals(tMap, ConvertJSON.toMap(bytes));
+		assertEquals(tMap, ConvertJSON.toObject(bytes));
+		assertEquals(Arrays.asList(1, "two"), ConvertJSON.toList("[1, 'two']".getBytes("UTF-8")));
+	}
+	
+	@Test
+	public void byteBufferRoundTrip() throws Exception {
+		tMap.put("Hello", "W\u00f6rld");
+		
+		// Heap buffer, with a non zero position
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.put((byte) ' ');
+		int written = ConvertJSON.writeTo(tMap, buffer);
+		assertEquals(ConvertJSON.fromObjectToBytes(tMap).length, written);
+		buffer.flip();
+		buffer.get();
+		assertEquals(tMap, ConvertJSON.toObject(buffer));
+		assertFalse(buffer.hasRemaining());
+		
+		// Direct buffer
+		ByteBuffer direct = ByteBuffer.allocateDirect(64);
+		ConvertJSON.writeTo(tMap, direct);
+		direct.flip();
+		assertEquals(tMap, ConvertJSON.toObject(direct));
+		assertFalse(direct.hasRemaining());
+		
+		// Insufficient space, leaves the position as it is
+		ByteBuffer small = ByteBuffer.allocate(8);
+		small.put((byte) ' ');
+		try {
+			ConvertJSON.writeTo(tMap, small);
+			fail("Expected BufferOverflowException");
+		} catch (BufferOverflowException e) {
+			assertEquals(1, small.position());
+		}
+	}
+	
+	@Test
+	public void bytesMatchString() throws Exception {
+		// Numbers, normalized as per the string path
+		String input = "{\"a\":1.0,\"b\":1.5,\"c\":1e2,\"d\":123456789012345678901234,\"e\":12345678901}";
+		Map<String, Object> expected = ConvertJSON.toMap(input);
+		assertEquals(Integer.valueOf(1), expected.get("a"));
+		assertEquals(Integer.valueOf(100), expected.get("c"));
+		assertEquals(Double.valueOf(1.23456789012345678901234E23), expected.get("d"));
+		assertEquals(expected, ConvertJSON.toMap(input.getBytes("UTF-8")));
+		assertEquals(expected, ConvertJSON.toObject(ByteBuffer.wrap(input.getBytes("UTF-8"))));
+		assertEquals(expected, ConvertJSON.toCustomClass(input.getBytes("UTF-8"), 0, input.length(),
+			Map.class));
+		
+		// Direct buffer
+		ByteBuffer direct = ByteBuffer.allocateDirect(128);
+		direct.put(input.getBytes("UTF-8"));
+		direct.flip();
+		assertEquals(expected, ConvertJSON.toObject(direct));
+		
+		// HJSON, and other encodings
+		assertEquals(ConvertJSON.toMap("{a:1}"), ConvertJSON.toMap("{a:1}".getBytes("UTF-8")));
+		assertEquals(ConvertJSON.toMap("a : b"), ConvertJSON.toMap("a : b".getBytes("UTF-16LE")));
+		assertEquals(expected, ConvertJSON.toMap(input.getBytes("UTF-16")));
+		assertEquals(expected, ConvertJSON.toMap(input.getBytes("UTF-32BE")));
+		assertEquals(expected, ConvertJSON.toMap(("\uFEFF" + input).getBytes("UTF-8")));
+	}
+	
+	@Test
+	public void bytesEquivalence() throws Exception {
+		Random rand = new Random(13);
+		for (int i = 0; i < 3000; ++i) {
+			StringBuilder json = new StringBuilder();
+			randomJSON(rand, json, 0);
+			byte[] bytes = json.toString().getBytes("UTF-8");
+			String input = new String(bytes, "UTF-8"); // lone surrogates are replaced in the bytes
+			
+			// Same result (or failure) as the string path
+			Object expected;
+			try {
+				expected = ConvertJSON.toObject(input);
+			} catch (ConvertJSON.InvalidFormatJSON e) {
+				try {
+					ConvertJSON.toObject(bytes);
+					fail("Expected InvalidFormatJSON : " + input);
+				} catch (ConvertJSON.InvalidFormatJSON be) {
+					// Expected
+				}
+				continue;
+			}
+			assertEquals(input, expected, ConvertJSON.toObject(bytes));
+		}
+	}
+	
+	@Test(expected = ConvertJSON.InvalidFormatJSON.class)
+	public void invalidBlankBytes() {
+		ConvertJSON.toObject(new byte[0]);
+	}
+	
+	@Test(expected = ConvertJSON.InvalidFormatJSON.class)
+	public void invalidBytes() throws Exception {
+		ConvertJSON.toMap("[1,2]".getBytes("UTF-8"));
+	}
+	
+	//
+	// Strict JSON fast path
+	//
+	
+	/// Random JSON value text, with numbers in various forms
+	private static void randomJSON(Random rand, StringBuilder out, int depth) {
+		int type = rand.nextInt(depth > 3 ? 4 : 6);
+		if (type == 0) {
+			String[] nums = new String[] { "0", "-0", "1", "1.0", "-0.0", "1e2", "1.5E-7", "3.0e10",
+				"2147483648", "-2147483649", "12345678901234567", "123456789012345678901", "0.1",
+				"1e19", "123.456e5", "9007199254740993" };
+			out.append(nums[rand.nextInt(nums.length)]);
+		} else if (type == 1) {
+			out.append(ConvertJSON.fromObject(randomString(rand)));
+		} else if (type == 2) {
+			out.append(new String[] { "true", "false", "null" }[rand.nextInt(3)]);
+		} else if (type == 3) {
+			out.append(rand.nextInt(1000) - 500);
+		} else if (type == 4) {
+			out.append("[ ");
+			int len = rand.nextInt(4);
+			for (int i = 0; i < len; ++i) {
+				out.append((i > 0) ? ", " : "");
+				randomJSON(rand, out, depth + 1);
+			}
+			out.append(" ]");
+		} else {
+			out.append("{");
+			int len = rand.nextInt(4);
+			for (int i = 0; i < len; ++i) {
+				out.append((i > 0) ? ",\n" : "").append(ConvertJSON.fromObject(randomString(rand))).append(
+					" : ");
+				randomJSON(rand, out, depth + 1);
+			}
+			out.append("}");
+		}
+	}
+	
+	/// Random string, with escaped and non ASCII characters
+	private static String randomString(Random rand) {
+		String chars = "ab/\\\"\n\t\u0001\u00e4\u2028\ud83d\ude00 ";
+		StringBuilder ret = new StringBuilder();
+		int len = rand.nextInt(6);
+		for (int i = 0; i < len; ++i) {
+			ret.append(chars.charAt(rand.nextInt(chars.length())));
+		}
+		return ret.toString();
+	}
+	
+	@Test
+	public void strictJSONEquivalence() throws Exception {
+		Random rand = new Random(11);
+		int strict = 0;
+		for (int i = 0; i < 3000; ++i) {
+			StringBuilder json = new StringBuilder();
+			randomJSON(rand, json, 0);
+			String input = json.toString();
+			
+			// As per the HJSON filtered path (which fails for some control characters)
+			Object expected;
+			try {
+				expected = ConvertJSON.cachedReader(Object.class).readValue(
+					org.hjson.JsonValue.readHjson(input).toString());
+			} catch (IOException e) {
+				assertSame(input, ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject(input));
+				continue;
+			}
+			Object result = ConvertJSON.toStrictObject(input);
+			assertNotSame(input, ConvertJSON.STRICT_UNSUPPORTED, result);
+			assertEquals(input, expected, result);
+			assertEquals(input, expected, ConvertJSON.toObject(input));
+			++strict;
+		}
+		assertTrue(strict > 1000);
+	}
+	
+	@Test
+	public void strictJSONFallback() {
+		// Non strict JSON, is read via HJSON
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("{'a':1}"));
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("{ /* c */ \"a\":1}"));
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("{\"a\":1} x"));
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("[1e400]"));
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("a : b"));
+		assertSame(ConvertJSON.STRICT_UNSUPPORTED, ConvertJSON.toStrictObject("[\"\\u0001\"]"));
+		assertEquals(1, ConvertJSON.toMap("{ /* c */ \"a\":1}").get("a"));
+		assertEquals("b", ConvertJSON.toMap("a : b").get("a"));
+		assertEquals("\t", ConvertJSON.toList("[\"\\u0009\"]").get(0));
+		
+		// Mismatched strict JSON types, still fails as per HJSON path
+		try {
+			ConvertJSON.toMap("[1]");
+			fail("Expected InvalidFormatJSON");
+		} catch (ConvertJSON.InvalidFormatJSON e) {
+			// Expected
+		}
+		assertNull(ConvertJSON.toMap("null"));
+		assertEquals(100, ConvertJSON.toObject("1e2"));
+	}
 }
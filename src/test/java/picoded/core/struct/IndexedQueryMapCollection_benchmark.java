@@ -0,0 +1,86 @@
+package picoded.core.struct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import picoded.core.MicroBenchmark;
+import picoded.core.struct.query.Query;
+
+///
+/// Microbenchmark of 1M map queries, via IndexedQueryMapCollection against a full scan,
+/// run via `gradle benchmark -Pbenchmark=picoded.core.struct.IndexedQueryMapCollection_benchmark`
+///
+public class IndexedQueryMapCollection_benchmark {
+	
+	/// Number of maps in the collection
+	private static final int ROWS = 1000000;
+	
+	/// Number of distinct tenants, for the equality queries
+	private static final int TENANTS = 1000;
+	
+	/// Query cases, as the query string and its arguments
+	private static final Object[][] QUERIES = new Object[][] {
+		// Hash index equality
+		{ "tenant = ?", "tenant-42" },
+		// Sorted index range, of about 1% of the rows
+		{ "score < ?", 0.01 },
+		// Combination of both indexes
+		{ "tenant = ? AND score > ?", "tenant-42", 0.5 },
+		// Non indexed field, which falls back to a scan
+		{ "name = ?", "name-42" } };
+	
+	/// Full scan collection, backed by an array list
+	@SuppressWarnings("serial")
+	private static class QueryMapArrayList extends ArrayList<Map<String, Object>> implements
+		QueryMapCollection<Map<String, Object>> {
+	}
+	
+	public static void main(String[] args) {
+		// Each full scan is slow enough, for a few rounds to be sufficient
+		MicroBenchmark.warmupRounds = 3;
+		MicroBenchmark.timedRounds = 5;
+		
+		// Data set, with a low and high cardinality indexed field
+		Random rand = new Random(42);
+		QueryMapArrayList scanList = new QueryMapArrayList();
+		for (int i = 0; i < ROWS; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("tenant", "tenant-" + rand.nextInt(TENANTS));
+			row.put("score", rand.nextDouble());
+			row.put("name", "name-" + i);
+			scanList.add(row);
+		}
+		
+		// Index build time
+		MicroBenchmark.section("Index build");
+		MicroBenchmark.measure("addIndex + addRangeIndex", ROWS, () -> indexed(scanList).size());
+		IndexedQueryMapCollection<Map<String, Object>> indexedList = indexed(scanList);
+		
+		for (Object[] queryCase : QUERIES) {
+			Object[] queryArgs = new Object[queryCase.length - 1];
+			System.arraycopy(queryCase, 1, queryArgs, 0, queryArgs.length);
+			Query query = Query.build((String) queryCase[0], queryArgs);
+			
+			// Results are the same, so only the time per scanned map differs
+			MicroBenchmark.section("Query " + queryCase[0] + " ("
+				+ scanList.query(query, null, -1, -1).size() + " results)");
+			MicroBenchmark.measure("QueryMapCollection scan", ROWS, () -> scanList.query(query, null,
+				-1, -1).size());
+			MicroBenchmark.measure("IndexedQueryMapCollection", ROWS, () -> indexedList.query(query,
+				null, -1, -1).size());
+			MicroBenchmark.measure("IndexedQueryMapCollection.queryCount", ROWS, () -> indexedList
+				.queryCount(query));
+		}
+	}
+	
+	/// Indexed collection of the rows
+	private static IndexedQueryMapCollection<Map<String, Object>> indexed(QueryMapArrayList rows) {
+		IndexedQueryMapCollection<Map<String, Object>> ret = new IndexedQueryMapCollection<Map<String, Object>>(
+			rows);
+		ret.addIndex("tenant");
+		ret.addRangeIndex("score");
+		return ret;
+	}
+}
@@ -0,0 +1,137 @@
+package picoded.core.struct;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.Query;
+
+///
+/// Test Case for picoded.core.struct.IndexedQueryMapCollection,
+/// which is validated against the full scan result
+///
+public class IndexedQueryMapCollection_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Mixed type values, which are compared via CompareUtils.dynamicCompare
+	private static final Object[] valueSet = new Object[] { 0, 1, 2, 2L, 2.0, 2.5, -1, "2", "2.0",
+		"10", "abc", "ABC", "abd", "", true, null };
+	
+	// Indexed collection, and the equivalent list to scan
+	private IndexedQueryMapCollection<Map<String, Object>> indexed = null;
+	private List<Map<String, Object>> scanList = null;
+	
+	@Before
+	public void setUp() {
+		Random rand = new Random(42);
+		indexed = new IndexedQueryMapCollection<Map<String, Object>>();
+		indexed.addIndex("hash");
+		indexed.addRangeIndex("range");
+		scanList = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 2000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("hash", valueSet[rand.nextInt(valueSet.length)]);
+			// Some rows have no range field
+			if (i % 11 != 0) {
+				row.put("range", valueSet[rand.nextInt(valueSet.length)]);
+			}
+			indexed.add(row);
+			scanList.add(row);
+		}
+	}
+	
+	/// Asserts the indexed query result, is the same as the full scan
+	private void assertQuery(String where, Object... args) {
+		Query query = Query.build(where, args);
+		assertEquals(where + " " + Arrays.toString(args), query.search(scanList),
+			indexed.query(where, args, null, -1, -1));
+	}
+	
+	//
+	// Query test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void indexedEquivalence() {
+		String[] whereSet = new String[] { "hash = ?", "range = ?", "range < ?", "range <= ?",
+			"range > ?", "range >= ?", "hash = ? AND range > ?", "hash = ? OR range < ?",
+			"hash = ? AND (range = ? OR id < ?)", "hash = ? AND NOT range = ?", "id = ? OR hash = ?",
+			"hash != ?", "hash LIKE ?", "range >= ? AND range < ?", "range > ? AND id < ? AND range <= ?",
+			"hash IN (?, ?, ?)", "range IN (?, ?)", "range BETWEEN ? AND ?",
+			"hash IN (?, ?) AND range BETWEEN ? AND ?" };
+		Random rand = new Random(7);
+		for (String where : whereSet) {
+			int argCount = where.length() - where.replace("?", "").length();
+			for (Object value : valueSet) {
+				Object[] args = new Object[argCount];
+				args[0] = value;
+				for (int i = 1; i < argCount; ++i) {
+					args[i] = valueSet[rand.nextInt(valueSet.length)];
+				}
+				assertQuery(where, args);
+			}
+		}
+	}
+	
+	@Test
+	public void sortedAndPaginated() {
+		List<Map<String, Object>> expected = Query.build("range > ?", new Object[] { 0 }).search(
+			scanList, "id DESC");
+		assertEquals(expected.subList(5, 25),
+			indexed.query("range > ?", new Object[] { 0 }, "id DESC", 5, 20));
+	}
+	
+	@Test
+	public void nullQueryMatchesAll() {
+		assertEquals(scanList, indexed.query((Query) null, null, -1, -1));
+		assertEquals(scanList, indexed.query((String) null, null, null, -1, -1));
+		assertEquals(scanList.subList(10, 20), indexed.query((Query) null, "id", 10, 10));
+		assertEquals(scanList.size(), indexed.queryCount(null));
+	}
+	
+	@Test
+	public void removeAndReindex() {
+		// Remove some values via the iterator
+		Iterator<Map<String, Object>> iterator = indexed.iterator();
+		while (iterator.hasNext()) {
+			if (((Integer) iterator.next().get("id")) % 3 == 0) {
+				iterator.remove();
+			}
+		}
+		scanList.removeIf((row) -> ((Integer) row.get("id")) % 3 == 0);
+		assertEquals(scanList.size(), indexed.size());
+		assertEquals(scanList, new ArrayList<Map<String, Object>>(indexed));
+		assertQuery("hash = ?", 2);
+		assertQuery("range >= ? AND hash = ?", "abc", "2");
+		
+		// Modify values in place, and reindex
+		for (Map<String, Object> row : scanList) {
+			row.put("hash", row.get("id"));
+		}
+		indexed.reindex();
+		assertQuery("hash = ?", 301);
+		assertQuery("hash = ? OR range = ?", 1, 2);
+		
+		// Index added after the values
+		indexed.addRangeIndex("id");
+		assertQuery("id > ? AND id <= ?", 100, 200);
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void invalidIndexField() {
+		indexed.addIndex("_key");
+	}
+}
@@ -2,9 +2,14 @@ package picoded.core.struct.query;
 
 // Target test class
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
 import org.junit.After;
 // Test Case include
 import org.junit.Before;
@@ -114,4 +119,51 @@ public class CompareUtils_test {
 		assertEquals(0, CompareUtils.dynamicCompare(null, null));
 		assertEquals(0, CompareUtils.dynamicCompare("a", "a"));
 	}
+	
+	@Test
+	public void dynamicCompareToTest() {
+		Object[] valueSet = new Object[] { null, "a", "b", "1", "2.5", 1, 2L, 2.5, 3.5f, true,
+			"true", new StringBuilder("b") };
+		for (Object o2 : valueSet) {
+			for (Object o1 : valueSet) {
+				assertEquals(o1 + " vs " + o2, CompareUtils.dynamicCompare(o1, o2), CompareUtils
+					.dynamicCompareTo(o2).applyAsInt(o1));
+			}
+		}
+	}
+	
+	@Test
+	public void dynamicEqualsAnyTest() {
+		Object[] valueSet = new Object[] { null, "a", "A", "b", "1", "1.0", "2.5", 1, 1.0, 2L, 2.5,
+			3.5f, -0.0, 0, true, "true", new StringBuilder("b"), "ab", "a\u0001b", "a b", "a-b",
+			"\u00e1b" };
+		for (int i = 0; i < valueSet.length; ++i) {
+			for (int j = i; j < valueSet.length; ++j) {
+				List<Object> values = Arrays.asList(valueSet[i], valueSet[j]);
+				Predicate<Object> equalsAny = CompareUtils.dynamicEqualsAny(values);
+				for (Object o1 : valueSet) {
+					boolean expected = CompareUtils.dynamicCompare(o1, valueSet[i]) == 0
+						|| CompareUtils.dynamicCompare(o1, valueSet[j]) == 0;
+					assertEquals(o1 + " in " + values, expected, equalsAny.test(o1));
+				}
+			}
+		}
+		assertFalse(CompareUtils.dynamicEqualsAny(Arrays.asList()).test(null));
+	}
+	
+	@Test
+	public void dynamicCompareBetweenTest() {
+		Object[] valueSet = new Object[] { null, "a", "b", "1", "2.5", 1, 2L, 2.5, 3.5f, true,
+			"true", new StringBuilder("b") };
+		for (Object low : valueSet) {
+			for (Object high : valueSet) {
+				Predicate<Object> between = CompareUtils.dynamicCompareBetween(low, high);
+				for (Object o1 : valueSet) {
+					boolean expected = CompareUtils.dynamicCompare(o1, low) >= 0
+						&& CompareUtils.dynamicCompare(o1, high) <= 0;
+					assertEquals(o1 + " between " + low + " and " + high, expected, between.test(o1));
+				}
+			}
+		}
+	}
 }
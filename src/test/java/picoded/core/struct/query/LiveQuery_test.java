@@ -0,0 +1,275 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.GenericConvertConcurrentHashMap;
+
+///
+/// Test Case for LiveQuery, over GenericConvertConcurrentHashMap
+///
+public class LiveQuery_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Map to query against
+	private GenericConvertConcurrentHashMap<String, Map<String, Object>> dataMap = null;
+	
+	// Events received by the listener, as "+key" or "-key"
+	private List<String> events = null;
+	
+	// Listener which records the events
+	private LiveQuery.Listener<String, Map<String, Object>> recorder = null;
+	
+	@Before
+	public void setUp() {
+		dataMap = new GenericConvertConcurrentHashMap<String, Map<String, Object>>();
+		for (int i = 0; i < 10; ++i) {
+			dataMap.put("key-" + i, row(i));
+		}
+		events = new ArrayList<String>();
+		recorder = new LiveQuery.Listener<String, Map<String, Object>>() {
+			@Override
+			public void onEnter(String key, Map<String, Object> value) {
+				events.add("+" + key);
+			}
+			
+			@Override
+			public void onLeave(String key, Map<String, Object> value) {
+				events.add("-" + key);
+			}
+		};
+	}
+	
+	/// Row with the given value
+	private static Map<String, Object> row(int value) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("value", value);
+		return ret;
+	}
+	
+	/// Keys matching the query, via a full search
+	private Set<String> searchKeys(Query query) {
+		Set<String> ret = new HashSet<String>();
+		for (Map.Entry<String, Map<String, Object>> entry : dataMap.entrySet()) {
+			if (query.test(entry.getValue())) {
+				ret.add(entry.getKey());
+			}
+		}
+		return ret;
+	}
+	
+	//
+	// Live query test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void initialMatches() {
+		Query query = Query.build("value >= ?", new Object[] { 7 });
+		LiveQuery<String, Map<String, Object>> live = dataMap.liveQuery(query, recorder);
+		assertEquals(3, live.size());
+		assertEquals(searchKeys(query), live.matchingKeys());
+		assertEquals(3, events.size());
+		assertTrue(events.contains("+key-8"));
+		assertSame(dataMap.get("key-9"), live.matches().get("key-9"));
+	}
+	
+	@Test
+	public void enterAndLeave() {
+		LiveQuery<String, Map<String, Object>> live = dataMap.liveQuery(Query.build("value >= ?",
+			new Object[] { 7 }));
+		live.addListener(recorder);
+		
+		dataMap.put("key-1", row(8));
+		dataMap.put("key-8", row(1));
+		dataMap.put("key-9", row(10));
+		dataMap.remove("key-7");
+		dataMap.put("key-10", row(10));
+		dataMap.put("key-11", row(0));
+		assertEquals("[+key-1, -key-8, -key-7, +key-10]", events.toString());
+		assertEquals(new HashSet<String>(Arrays.asList("key-1", "key-9", "key-10")), live
+			.matchingKeys());
+		
+		// Removed listener
+		assertTrue(live.removeListener(recorder));
+		dataMap.remove("key-1");
+		assertEquals(4, events.size());
+		assertFalse(live.contains("key-1"));
+	}
+	
+	@Test
+	public void mapOperations() {
+		Query query = Query.build("value > ?", new Object[] { 4 });
+		LiveQuery<String, Map<String, Object>> live = dataMap.liveQuery(query, recorder);
+		events.clear();
+		
+		assertNull(dataMap.putIfAbsent("key-20", row(20)));
+		assertNotNull(dataMap.putIfAbsent("key-20", row(0)));
+		assertTrue(live.contains("key-20"));
+		
+		assertNotNull(dataMap.replace("key-20", row(0)));
+		assertNull(dataMap.replace("key-21", row(21)));
+		assertFalse(live.contains("key-20"));
+		assertFalse(dataMap.containsKey("key-21"));
+		
+		Map<String, Object> current = dataMap.get("key-0");
+		assertFalse(dataMap.replace("key-0", row(1), row(5)));
+		assertTrue(dataMap.replace("key-0", current, row(5)));
+		assertFalse(dataMap.remove("key-0", row(6)));
+		assertTrue(dataMap.remove("key-0", row(5)));
+		
+		dataMap.compute("key-1", (k, v) -> row(9));
+		dataMap.computeIfPresent("key-9", (k, v) -> null);
+		dataMap.computeIfAbsent("key-30", (k) -> row(30));
+		dataMap.merge("key-2", row(12), (a, b) -> b);
+		dataMap.replaceAll((k, v) -> k.equals("key-3") ? row(33) : v);
+		assertEquals(searchKeys(query), live.matchingKeys());
+		assertEquals("[+key-20, -key-20, +key-0, -key-0, +key-1, -key-9, +key-30, +key-2, +key-3]",
+			events.toString());
+		
+		// Clear, leaves everything
+		events.clear();
+		assertEquals(8, live.size());
+		dataMap.clear();
+		assertEquals(0, live.size());
+		assertEquals(8, events.size());
+	}
+	
+	@Test
+	public void closeQuery() {
+		LiveQuery<String, Map<String, Object>> live = dataMap.liveQuery(Query.build("value > ?",
+			new Object[] { 4 }), recorder);
+		LiveQuery<String, Map<String, Object>> other = dataMap.liveQuery(Query.build("value < ?",
+			new Object[] { 4 }));
+		assertTrue(dataMap.removeLiveQuery(live));
+		assertFalse(dataMap.removeLiveQuery(live));
+		assertTrue(live.isClosed());
+		assertEquals(0, live.size());
+		
+		// Closed queries are no longer updated
+		events.clear();
+		dataMap.put("key-1", row(8));
+		assertEquals(0, events.size());
+		assertEquals(0, live.size());
+		assertEquals(3, other.size());
+		
+		// Including those closed directly
+		other.close();
+		dataMap.put("key-2", row(1));
+		assertEquals(0, other.size());
+	}
+	
+	@Test
+	public void resetScan() {
+		Map<String, Map<String, Object>> plainMap = new HashMap<String, Map<String, Object>>(dataMap);
+		LiveQuery<String, Map<String, Object>> live = new LiveQuery<String, Map<String, Object>>(
+			Query.build("value < ?", new Object[] { 3 }));
+		live.addListener(recorder);
+		live.reset(plainMap);
+		assertEquals(3, live.size());
+		
+		// Untracked changes, which are resynced
+		events.clear();
+		plainMap.remove("key-0");
+		plainMap.put("key-5", row(0));
+		live.reset(plainMap);
+		assertEquals("[-key-0, +key-5]", events.toString());
+		assertEquals(new HashSet<String>(Arrays.asList("key-1", "key-2", "key-5")), live
+			.matchingKeys());
+	}
+	
+	@Test
+	public void concurrentChanges() throws Exception {
+		Query query = Query.build("value < ?", new Object[] { 50 });
+		LiveQuery<String, Map<String, Object>> live = dataMap.liveQuery(query);
+		
+		// Multiple threads changing the same keys
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; ++t) {
+			final int seed = t;
+			threads.add(new Thread(() -> {
+				Random rand = new Random(seed);
+				for (int i = 0; i < 5000; ++i) {
+					String key = "key-" + rand.nextInt(50);
+					if (rand.nextInt(5) == 0) {
+						dataMap.remove(key);
+					} else {
+						dataMap.put(key, row(rand.nextInt(100)));
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(searchKeys(query), live.matchingKeys());
+	}
+	
+	@Test
+	public void concurrentRegistration() throws Exception {
+		Query query = Query.build("value < ?", new Object[] { 50 });
+		for (int round = 0; round < 20; ++round) {
+			dataMap = new GenericConvertConcurrentHashMap<String, Map<String, Object>>();
+			GenericConvertConcurrentHashMap<String, Map<String, Object>> roundMap = dataMap;
+			
+			// Writers, which start before any live query is registered (on the untracked fast path)
+			AtomicBoolean running = new AtomicBoolean(true);
+			List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int t = 0; t < 4; ++t) {
+				final int seed = round * 4 + t;
+				threads.add(new Thread(() -> {
+					try {
+						Random rand = new Random(seed);
+						while (running.get()) {
+							String key = "key-" + rand.nextInt(50);
+							if (rand.nextInt(5) == 0) {
+								roundMap.remove(key);
+							} else {
+								roundMap.put(key, row(rand.nextInt(100)));
+							}
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}));
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			
+			// Registered and unregistered repeatedly (down to none), while the writers are running
+			for (int i = 0; i < 50; ++i) {
+				LiveQuery<String, Map<String, Object>> live = roundMap.liveQuery(query);
+				assertTrue(roundMap.removeLiveQuery(live));
+			}
+			LiveQuery<String, Map<String, Object>> last = roundMap.liveQuery(query);
+			
+			running.set(false);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(Collections.emptyList(), errors);
+			assertEquals(searchKeys(query), last.matchingKeys());
+		}
+	}
+}
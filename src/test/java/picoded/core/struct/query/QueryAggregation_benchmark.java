@@ -0,0 +1,82 @@
+package picoded.core.struct.query;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import picoded.core.MicroBenchmark;
+
+///
+/// Microbenchmark of 10M row aggregations, via the primitive accumulation mode against the
+/// default BigDecimal mode, run via `gradle benchmark -Pbenchmark=picoded.core.struct.query.QueryAggregation_benchmark`
+///
+public class QueryAggregation_benchmark {
+	
+	/// Number of rows aggregated in each run
+	private static final int ROWS = 10000000;
+	
+	/// Number of distinct row maps, cycled through to stay within the benchmark heap
+	private static final int POOL = 100000;
+	
+	/// Aggregation cases, of long, double and mixed values
+	private static final String[][] TERMS = new String[][] {
+		{ "count(*)" },
+		{ "sum(longVal)", "avg(longVal)" },
+		{ "sum(doubleVal)", "avg(doubleVal)" },
+		{ "min(longVal)", "max(longVal)", "min(doubleVal)", "max(doubleVal)" },
+		{ "count(*)", "sum(intVal)", "sum(doubleVal)", "avg(longVal)", "max(doubleVal)" } };
+	
+	public static void main(String[] args) {
+		// Each aggregation is slow enough, for a few rounds to be sufficient
+		MicroBenchmark.warmupRounds = 2;
+		MicroBenchmark.timedRounds = 3;
+		
+		// Data set, with int, long and double values
+		Random rand = new Random(42);
+		Object[] rows = new Object[POOL];
+		for (int i = 0; i < POOL; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("intVal", rand.nextInt(1000000));
+			row.put("longVal", rand.nextLong() >> 16);
+			row.put("doubleVal", rand.nextDouble() * 1000);
+			rows[i] = row;
+		}
+		
+		for (String[] terms : TERMS) {
+			MicroBenchmark.section("Aggregation " + Arrays.toString(terms));
+			Aggregation bigDecimalAgg = Aggregation.build(terms);
+			Aggregation primitiveAgg = Aggregation.build(terms).setPrimitiveMode(true);
+			MicroBenchmark.measure("BigDecimal mode", ROWS, () -> checksum(bigDecimalAgg
+				.compute(rowIterator(rows))));
+			MicroBenchmark.measure("primitive mode", ROWS, () -> checksum(primitiveAgg
+				.compute(rowIterator(rows))));
+		}
+	}
+	
+	/// Iterator of ROWS values, cycling through the row pool
+	private static Iterator<Object> rowIterator(Object[] rows) {
+		return new Iterator<Object>() {
+			int pos = 0;
+			
+			public boolean hasNext() {
+				return pos < ROWS;
+			}
+			
+			public Object next() {
+				return rows[(pos++) % rows.length];
+			}
+		};
+	}
+	
+	/// Checksum of the aggregation result, so that it is not optimized away
+	private static long checksum(BigDecimal[] res) {
+		long ret = 0;
+		for (BigDecimal val : res) {
+			ret += val.hashCode();
+		}
+		return ret;
+	}
+}
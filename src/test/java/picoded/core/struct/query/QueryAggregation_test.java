@@ -6,13 +6,21 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import picoded.core.struct.QueryMapCollection;
+import picoded.core.struct.query.Aggregation;
 import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryUtils;
+import picoded.core.struct.query.mapreduce.Count;
+import picoded.core.struct.query.mapreduce.Sum;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 
 public class QueryAggregation_test {
 	
@@ -224,6 +232,361 @@ public class QueryAggregation_test {
 		assertEquals(4.5, res.doubleValue(), 0.0);
 	}
 	
+	//------------------------------------------
+	//
+	// STREAMING
+	//
+	//------------------------------------------
+	
+	String[] streamingTerms = new String[] { "count(*)", "sum(intVal)", "min(doubleVal)",
+		"max(stringVal)", "avg(intVal)" };
+	
+	@Test
+	public void testIteratorCompute() {
+		BigDecimal[] expected = queryAll.aggregation(fullDataSet, streamingTerms);
+		BigDecimal[] res = Aggregation.build(streamingTerms).compute(fullDataSet.iterator());
+		assertArrayEquals(expected, res);
+		assertEquals(10, res[0].intValue());
+		assertEquals(45, res[1].intValue());
+	}
+	
+	@Test
+	public void testStreamCompute() {
+		BigDecimal[] res = Aggregation.build(streamingTerms).compute(
+			fullDataSet.stream().filter((row) -> "tom".equals(row.get("name"))));
+		assertArrayEquals(queryTom.aggregation(fullDataSet, streamingTerms), res);
+		assertEquals(35, res[1].intValue());
+		assertEquals(5.5, res[2].doubleValue(), 0.0);
+	}
+	
+	@Test
+	public void testFilteredCompute() {
+		Aggregation agg = Aggregation.build(streamingTerms);
+		List<Object> bobList = new ArrayList<Object>(queryBob.search(fullDataSet));
+		assertArrayEquals(agg.compute(bobList), agg.compute(fullDataSet.iterator(), queryBob));
+		assertArrayEquals(agg.compute(bobList), queryBob.aggregation(fullDataSet.stream(), agg));
+		assertArrayEquals(agg.compute(bobList), queryBob.aggregation(fullDataSet.iterator(), agg));
+	}
+	
+	@Test
+	public void testEmptyStreamCompute() {
+		BigDecimal[] res = Aggregation.build(streamingTerms).compute(Stream.empty());
+		assertEquals(5, res.length);
+		for (BigDecimal val : res) {
+			assertEquals(0, val.intValue());
+		}
+		
+		Query queryNone = Query.build("name = ?", new Object[] { "none" });
+		assertEquals(0, queryNone.singleAggregation(fullDataSet, "sum(intVal)").intValue());
+	}
+	
+	//------------------------------------------
+	//
+	// PRIMITIVE MODE
+	//
+	//------------------------------------------
+	
+	@Test
+	public void testPrimitiveModeEquivalence() {
+		Aggregation bigDecimalAgg = Aggregation.build(streamingTerms);
+		Aggregation primitiveAgg = Aggregation.build(streamingTerms).setPrimitiveMode(true);
+		assertTrue(primitiveAgg.isPrimitiveMode());
+		
+		BigDecimal[] expected = bigDecimalAgg.compute(fullDataSet.iterator());
+		BigDecimal[] res = primitiveAgg.compute(fullDataSet.iterator());
+		for (int i = 0; i < expected.length; ++i) {
+			assertEquals(streamingTerms[i], 0, expected[i].compareTo(res[i]));
+		}
+		
+		// Double sum, within floating point tolerance
+		assertEquals(bigDecimalAgg.compute(fullDataSet.iterator(), queryTom)[0].intValue(),
+			primitiveAgg.compute(fullDataSet.iterator(), queryTom)[0].intValue());
+		BigDecimal[] doubleSum = Aggregation.build(new String[] { "sum(doubleVal)", "avg(doubleVal)" })
+			.setPrimitiveMode(true).compute(fullDataSet.iterator());
+		assertEquals(49.5, doubleSum[0].doubleValue(), 1e-9);
+		assertEquals(4.95, doubleSum[1].doubleValue(), 1e-9);
+	}
+	
+	@Test
+	public void testPrimitiveModeLongOverflow() {
+		List<Map<String, Object>> bigList = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 4; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("val", Long.MAX_VALUE - i);
+			bigList.add(row);
+		}
+		
+		String[] terms = new String[] { "sum(val)", "avg(val)", "min(val)", "max(val)" };
+		BigDecimal[] expected = Aggregation.build(terms).compute(bigList.iterator());
+		BigDecimal[] res = Aggregation.build(terms).setPrimitiveMode(true).compute(bigList.iterator());
+		assertArrayEquals(expected, res);
+		assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(4)).subtract(
+			BigDecimal.valueOf(6)), res[0]);
+	}
+	
+	@Test
+	public void testPrimitiveModeKahanSummation() {
+		List<Map<String, Object>> smallList = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 10000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("val", 0.1);
+			smallList.add(row);
+		}
+		BigDecimal res = Aggregation.build(new String[] { "sum(val)" }).setPrimitiveMode(true)
+			.compute(smallList.iterator())[0];
+		assertEquals(0, new BigDecimal("1000.0").compareTo(res));
+	}
+	
+	//------------------------------------------
+	//
+	// PARTIAL AND PARALLEL
+	//
+	//------------------------------------------
+	
+	// Larger dataset, for parallel computation
+	private List<Object> largeDataSet() {
+		List<Object> ret = new ArrayList<Object>();
+		for (int i = 0; i < 20000; ++i) {
+			ret.add(createSingleMap((i % 3 == 0) ? "bob" : "tom", i, i * 0.25, Integer.toString(i % 97)));
+		}
+		return ret;
+	}
+	
+	@Test
+	public void testPartialCombine() {
+		Aggregation agg = Aggregation.build(streamingTerms);
+		assertTrue(agg.supportsCombine());
+		
+		Aggregation.Partial partial = agg.computePartial(fullDataSet.subList(0, 3).iterator());
+		partial.combine(agg.computePartial(fullDataSet.subList(3, 7).iterator()));
+		partial.combine(agg.computePartial(fullDataSet.subList(7, 10).iterator()));
+		partial.combine(agg.computePartial(new ArrayList<Object>().iterator()));
+		assertEquals(10, partial.rowCount());
+		
+		assertArrayEquals(agg.compute(fullDataSet.iterator()), agg.reduce(partial));
+	}
+	
+	@Test
+	public void testPartialCombinePrimitiveMode() {
+		Aggregation agg = Aggregation.build(streamingTerms).setPrimitiveMode(true);
+		Aggregation.Partial partial = agg.computePartial(fullDataSet.subList(0, 5).iterator());
+		partial.combine(agg.computePartial(fullDataSet.subList(5, 10).iterator()));
+		
+		BigDecimal[] expected = Aggregation.build(streamingTerms).compute(fullDataSet.iterator());
+		BigDecimal[] res = agg.reduce(partial);
+		for (int i = 0; i < expected.length; ++i) {
+			assertEquals(streamingTerms[i], 0, expected[i].compareTo(res[i]));
+		}
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void testCombineMismatch() {
+		new Sum().combine(new Count());
+	}
+	
+	@Test
+	public void testParallelCompute() {
+		List<Object> dataSet = largeDataSet();
+		Aggregation agg = Aggregation.build(new String[] { "count(*)", "sum(intVal)",
+			"avg(doubleVal)", "min(stringVal)", "max(intVal)" });
+		
+		assertArrayEquals(agg.compute(dataSet.iterator()), agg.parallelCompute(dataSet, null));
+		assertArrayEquals(agg.compute(dataSet.iterator(), queryBob),
+			agg.parallelCompute(dataSet, queryBob.compile()));
+		
+		// Automatic parallel compute, via the parallel threshold
+		BigDecimal[] expected = queryTom.aggregation(dataSet, agg);
+		try {
+			QueryUtils.setParallelSearchThreshold(1000);
+			assertArrayEquals(expected, queryTom.aggregation(dataSet, agg));
+		} finally {
+			QueryUtils.setParallelSearchThreshold(-1);
+		}
+	}
+	
+	//------------------------------------------
+	//
+	// GROUP BY
+	//
+	//------------------------------------------
+	
+	/// Query map collection, backed by an array list
+	@SuppressWarnings("serial")
+	private static class QueryMapArrayList extends ArrayList<Map<String, Object>> implements
+		QueryMapCollection<Map<String, Object>> {
+	}
+	
+	@Test
+	public void testGroupBy() {
+		Aggregation agg = Aggregation.build(streamingTerms).groupBy("name");
+		Map<Object, BigDecimal[]> res = agg.computeGroupBy(fullDataSet.iterator());
+		
+		// Groups in order of first occurrence
+		assertEquals(Arrays.asList("bob", "tom"), new ArrayList<Object>(res.keySet()));
+		assertArrayEquals(Aggregation.build(streamingTerms).compute(fullDataSet.iterator(), queryBob),
+			res.get("bob"));
+		assertArrayEquals(Aggregation.build(streamingTerms).compute(fullDataSet.iterator(), queryTom),
+			res.get("tom"));
+		
+		// With filter, and no matching rows
+		res = agg.computeGroupBy(fullDataSet.iterator(), queryTom);
+		assertEquals(1, res.size());
+		assertTrue(agg.computeGroupBy(new ArrayList<Object>().iterator()).isEmpty());
+	}
+	
+	@Test
+	public void testGroupByMultipleFields() {
+		Aggregation agg = Aggregation.build(new String[] { "count(*)", "sum(intVal)" }).groupBy(
+			"name", "missing");
+		Map<Object, BigDecimal[]> res = agg.computeGroupBy(fullDataSet.iterator());
+		
+		assertEquals(2, res.size());
+		assertEquals(new BigDecimal(5), res.get(Arrays.asList("bob", null))[0]);
+		assertEquals(new BigDecimal(35), res.get(Arrays.asList("tom", null))[1]);
+	}
+	
+	@Test
+	public void testGroupByMixedNumbers() {
+		// Same numeric value, in various number types (such as after a JSON round trip)
+		Object[] keys = new Object[] { 1, 1L, 1.0, 1.0f, new BigDecimal("1.00"), BigInteger.ONE, 2.5,
+			2.5f, new BigDecimal("2.50"), 3000000000L, 3.0e9, "1", null };
+		List<Object> dataSet = new ArrayList<Object>();
+		for (Object key : keys) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("key", key);
+			dataSet.add(row);
+		}
+		
+		Aggregation agg = Aggregation.build(new String[] { "count(*)" }).groupBy("key");
+		Map<Object, BigDecimal[]> res = agg.computeGroupBy(dataSet.iterator());
+		assertEquals(Arrays.asList(1, 2.5, 3000000000L, "1", null), new ArrayList<Object>(res
+			.keySet()));
+		assertEquals(new BigDecimal(6), res.get(1)[0]);
+		assertEquals(new BigDecimal(3), res.get(2.5)[0]);
+		assertEquals(new BigDecimal(2), res.get(3000000000L)[0]);
+		assertEquals(new BigDecimal(1), res.get("1")[0]);
+		
+		// Within multiple field group keys
+		agg = Aggregation.build(new String[] { "count(*)" }).groupBy("key", "missing");
+		res = agg.computeGroupBy(dataSet.iterator());
+		assertEquals(new BigDecimal(6), res.get(Arrays.asList(1, null))[0]);
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void testGroupByNotConfigured() {
+		Aggregation.build(streamingTerms).computeGroupBy(fullDataSet.iterator());
+	}
+	
+	@Test
+	public void testParallelGroupBy() {
+		List<Object> dataSet = largeDataSet();
+		Aggregation agg = Aggregation.build(new String[] { "count(*)", "sum(intVal)",
+			"avg(doubleVal)", "max(intVal)" }).groupBy("stringVal");
+		
+		Map<Object, BigDecimal[]> expected = agg.computeGroupBy(dataSet.iterator(), queryBob);
+		try {
+			QueryUtils.setParallelSearchThreshold(1000);
+			Map<Object, BigDecimal[]> res = agg.computeGroupBy(dataSet, queryBob);
+			assertEquals(new ArrayList<Object>(expected.keySet()), new ArrayList<Object>(res.keySet()));
+			for (Object key : expected.keySet()) {
+				assertArrayEquals(expected.get(key), res.get(key));
+			}
+		} finally {
+			QueryUtils.setParallelSearchThreshold(-1);
+		}
+	}
+	
+	@Test
+	public void testQueryMapCollectionGroupBy() {
+		QueryMapArrayList dataList = new QueryMapArrayList();
+		dataList.addAll(fullDataSet);
+		
+		Map<Object, BigDecimal[]> res = dataList.aggregateGroupBy(new String[] { "count(*)",
+			"max(intVal)" }, new String[] { "name" }, "intVal > ?", new Object[] { 2 });
+		assertEquals(2, res.size());
+		assertArrayEquals(new BigDecimal[] { new BigDecimal(2), new BigDecimal(4) }, res.get("bob"));
+		assertArrayEquals(new BigDecimal[] { new BigDecimal(5), new BigDecimal(9) }, res.get("tom"));
+		
+		res = dataList.aggregateGroupBy(new String[] { "count(*)" }, new String[] { "name" }, null);
+		assertEquals(new BigDecimal(5), res.get("tom")[0]);
+	}
+	
+	//------------------------------------------
+	//
+	// APPROXIMATE (SKETCH) AGGREGATION
+	//
+	//------------------------------------------
+	
+	@Test
+	public void testCountDistinct() {
+		BigDecimal[] res = Aggregation.build(
+			new String[] { "countDistinct(name)", "countDistinct(intVal)", "countDistinct(missing)" })
+			.compute(fullDataSet.iterator());
+		assertEquals(new BigDecimal(2), res[0]);
+		assertEquals(new BigDecimal(10), res[1]);
+		assertNull(res[2]);
+		
+		// Integer numbers of any type are the same value
+		List<Object> numList = new ArrayList<Object>();
+		for (Object num : new Object[] { 1, 1L, 1.0, new BigDecimal("1.00"), 2.5, "abc" }) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("val", num);
+			numList.add(row);
+		}
+		assertEquals(new BigDecimal(3), Aggregation.build(new String[] { "countDistinct(val)" })
+			.compute(numList.iterator())[0]);
+	}
+	
+	@Test
+	public void testPercentile() {
+		BigDecimal[] res = Aggregation.build(
+			new String[] { "percentile(intVal, 0)", "percentile(intVal, 1)", "percentile(intVal)",
+				"percentile( doubleVal , 0.5 )" }).compute(fullDataSet.iterator());
+		assertEquals(0, BigDecimal.ZERO.compareTo(res[0]));
+		assertEquals(0, new BigDecimal(9).compareTo(res[1]));
+		assertEquals(0, new BigDecimal("4.5").compareTo(res[2]));
+		assertEquals(4.95, res[3].doubleValue(), 1e-9);
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void testPercentileInvalidArgument() {
+		Aggregation.build(new String[] { "percentile(intVal, 99)" }).compute(fullDataSet.iterator());
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void testUnsupportedArgument() {
+		Aggregation.build(new String[] { "sum(intVal, 1)" }).compute(fullDataSet.iterator());
+	}
+	
+	@Test
+	public void testApproximateAccuracy() {
+		List<Object> dataSet = largeDataSet();
+		Aggregation agg = Aggregation.build(new String[] { "countDistinct(intVal)",
+			"countDistinct(stringVal)", "percentile(intVal, 0.99)", "percentile(intVal, 0.5)" });
+		
+		// Estimates within a few percent of the exact values
+		BigDecimal[] res = agg.compute(dataSet.iterator());
+		assertEquals(20000, res[0].doubleValue(), 20000 * 0.03);
+		assertEquals(97, res[1].doubleValue(), 97 * 0.03);
+		assertEquals(19800, res[2].doubleValue(), 20000 * 0.01);
+		assertEquals(10000, res[3].doubleValue(), 20000 * 0.01);
+		
+		// Sketches can be merged, across partial results
+		assertTrue(agg.supportsCombine());
+		Aggregation.Partial partial = agg.computePartial(dataSet.subList(0, 7000).iterator());
+		partial.combine(agg.computePartial(dataSet.subList(7000, 20000).iterator()));
+		BigDecimal[] merged = agg.reduce(partial);
+		assertEquals(res[0], merged[0]);
+		assertEquals(res[1], merged[1]);
+		assertEquals(res[2].doubleValue(), merged[2].doubleValue(), 20000 * 0.01);
+		assertEquals(res[3].doubleValue(), merged[3].doubleValue(), 20000 * 0.01);
+		
+		// Including in parallel, and primitive mode
+		assertEquals(res[0], agg.parallelCompute(dataSet, null)[0]);
+		agg.setPrimitiveMode(true);
+		assertEquals(res[3].doubleValue(), agg.compute(dataSet.iterator())[3].doubleValue(), 1e-6);
+	}
+	
 	/*
 	//------------------------------------------
 	//
@@ -0,0 +1,133 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+///
+/// Test Case for picoded.core.struct.query.QueryCache
+///
+public class QueryCache_test {
+	
+	private QueryCache cache = null;
+	
+	@Before
+	public void setUp() {
+		cache = new QueryCache(2);
+	}
+	
+	@Test
+	public void hitAndMissCount() {
+		cache.build("a = ?", null, new Object[] { 1 });
+		cache.build("a = ?", null, new Object[] { 2 });
+		cache.build("b = ?", null, new Object[] { 3 });
+		
+		assertEquals(2, cache.missCount());
+		assertEquals(1, cache.hitCount());
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void argumentRebinding() {
+		Query one = cache.build("a = ? AND b > ?", null, new Object[] { "x", 1 });
+		Query two = cache.build("a = ? AND b > ?", null, new Object[] { "y", 5 });
+		assertNotSame(one, two);
+		
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("a", "x");
+		row.put("b", 3);
+		assertTrue(one.test(row));
+		assertFalse(two.test(row));
+		
+		assertEquals("\"a\" = :0 AND \"b\" > :1", two.toString());
+		assertEquals("y", two.queryArgumentsArray()[0]);
+		assertEquals(5, two.queryArgumentsArray()[1]);
+	}
+	
+	@Test
+	public void namedArguments() {
+		Map<String, Object> argMap = new HashMap<String, Object>();
+		argMap.put("name", "x");
+		Query query = cache.build("a = :name", argMap, null);
+		assertEquals(argMap, query.defaultArgumentMap());
+		assertEquals("x", query.defaultArgumentValue());
+	}
+	
+	@Test
+	public void templateIsolation() {
+		Query one = cache.build("a = ? OR b = ?", null, new Object[] { 1, 2 });
+		one.replaceQuery(one.childrenQuery().get(0), Query.build("c = ?", new Object[] { 3 }));
+		
+		Query two = cache.build("a = ? OR b = ?", null, new Object[] { 1, 2 });
+		assertEquals("\"a\" = :0 OR \"b\" = :1", two.toString());
+	}
+	
+	@Test
+	public void leastRecentlyUsedEviction() {
+		cache.build("a = ?", null, new Object[] { 1 });
+		cache.build("b = ?", null, new Object[] { 1 });
+		cache.build("a = ?", null, new Object[] { 1 });
+		cache.build("c = ?", null, new Object[] { 1 });
+		
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.evictionCount());
+		
+		// "b" was the least recently used, and should be evicted
+		cache.build("a = ?", null, new Object[] { 1 });
+		assertEquals(2, cache.hitCount());
+		cache.build("b = ?", null, new Object[] { 1 });
+		assertEquals(4, cache.missCount());
+	}
+	
+	@Test
+	public void concurrentMissEviction() throws Exception {
+		cache.setMaxSize(64);
+		
+		// Unique query strings, built concurrently
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; ++t) {
+			final int threadId = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 500; ++i) {
+					cache.build("t" + threadId + "_" + i + " = ?", null, new Object[] { i });
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		// Only the entries over the size limit are evicted
+		assertEquals(2000, cache.missCount());
+		assertEquals(64, cache.size());
+		assertEquals(2000 - 64, cache.evictionCount());
+	}
+	
+	@Test
+	public void disabledCache() {
+		cache.setMaxSize(0);
+		cache.build("a = ?", null, new Object[] { 1 });
+		cache.build("a = ?", null, new Object[] { 1 });
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.hitCount());
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void argumentCountMismatch() {
+		cache.build("a = ? AND b = ?", null, new Object[] { 1 });
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void argumentCountMismatchOnHit() {
+		cache.build("a = ? AND b = ?", null, new Object[] { 1, 2 });
+		cache.build("a = ? AND b = ?", null, new Object[] { 1 });
+	}
+}
@@ -0,0 +1,126 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.condition.Equals;
+import picoded.core.struct.query.condition.MoreThan;
+import picoded.core.struct.query.condition.Or;
+
+///
+/// Test Case for Query.compile(), which is validated against Query.test()
+///
+public class QueryCompile_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Data set to query against
+	private List<Map<String, Object>> dataSet = null;
+	
+	// Single "row" record to generate
+	private Map<String, Object> createSingleMap(Object name, Object intVal, Object doubleVal) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("name", name);
+		ret.put("intVal", intVal);
+		ret.put("doubleVal", doubleVal);
+		return ret;
+	}
+	
+	@Before
+	public void setUp() {
+		dataSet = new ArrayList<Map<String, Object>>();
+		dataSet.add(createSingleMap("alpha", 1, 1.5));
+		dataSet.add(createSingleMap("beta", 2, 2.5));
+		dataSet.add(createSingleMap("Gamma", "3", "3.5"));
+		dataSet.add(createSingleMap("delta", 4L, 4.5f));
+		dataSet.add(createSingleMap(null, null, null));
+		dataSet.add(createSingleMap(5, true, "hello"));
+		dataSet.add(new HashMap<String, Object>());
+	}
+	
+	/// Asserts that the compiled query, gives the same result as test()
+	private void assertCompiledQuery(String queryStr, Object[] args) {
+		Query query = Query.build(queryStr, args);
+		Predicate<Object> compiled = query.compile();
+		assertNotNull(compiled);
+		for (Map<String, Object> row : dataSet) {
+			assertEquals(queryStr + " -> " + row, query.test(row), compiled.test(row));
+		}
+	}
+	
+	//
+	// Compiled query test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void basicOperators() {
+		Object[][] argSet = new Object[][] { { 2 }, { "2" }, { 2.5 }, { "beta" }, { null },
+			{ true }, { "3" } };
+		String[] fieldSet = new String[] { "name", "intVal", "doubleVal", "missing" };
+		String[] opSet = new String[] { "=", "!=", "<", "<=", ">", ">=", "LIKE" };
+		
+		for (String field : fieldSet) {
+			for (String op : opSet) {
+				for (Object[] args : argSet) {
+					assertCompiledQuery(field + " " + op + " ?", args);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void combinationOperators() {
+		assertCompiledQuery("intVal > ? AND doubleVal < ?", new Object[] { 1, 4 });
+		assertCompiledQuery("intVal > ? OR name = ?", new Object[] { 3, "alpha" });
+		assertCompiledQuery("NOT intVal > ?", new Object[] { 2 });
+		assertCompiledQuery("(intVal > ? AND doubleVal < ?) OR NOT name LIKE ?", new Object[] { 1,
+			4, "%a" });
+	}
+	
+	@Test
+	public void wildcardFields() {
+		assertCompiledQuery("_key = ?", new Object[] { "name" });
+		assertCompiledQuery("_val = ?", new Object[] { "beta" });
+		assertCompiledQuery("this = ?", new Object[] { "beta" });
+	}
+	
+	@Test
+	public void namedArguments() {
+		Map<String, Object> argMap = new HashMap<String, Object>();
+		argMap.put("min", 2);
+		argMap.put("name", "delta");
+		
+		Query query = Query.build("intVal >= :min AND name = :name", argMap);
+		Predicate<Object> compiled = query.compile();
+		for (Map<String, Object> row : dataSet) {
+			assertEquals(query.test(row), compiled.test(row));
+		}
+		assertEquals(1, query.search(dataSet).size());
+	}
+	
+	@Test
+	public void combinationArgumentMap() {
+		// Children are tested against the combination argument map, not their own
+		Map<String, Object> argMap = new HashMap<String, Object>();
+		argMap.put("min", 2);
+		argMap.put("name", "alpha");
+		Query query = new Or(new MoreThan("intVal", "min", null), new Equals("name", "name", null),
+			argMap);
+		Predicate<Object> compiled = query.compile();
+		for (Map<String, Object> row : dataSet) {
+			assertEquals(query.test(row), compiled.test(row));
+		}
+		assertEquals(3, query.search(dataSet).size());
+	}
+}
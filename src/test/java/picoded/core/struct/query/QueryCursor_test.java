@@ -0,0 +1,195 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.IndexedQueryMapCollection;
+import picoded.core.struct.QueryMapCollection;
+import picoded.core.struct.query.utils.CollectionQueryInterface;
+
+///
+/// Test Case for QueryCursor, and the short circuit query varients
+///
+public class QueryCursor_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	/// Query map collection, backed by an array list
+	@SuppressWarnings("serial")
+	private static class QueryMapArrayList extends ArrayList<Map<String, Object>> implements
+		QueryMapCollection<Map<String, Object>> {
+	}
+	
+	// Data set to query against
+	private QueryMapArrayList dataList = null;
+	
+	@Before
+	public void setUp() {
+		dataList = new QueryMapArrayList();
+		for (int i = 0; i < 1000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("group", i % 10);
+			dataList.add(row);
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		QueryUtils.setParallelSearchThreshold(-1);
+	}
+	
+	//
+	// Cursor test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void lazyEvaluation() {
+		Query query = Query.build("group = ?", new Object[] { 3 });
+		QueryProfile profile = QueryProfile.attach(query);
+		QueryCursor<Map<String, Object>> cursor = query.cursor(dataList);
+		assertEquals(0, profile.stats(query).evaluations());
+		
+		// Only the values up to the first page is tested
+		List<Map<String, Object>> page = cursor.nextPage(2);
+		assertEquals(2, page.size());
+		assertEquals(13, page.get(1).get("id"));
+		assertEquals(14, profile.stats(query).evaluations());
+		assertEquals(2, cursor.position());
+		
+		// Skip, then iterate
+		assertEquals(3, cursor.skip(3));
+		assertEquals(53, cursor.next().get("id"));
+		
+		// Remaining count, consumes the cursor
+		assertTrue(cursor.hasNext());
+		assertEquals(94, cursor.count());
+		assertFalse(cursor.hasNext());
+		assertEquals(100, cursor.position());
+		assertEquals(0, cursor.nextPage(10).size());
+		assertEquals(0, cursor.skip(10));
+		try {
+			cursor.next();
+			fail("Expected NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void pagedSource() {
+		List<int[]> fetches = new ArrayList<int[]>();
+		QueryCursor<Map<String, Object>> cursor = QueryCursor.paged((offset, limit) -> {
+			fetches.add(new int[] { offset, limit });
+			return dataList.subList(Math.min(offset, 250), Math.min(offset + limit, 250));
+		}, 100);
+		
+		// Pages are only fetched when needed
+		assertEquals(0, fetches.size());
+		assertEquals(150, cursor.nextPage(150).size());
+		assertEquals(2, fetches.size());
+		assertEquals(100, fetches.get(1)[0]);
+		
+		// Last page is smaller than the page size
+		assertEquals(100, cursor.count());
+		assertEquals(3, fetches.size());
+		assertFalse(cursor.hasNext());
+		assertEquals(3, fetches.size());
+	}
+	
+	@Test
+	public void collectionQueryInterfaceCursor() {
+		List<int[]> fetches = new ArrayList<int[]>();
+		List<String> orderBys = new ArrayList<String>();
+		CollectionQueryInterface<Map<String, Object>> collection = new CollectionQueryInterface<Map<String, Object>>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public Map<String, Object>[] query(String whereClause, Object[] whereValues,
+				String orderByStr, int offset, int limit) {
+				fetches.add(new int[] { offset, limit });
+				orderBys.add(orderByStr);
+				return dataList.query(whereClause, whereValues, orderByStr, offset, limit).toArray(
+					new Map[0]);
+			}
+		};
+		
+		QueryCursor<Map<String, Object>> cursor = collection.queryCursor("group = ?",
+			new Object[] { 1 }, "id DESC", 30);
+		assertEquals(991, cursor.next().get("id"));
+		assertEquals(1, fetches.size());
+		assertEquals(100, cursor.count() + 1);
+		assertEquals(4, fetches.size());
+		
+		// Pages are fetched in a stable order, with the key as the last sort key
+		assertEquals(Arrays.asList("id DESC, _oid", "id DESC, _oid", "id DESC, _oid",
+			"id DESC, _oid"), orderBys);
+		orderBys.clear();
+		assertEquals(1000, collection.queryCursor(null, null).count());
+		assertEquals("_oid", orderBys.get(0));
+		assertEquals("_oid DESC", CollectionQueryInterface.cursorOrderBy("_oid DESC"));
+	}
+	
+	//
+	// Short circuit query test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void searchAnyAndCount() {
+		Query query = Query.build("id > ?", new Object[] { 500 });
+		assertEquals(501, query.searchAny(dataList).get("id"));
+		assertNull(Query.build("id > ?", new Object[] { 5000 }).searchAny(dataList));
+		assertEquals(499, query.searchCount(dataList));
+		
+		// Parallel count
+		QueryUtils.setParallelSearchThreshold(1);
+		assertEquals(499, query.searchCount(dataList));
+	}
+	
+	@Test
+	public void queryMapCollection() {
+		assertEquals(100, dataList.queryCount("group = ?", new Object[] { 7 }));
+		assertEquals(1000, dataList.queryCount(null, null));
+		assertEquals(7, dataList.queryAny("group = ?", new Object[] { 7 }).get("id"));
+		assertNull(dataList.queryAny("group = ?", new Object[] { 70 }));
+		
+		// Cursor, with and without the sort order
+		assertEquals(7, dataList.queryCursor("group = ?", new Object[] { 7 }, null).next().get("id"));
+		assertEquals(997, dataList.queryCursor("group = ?", new Object[] { 7 }, "id DESC").next()
+			.get("id"));
+		assertEquals(1000, dataList.queryCursor(null, null, null).count());
+	}
+	
+	@Test
+	public void indexedQueryMapCollection() {
+		IndexedQueryMapCollection<Map<String, Object>> indexed = new IndexedQueryMapCollection<Map<String, Object>>(
+			dataList);
+		indexed.addIndex("group");
+		
+		Query query = Query.build("group = ? AND id > ?", new Object[] { 4, 500 });
+		QueryProfile profile = QueryProfile.attach(query);
+		assertEquals(50, indexed.queryCount(query));
+		
+		// Only the index rows are tested
+		Query idNode = query.childrenQuery().get(1);
+		assertEquals(100, profile.stats(idNode).evaluations());
+		assertEquals(query.search(dataList), indexed.queryCursor(query).toList());
+		assertEquals(504, indexed.queryAny(query).get("id"));
+		
+		// Removed rows are skipped
+		indexed.remove(indexed.queryAny(query));
+		assertEquals(49, indexed.queryCount(query));
+		assertEquals(514, indexed.queryCursor(query).next().get("id"));
+	}
+}
@@ -0,0 +1,220 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.condition.ConditionBase;
+
+///
+/// Test Case for Query.explain(), and QueryProfile
+///
+public class QueryExplain_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Data set to query against
+	private List<Map<String, Object>> dataSet = null;
+	
+	@Before
+	public void setUp() {
+		dataSet = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 100; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("group", i % 10);
+			row.put("name", "name-" + i);
+			dataSet.add(row);
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		QueryUtils.setParallelSearchThreshold(-1);
+		QueryUtils.setReorderOnCompile(true);
+	}
+	
+	//
+	// Explain test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void basicExplain() {
+		QueryExplain explain = Query.build("id = ?", new Object[] { 1 }).explain();
+		assertEquals(1, explain.nodes().size());
+		assertEquals(0.1, explain.root().selectivity(), 1e-9);
+		assertEquals(1.0, explain.root().cost(), 1e-9);
+		assertEquals(1.0, explain.root().reach(), 1e-9);
+		assertEquals(0, explain.root().order());
+	}
+	
+	@Test
+	public void combinationExplain() {
+		Query query = Query.build("id = ? AND (group > ? OR name LIKE ?)", new Object[] { 1, 2,
+			"name-%" });
+		QueryExplain explain = query.explain();
+		List<QueryExplain.Node> nodes = explain.nodes();
+		assertEquals(5, nodes.size());
+		
+		// Depth first order, with the sibling evaluation order
+		assertEquals(QueryType.AND, nodes.get(0).query().type());
+		assertEquals(QueryType.EQUALS, nodes.get(1).query().type());
+		assertEquals(QueryType.OR, nodes.get(2).query().type());
+		assertEquals(QueryType.MORE_THAN, nodes.get(3).query().type());
+		assertEquals(QueryType.LIKE, nodes.get(4).query().type());
+		assertEquals(1, nodes.get(1).order());
+		assertEquals(2, nodes.get(2).order());
+		assertEquals(2, nodes.get(3).depth());
+		
+		// OR of (1/3) and (0.25), AND with 0.1
+		double orSelectivity = 1.0 - (2.0 / 3.0) * 0.75;
+		assertEquals(orSelectivity, nodes.get(2).selectivity(), 1e-9);
+		assertEquals(0.1 * orSelectivity, nodes.get(0).selectivity(), 1e-9);
+		
+		// Short circuiting, the OR is only reached if id matches,
+		// and the LIKE is only reached if group fails
+		assertEquals(0.1, nodes.get(2).reach(), 1e-9);
+		assertEquals(0.1, nodes.get(3).reach(), 1e-9);
+		assertEquals(0.1 * (2.0 / 3.0), nodes.get(4).reach(), 1e-9);
+		assertEquals(1.1, nodes.get(0).evaluations(), 1e-9);
+		assertEquals(1.0 + 2.0 / 3.0 * 4.0, nodes.get(2).cost(), 1e-9);
+		
+		// String output, is indented by the depth
+		String[] lines = explain.toString().split("\n");
+		assertEquals(5, lines.length);
+		assertTrue(lines[0].startsWith("AND "));
+		assertTrue(lines[1].startsWith("  #1 \"id\" = "));
+		assertTrue(lines[3].startsWith("    #1 \"group\" > "));
+		assertSame(nodes.get(4), explain.node(nodes.get(4).query()));
+	}
+	
+	//
+	// Profile test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void profileSearch() {
+		Query query = Query.build("group = ? AND id < ?", new Object[] { 3, 50 });
+		QueryProfile profile = QueryProfile.attach(query);
+		assertEquals(5, query.search(dataSet).size());
+		
+		Query groupNode = query.childrenQuery().get(0);
+		Query idNode = query.childrenQuery().get(1);
+		assertEquals(100, profile.stats(groupNode).evaluations());
+		assertEquals(10, profile.stats(groupNode).passes());
+		assertEquals(10, profile.stats(idNode).evaluations());
+		assertEquals(5, profile.stats(idNode).passes());
+		assertTrue(profile.stats(groupNode).nanos() > 0);
+		assertNull(profile.stats(query));
+		assertTrue(profile.toString().contains("evaluated=100 passed=10"));
+		
+		// Compiled (parallel) search, is profiled as well
+		profile.reset();
+		QueryUtils.setParallelSearchThreshold(1);
+		assertEquals(5, query.search(dataSet).size());
+		assertEquals(100, profile.stats(groupNode).evaluations());
+		assertEquals(10, profile.stats(idNode).evaluations());
+		
+		// Detached profile, stops counting
+		profile.detach();
+		assertNull(((ConditionBase) groupNode).getProfileStats());
+		query.search(dataSet);
+		assertEquals(100, profile.stats(groupNode).evaluations());
+	}
+	
+	//
+	// Evaluation order test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void reorderExpensiveFirst() {
+		Query query = Query.build("name LIKE ? AND id = ?", new Object[] { "%-1%", 15 });
+		QueryProfile profile = QueryProfile.attach(query);
+		Query likeNode = query.childrenQuery().get(0);
+		
+		// Cheaper equality is evaluated first, without modifying the query
+		assertEquals(1, query.search(dataSet).size());
+		assertEquals(1, profile.stats(likeNode).evaluations());
+		assertEquals(2, query.explain().node(likeNode).order());
+		assertEquals(1, query.explain().node(likeNode).sourceOrder());
+		assertTrue(query.toString().startsWith("\"name\" LIKE"));
+		
+		// Evaluated in query order, if disabled
+		profile.reset();
+		QueryUtils.setReorderOnCompile(false);
+		assertEquals(1, query.search(dataSet).size());
+		assertEquals(100, profile.stats(likeNode).evaluations());
+		assertEquals(1, query.explain().node(likeNode).order());
+	}
+	
+	@Test
+	public void reorderNullCheckFirst() {
+		Query query = Query.build("id > ? AND missing = ?", new Object[] { 5, null });
+		assertEquals(QueryType.EQUALS, query.explain().nodes().get(1).query().type());
+		assertEquals(94, query.search(dataSet).size());
+	}
+	
+	@Test
+	public void reorderObservedSelectivity() {
+		for (int i = 100; i < 1000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("group", i % 10);
+			dataSet.add(row);
+		}
+		
+		// Heuristically the range is more selective, but it passes everything
+		Query query = Query.build("id < ? AND group != ?", new Object[] { 1000, 3 });
+		Query rangeNode = query.childrenQuery().get(0);
+		assertEquals(1, query.explain().node(rangeNode).order());
+		
+		// Which is reordered, once observed by the profile
+		QueryProfile profile = QueryProfile.attach(query);
+		assertEquals(900, query.search(dataSet).size());
+		assertEquals(1.0, query.explain().node(rangeNode).selectivity(), 1e-9);
+		assertEquals(2, query.explain().node(rangeNode).order());
+		
+		assertEquals(900, query.search(dataSet).size());
+		assertEquals(1000 + 900, profile.stats(rangeNode).evaluations());
+	}
+	
+	@Test(timeout = 10000)
+	public void deeplyNestedLinearCost() {
+		// Alternating AND / OR nesting, which is not flattened by normalization
+		int depth = 200;
+		StringBuilder queryStr = new StringBuilder();
+		Object[] args = new Object[depth * 2];
+		for (int i = 0; i < depth; ++i) {
+			queryStr.append("id > ? ").append((i % 2 == 0) ? "AND" : "OR").append(" (group != ? ");
+			queryStr.append((i % 2 == 0) ? "OR" : "AND").append(" ");
+			args[i * 2] = i % 50;
+			args[i * 2 + 1] = i % 10;
+		}
+		queryStr.append("name = ?");
+		for (int i = 0; i < depth; ++i) {
+			queryStr.append(")");
+		}
+		Object[] allArgs = Arrays.copyOf(args, args.length + 1);
+		allArgs[args.length] = "name-1";
+		Query query = Query.build(queryStr.toString(), allArgs);
+		
+		// Each node is estimated once, so this completes well within the timeout
+		QueryExplain explain = query.explain();
+		assertEquals(depth * 3 + 2, explain.nodes().size());
+		int expected = 0;
+		for (Map<String, Object> row : dataSet) {
+			expected += query.test(row) ? 1 : 0;
+		}
+		assertEquals(expected, query.search(dataSet).size());
+	}
+}
@@ -0,0 +1,178 @@
+package picoded.core.struct.query;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+import picoded.core.MicroBenchmark;
+import picoded.core.struct.query.internal.LikePattern;
+
+///
+/// Microbenchmark of CompareUtils, and every QueryType operator (test and compiled),
+/// run via `gradle benchmark -Pbenchmark=picoded.core.struct.query.QueryOperator_benchmark`
+///
+public class QueryOperator_benchmark {
+	
+	/// Number of rows, and compare operations of each run
+	private static final int ROWS = 100000;
+	
+	/// LIKE patterns, of the prefix, suffix, contains, exact and regex fallback forms
+	private static final String[] LIKE_PATTERNS = new String[] { "name-5%", "%99", "%e-12%",
+		"name-500", "n.me-5%" };
+	
+	/// Query cases for each QueryType, as the query string and its arguments
+	private static Object[][] queryCases(QueryType type) {
+		switch (type) {
+			case AND:
+				return new Object[][] { { "num > ? AND str < ?", 100, "name-5" } };
+			case OR:
+				return new Object[][] { { "num < ? OR str = ?", 100, "name-5" } };
+			case NOT:
+				return new Object[][] { { "NOT num < ?", 100 } };
+			case EQUALS:
+				return new Object[][] { { "num = ?", 100 }, { "str = ?", "name-5" },
+					{ "str = ?", "n\u00e4me-5" } };
+			case NOT_EQUALS:
+				return new Object[][] { { "num != ?", 100 }, { "str != ?", "name-5" } };
+			case LESS_THAN:
+				return new Object[][] { { "num < ?", 100 }, { "str < ?", "name-5" },
+					{ "uni < ?", "n\u00e4me-5" } };
+			case LESS_THAN_OR_EQUALS:
+				return new Object[][] { { "num <= ?", 100 }, { "str <= ?", "name-5" } };
+			case MORE_THAN:
+				return new Object[][] { { "num > ?", 100 }, { "str > ?", "name-5" } };
+			case MORE_THAN_OR_EQUALS:
+				return new Object[][] { { "num >= ?", 100 }, { "str >= ?", "name-5" } };
+			case LIKE:
+				return new Object[][] { { "str LIKE ?", "name-5%" } };
+			case IN:
+				return new Object[][] { { "num IN (?, ?, ?, ?)", 1, 10, 100, 1000 },
+					{ "str IN (?, ?)", "name-5", "name-50" } };
+			case BETWEEN:
+				return new Object[][] { { "num BETWEEN ? AND ?", 100, 1000 },
+					{ "str BETWEEN ? AND ?", "name-1", "name-5" } };
+			case TRUE:
+				// Normalized from a range, against a null argument
+				return new Object[][] { { "NOT num < ?", (Object) null } };
+			case FALSE:
+				return new Object[][] { { "num < ?", (Object) null } };
+			default:
+				throw new RuntimeException("Missing benchmark case for QueryType: " + type);
+		}
+	}
+	
+	public static void main(String[] args) {
+		// Data set, with numeric, ASCII and non ASCII string fields
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < ROWS; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("num", i);
+			row.put("str", "name-" + i);
+			row.put("uni", "n\u00e4me-" + i);
+			rows.add(row);
+		}
+		
+		// Raw comparators
+		MicroBenchmark.section("CompareUtils");
+		Object[] nums = new Object[ROWS];
+		Object[] strs = new Object[ROWS];
+		Object[] unis = new Object[ROWS];
+		for (int i = 0; i < ROWS; ++i) {
+			nums[i] = rows.get(i).get("num");
+			strs[i] = rows.get(i).get("str");
+			unis[i] = rows.get(i).get("uni");
+		}
+		Collator collator = Collator.getInstance(Locale.ENGLISH);
+		MicroBenchmark.measure("Collator.compare (ASCII)", ROWS, () -> {
+			long ret = 0;
+			for (int i = 1; i < ROWS; ++i) {
+				ret += collator.compare((String) strs[i - 1], (String) strs[i]);
+			}
+			return ret;
+		});
+		compareCase("dynamicCompare (number)", nums);
+		compareCase("dynamicCompare (ASCII string)", strs);
+		compareCase("dynamicCompare (non ASCII string)", unis);
+		ToIntFunction<Object> compareTo = CompareUtils.dynamicCompareTo("name-5");
+		MicroBenchmark.measure("dynamicCompareTo (ASCII string)", ROWS, () -> {
+			long ret = 0;
+			for (int i = 0; i < ROWS; ++i) {
+				ret += compareTo.applyAsInt(strs[i]);
+			}
+			return ret;
+		});
+		
+		// LIKE matching, against the previous per row regex compilation
+		for (String pattern : LIKE_PATTERNS) {
+			MicroBenchmark.section("LIKE " + pattern);
+			MicroBenchmark.measure("Pattern.compile per row", ROWS, () -> {
+				long ret = 0;
+				for (int i = 0; i < ROWS; ++i) {
+					ret += Pattern.compile(pattern.replaceAll("%", ".*")).matcher((String) strs[i])
+						.matches() ? 1 : 0;
+				}
+				return ret;
+			});
+			MicroBenchmark.measure("LikePattern.compile once", ROWS, () -> {
+				LikePattern likePattern = LikePattern.compile(pattern);
+				long ret = 0;
+				for (int i = 0; i < ROWS; ++i) {
+					ret += likePattern.matches((String) strs[i]) ? 1 : 0;
+				}
+				return ret;
+			});
+		}
+		
+		// Every query type, per row
+		for (QueryType type : QueryType.values()) {
+			MicroBenchmark.section("QueryType." + type);
+			for (Object[] queryCase : queryCases(type)) {
+				String where = (String) queryCase[0];
+				Object[] queryArgs = Arrays.copyOfRange(queryCase, 1, queryCase.length);
+				Query query = Query.build(where, queryArgs);
+				if (type == QueryType.TRUE || type == QueryType.FALSE) {
+					query = query.normalize();
+				}
+				if (query.type() != type) {
+					throw new RuntimeException("Unexpected query type for: " + where);
+				}
+				String label = where + " " + Arrays.toString(queryArgs);
+				
+				final Query testQuery = query;
+				MicroBenchmark.measure(label + " test", ROWS, () -> {
+					long ret = 0;
+					for (Map<String, Object> row : rows) {
+						ret += testQuery.test(row) ? 1 : 0;
+					}
+					return ret;
+				});
+				Predicate<Object> compiled = query.compile();
+				MicroBenchmark.measure(label + " compiled", ROWS, () -> {
+					long ret = 0;
+					for (Map<String, Object> row : rows) {
+						ret += compiled.test(row) ? 1 : 0;
+					}
+					return ret;
+				});
+			}
+		}
+	}
+	
+	/// dynamicCompare of each value, against the previous value
+	private static void compareCase(String name, Object[] values) {
+		MicroBenchmark.measure(name, values.length, () -> {
+			long ret = 0;
+			for (int i = 1; i < values.length; ++i) {
+				ret += CompareUtils.dynamicCompare(values[i - 1], values[i]);
+			}
+			return ret;
+		});
+	}
+}
@@ -0,0 +1,106 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.GenericConvertConcurrentHashMap;
+import picoded.core.struct.QueryMapCollection;
+
+///
+/// Test Case for parallel search, which is validated against the sequential search
+///
+public class QueryParallelSearch_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	/// Query map collection, backed by an array list
+	@SuppressWarnings("serial")
+	private static class QueryMapArrayList extends ArrayList<Map<String, Object>> implements
+		QueryMapCollection<Map<String, Object>> {
+	}
+	
+	// Data set to query against
+	private QueryMapArrayList dataList = null;
+	private GenericConvertConcurrentHashMap<String, Map<String, Object>> dataMap = null;
+	
+	@Before
+	public void setUp() {
+		dataList = new QueryMapArrayList();
+		dataMap = new GenericConvertConcurrentHashMap<String, Map<String, Object>>();
+		for (int i = 0; i < 5000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("group", (i % 7 == 0) ? Integer.toString(i % 13) : (i % 13));
+			row.put("name", "name-" + (i % 101));
+			dataList.add(row);
+			dataMap.put("key-" + i, row);
+		}
+	}
+	
+	@After
+	public void tearDown() {
+		QueryUtils.setParallelSearchThreshold(-1);
+	}
+	
+	//
+	// Parallel search test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void thresholdConfiguration() {
+		assertEquals(-1, QueryUtils.parallelSearchThreshold());
+		assertFalse(QueryUtils.useParallelSearch(Integer.MAX_VALUE));
+		
+		QueryUtils.setParallelSearchThreshold(100);
+		assertFalse(QueryUtils.useParallelSearch(99));
+		assertTrue(QueryUtils.useParallelSearch(100));
+		
+		QueryUtils.setParallelSearchThreshold(-5);
+		assertEquals(-1, QueryUtils.parallelSearchThreshold());
+	}
+	
+	@Test
+	public void searchOrderEquivalence() {
+		String[] querySet = new String[] { "group > ? AND name LIKE ?", "group = ? OR id < ?",
+			"NOT name = ?" };
+		Object[][] argSet = new Object[][] { { 6, "name-1%" }, { "3", 100 }, { "name-5" } };
+		
+		for (int i = 0; i < querySet.length; ++i) {
+			Query query = Query.build(querySet[i], argSet[i]);
+			
+			List<Map<String, Object>> expectedList = query.search(dataList);
+			List<Map<String, Object>> expectedMap = query.search(dataMap);
+			List<Map<String, Object>> expectedSorted = query.search(dataList, "group DESC, name");
+			
+			QueryUtils.setParallelSearchThreshold(0);
+			assertEquals(expectedList, query.search(dataList));
+			assertEquals(expectedMap, query.search(dataMap));
+			assertEquals(expectedSorted, query.search(dataList, "group DESC, name"));
+			QueryUtils.setParallelSearchThreshold(-1);
+		}
+	}
+	
+	@Test
+	public void queryMapCollectionOffsetLimit() {
+		List<Map<String, Object>> expected = dataList.query("group >= ?", new Object[] { 3 },
+			"name DESC", 10, 25);
+		
+		QueryUtils.setParallelSearchThreshold(1000);
+		List<Map<String, Object>> result = dataList.query("group >= ?", new Object[] { 3 },
+			"name DESC", 10, 25);
+		assertEquals(25, result.size());
+		assertEquals(expected, result);
+	}
+}
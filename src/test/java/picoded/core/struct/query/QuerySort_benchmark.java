@@ -0,0 +1,57 @@
+package picoded.core.struct.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import picoded.core.MicroBenchmark;
+
+///
+/// Microbenchmark of 1M row multi-key sorts, via OrderBy against QueryUtils.sortList (sort keys),
+/// run via `gradle benchmark -Pbenchmark=picoded.core.struct.query.QuerySort_benchmark`
+///
+public class QuerySort_benchmark {
+	
+	/// Number of rows sorted in each run
+	private static final int ROWS = 1000000;
+	
+	/// Order by cases, of single and multiple numeric / string keys
+	private static final String[] ORDER_BY = new String[] { "score", "group, score DESC",
+		"name, group DESC, score", "group, uni" };
+	
+	public static void main(String[] args) {
+		// Each sort is slow enough, for a few rounds to be sufficient
+		MicroBenchmark.warmupRounds = 2;
+		MicroBenchmark.timedRounds = 3;
+		
+		// Data set, with lots of ties on the leading keys
+		Random rand = new Random(42);
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < ROWS; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("group", rand.nextInt(100));
+			row.put("score", rand.nextDouble());
+			row.put("name", "name-" + rand.nextInt(10000));
+			row.put("uni", "n\u00e4me-" + rand.nextInt(1000));
+			rows.add(row);
+		}
+		
+		for (String orderByStr : ORDER_BY) {
+			MicroBenchmark.section("Sort " + orderByStr);
+			OrderBy<Map<String, Object>> orderBy = new OrderBy<Map<String, Object>>(orderByStr);
+			MicroBenchmark.measure("Collections.sort(OrderBy)", ROWS, () -> {
+				List<Map<String, Object>> sorted = new ArrayList<Map<String, Object>>(rows);
+				Collections.sort(sorted, orderBy);
+				return sorted.get(0).size();
+			});
+			MicroBenchmark.measure("QueryUtils.sortList", ROWS, () -> {
+				List<Map<String, Object>> sorted = new ArrayList<Map<String, Object>>(rows);
+				QueryUtils.sortList(sorted, orderByStr);
+				return sorted.get(0).size();
+			});
+		}
+	}
+}
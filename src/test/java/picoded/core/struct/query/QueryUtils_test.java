@@ -0,0 +1,218 @@
+package picoded.core.struct.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.internal.MergeSortIterator;
+
+///
+/// Test Case for picoded.core.struct.query.QueryUtils
+///
+public class QueryUtils_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Data set to sort
+	private List<Map<String, Object>> dataList = null;
+	
+	@Before
+	public void setUp() {
+		Random rand = new Random(42);
+		dataList = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 2000; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			// Lots of ties, and some missing values
+			if (i % 17 != 0) {
+				row.put("score", rand.nextInt(50));
+			}
+			row.put("name", "n" + rand.nextInt(10));
+			dataList.add(row);
+		}
+	}
+	
+	//
+	// Sort and offset test
+	//--------------------------------------------------------------------
+	
+	/// Full sort, followed by the offset and limit
+	private List<Map<String, Object>> fullSortAndOffset(String orderBy, int offset, int limit) {
+		List<Map<String, Object>> sorted = QueryUtils.sortList(new ArrayList<Map<String, Object>>(
+			dataList), orderBy);
+		return new ArrayList<Map<String, Object>>(QueryUtils.offsetList(sorted, offset, limit));
+	}
+	
+	@Test
+	public void topKEquivalence() {
+		String[] orderBySet = new String[] { "score", "score DESC", "name, score DESC", "name DESC" };
+		int[][] pageSet = new int[][] { { 0, 1 }, { 0, 20 }, { 20, 20 }, { 100, 50 }, { 0, 499 } };
+		
+		for (String orderBy : orderBySet) {
+			for (int[] page : pageSet) {
+				assertEquals(orderBy + " " + page[0] + "/" + page[1],
+					fullSortAndOffset(orderBy, page[0], page[1]),
+					QueryUtils.sortAndOffsetList(dataList, orderBy, page[0], page[1]));
+			}
+		}
+	}
+	
+	@Test
+	public void topKDoesNotModifyList() {
+		Map<String, Object> first = dataList.get(0);
+		QueryUtils.sortAndOffsetList(dataList, "score DESC", 0, 10);
+		assertSame(first, dataList.get(0));
+	}
+	
+	@Test
+	public void fullSortFallback() {
+		// Large pages, and unlimited results still go through the full sort
+		assertEquals(fullSortAndOffset("score", 0, 1500),
+			QueryUtils.sortAndOffsetList(new ArrayList<Map<String, Object>>(dataList), "score", 0, 1500));
+		assertEquals(fullSortAndOffset("score", 10, -1),
+			QueryUtils.sortAndOffsetList(new ArrayList<Map<String, Object>>(dataList), "score", 10, -1));
+		assertEquals(0, QueryUtils.sortAndOffsetList(dataList, "score", 5000, 10).size());
+	}
+	
+	//
+	// Decorated sort test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void decoratedSortEquivalence() {
+		// Numeric, ASCII / non ASCII string, and mixed type fields
+		Random rand = new Random(7);
+		String[] uni = new String[] { "\u00e4pfel", "apfel", "Apfel", "z\u00fcrich", "zurich", null };
+		Object[] mixed = new Object[] { 1, "2", 3.5, "abc", null, 10L, "10", true };
+		for (Map<String, Object> row : dataList) {
+			row.put("ratio", (rand.nextInt(5) == 0) ? null : rand.nextDouble());
+			row.put("uni", uni[rand.nextInt(uni.length)]);
+			row.put("mixed", mixed[rand.nextInt(mixed.length)]);
+		}
+		
+		String[] orderBySet = new String[] { "score", "name DESC, score", "ratio DESC",
+			"uni, score DESC", "uni DESC, name", "mixed, name", "missing, id DESC",
+			"score, name, uni, ratio" };
+		for (String orderBy : orderBySet) {
+			List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>(dataList);
+			Collections.sort(expected, new OrderBy<Map<String, Object>>(orderBy));
+			assertEquals(orderBy, expected, QueryUtils.sortList(new ArrayList<Map<String, Object>>(
+				dataList), orderBy));
+		}
+		
+		// Read only list, is sorted as a new list
+		List<Map<String, Object>> readOnly = Collections.unmodifiableList(dataList);
+		List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>(dataList);
+		Collections.sort(expected, new OrderBy<Map<String, Object>>("uni, id DESC"));
+		assertEquals(expected, QueryUtils.sortList(readOnly, "uni, id DESC"));
+	}
+	
+	//
+	// Parallel and external sort test
+	//--------------------------------------------------------------------
+	
+	@After
+	public void tearDown() {
+		QueryUtils.setParallelSortThreshold(-1);
+	}
+	
+	@Test
+	public void parallelSortEquivalence() {
+		String[] orderBySet = new String[] { "score", "name DESC, score", "missing, id DESC" };
+		QueryUtils.setParallelSortThreshold(100);
+		for (String orderBy : orderBySet) {
+			List<Map<String, Object>> expected = new ArrayList<Map<String, Object>>(dataList);
+			Collections.sort(expected, new OrderBy<Map<String, Object>>(orderBy));
+			assertEquals(orderBy, expected, QueryUtils.sortList(new ArrayList<Map<String, Object>>(
+				dataList), orderBy));
+		}
+	}
+	
+	@Test
+	public void externalSortEquivalence() {
+		File tmpDir = new File("./test/tmp/QueryUtils/");
+		tmpDir.mkdirs();
+		
+		String[] orderBySet = new String[] { "score", "name DESC, score", "score DESC, name" };
+		for (String orderBy : orderBySet) {
+			List<Map<String, Object>> expected = QueryUtils.sortList(
+				new ArrayList<Map<String, Object>>(dataList), orderBy);
+			List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+			MergeSortIterator<Map<String, Object>> iter = QueryUtils.externalSort(dataList.iterator(),
+				orderBy, 150, tmpDir);
+			while (iter.hasNext()) {
+				result.add(iter.next());
+			}
+			assertEquals(orderBy, expected, result);
+		}
+		
+		// Unsorted, and single (in memory) run
+		assertEquals(dataList.get(3), skip(QueryUtils.externalSort(dataList.iterator(), null), 3));
+		assertSame(dataList.get(0), QueryUtils.externalSort(dataList.iterator(), "id", 5000).next());
+		
+		// Closed early, spilled runs are deleted
+		MergeSortIterator<Map<String, Object>> iter = QueryUtils.externalSort(dataList.iterator(),
+			"score", 100, tmpDir);
+		assertEquals(19, tmpDir.listFiles((dir, name) -> name.endsWith(".run")).length);
+		iter.next();
+		iter.close();
+		assertEquals(0, tmpDir.listFiles((dir, name) -> name.endsWith(".run")).length);
+	}
+	
+	/// Row which fails to be read back from a run file
+	private static class UnreadableRow extends HashMap<String, Object> {
+		private static final long serialVersionUID = 1L;
+		
+		private void readObject(ObjectInputStream in) throws IOException {
+			throw new IOException("Unreadable row");
+		}
+	}
+	
+	@Test
+	public void externalSortFailureCleanup() {
+		File tmpDir = new File("./test/tmp/QueryUtils-failure/");
+		tmpDir.mkdirs();
+		
+		// Head of the second spilled run fails to be read, when the runs are merged
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 30; ++i) {
+			Map<String, Object> row = (i == 10) ? new UnreadableRow() : new HashMap<String, Object>();
+			row.put("score", i);
+			rows.add(row);
+		}
+		try {
+			QueryUtils.externalSort(rows.iterator(), "score", 10, tmpDir);
+			fail("Expected the unreadable run to fail");
+		} catch (RuntimeException e) {
+			// Expected
+		}
+		
+		// Every run is closed, and its file deleted
+		assertEquals(0, tmpDir.listFiles((dir, name) -> name.endsWith(".run")).length);
+	}
+	
+	/// Skips the given number of values, and returns the next value
+	private static <V> V skip(Iterator<V> iter, int count) {
+		for (int i = 0; i < count; ++i) {
+			iter.next();
+		}
+		return iter.next();
+	}
+}
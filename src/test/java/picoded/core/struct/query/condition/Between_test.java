@@ -0,0 +1,90 @@
+package picoded.core.struct.query.condition;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryType;
+
+public class Between_test {
+	
+	// Data set to query against
+	private List<Map<String, Object>> dataSet = null;
+	
+	@Before
+	public void setUp() {
+		dataSet = new ArrayList<Map<String, Object>>();
+		Object[] values = new Object[] { 1, 2, "3", 4.5, "abc", "bcd", null, 10L };
+		for (int i = 0; i < values.length; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("val", values[i]);
+			dataSet.add(row);
+		}
+	}
+	
+	/// Result ids of the query
+	private List<Object> searchIds(Query query) {
+		List<Object> ret = new ArrayList<Object>();
+		for (Map<String, Object> row : query.search(dataSet)) {
+			ret.add(row.get("id"));
+		}
+		return ret;
+	}
+	
+	@Test
+	public void typeTest() {
+		Between between = new Between("key", "a", "b", new HashMap<String, Object>());
+		assertEquals(QueryType.BETWEEN, between.type());
+		assertEquals("a", between.argumentName());
+		assertEquals("b", between.upperArgumentName());
+	}
+	
+	@Test
+	public void numericSearch() {
+		Query query = Query.build("val BETWEEN ? AND ?", new Object[] { 2, 4.5 });
+		assertEquals(QueryType.BETWEEN, query.type());
+		assertEquals(Arrays.asList(1, 2, 3), searchIds(query));
+		
+		// Same as the equivalent range conditions
+		Query range = Query.build("val >= ? AND val <= ?", new Object[] { 2, 4.5 });
+		assertEquals(searchIds(range), searchIds(query));
+		for (Map<String, Object> row : dataSet) {
+			assertEquals(query.compile().test(row), query.test(row));
+		}
+	}
+	
+	@Test
+	public void stringSearch() {
+		Query query = Query.build("val BETWEEN ? AND ?", new Object[] { "abc", "b" });
+		assertEquals(Arrays.asList(4), searchIds(query));
+		assertEquals(0, searchIds(Query.build("val BETWEEN ? AND ?", new Object[] { 5, 1 })).size());
+		assertEquals(0, searchIds(Query.build("val BETWEEN ? AND ?", new Object[] { null, 5 })).size());
+	}
+	
+	@Test
+	public void combinedSearch() {
+		// The BETWEEN "AND" is not a combination operator
+		Query query = Query.build("val BETWEEN ? AND ? AND id != ? OR id = ?", new Object[] { 1, 10,
+			0, 6 });
+		assertEquals(QueryType.OR, query.type());
+		assertEquals(Arrays.asList(1, 2, 3, 6, 7), searchIds(query));
+	}
+	
+	@Test
+	public void sqlString() {
+		Query query = Query.build("val BETWEEN ? AND ? AND id = ?", new Object[] { 1, 5, 2 });
+		assertEquals("\"val\" BETWEEN :0 AND :1 AND \"id\" = :2", query.toString());
+		assertEquals("\"val\" BETWEEN ? AND ? AND \"id\" = ?", query.toSqlString());
+		assertEquals(Arrays.asList(1, 5, 2), query.queryArgumentsList());
+		assertEquals(Arrays.asList(1, 5), query.keyValuesMap().get("val"));
+	}
+}
@@ -0,0 +1,100 @@
+package picoded.core.struct.query.condition;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryType;
+
+public class In_test {
+	
+	// Data set to query against
+	private List<Map<String, Object>> dataSet = null;
+	
+	@Before
+	public void setUp() {
+		dataSet = new ArrayList<Map<String, Object>>();
+		Object[] values = new Object[] { 1, 2, "3", 4.0, "abc", "ABC", null, true };
+		for (int i = 0; i < values.length; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("val", values[i]);
+			dataSet.add(row);
+		}
+	}
+	
+	/// Result ids of the query
+	private List<Object> searchIds(Query query) {
+		List<Object> ret = new ArrayList<Object>();
+		for (Map<String, Object> row : query.search(dataSet)) {
+			ret.add(row.get("id"));
+		}
+		return ret;
+	}
+	
+	@Test
+	public void typeTest() {
+		In in = new In("key", Arrays.asList("a", "b"), new HashMap<String, Object>());
+		assertEquals(QueryType.IN, in.type());
+		assertEquals("a", in.argumentName());
+		assertEquals(Arrays.asList("a", "b"), in.argumentNames());
+	}
+	
+	@Test
+	public void argumentListSearch() {
+		Query query = Query.build("val IN (?, ?, ?)", new Object[] { 1, 3, "abc" });
+		assertEquals(QueryType.IN, query.type());
+		assertEquals(Arrays.asList(0, 2, 4), searchIds(query));
+		
+		// Uncompiled test, is the same as the compiled search
+		for (Map<String, Object> row : dataSet) {
+			assertEquals(query.compile().test(row), query.test(row));
+		}
+	}
+	
+	@Test
+	public void collectionArgumentSearch() {
+		Query query = Query.build("val IN ?", new Object[] { Arrays.asList(2, 4, null) });
+		assertEquals(Arrays.asList(1, 3, 6), searchIds(query));
+		
+		query = Query.build("val IN ?", new Object[] { new Object[] { "abc", true } });
+		assertEquals(Arrays.asList(4, 7), searchIds(query));
+		
+		query = Query.build("val IN ?", new Object[] { new ArrayList<Object>() });
+		assertEquals(0, searchIds(query).size());
+		assertEquals(0, query.search(dataSet).size());
+	}
+	
+	@Test
+	public void combinedSearch() {
+		Query query = Query.build("id > ? AND val IN (?, :x) OR id = ?", new Object[] { 0, 1, 7 });
+		query.defaultArgumentMap().put("x", Arrays.asList(2, "3"));
+		assertEquals(Arrays.asList(1, 2, 7), searchIds(query));
+	}
+	
+	@Test
+	public void sqlString() {
+		Query query = Query.build("val IN (?, ?)", new Object[] { 1, 2 });
+		assertEquals("\"val\" IN (:0, :1)", query.toString());
+		assertEquals("\"val\" IN (?, ?)", query.toSqlString());
+		assertEquals(Arrays.asList(1, 2), query.queryArgumentsList());
+		
+		// Collection argument, are expanded for each value
+		query = Query.build("val IN ? AND id = ?", new Object[] { Arrays.asList(1, 2, 3), 5 });
+		assertEquals("\"val\" IN (?, ?, ?) AND \"id\" = ?", query.toSqlString());
+		assertEquals(Arrays.asList(1, 2, 3, 5), query.queryArgumentsList());
+		assertEquals(Arrays.asList(1, 2, 3), query.keyValuesMap().get("val"));
+		
+		query = Query.build("val IN ?", new Object[] { new ArrayList<Object>() });
+		assertEquals("\"val\" IN (?)", query.toSqlString());
+		assertEquals(1, query.queryArgumentsList().size());
+	}
+}
@@ -0,0 +1,87 @@
+package picoded.core.struct.query.internal;
+
+import static org.junit.Assert.*;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+///
+/// Test Case for picoded.core.struct.query.internal.AsciiCollator,
+/// which is validated against the english collator
+///
+public class AsciiCollator_test {
+	
+	private Collator collator = Collator.getInstance(Locale.ENGLISH);
+	
+	/// Asserts the table comparision, is the same as the collator
+	private void assertSameCompare(String a, String b) {
+		int expected = collator.compare(a, b);
+		assertEquals("'" + a + "' vs '" + b + "'", Integer.signum(expected), AsciiCollator.compare(a,
+			b));
+		
+		// Plain strings, are only equal if identical
+		if (AsciiCollator.isPlain(a) && AsciiCollator.isPlain(b)) {
+			assertEquals("'" + a + "' vs '" + b + "'", expected == 0, a.equals(b));
+		}
+	}
+	
+	@Test
+	public void shortStrings() {
+		List<String> singles = new ArrayList<String>();
+		List<String> pairs = new ArrayList<String>();
+		singles.add("");
+		for (char a = 0; a < 128; ++a) {
+			singles.add(String.valueOf(a));
+			for (char b = 0; b < 128; ++b) {
+				pairs.add(new String(new char[] { a, b }));
+			}
+		}
+		for (String a : singles) {
+			for (String b : singles) {
+				assertSameCompare(a, b);
+			}
+			for (int i = 0; i < pairs.size(); i += 7) {
+				assertSameCompare(a, pairs.get(i));
+				assertSameCompare(pairs.get(i), a);
+			}
+		}
+	}
+	
+	@Test
+	public void randomStrings() {
+		// Biased towards ignorable characters, and case differences
+		String charSet = "aAbB zZ-_.09\t\u0001,'";
+		Random rand = new Random(3);
+		for (int i = 0; i < 200000; ++i) {
+			String a = randomString(rand, charSet);
+			String b = rand.nextInt(4) == 0 ? a.toUpperCase(Locale.ENGLISH) : randomString(rand, charSet);
+			assertSameCompare(a, b);
+		}
+	}
+	
+	/// Random string of the character set, or any ASCII character
+	private String randomString(Random rand, String charSet) {
+		int length = rand.nextInt(8);
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < length; ++i) {
+			if (rand.nextBoolean()) {
+				ret.append(charSet.charAt(rand.nextInt(charSet.length())));
+			} else {
+				ret.append((char) rand.nextInt(128));
+			}
+		}
+		return ret.toString();
+	}
+	
+	@Test
+	public void unsupportedStrings() {
+		assertEquals(AsciiCollator.UNSUPPORTED, AsciiCollator.compare("caf\u00e9", "cafe"));
+		assertEquals(AsciiCollator.UNSUPPORTED, AsciiCollator.compare("abc", "\u4e2d"));
+		assertEquals(0, AsciiCollator.compare("abc", "abc"));
+	}
+}
@@ -0,0 +1,85 @@
+package picoded.core.struct.query.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import picoded.core.MicroBenchmark;
+import picoded.core.conv.NestedObjectFetch;
+import picoded.core.struct.query.Aggregation;
+
+///
+/// Microbenchmark of FieldAccessor against NestedObjectFetch, on deeply nested fields,
+/// run via `gradle benchmark -Pbenchmark=picoded.core.struct.query.internal.FieldAccessor_benchmark`
+///
+public class FieldAccessor_benchmark {
+	
+	/// Number of rows, and fetch operations of each run
+	private static final int ROWS = 100000;
+	
+	/// Nested field paths, of increasing depth
+	private static final String[] PATHS = new String[] { "a.value", "a.b.c.value",
+		"a.b.c.d.e[0].value", "a.b.c.d.e[0].f.g.h.value" };
+	
+	/// Row, with the value nested at every path
+	private static Map<String, Object> row(int i) {
+		Map<String, Object> h = new HashMap<String, Object>();
+		h.put("value", i);
+		Map<String, Object> g = single("h", h);
+		Map<String, Object> f = single("g", g);
+		Map<String, Object> e0 = single("f", single("g", g));
+		e0.put("value", i);
+		List<Object> e = new ArrayList<Object>();
+		e.add(e0);
+		Map<String, Object> d = single("e", e);
+		Map<String, Object> c = single("d", d);
+		c.put("value", i);
+		Map<String, Object> b = single("c", c);
+		Map<String, Object> a = single("b", b);
+		a.put("value", i);
+		a.put("f", f);
+		return single("a", a);
+	}
+	
+	/// Map with a single key value
+	private static Map<String, Object> single(String key, Object value) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put(key, value);
+		return ret;
+	}
+	
+	public static void main(String[] args) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < ROWS; ++i) {
+			rows.add(row(i));
+		}
+		
+		// Raw fetching, per path depth
+		for (String path : PATHS) {
+			MicroBenchmark.section("Fetch " + path);
+			MicroBenchmark.measure("NestedObjectFetch.fetchObject", ROWS, () -> {
+				long ret = 0;
+				for (Map<String, Object> row : rows) {
+					ret += (NestedObjectFetch.fetchObject(row, path) != null) ? 1 : 0;
+				}
+				return ret;
+			});
+			FieldAccessor accessor = FieldAccessor.of(path);
+			MicroBenchmark.measure("FieldAccessor.fetch", ROWS, () -> {
+				long ret = 0;
+				for (Map<String, Object> row : rows) {
+					ret += (accessor.fetch(row) != null) ? 1 : 0;
+				}
+				return ret;
+			});
+		}
+		
+		// Grouped aggregation, on the deepest path
+		String deepest = PATHS[PATHS.length - 1];
+		MicroBenchmark.section("Aggregation groupBy " + deepest);
+		Aggregation aggregation = Aggregation.build(new String[] { "count(*)" }).groupBy(deepest);
+		MicroBenchmark.measure("computeGroupBy", ROWS, () -> aggregation.computeGroupBy(rows
+			.iterator()).size());
+	}
+}
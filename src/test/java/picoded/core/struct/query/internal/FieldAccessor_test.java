@@ -0,0 +1,159 @@
+package picoded.core.struct.query.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.conv.ConvertJSON;
+import picoded.core.conv.NestedObjectFetch;
+import picoded.core.struct.IndexedQueryMapCollection;
+import picoded.core.struct.query.OrderBy;
+import picoded.core.struct.query.Query;
+
+///
+/// Test Case for picoded.core.struct.query.internal.FieldAccessor
+///
+public class FieldAccessor_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Nested object to fetch from
+	private Map<String, Object> base = null;
+	
+	@Before
+	public void setUp() {
+		base = ConvertJSON.toMap("{ \"a\" : { \"b.c\" : [1,2], \"0\" : \"haha\", \"d\" : { \"e\" : [ { \"f\" : 3 } ] } },"
+			+ " \"a.b\" : \"flat\", \"list\" : [ \"x\", [ \"y\", \"z\" ] ], \"\" : { \"g\" : 4 }, \"[key1\" : 5 }");
+	}
+	
+	//
+	// Fetch test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void fetchSimple() {
+		assertEquals(1, FieldAccessor.of("a.b.c[0]").fetch(base));
+		assertEquals(2, FieldAccessor.of("a[b.c][1]").fetch(base));
+		assertEquals("haha", FieldAccessor.of("a.0").fetch(base));
+		assertEquals("haha", FieldAccessor.of("a[0]").fetch(base));
+		assertEquals(3, FieldAccessor.of("a.d.e[0].f").fetch(base));
+		assertEquals("flat", FieldAccessor.of("a.b").fetch(base));
+		assertEquals("x", FieldAccessor.of("list[0]").fetch(base));
+		assertEquals(5, FieldAccessor.of("[key1").fetch(base));
+		assertNull(FieldAccessor.of("a.missing").fetch(base));
+		assertNull(FieldAccessor.of(null).fetch(base));
+		assertSame(FieldAccessor.of("a.d.e[0].f"), FieldAccessor.of("a.d.e[0].f"));
+	}
+	
+	@Test
+	public void fetchEquivalence() {
+		// Random paths, from the path parts of the nested object (and some invalid parts)
+		String[] parts = new String[] { "a", "b", "c", "b.c", "0", "1", "d", "e", "f", "list", "g",
+			"", " ", "x", "[key1" };
+		Random rand = new Random(3);
+		for (int i = 0; i < 5000; ++i) {
+			StringBuilder path = new StringBuilder();
+			int len = 1 + rand.nextInt(5);
+			for (int p = 0; p < len; ++p) {
+				String part = parts[rand.nextInt(parts.length)];
+				int style = rand.nextInt(4);
+				if (p == 0 && style < 2) {
+					path.append(part);
+				} else if (style == 0) {
+					path.append(".").append(part);
+				} else if (style == 1) {
+					path.append("[").append(part).append("]");
+				} else if (style == 2) {
+					path.append("[\"").append(part).append("\"]");
+				} else {
+					path.append(part);
+				}
+			}
+			assertFetchSame(path.toString());
+		}
+	}
+	
+	/// Asserts the accessor fetch is the same as NestedObjectFetch
+	private void assertFetchSame(String path) {
+		Object expected;
+		try {
+			expected = NestedObjectFetch.fetchObject(base, path);
+		} catch (RuntimeException e) {
+			try {
+				FieldAccessor.of(path).fetch(base);
+				fail("Expected exception for path : " + path);
+			} catch (RuntimeException e2) {
+				assertEquals(e.getClass(), e2.getClass());
+			}
+			return;
+		}
+		assertEquals(path, expected, FieldAccessor.of(path).fetch(base));
+	}
+	
+	//
+	// Field value test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void fieldValue() {
+		// Self refrencing field
+		assertSame(base, FieldAccessor.of(null).getFieldValue(base));
+		assertSame(base, FieldAccessor.of("THIS").getFieldValue(base));
+		
+		// Full field name only, without resolving the nested path
+		assertEquals("flat", FieldAccessor.of("a.b").getFieldValue(base));
+		assertNull(FieldAccessor.of("a.d.e[0].f").getFieldValue(base));
+		assertEquals(3, FieldAccessor.of("a.d.e[0].f").fetch(base));
+		assertTrue(FieldAccessor.of("a.d.e[0].f").isNested());
+		assertFalse(FieldAccessor.of("a").isNested());
+		
+		// Non map rows
+		assertNull(FieldAccessor.of("0").getFieldValue(Arrays.asList(1, 2)));
+		assertNull(FieldAccessor.of("a.b").getFieldValue("a.b"));
+	}
+	
+	@Test
+	public void flatQueryAndOrder() {
+		List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 50; ++i) {
+			Map<String, Object> address = new HashMap<String, Object>();
+			address.put("city", "city-" + (i % 5));
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", i);
+			row.put("address", address);
+			row.put("address.city", (i % 2 == 0) ? null : "flat-" + (i % 5));
+			list.add(row);
+		}
+		
+		// Query conditions use the full field name, even if its null while the nested path is not
+		Query isNull = Query.build("address.city = ?", new Object[] { null });
+		assertTrue(isNull.test(list.get(2)));
+		assertTrue(isNull.compile().test(list.get(2)));
+		assertEquals(25, isNull.search(list).size());
+		Query flat = Query.build("address.city = ?", new Object[] { "flat-3" });
+		assertEquals(5, flat.search(list).size());
+		assertEquals(0, Query.build("address.city = ?", new Object[] { "city-3" }).search(list).size());
+		
+		// Sorted by the full field name
+		List<Map<String, Object>> sorted = new ArrayList<Map<String, Object>>(list);
+		sorted.sort(new OrderBy<Map<String, Object>>("address.city DESC"));
+		assertEquals("flat-4", sorted.get(0).get("address.city"));
+		
+		// Indexed by the full field name
+		IndexedQueryMapCollection<Map<String, Object>> indexed = new IndexedQueryMapCollection<Map<String, Object>>(
+			list);
+		indexed.addIndex("address.city");
+		assertEquals(flat.search(list), indexed.query(flat, null, -1, -1));
+		assertEquals(isNull.search(list).size(), indexed.query(isNull, null, -1, -1).size());
+	}
+}
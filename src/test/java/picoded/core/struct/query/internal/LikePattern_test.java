@@ -0,0 +1,55 @@
+package picoded.core.struct.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+///
+/// Test Case for picoded.core.struct.query.internal.LikePattern,
+/// which is validated against the regex equivalent
+///
+public class LikePattern_test {
+	
+	//
+	// Test Setup
+	//--------------------------------------------------------------------
+	
+	private static final String[] patternSet = new String[] { "", "%", "%%", "abc", "ab%", "%bc",
+		"%b%", "a%c", "a%b%c", "%a%c%", "a%%c", "abcabc%abc", "a.c", "a.c%", "%a_c", "a*", "a+%",
+		"(a)%", "[ab]%", "a\nb%", "%\n%", "ABC" };
+	
+	private static final String[] valueSet = new String[] { "", "a", "abc", "abcd", "xabc", "xabcx",
+		"abcabc", "abcabcabc", "ac", "aXc", "a_c", "a.c", "aaa", "a+", "(a)b", "ab\n", "a\nbc",
+		"\n", "x\ny", "a\rc", "a\u2028c", "ABC", "abcab" };
+	
+	//
+	// Pattern test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void regexEquivalence() {
+		for (String pattern : patternSet) {
+			Pattern regex = Pattern.compile(pattern.replaceAll("%", ".*"));
+			LikePattern like = LikePattern.compile(pattern);
+			assertEquals(pattern, like.pattern());
+			for (String value : valueSet) {
+				assertEquals("'" + pattern + "' LIKE '" + value + "'", regex.matcher(value).matches(),
+					like.matches(value));
+			}
+		}
+	}
+	
+	@Test
+	public void fastPathMatching() {
+		assertTrue(LikePattern.compile("ab%").matches("abcde"));
+		assertTrue(LikePattern.compile("%de").matches("abcde"));
+		assertTrue(LikePattern.compile("%bcd%").matches("abcde"));
+		assertTrue(LikePattern.compile("abcde").matches("abcde"));
+		assertFalse(LikePattern.compile("abcde").matches("abcd"));
+		assertFalse(LikePattern.compile("%ab%ab%").matches("abc"));
+	}
+}
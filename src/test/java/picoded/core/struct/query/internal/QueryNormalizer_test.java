@@ -0,0 +1,158 @@
+package picoded.core.struct.query.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import picoded.core.struct.query.Query;
+import picoded.core.struct.query.QueryType;
+import picoded.core.struct.query.condition.Constant;
+
+///
+/// Test Case for picoded.core.struct.query.internal.QueryNormalizer
+///
+public class QueryNormalizer_test {
+	
+	//
+	// Test setup
+	//--------------------------------------------------------------------
+	
+	// Mixed type values, used for both the data set and arguments
+	private static final Object[] valueSet = new Object[] { 0, 1, 2, 2.5, -1, 10L, "2", "abc", "",
+		true, null };
+	
+	// Data set to query against
+	private List<Map<String, Object>> dataSet = null;
+	
+	@Before
+	public void setUp() {
+		Random rand = new Random(13);
+		dataSet = new ArrayList<Map<String, Object>>();
+		for (int i = 0; i < 200; ++i) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("a", valueSet[rand.nextInt(valueSet.length)]);
+			row.put("b", valueSet[rand.nextInt(valueSet.length)]);
+			dataSet.add(row);
+		}
+	}
+	
+	/// Normalized query string
+	private String normalize(String where, Object... args) {
+		return Query.build(where, args).normalize().toString();
+	}
+	
+	//
+	// Rewrite test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void unchanged() {
+		Query query = Query.build("a = ? AND (b = ? OR a < ?)", new Object[] { 1, 2, 3 });
+		assertSame(query, query.normalize());
+	}
+	
+	@Test
+	public void flattenAndDoubleNegation() {
+		assertEquals("\"a\" = :0 AND \"b\" = :1 AND \"a\" < :2",
+			normalize("a = ? AND (b = ? AND a < ?)", 1, 2, 3));
+		assertEquals("\"a\" = :0", normalize("NOT (NOT a = ?)", 1));
+		assertEquals("\"a\" = :0 OR \"b\" = :1", normalize("NOT (NOT (a = ? OR b = ?))", 1, 2));
+		assertEquals("NOT(  (\"a\" = :0 OR \"b\" = :1 OR \"a\" < :2) )",
+			normalize("NOT (a = ? OR (b = ? OR a < ?))", 1, 2, 3));
+	}
+	
+	@Test
+	public void identicalConditions() {
+		assertEquals("\"a\" = :0", normalize("a = ? AND a = ?", 1, 1));
+		assertEquals("\"a\" = :0 OR \"b\" = :1", normalize("a = ? OR b = ? OR a = ?", 1, 1, 1));
+		assertEquals("\"a\" = :0 AND \"a\" = :1", normalize("a = ? AND a = ?", 1, 2));
+	}
+	
+	@Test
+	public void mergeRanges() {
+		assertEquals("\"a\" > :1 AND \"a\" <= :2", normalize("a > ? AND a > ? AND a <= ?", 1, 5, 10));
+		assertEquals("\"a\" > :0 AND \"a\" < :1", normalize("a > ? AND a < ? AND a <= ?", 1, 5, 5));
+		assertEquals("\"a\" < :1", normalize("a < ? OR a < ?", 3, 7));
+		assertEquals("\"a\" >= :1", normalize("a > ? OR a >= ?", 3, 3));
+		
+		// Non numeric ranges are not merged
+		assertEquals("\"a\" > :0 AND \"a\" > :1", normalize("a > ? AND a > ?", "1", 5));
+	}
+	
+	@Test
+	public void constantFolding() {
+		// Contradicting ranges
+		assertEquals("FALSE", normalize("a > ? AND a < ?", 5, 3));
+		assertEquals("FALSE", normalize("a > ? AND a <= ?", 5, 5));
+		assertEquals("\"a\" >= :0 AND \"a\" <= :1", normalize("a >= ? AND a <= ?", 5, 5));
+		assertEquals("\"b\" = :2", normalize("(a > ? AND a < ?) OR b = ?", 5, 3, 1));
+		
+		// Null arguments, which always fails
+		assertEquals("\"b\" = :1", normalize("a > ? OR b = ?", null, 1));
+		assertEquals("FALSE", normalize("a LIKE ? AND b = ?", null, 1));
+		assertEquals("TRUE", normalize("NOT a > ?", (Object) null));
+		assertEquals("\"b\" = :1", normalize("NOT a > ? AND b = ?", null, 1));
+		assertEquals("\"a\" = :0", normalize("a = ?", (Object) null));
+		assertEquals("\"b\" = :2", normalize("a BETWEEN ? AND ? OR b = ?", 1, null, 1));
+		assertEquals("\"b\" = :1", normalize("a IN ? OR b = ?", new ArrayList<Object>(), 1));
+		assertEquals("\"a\" IN (:0)", normalize("a IN (?) AND a IN (?)", 1, 1));
+		assertEquals("\"a\" IN (:0) AND \"a\" IN (:1, :2)", normalize("a IN (?) AND a IN (?, ?)", 1,
+			1, 2));
+		
+		Query query = Query.build("a < ?", new Object[] { null }).normalize();
+		assertSame(Constant.FALSE, query);
+		assertEquals(QueryType.FALSE, query.type());
+		assertEquals(0, query.search(dataSet).size());
+	}
+	
+	//
+	// Equivalence test
+	//--------------------------------------------------------------------
+	
+	private static final String[] opSet = new String[] { "=", "!=", "<", "<=", ">", ">=", "LIKE" };
+	
+	/// Random query string, with its arguments
+	private String randomQuery(Random rand, List<Object> args, int depth) {
+		if (depth <= 0 || rand.nextInt(3) == 0) {
+			args.add(valueSet[rand.nextInt(valueSet.length)]);
+			return (rand.nextBoolean() ? "a" : "b") + " " + opSet[rand.nextInt(opSet.length)] + " ?";
+		}
+		int type = rand.nextInt(3);
+		if (type == 2) {
+			return "NOT (" + randomQuery(rand, args, depth - 1) + ")";
+		}
+		StringBuilder ret = new StringBuilder("(");
+		int count = 1 + rand.nextInt(3);
+		for (int i = 0; i < count; ++i) {
+			if (i > 0) {
+				ret.append((type == 0) ? " AND " : " OR ");
+			}
+			ret.append(randomQuery(rand, args, depth - 1));
+		}
+		return ret.append(")").toString();
+	}
+	
+	@Test
+	public void randomEquivalence() {
+		Random rand = new Random(5);
+		for (int i = 0; i < 500; ++i) {
+			List<Object> args = new ArrayList<Object>();
+			String where = randomQuery(rand, args, 3);
+			Query query = Query.build(where, args.toArray());
+			Query normalized = query.normalize();
+			for (Map<String, Object> row : dataSet) {
+				assertEquals(where + " " + args + " -> " + normalized + " : " + row, query.test(row),
+					normalized.test(row));
+			}
+			assertEquals(query.search(dataSet).size(), normalized.search(dataSet).size());
+			assertSame(normalized, normalized.normalize());
+		}
+	}
+}
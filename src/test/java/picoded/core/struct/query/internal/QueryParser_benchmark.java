@@ -0,0 +1,82 @@
+package picoded.core.struct.query.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import picoded.core.MicroBenchmark;
+import picoded.core.struct.query.Query;
+
+///
+/// Microbenchmark of query string parsing throughput, via QueryParser against the
+/// QueryFilter token processing steps, and the cached Query.build,
+/// run via `gradle benchmark -Pbenchmark=picoded.core.struct.query.internal.QueryParser_benchmark`
+///
+public class QueryParser_benchmark {
+	
+	/// Number of query builds in each run
+	private static final int BUILDS = 20000;
+	
+	/// Query strings, of increasing length and nesting
+	private static final String[] QUERIES = new String[] { //
+		"a = ?", //
+		"a = ? AND b != ? AND c < ? OR d >= ? AND e LIKE ?", //
+		"(a = ? OR b = ?) AND (c = ? OR NOT (d = ? AND e = :name))", //
+		longQuery(20) //
+	};
+	
+	public static void main(String[] args) {
+		for (String query : QUERIES) {
+			Object[] argArr = new Object[QueryParser.countQueryArguments(query)];
+			for (int i = 0; i < argArr.length; ++i) {
+				argArr[i] = i;
+			}
+			Map<String, Object> paramMap = new HashMap<String, Object>();
+			paramMap.put("name", "value");
+			
+			// Both parsers build the same query, so only the parse time differs
+			if (!QueryParser.buildQuery(query, new HashMap<String, Object>(paramMap), argArr).toString()
+				.equals(QueryFilter.buildQueryFromTokens(query, new HashMap<String, Object>(paramMap),
+					argArr).toString())) {
+				throw new RuntimeException("Mismatched query for: " + query);
+			}
+			
+			MicroBenchmark.section("Query (" + query.length() + " chars) "
+				+ (query.length() > 64 ? query.substring(0, 64) + "..." : query));
+			MicroBenchmark.measure("QueryFilter.buildQueryFromTokens", BUILDS, () -> {
+				long ret = 0;
+				for (int i = 0; i < BUILDS; ++i) {
+					ret += QueryFilter.buildQueryFromTokens(query, new HashMap<String, Object>(paramMap),
+						argArr).hashCode();
+				}
+				return ret;
+			});
+			MicroBenchmark.measure("QueryParser.buildQuery", BUILDS, () -> {
+				long ret = 0;
+				for (int i = 0; i < BUILDS; ++i) {
+					ret += QueryParser.buildQuery(query, new HashMap<String, Object>(paramMap), argArr)
+						.hashCode();
+				}
+				return ret;
+			});
+			MicroBenchmark.measure("Query.build (cached)", BUILDS, () -> {
+				long ret = 0;
+				for (int i = 0; i < BUILDS; ++i) {
+					ret += Query.build(query, new HashMap<String, Object>(paramMap)).hashCode();
+				}
+				return ret;
+			});
+		}
+	}
+	
+	/// Query string of the given number of conditions, alternating AND / OR
+	private static String longQuery(int conditions) {
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < conditions; ++i) {
+			if (i > 0) {
+				ret.append(i % 2 == 0 ? " AND " : " OR ");
+			}
+			ret.append("field").append(i).append(" = :name");
+		}
+		return ret.toString();
+	}
+}
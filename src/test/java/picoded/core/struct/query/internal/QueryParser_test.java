@@ -0,0 +1,182 @@
+package picoded.core.struct.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import picoded.core.struct.query.Query;
+
+///
+/// Test Case for picoded.core.struct.query.internal.QueryParser,
+/// which is validated against the QueryFilter token processing steps
+///
+public class QueryParser_test {
+	
+	//
+	// Test Setup
+	//--------------------------------------------------------------------
+	
+	/// Valid query strings, to validate against
+	private static final String[] validQuerySet = new String[] { //
+		"a = ?", //
+		"a=?", //
+		"a != ?", //
+		"a!=?", //
+		"a < ?", //
+		"a<=?", //
+		"a > ?", //
+		"a>=?", //
+		"a LIKE ?", //
+		"\"a\" = ?", //
+		"'a' = ?", //
+		"[a] = ?", //
+		"a! = ?", //
+		"a = :name", //
+		"a = :name AND b = :other", //
+		"a = ? AND b = ?", //
+		"a = ? and b = ? AND c = ?", //
+		"a = ? OR b = ?", //
+		"a = ? AND b = ? OR c = ?", //
+		"a = ? OR b = ? AND c = ? OR d = ?", //
+		"NOT a = ?", //
+		"a = ? AND NOT b = ?", //
+		"NOT (a = ? OR b = ?)", //
+		"(a = ?)", //
+		"((a = ?))", //
+		"(a = ? AND b = ?) OR c = ?", //
+		"a = ? OR (b = ? AND (c = ? OR d = ?))", //
+		"(a = ? OR b = ?) AND (c = ? OR d = ?)", //
+		"(AND)", //
+		"  a   =\t?\n AND\r\nb =  ?  ", //
+		"a = ?b", //
+		"_key = ? AND _val LIKE ?", //
+		"a = ? AND IN = ? OR BETWEEN > ?", //
+		"NOT in = ? AND between < ?", //
+		"\"in\" = ? AND \"BETWEEN\" = ?", //
+		"this = ?" //
+	};
+	
+	/// Invalid query strings, that should fail
+	private static final String[] invalidQuerySet = new String[] { //
+		"", //
+		"AND", //
+		"a", //
+		"a =", //
+		"a = b", //
+		"a = = ?", //
+		"a = ? b = ?", //
+		"a = ? XOR b = ?", //
+		"a like ?", //
+		"(a = ?", //
+		"a = ?)", //
+		"()", //
+		"a = ? AND (", //
+		"AND OR a = ?", //
+		"a = :x?" //
+	};
+	
+	/// Count the number of "?" in the string
+	private Object[] argumentsFor(String query) {
+		int count = QueryParser.countQueryArguments(query);
+		Object[] ret = new Object[count];
+		for (int i = 0; i < count; ++i) {
+			ret[i] = "v" + i;
+		}
+		return ret;
+	}
+	
+	//
+	// Parser test
+	//--------------------------------------------------------------------
+	
+	@Test
+	public void countQueryArguments() {
+		assertEquals(0, QueryParser.countQueryArguments("a = :name"));
+		assertEquals(2, QueryParser.countQueryArguments("a = ? AND b = ?"));
+		assertEquals(QueryFilter.filterQueryArguments("a = ? OR (b = ? AND c = ?)").getRight()
+			.intValue(), QueryParser.countQueryArguments("a = ? OR (b = ? AND c = ?)"));
+	}
+	
+	@Test
+	public void validQueryEquivalence() {
+		for (String queryStr : validQuerySet) {
+			Map<String, Object> baseMap = new HashMap<String, Object>();
+			baseMap.put("name", "n");
+			baseMap.put("other", "o");
+			
+			Query expected = QueryFilter.buildQueryFromTokens(queryStr, new HashMap<String, Object>(
+				baseMap), argumentsFor(queryStr));
+			Query result = QueryParser.buildQuery(queryStr, new HashMap<String, Object>(baseMap),
+				argumentsFor(queryStr));
+			
+			assertNotNull(result);
+			assertEquals(queryStr, expected.toString(), result.toString());
+			assertEquals(queryStr, expected.type(), result.type());
+			assertEquals(queryStr, expected.defaultArgumentMap(), result.defaultArgumentMap());
+			assertEquals(queryStr, expected.toSqlString(), result.toSqlString());
+		}
+	}
+	
+	@Test
+	public void invalidQueryFailure() {
+		for (String queryStr : invalidQuerySet) {
+			try {
+				QueryFilter.buildQueryFromTokens(queryStr, null, argumentsFor(queryStr));
+				fail("Expected token processing to fail : " + queryStr);
+			} catch (RuntimeException e) {
+				// expected
+			}
+			try {
+				QueryParser.buildQuery(queryStr, null, argumentsFor(queryStr));
+				fail("Expected parser to fail : " + queryStr);
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+	}
+	
+	@Test(expected = RuntimeException.class)
+	public void argumentCountMismatch() {
+		QueryParser.buildQuery("a = ? AND b = ?", null, new Object[] { 1 });
+	}
+	
+	@Test
+	public void leftToRightCombination() {
+		Query query = QueryParser.buildQuery("a = ? AND b = ? OR c = ?", null, new Object[] { 1, 2,
+			3 });
+		assertEquals("(\"a\" = :0 AND \"b\" = :1) OR \"c\" = :2", query.toString());
+	}
+	
+	@Test
+	public void inAndBetween() {
+		Query query = QueryParser.buildQuery("a IN (?,?, :x) AND b BETWEEN ? AND :y OR c IN ?",
+			null, new Object[] { 1, 2, 3, 4 });
+		assertEquals("(\"a\" IN (:0, :1, :x) AND \"b\" BETWEEN :2 AND :y) OR \"c\" IN (:3)", query
+			.toString());
+		
+		// Fields named as the operator words, after a combination operator, or quoted
+		query = QueryParser.buildQuery("a = ? AND IN IN (?) OR BETWEEN BETWEEN ? AND ?", null,
+			new Object[] { 1, 2, 3, 4 });
+		assertEquals("(\"a\" = :0 AND \"IN\" IN (:1)) OR \"BETWEEN\" BETWEEN :2 AND :3", query
+			.toString());
+		query = QueryParser.buildQuery("\"in\" = ? AND \"between\" IN (?)", null, new Object[] {
+			1, 2 });
+		assertEquals("\"in\" = :0 AND \"between\" IN (:1)", query.toString());
+		
+		String[] invalidSet = new String[] { "a IN (?, ?", "a IN (? ?)", "a IN ()", "a IN",
+			"a BETWEEN ?", "a BETWEEN ? OR ?", "a BETWEEN ? AND", "a = ?, b = ?" };
+		for (String queryStr : invalidSet) {
+			try {
+				QueryParser.buildQuery(queryStr, null, null);
+				fail("Expected query parsing to fail : " + queryStr);
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+	}
+}
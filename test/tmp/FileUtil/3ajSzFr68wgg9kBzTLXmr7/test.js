@@ -0,0 +1 @@
+pathname = pathname.replace(/\\/g, '/');
\ No newline at end of file